@@ -11,9 +11,13 @@ import android.view.Surface;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
 
+import org.citra.emu.overlay.InputOverlayPointer;
 import org.citra.emu.ui.EmulationActivity;
 import org.citra.emu.ui.MainActivity;
+import org.citra.emu.ui.MemoryActivity;
+import org.citra.emu.utils.GuestMemory;
 import org.citra.emu.utils.TranslateHelper;
 
 public final class NativeLibrary {
@@ -22,6 +26,10 @@ public final class NativeLibrary {
         System.loadLibrary("main");
     }
 
+    // the types of showMessageDialog, jni_common.h has the same
+    public static final int MESSAGE_ERROR = 0;
+    public static final int MESSAGE_AUTO_TUNE = 1;
+
     public interface OnScreenshotCompleteListener {
         void OnScreenshotComplete(int width, int height, int[] pixels);
     }
@@ -53,7 +61,7 @@ public final class NativeLibrary {
         final Activity activity = (Activity)context;
         activity.runOnUiThread(() -> {
             AlertDialog.Builder builder = new AlertDialog.Builder(activity);
-            builder.setTitle(R.string.error);
+            builder.setTitle(type == MESSAGE_AUTO_TUNE ? R.string.auto_tune : R.string.error);
             builder.setMessage(msg);
             builder.show();
         });
@@ -82,6 +90,10 @@ public final class NativeLibrary {
         }
     }
 
+    public static void updateTouchLayout(int left, int top, int right, int bottom) {
+        InputOverlayPointer.setTouchLayout(left, top, right, bottom);
+    }
+
     public static void saveImageToFile(String path, int width, int height, int[] pixels) {
         if (pixels.length > 0 && width > 0 && height > 0) {
             File file = new File(path);
@@ -115,6 +127,25 @@ public final class NativeLibrary {
         }
     }
 
+    public static void updateSearchProgress(int scanned, int total) {
+        MemoryActivity activity = MemoryActivity.get();
+        if (activity != null) {
+            activity.runOnUiThread(() -> activity.updateSearchProgress(scanned, total));
+        }
+    }
+
+    public static void updateWatchValues(int[] values) {
+        MemoryActivity activity = MemoryActivity.get();
+        if (activity != null) {
+            activity.runOnUiThread(() -> activity.updateWatchValues(values));
+        }
+    }
+
+    // called on the emulation thread before the memory is freed
+    public static void releaseGuestMemory() {
+        GuestMemory.release();
+    }
+
     public static void pickImage(int width, int height) {
         EmulationActivity activity = EmulationActivity.get();
         if (activity != null) {
@@ -192,8 +223,12 @@ public final class NativeLibrary {
     // input overlay
     public static native void InputEvent(int button, float value);
 
-    // touch screen
-    public static native void TouchEvent(int action, int x, int y);
+    // combo key macros, steps are (buttons mask, frames) pairs
+    public static native void ComboKeyEvent(int index, int action);
+    public static native void setComboMacro(int index, int[] steps);
+
+    // touch screen, touch actions take touch screen coordinates (0 to 1), tilt actions view pixels
+    public static native void TouchEvent(int action, float x, float y);
 
     // gamepad
     public static native boolean KeyEvent(int button, int action);
@@ -212,12 +247,25 @@ public final class NativeLibrary {
 
     public static native void Run(String path);
 
+    /**
+     * Boots the game with every settings profile the auto tuner tries, saves the best one to the
+     * settings of the game and shows the result.
+     */
+    public static native void RunAutoTune(String path);
+
     public static native void ResumeEmulation();
 
     public static native void PauseEmulation();
 
     public static native void StopEmulation();
 
+    /**
+     * The format of the running settings, [version, id, value, id, value, ...] with the SETTING_*
+     * ids of RunningSettingDialog. Setting them only applies the pairs that changed, and only
+     * updates the screen layout when one of them needs it.
+     */
+    public static final int RUNNING_SETTINGS_VERSION = 1;
+
     public static native int[] getRunningSettings();
 
     public static native void setRunningSettings(int[] settings);
@@ -226,21 +274,78 @@ public final class NativeLibrary {
 
     public static native Rect getCustomLayout(boolean isTopScreen);
 
-    public static native int[] searchMemory(int startAddr, int stopAddr, int valueType, int searchType, int scanType, int value);
+    // returns the number of results, or -1 if the search was cancelled
+    /**
+     * value and value2 are the bits of a double for float and double searches, pattern and mask
+     * are only used by byte pattern searches.
+     */
+    public static native int searchMemory(int startAddr, int stopAddr, int valueType, int searchType, int scanType,
+                                          long value, long value2, double epsilon, byte[] pattern, byte[] mask);
+
+    public static native void cancelSearchMemory();
+
+    /**
+     * Loads the search session saved for the running title, returns [result count, start, stop,
+     * value type, search type, scan type, value low, value high, value2 low, value2 high] or null
+     * if there is none. It inflates the whole session, so it's called from a worker thread.
+     */
+    public static native int[] restoreSearchSession();
+
+    /**
+     * Streams the mapped pages between the addresses to a dump file, the emulation is paused
+     * while it runs if pause is set. Returns the size of the dump, or -1 if it failed or was
+     * cancelled with cancelSearchMemory.
+     */
+    public static native long dumpMemory(int startAddr, int stopAddr, String path, boolean pause);
+
+    /**
+     * Returns (addr, size) pairs of the bytes that differ between two dumps, or null if one of
+     * them could not be read.
+     */
+    public static native int[] diffMemoryDumps(String pathA, String pathB);
+
+    public static native int getSearchResultCount();
 
-    public static native int[] getSearchResults();
+    // copies up to count (address, value) records starting at result offset, returns the records
+    // copied, the value of a double search takes two ints, low bits first
+    public static native int getSearchResultPage(int offset, int count, int[] out);
 
     public static native void resetSearchResults();
 
     public static native int[] loadPageTable();
 
-    public static native byte[] loadPage(int index);
+    // (length, static base, offsets...) records of the chains to target, or null if cancelled
+    public static native int[] scanPointers(int target, int maxDepth, int maxOffset);
+
+    // [page table generation, start, size, ...], see GuestMemory
+    public static native int[] loadMemoryRegions();
+
+    // direct buffer over a region of loadMemoryRegions, or null if it is no longer mapped
+    public static native ByteBuffer mapMemoryRegion(int start, int size);
+
+    public static native int getMemoryGeneration();
 
-    public static native int readMemory(int addr, int valueType);
     public static native void writeMemory(int addr, int valueType, int value);
 
+    // (addr, value type, frozen, value) quads, frozen values are written once per frame
+    public static native void setWatchList(int[] entries);
+
     public static native void reloadCheatCode();
 
+    /**
+     * Enables or disables one cheat of the running game, index counts only the cheats with codes.
+     */
+    public static native void setCheatEnabled(int index, boolean enabled);
+
+    // number of cheats the running game has, the cheats with codes in its cheat file
+    public static native int getCheatCount();
+
+    /**
+     * Replaces one cheat of the running game with its lines from the cheat file, the index after
+     * the last cheat adds it. Returns false if the lines are not exactly one cheat.
+     */
+    public static native boolean updateCheat(int index, String[] lines);
+
     public static native void loadAmiibo(String path);
 
     /**
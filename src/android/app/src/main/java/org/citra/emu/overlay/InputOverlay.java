@@ -15,10 +15,11 @@ import android.util.DisplayMetrics;
 import android.view.MotionEvent;
 import android.view.View;
 import java.util.ArrayList;
-import java.util.Arrays;
 
+import org.citra.emu.NativeLibrary;
 import org.citra.emu.NativeLibrary.ButtonType;
 import org.citra.emu.R;
+import org.citra.emu.utils.ComboKeyHelper;
 
 public final class InputOverlay extends View {
     public static final String PREF_CONTROLLER_INIT = "InitOverlay";
@@ -404,21 +405,13 @@ public final class InputOverlay extends View {
                 {ButtonType.EMU_COMBO_KEY_3, R.drawable.wiimote_three, R.drawable.wiimote_three_pressed},
         };
         for (int i = 0; i < combokeys.length; ++i) {
-            String value = mPreferences.getString("combo_key_" + i, "");
-            String[] keyStrs = value.split(",");
-            ArrayList<Integer> keys = new ArrayList<>();
-            for (String key: keyStrs) {
-                if (!key.isEmpty()) {
-                    keys.add(Integer.parseInt(key));
-                }
-            }
-            if (keys.size() > 0) {
+            int[] steps = ComboKeyHelper.compile(mPreferences, i);
+            NativeLibrary.setComboMacro(i, steps);
+            if (steps.length > 0) {
                 int id = combokeys[i][0];
                 int normal = combokeys[i][1];
                 int pressed = combokeys[i][2];
-                int[] buttonIds = new int[keys.size()];
-                Arrays.setAll(buttonIds, keys::get);
-                mButtons.add(initializeButton(normal, pressed, id, buttonIds));
+                mButtons.add(initializeButton(normal, pressed, id, new int[0]));
             }
         }
 
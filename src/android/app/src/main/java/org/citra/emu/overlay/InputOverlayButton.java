@@ -41,6 +41,11 @@ public final class InputOverlayButton {
 
     public void onPointerDown(int id, float x, float y) {
         mPointerId = id;
+        if (isComboKey()) {
+            NativeLibrary.ComboKeyEvent(mId - NativeLibrary.ButtonType.EMU_COMBO_KEY_1,
+                                        NativeLibrary.ButtonState.PRESSED);
+            return;
+        }
         for(int buttonId : mButtonIds) {
             NativeLibrary.InputEvent(buttonId, NativeLibrary.ButtonState.PRESSED);
         }
@@ -50,11 +55,21 @@ public final class InputOverlayButton {
 
     public void onPointerUp(int id, float x, float y) {
         mPointerId = -1;
+        if (isComboKey()) {
+            NativeLibrary.ComboKeyEvent(mId - NativeLibrary.ButtonType.EMU_COMBO_KEY_1,
+                                        NativeLibrary.ButtonState.RELEASED);
+            return;
+        }
         for(int buttonId : mButtonIds) {
             NativeLibrary.InputEvent(buttonId, NativeLibrary.ButtonState.RELEASED);
         }
     }
 
+    private boolean isComboKey() {
+        return mId >= NativeLibrary.ButtonType.EMU_COMBO_KEY_1 &&
+               mId <= NativeLibrary.ButtonType.EMU_COMBO_KEY_3;
+    }
+
     private Bitmap getCurrentBitmap() {
         return mPointerId != -1 ? mPressedBitmap : mDefaultBitmap;
     }
@@ -3,36 +3,98 @@ package org.citra.emu.overlay;
 import org.citra.emu.NativeLibrary;
 
 public final class InputOverlayPointer {
+    /**
+     * Bottom screen bounds of the current layout and the affine transform from view pixels to
+     * touch screen coordinates (0 to 1). Replaced as a whole whenever the layout changes.
+     */
+    private static final class TouchLayout {
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+        final float scaleX;
+        final float scaleY;
+
+        TouchLayout(int left, int top, int right, int bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            scaleX = 1.0f / (right - left);
+            scaleY = 1.0f / (bottom - top);
+        }
+
+        boolean contains(float x, float y) {
+            return x >= left && x < right && y >= top && y < bottom;
+        }
+
+        float mapX(float x) {
+            return (Math.min(Math.max(x, left), right - 1) - left) * scaleX;
+        }
+
+        float mapY(float y) {
+            return (Math.min(Math.max(y, top), bottom - 1) - top) * scaleY;
+        }
+    }
+
+    private static volatile TouchLayout sTouchLayout;
+
     private int mPointerId;
+    private boolean mTouchPressed;
+    private float mTouchX;
+    private float mTouchY;
 
     public InputOverlayPointer() {
         mPointerId = -1;
     }
 
+    /**
+     * Called by the native side whenever the framebuffer layout changes.
+     */
+    public static void setTouchLayout(int left, int top, int right, int bottom) {
+        sTouchLayout = right > left && bottom > top ? new TouchLayout(left, top, right, bottom) : null;
+    }
+
     public void onPointerDown(int id, float x, float y) {
         mPointerId = id;
-        int action = NativeLibrary.TouchEvent.TOUCH_PRESSED;
+        TouchLayout layout = sTouchLayout;
+        if (layout != null && layout.contains(x, y)) {
+            mTouchPressed = true;
+            mTouchX = layout.mapX(x);
+            mTouchY = layout.mapY(y);
+            NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.TOUCH_PRESSED, mTouchX, mTouchY);
+        }
         if (InputOverlay.sEmulateMotionByTouch) {
-            action |= NativeLibrary.TouchEvent.BEGIN_TILT;
+            NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.BEGIN_TILT, x, y);
         }
-        NativeLibrary.TouchEvent(action, (int)x, (int)y);
     }
 
     public void onPointerMove(int id, float x, float y) {
-        int action = NativeLibrary.TouchEvent.TOUCH_MOVED;
+        TouchLayout layout = sTouchLayout;
+        if (mTouchPressed && layout != null) {
+            float touchX = layout.mapX(x);
+            float touchY = layout.mapY(y);
+            // clamped moves outside the bottom screen often map to the same position
+            if (touchX != mTouchX || touchY != mTouchY) {
+                mTouchX = touchX;
+                mTouchY = touchY;
+                NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.TOUCH_MOVED, touchX, touchY);
+            }
+        }
         if (InputOverlay.sEmulateMotionByTouch) {
-            action |= NativeLibrary.TouchEvent.TILT;
+            NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.TILT, x, y);
         }
-        NativeLibrary.TouchEvent(action, (int)x, (int)y);
     }
 
     public void onPointerUp(int id, float x, float y) {
         mPointerId = -1;
-        int action = NativeLibrary.TouchEvent.TOUCH_RELEASED;
+        if (mTouchPressed) {
+            mTouchPressed = false;
+            NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.TOUCH_RELEASED, 0, 0);
+        }
         if (InputOverlay.sEmulateMotionByTouch) {
-            action |= NativeLibrary.TouchEvent.END_TILT;
+            NativeLibrary.TouchEvent(NativeLibrary.TouchEvent.END_TILT, x, y);
         }
-        NativeLibrary.TouchEvent(action, (int)x, (int)y);
     }
 
     public int getPointerId() {
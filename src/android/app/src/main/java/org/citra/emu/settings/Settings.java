@@ -1,6 +1,10 @@
 package org.citra.emu.settings;
 
+import android.text.TextUtils;
+import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import org.citra.emu.settings.model.Setting;
 import org.citra.emu.settings.model.SettingSection;
 
 public final class Settings {
@@ -12,6 +16,10 @@ public final class Settings {
     public static final String SECTION_INI_CONTROLS = "Controls";
     public static final String SECTION_INI_DEBUG = "Debug";
     private HashMap<String, SettingSection> mSections = new SettingsSectionMap();
+    // empty for the global settings
+    private String mGameId;
+    // the global values while a game is edited, its file only keeps the values that differ
+    private HashMap<String, String> mBaseValues = new HashMap<>();
 
     public SettingSection getSection(String sectionName) {
         return mSections.get(sectionName);
@@ -21,20 +29,76 @@ public final class Settings {
         return mSections.isEmpty();
     }
 
+    /**
+     * Loads the global settings, with the overrides of the game on top when a game id is given.
+     */
     public void loadSettings(String gameId) {
+        mGameId = gameId;
         mSections = new SettingsSectionMap();
-        mSections.putAll(SettingsFile.loadSettings(gameId));
+        mSections.putAll(SettingsFile.loadFile(SettingsFile.getSettingsFile()));
+        mBaseValues.clear();
+        if (TextUtils.isEmpty(gameId)) {
+            return;
+        }
+
+        for (SettingSection section : mSections.values()) {
+            for (Setting setting : section.getSettings().values()) {
+                mBaseValues.put(getValueKey(setting), setting.getValueAsString());
+            }
+        }
+        File gameFile = SettingsFile.getGameSettingsFile(gameId);
+        if (gameFile.exists()) {
+            for (SettingSection overrides : SettingsFile.loadFile(gameFile).values()) {
+                mSections.get(overrides.getName()).mergeSection(overrides);
+            }
+        }
+        for (SettingSection section : mSections.values()) {
+            section.clearDirty();
+        }
     }
 
     public void saveSettings() {
-        SettingsFile.saveFile(mSections);
+        if (TextUtils.isEmpty(mGameId)) {
+            SettingsFile.saveFile(SettingsFile.getSettingsFile(), mSections);
+            return;
+        }
+
+        boolean dirty = false;
+        HashMap<String, SettingSection> overrides = new SettingsSectionMap();
+        for (SettingSection section : mSections.values()) {
+            dirty |= section.isDirty();
+            for (Setting setting : section.getSettings().values()) {
+                String value = setting.getValueAsString();
+                if (!TextUtils.isEmpty(value) &&
+                    !value.equals(mBaseValues.get(getValueKey(setting)))) {
+                    overrides.get(section.getName()).putSetting(setting);
+                }
+            }
+        }
+        if (!dirty) {
+            return;
+        }
+
+        File gameFile = SettingsFile.getGameSettingsFile(mGameId);
+        if (overrides.isEmpty()) {
+            gameFile.delete();
+        } else {
+            SettingsFile.saveFile(gameFile, overrides);
+        }
+        for (SettingSection section : mSections.values()) {
+            section.clearDirty();
+        }
+    }
+
+    private static String getValueKey(Setting setting) {
+        return setting.getSection() + '/' + setting.getKey();
     }
 
     /**
      * A HashMap<String, SettingSection> that constructs a new SettingSection instead of returning
      * null when getting a key not already in the map
      */
-    public static final class SettingsSectionMap extends HashMap<String, SettingSection> {
+    public static final class SettingsSectionMap extends LinkedHashMap<String, SettingSection> {
         @Override
         public SettingSection get(Object key) {
             if (!(key instanceof String)) {
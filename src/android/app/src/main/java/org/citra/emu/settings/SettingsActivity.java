@@ -3,33 +3,50 @@ package org.citra.emu.settings;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.FragmentTransaction;
 
 import org.citra.emu.R;
 import org.citra.emu.settings.model.Setting;
+import org.citra.emu.ui.EmulationActivity;
 
 public final class SettingsActivity extends AppCompatActivity {
 
     private static final String ARG_MENU_TAG = "menu_tag";
     private static final String ARG_GAME_ID = "game_id";
+    private static final String ARG_GAME_NAME = "game_name";
+    private static final String ARG_GAME_PATH = "game_path";
     private static final String FRAGMENT_TAG = "settings";
 
     private static final String KEY_SHOULD_SAVE = "should_save";
     private static final String KEY_MENU_TAG = "menu_tag";
     private static final String KEY_GAME_ID = "game_id";
+    private static final String KEY_GAME_NAME = "game_name";
+    private static final String KEY_GAME_PATH = "game_path";
 
     private Settings mSettings = new Settings();
     private int mStackCount;
     private boolean mShouldSave;
     private MenuTag mMenuTag;
     private String mGameId;
+    private String mGameName;
+    // the game can be booted to optimize its settings, null if not
+    private String mGamePath;
 
     public static void launch(Context context, MenuTag menuTag, String gameId) {
+        launch(context, menuTag, gameId, null, null);
+    }
+
+    public static void launch(Context context, MenuTag menuTag, String gameId, String gameName,
+                              String gamePath) {
         Intent settings = new Intent(context, SettingsActivity.class);
         settings.putExtra(ARG_MENU_TAG, menuTag);
         settings.putExtra(ARG_GAME_ID, gameId);
+        settings.putExtra(ARG_GAME_NAME, gameName);
+        settings.putExtra(ARG_GAME_PATH, gamePath);
         context.startActivity(settings);
     }
 
@@ -42,11 +59,15 @@ public final class SettingsActivity extends AppCompatActivity {
             Intent intent = getIntent();
             mMenuTag = (MenuTag)intent.getSerializableExtra(ARG_MENU_TAG);
             mGameId = intent.getStringExtra(ARG_GAME_ID);
+            mGameName = intent.getStringExtra(ARG_GAME_NAME);
+            mGamePath = intent.getStringExtra(ARG_GAME_PATH);
         } else {
             String menuTagStr = savedInstanceState.getString(KEY_MENU_TAG);
             mShouldSave = savedInstanceState.getBoolean(KEY_SHOULD_SAVE);
             mMenuTag = MenuTag.getMenuTag(menuTagStr);
             mGameId = savedInstanceState.getString(KEY_GAME_ID);
+            mGameName = savedInstanceState.getString(KEY_GAME_NAME);
+            mGamePath = savedInstanceState.getString(KEY_GAME_PATH);
         }
     }
 
@@ -58,6 +79,30 @@ public final class SettingsActivity extends AppCompatActivity {
         outState.putBoolean(KEY_SHOULD_SAVE, mShouldSave);
         outState.putString(KEY_MENU_TAG, mMenuTag.toString());
         outState.putString(KEY_GAME_ID, mGameId);
+        outState.putString(KEY_GAME_NAME, mGameName);
+        outState.putString(KEY_GAME_PATH, mGamePath);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        if (mGamePath == null || mMenuTag != MenuTag.CONFIG) {
+            return false;
+        }
+        getMenuInflater().inflate(R.menu.menu_settings, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_auto_tune) {
+            // the search starts from the settings as shown
+            mSettings.saveSettings();
+            mShouldSave = false;
+            EmulationActivity.launchAutoTune(this, mGameId, mGameName, mGamePath);
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
     }
 
     @Override
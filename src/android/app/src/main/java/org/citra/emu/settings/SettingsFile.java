@@ -10,8 +10,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.TreeSet;
 import org.citra.emu.settings.model.BooleanSetting;
 import org.citra.emu.settings.model.FloatSetting;
 import org.citra.emu.settings.model.IntSetting;
@@ -85,32 +83,94 @@ public final class SettingsFile {
     public static final String KEY_C_STICK_DOWN = "c_stick_down";
     public static final String KEY_C_STICK_LEFT = "c_stick_left";
     public static final String KEY_C_STICK_RIGHT = "c_stick_right";
+    public static final String KEY_MOTION_SAMPLING_RATE = "motion_sampling_rate";
+    public static final String KEY_MOTION_BATCH_LATENCY = "motion_batch_latency";
+
+    private static final int TYPE_UNKNOWN = -1;
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_FLOAT = 2;
+    private static final int TYPE_STRING = 3;
+
+    /**
+     * The value type of every known key, the same as the native config. Values of other keys and
+     * values that don't fit their type are typed by their text.
+     */
+    private static final HashMap<String, Integer> sSchema = new HashMap<>();
+
+    static {
+        putSchema(TYPE_BOOLEAN, KEY_USE_CPU_JIT, KEY_IS_NEW_3DS, KEY_USE_VIRTUAL_SD,
+                  KEY_USE_PRESENT_THREAD, KEY_USE_GLES, KEY_SHOW_FPS, KEY_USE_HW_RENDERER,
+                  KEY_USE_HW_SHADER, KEY_USE_SHADER_JIT, KEY_USE_FRAME_LIMIT,
+                  KEY_TEXTURE_LOAD_HACK, KEY_CUSTOM_TEXTURES, KEY_PRELOAD_TEXTURES,
+                  KEY_ENABLE_DSP_LLE, KEY_AUDIO_STRETCHING);
+        putSchema(TYPE_INT, KEY_SYSTEM_REGION, KEY_SYSTEM_LANGUAGE, KEY_SHADERS_ACCURATE_MUL,
+                  KEY_RESOLUTION_FACTOR, KEY_FRAME_LIMIT, KEY_FACTOR_3D, KEY_LAYOUT_OPTION,
+                  KEY_SHADER_TYPE, KEY_MIC_INPUT_TYPE, KEY_MOTION_SAMPLING_RATE,
+                  KEY_MOTION_BATCH_LATENCY);
+        putSchema(TYPE_FLOAT, KEY_AUDIO_VOLUME);
+        putSchema(TYPE_STRING, KEY_POST_PROCESSING_SHADER, KEY_AUDIO_ENGINE, KEY_AUDIO_DEVICE,
+                  KEY_MIC_INPUT_DEVICE, KEY_CAMERA_TYPE, KEY_BAIDU_OCR_KEY,
+                  KEY_BAIDU_OCR_SECRET, KEY_BUTTON_A, KEY_BUTTON_B, KEY_BUTTON_X, KEY_BUTTON_Y,
+                  KEY_BUTTON_UP, KEY_BUTTON_DOWN, KEY_BUTTON_LEFT, KEY_BUTTON_RIGHT, KEY_BUTTON_L,
+                  KEY_BUTTON_R, KEY_BUTTON_START, KEY_BUTTON_SELECT, KEY_BUTTON_DEBUG,
+                  KEY_BUTTON_GPIO14, KEY_BUTTON_ZL, KEY_BUTTON_ZR, KEY_BUTTON_HOME,
+                  KEY_CIRCLE_PAD_UP, KEY_CIRCLE_PAD_DOWN, KEY_CIRCLE_PAD_LEFT,
+                  KEY_CIRCLE_PAD_RIGHT, KEY_C_STICK_UP, KEY_C_STICK_DOWN, KEY_C_STICK_LEFT,
+                  KEY_C_STICK_RIGHT);
+    }
+
+    private static void putSchema(int type, String... keys) {
+        for (String key : keys) {
+            sSchema.put(key, type);
+        }
+    }
+
+    public static File getSettingsFile() {
+        return new File(DirectoryInitialization.getConfigFile());
+    }
+
+    /**
+     * @return The file with the settings a game overrides, the native config merges it over the
+     *     global one when the game boots.
+     */
+    public static File getGameSettingsFile(String gameId) {
+        return new File(DirectoryInitialization.getGameConfigFile(gameId));
+    }
 
     /**
      * Reads a given .ini file from disk and returns it as a HashMap of Settings, themselves
      * effectively a HashMap of key/value settings. If unsuccessful, outputs an error telling why it
      * failed.
      */
-    public static HashMap<String, SettingSection> loadSettings(String gameId) {
+    public static HashMap<String, SettingSection> loadFile(File ini) {
         HashMap<String, SettingSection> sections = new Settings.SettingsSectionMap();
-        File ini = new File(DirectoryInitialization.getConfigFile());
         BufferedReader reader = null;
 
         try {
             reader = new BufferedReader(new FileReader(ini));
 
             SettingSection current = null;
+            StringBuilder sourceText = new StringBuilder();
             for (String line; (line = reader.readLine()) != null;) {
                 if (line.startsWith("[") && line.endsWith("]")) {
+                    if (current != null) {
+                        current.setSourceText(sourceText.toString());
+                    }
                     current = new SettingSection(line.substring(1, line.length() - 1));
                     sections.put(current.getName(), current);
+                    sourceText.setLength(0);
                 } else if ((current != null)) {
                     Setting setting = settingFromLine(current, line);
                     if (setting != null) {
                         current.putSetting(setting);
                     }
+                    sourceText.append(line).append('\n');
                 }
             }
+            if (current != null) {
+                current.setSourceText(sourceText.toString());
+            }
         } catch (FileNotFoundException e) {
             Log.e("citra",
                   "[SettingsFile] File not found: " + ini.getAbsolutePath() + e.getMessage());
@@ -132,71 +192,150 @@ public final class SettingsFile {
     }
 
     /**
-     * For a line of text, determines what type of data is being represented, and returns
-     * a Setting object containing this data.
+     * For a line of text, looks up the type of its key in the schema, and returns a Setting
+     * object containing this data.
      *
      * @param current The section currently being parsed by the consuming method.
      * @param line    The line of text being parsed.
      * @return A typed Setting containing the key/value contained in the line.
      */
     private static Setting settingFromLine(SettingSection current, String line) {
-        String[] splitLine = line.split("=");
-
-        if (splitLine.length != 2) {
-            Log.w("citra", "Skipping invalid config line \"" + line + "\"");
+        int separator = line.indexOf('=');
+        if (separator == -1) {
+            if (!line.trim().isEmpty()) {
+                Log.w("citra", "Skipping invalid config line \"" + line + "\"");
+            }
             return null;
         }
 
-        String key = splitLine[0].trim();
-        String value = splitLine[1].trim();
-
-        if (value.length() > 12) {
-            return new StringSetting(key, current.getName(), value);
+        // values may contain '=' themselves
+        String key = line.substring(0, separator).trim();
+        String value = line.substring(separator + 1).trim();
+        Integer schemaType = sSchema.get(key);
+        int type = schemaType != null ? schemaType : TYPE_UNKNOWN;
+        Setting setting = null;
+        if (type == TYPE_UNKNOWN || type == TYPE_BOOLEAN) {
+            setting = parseBoolean(key, current.getName(), value);
         }
-
-        try {
-            int valueAsInt = Integer.valueOf(value);
-            return new IntSetting(key, current.getName(), valueAsInt);
-        } catch (NumberFormatException ex) {
-            // ignore
+        if (setting == null && (type == TYPE_UNKNOWN || type == TYPE_INT)) {
+            setting = parseInt(key, current.getName(), value);
         }
-
-        try {
-            float valueAsFloat = Float.valueOf(value);
-            return new FloatSetting(key, current.getName(), valueAsFloat);
-        } catch (NumberFormatException ex) {
-            // ignore
+        // unknown keys only as float with a fraction, long digit strings stay strings
+        if (setting == null &&
+            (type == TYPE_FLOAT || (type == TYPE_UNKNOWN && value.indexOf('.') != -1))) {
+            setting = parseFloat(key, current.getName(), value);
+        }
+        if (setting == null) {
+            setting = new StringSetting(key, current.getName(), value);
         }
+        return setting;
+    }
 
+    private static Setting parseBoolean(String key, String section, String value) {
         switch (value) {
         case "True":
-            return new BooleanSetting(key, current.getName(), true);
+            return new BooleanSetting(key, section, true);
         case "False":
-            return new BooleanSetting(key, current.getName(), false);
+            return new BooleanSetting(key, section, false);
         default:
-            return new StringSetting(key, current.getName(), value);
+            return null;
         }
     }
 
     /**
-     * Saves a Settings HashMap to a given .ini file on disk. If unsuccessful, outputs an error
-     * telling why it failed.
+     * Parses an optionally signed decimal int, null if the value is not one or overflows.
+     */
+    private static Setting parseInt(String key, String section, String value) {
+        int length = value.length();
+        int i = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (i == length) {
+            return null;
+        }
+        long result = 0;
+        for (; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            result = result * 10 + (c - '0');
+            if (result > 1L + Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+        if (value.charAt(0) == '-') {
+            result = -result;
+        }
+        if (result > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new IntSetting(key, section, (int)result);
+    }
+
+    /**
+     * Parses a plain decimal number like Float.toString writes them, null if the value is not one.
+     */
+    private static Setting parseFloat(String key, String section, String value) {
+        int length = value.length();
+        int i = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        int digits = 0;
+        int dots = 0;
+        int exponent = -1;
+        for (; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && exponent == -1) {
+                dots++;
+            } else if ((c == 'e' || c == 'E') && exponent == -1 && digits > 0) {
+                exponent = i;
+                if (i + 1 < length && (value.charAt(i + 1) == '-' || value.charAt(i + 1) == '+')) {
+                    i++;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0 || dots > 1 || exponent == length - 1 ||
+            (exponent != -1 && !Character.isDigit(value.charAt(length - 1)))) {
+            return null;
+        }
+        // validated above, so this can't throw
+        return new FloatSetting(key, section, Float.parseFloat(value));
+    }
+
+    /**
+     * Saves a Settings HashMap to a given .ini file on disk if any section changed. Unchanged
+     * sections keep their lines from the file. The file is replaced atomically, so it is never
+     * left half written. If unsuccessful, outputs an error telling why it failed.
      *
+     * @param ini      The file to write, its directory is created if needed.
      * @param sections The HashMap containing the Settings we want to serialize.
      */
-    public static void saveFile(HashMap<String, SettingSection> sections) {
-        File ini = new File(DirectoryInitialization.getConfigFile());
+    public static void saveFile(File ini, HashMap<String, SettingSection> sections) {
+        boolean dirty = false;
+        for (SettingSection section : sections.values()) {
+            dirty |= section.isDirty();
+        }
+        if (!dirty) {
+            return;
+        }
+
+        File parent = ini.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            Log.e("citra", "[SettingsFile] Error creating: " + parent.getAbsolutePath());
+            return;
+        }
+        File temp = new File(ini.getPath() + ".tmp");
+        HashMap<String, String> written = new HashMap<>();
         PrintWriter writer = null;
+        boolean success = false;
         try {
-            writer = new PrintWriter(ini, "UTF-8");
-
-            Set<String> keySet = sections.keySet();
-            Set<String> sortedKeySet = new TreeSet<>(keySet);
-
-            for (String key : sortedKeySet) {
-                SettingSection section = sections.get(key);
-                writeSection(writer, section);
+            writer = new PrintWriter(temp, "UTF-8");
+            for (SettingSection section : sections.values()) {
+                written.put(section.getName(), writeSection(writer, section));
             }
+            writer.flush();
+            success = !writer.checkError();
         } catch (FileNotFoundException e) {
             Log.e("citra", "[SettingsFile] File not found: " + e.getMessage());
         } catch (UnsupportedEncodingException e) {
@@ -207,6 +346,15 @@ public final class SettingsFile {
                 writer.close();
             }
         }
+
+        if (success && temp.renameTo(ini)) {
+            for (SettingSection section : sections.values()) {
+                section.setSourceText(written.get(section.getName()));
+            }
+        } else {
+            Log.e("citra", "[SettingsFile] Error writing: " + ini.getAbsolutePath());
+            temp.delete();
+        }
     }
 
     /**
@@ -214,24 +362,26 @@ public final class SettingsFile {
      *
      * @param writer  A PrintWriter pointed at a file on disk.
      * @param section A section containing settings to be written to the file.
+     * @return The lines of the section in the file, without its header.
      */
-    private static void writeSection(PrintWriter writer, SettingSection section) {
-        // Write this section's values.
-        HashMap<String, Setting> settings = section.getSettings();
-        if (settings.size() == 0)
-            return;
-
-        // Write the section header.
-        String header = "[" + section.getName() + "]";
-        writer.println(header);
-
-        Set<String> sortedKeySet = new TreeSet<>(settings.keySet());
-        for (String key : sortedKeySet) {
-            Setting setting = settings.get(key);
-            String valueAsString = setting.getValueAsString();
-            if (!TextUtils.isEmpty(valueAsString)) {
-                writer.println(setting.getKey() + " = " + valueAsString);
+    private static String writeSection(PrintWriter writer, SettingSection section) {
+        String text = section.getSourceText();
+        if (text == null || section.isDirty()) {
+            StringBuilder sb = new StringBuilder();
+            for (Setting setting : section.getSettings().values()) {
+                String valueAsString = setting.getValueAsString();
+                if (!TextUtils.isEmpty(valueAsString)) {
+                    sb.append(setting.getKey()).append(" = ").append(valueAsString).append('\n');
+                }
             }
+            text = sb.toString();
         }
+        if (text.isEmpty())
+            return text;
+
+        // Write the section header.
+        writer.print("[" + section.getName() + "]\n");
+        writer.print(text);
+        return text;
     }
 }
@@ -327,6 +327,16 @@ public final class SettingsFragment extends Fragment {
         sl.add(new InputBindingSetting(SettingsFile.KEY_C_STICK_RIGHT, Settings.SECTION_INI_CONTROLS,
                 R.string.button_right, cstickRight));
 
+        Setting motionRate = bindingsSection.getSetting(SettingsFile.KEY_MOTION_SAMPLING_RATE);
+        Setting motionLatency = bindingsSection.getSetting(SettingsFile.KEY_MOTION_BATCH_LATENCY);
+        sl.add(new HeaderSetting(null, null, R.string.controller_motion, 0));
+        sl.add(new SliderSetting(SettingsFile.KEY_MOTION_SAMPLING_RATE, Settings.SECTION_INI_CONTROLS,
+                R.string.motion_sampling_rate, R.string.motion_sampling_rate_description, 400,
+                "Hz", 100, motionRate));
+        sl.add(new SliderSetting(SettingsFile.KEY_MOTION_BATCH_LATENCY, Settings.SECTION_INI_CONTROLS,
+                R.string.motion_batch_latency, R.string.motion_batch_latency_description, 200,
+                "ms", 16, motionLatency));
+
         return sl;
     }
 
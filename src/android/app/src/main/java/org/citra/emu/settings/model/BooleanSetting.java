@@ -13,7 +13,10 @@ public final class BooleanSetting extends Setting {
     }
 
     public void setValue(boolean value) {
-        mValue = value;
+        if (mValue != value) {
+            mValue = value;
+            setDirty(true);
+        }
     }
 
     @Override
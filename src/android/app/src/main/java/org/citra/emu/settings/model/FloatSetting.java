@@ -13,7 +13,10 @@ public final class FloatSetting extends Setting {
     }
 
     public void setValue(float value) {
-        mValue = value;
+        if (mValue != value) {
+            mValue = value;
+            setDirty(true);
+        }
     }
 
     @Override
@@ -13,7 +13,10 @@ public final class IntSetting extends Setting {
     }
 
     public void setValue(int value) {
-        mValue = value;
+        if (mValue != value) {
+            mValue = value;
+            setDirty(true);
+        }
     }
 
     @Override
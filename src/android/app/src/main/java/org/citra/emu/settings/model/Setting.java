@@ -9,6 +9,7 @@ package org.citra.emu.settings.model;
 public abstract class Setting {
     private String mKey;
     private String mSection;
+    private boolean mDirty;
 
     /**
      * Base constructor.
@@ -36,6 +37,17 @@ public abstract class Setting {
         return mSection;
     }
 
+    /**
+     * @return Whether the value changed since the ini file was last read or written.
+     */
+    public boolean isDirty() {
+        return mDirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        mDirty = dirty;
+    }
+
     /**
      * @return A representation of this Setting's backing value converted to a String (e.g. for
      *     serialization).
@@ -1,15 +1,19 @@
 package org.citra.emu.settings.model;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * A semantically-related group of Settings objects. These Settings are
- * internally stored as a HashMap.
+ * internally stored as a HashMap, in the order of the ini file.
  */
 public final class SettingSection {
     private String mName;
 
-    private HashMap<String, Setting> mSettings = new HashMap<>();
+    private HashMap<String, Setting> mSettings = new LinkedHashMap<>();
+    // the lines of this section as read from the ini file, written back as is while not dirty
+    private String mSourceText;
+    private boolean mDirty;
 
     /**
      * Create a new SettingSection with no Settings in it.
@@ -25,12 +29,17 @@ public final class SettingSection {
     }
 
     /**
-     * Convenience method; inserts a value directly into the backing HashMap.
+     * Convenience method; inserts a value directly into the backing HashMap. The section only
+     * becomes dirty if the key is new or its value differs from the one stored.
      *
      * @param setting The Setting to be inserted.
      */
     public void putSetting(Setting setting) {
-        mSettings.put(setting.getKey(), setting);
+        Setting previous = mSettings.put(setting.getKey(), setting);
+        if (previous == null || previous.isDirty() ||
+            !previous.getValueAsString().equals(setting.getValueAsString())) {
+            mDirty = true;
+        }
     }
 
     /**
@@ -47,6 +56,46 @@ public final class SettingSection {
         return mSettings;
     }
 
+    public String getSourceText() {
+        return mSourceText;
+    }
+
+    /**
+     * Marks the section as read from or written to the ini file with the given lines.
+     */
+    public void setSourceText(String sourceText) {
+        mSourceText = sourceText;
+        mDirty = false;
+        for (Setting setting : mSettings.values()) {
+            setting.setDirty(false);
+        }
+    }
+
+    /**
+     * Marks the section as unchanged without touching the lines it was read with.
+     */
+    public void clearDirty() {
+        mDirty = false;
+        for (Setting setting : mSettings.values()) {
+            setting.setDirty(false);
+        }
+    }
+
+    /**
+     * @return Whether a setting was added or changed since the ini file was last read or written.
+     */
+    public boolean isDirty() {
+        if (mDirty) {
+            return true;
+        }
+        for (Setting setting : mSettings.values()) {
+            if (setting.isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void mergeSection(SettingSection settingSection) {
         for (Setting setting : settingSection.mSettings.values()) {
             putSetting(setting);
@@ -1,5 +1,7 @@
 package org.citra.emu.settings.model;
 
+import android.text.TextUtils;
+
 public final class StringSetting extends Setting {
     private String mValue;
 
@@ -13,7 +15,10 @@ public final class StringSetting extends Setting {
     }
 
     public void setValue(String value) {
-        mValue = value;
+        if (!TextUtils.equals(mValue, value)) {
+            mValue = value;
+            setDirty(true);
+        }
     }
 
     @Override
@@ -0,0 +1,322 @@
+package org.citra.emu.ui;
+
+import android.text.Editable;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the cheats in the text of a cheat file, found in a single pass over its lines. Names
+ * and codes are only parsed for the cheats that are asked for, an edit of the text parses again
+ * only the cheats it touches. A cheat reaches from its first line to the start of the next one.
+ * The cheats are split the way GatewayCheat::Parse splits them: lines are trimmed, and a '[' line
+ * only starts the next cheat after a code line, so every cheat but the last one has codes.
+ */
+final class CheatIndex {
+    private static final byte FLAG_ENABLED = 1;
+    private static final byte FLAG_CODES = 2;
+
+    /**
+     * Collects cheats line by line, a '[' line starts the next cheat once the current one has
+     * codes. A name without codes and its enabled line belong to the cheat after it.
+     */
+    static final class Builder {
+        private int mCount;
+        private int[] mStart = new int[16];
+        private byte[] mFlags = new byte[16];
+        private int mEntryStart = -1;
+        private byte mEntryFlags;
+        private boolean mHasContent;
+
+        /**
+         * Adds the line text[begin, end) without its line break.
+         */
+        void addLine(CharSequence text, int begin, int end) {
+            int first = skipSpaces(text, begin, end);
+            int last = trimSpaces(text, first, end);
+            if (first == last) {
+                return;
+            }
+            int type = getLineType(text, first, last);
+            if (type == LINE_NAME && (mEntryFlags & FLAG_CODES) != 0) {
+                commit();
+            }
+            if (mEntryStart == -1) {
+                mEntryStart = begin;
+                mEntryFlags = 0;
+            }
+            if (type == LINE_ENABLED) {
+                mEntryFlags |= FLAG_ENABLED;
+            } else {
+                mHasContent = true;
+                if (type == LINE_CODE) {
+                    mEntryFlags |= FLAG_CODES;
+                }
+            }
+        }
+
+        void addLines(CharSequence text, int begin, int end) {
+            int lineStart = begin;
+            for (int i = begin; i < end; ++i) {
+                if (text.charAt(i) == '\n') {
+                    addLine(text, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            addLine(text, lineStart, end);
+        }
+
+        CheatIndex build(CharSequence text) {
+            finish();
+            return new CheatIndex(text, mCount, mStart, mFlags);
+        }
+
+        /**
+         * Ends the last cheat, returns true if it has no codes and belongs to the cheat after it.
+         */
+        private boolean finish() {
+            boolean open = mEntryStart != -1 && (mEntryFlags & FLAG_CODES) == 0;
+            commit();
+            return open;
+        }
+
+        private void commit() {
+            if (mHasContent) {
+                if (mCount == mStart.length) {
+                    mStart = Arrays.copyOf(mStart, mCount * 2);
+                    mFlags = Arrays.copyOf(mFlags, mCount * 2);
+                }
+                mStart[mCount] = mEntryStart;
+                mFlags[mCount] = mEntryFlags;
+                mCount++;
+            }
+            mEntryStart = -1;
+            mEntryFlags = 0;
+            mHasContent = false;
+        }
+    }
+
+    private static final int LINE_NAME = 0;
+    private static final int LINE_ENABLED = 1;
+    private static final int LINE_COMMENT = 2;
+    private static final int LINE_CODE = 3;
+
+    private CharSequence mText;
+    private int mCount;
+    private int[] mStart;
+    private byte[] mFlags;
+    // parsed on demand, cleared for the cheats an edit touches
+    private EditorActivity.CheatEntry[] mEntries;
+
+    private CheatIndex(CharSequence text, int count, int[] start, byte[] flags) {
+        mText = text;
+        mCount = count;
+        mStart = start;
+        mFlags = flags;
+        mEntries = new EditorActivity.CheatEntry[count];
+    }
+
+    /**
+     * Returns an index of the same cheats over another text with the same content.
+     */
+    CheatIndex copy(CharSequence text) {
+        return new CheatIndex(text, mCount, Arrays.copyOf(mStart, mCount), Arrays.copyOf(mFlags, mCount));
+    }
+
+    void setText(CharSequence text) {
+        mText = text;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    boolean isEnabled(int index) {
+        return (mFlags[index] & FLAG_ENABLED) != 0;
+    }
+
+    boolean hasCodes(int index) {
+        return (mFlags[index] & FLAG_CODES) != 0;
+    }
+
+    /**
+     * Returns the positions of the cheats with codes, the ones the running game keeps.
+     */
+    int[] getCodeEntries() {
+        int[] entries = new int[mCount];
+        int count = 0;
+        for (int i = 0; i < mCount; ++i) {
+            if (hasCodes(i)) {
+                entries[count++] = i;
+            }
+        }
+        return Arrays.copyOf(entries, count);
+    }
+
+    EditorActivity.CheatEntry getEntry(int index) {
+        EditorActivity.CheatEntry entry = mEntries[index];
+        if (entry == null) {
+            entry = new EditorActivity.CheatEntry();
+            int end = getEnd(index);
+            int lineStart = mStart[index];
+            for (int i = lineStart; i <= end; ++i) {
+                if (i == end || mText.charAt(i) == '\n') {
+                    int first = skipSpaces(mText, lineStart, i);
+                    int last = trimSpaces(mText, first, i);
+                    if (first < last) {
+                        String line = mText.subSequence(first, last).toString();
+                        int type = getLineType(mText, first, last);
+                        if (type == LINE_CODE) {
+                            entry.codes.add(line);
+                        } else if (type == LINE_ENABLED) {
+                            entry.enabled = true;
+                        } else {
+                            // a later name replaces the one without codes, and its comments
+                            if (type == LINE_NAME) {
+                                entry.infos.clear();
+                            }
+                            entry.infos.add(line);
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            mEntries[index] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds or removes the enabled line of a cheat in the text, which has to be the one this index
+     * is kept up to date with.
+     */
+    void setEnabled(Editable text, int index, boolean enabled) {
+        int begin = mStart[index];
+        int end = getEnd(index);
+        if (enabled) {
+            // before the first code, where the cheat file has it
+            int lineStart = begin;
+            for (int i = begin; i <= end; ++i) {
+                if (i == end || text.charAt(i) == '\n') {
+                    int first = skipSpaces(text, lineStart, i);
+                    int last = trimSpaces(text, first, i);
+                    if (first < last && getLineType(text, first, last) == LINE_CODE) {
+                        break;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            text.insert(Math.min(lineStart, end), EditorActivity.CHEAT_ENABLED_TEXT + "\n");
+        } else {
+            // from the back, so the offsets in front stay valid
+            int lineEnd = end;
+            for (int i = end - 1; i >= begin - 1; --i) {
+                if (i < begin || text.charAt(i) == '\n') {
+                    int first = skipSpaces(text, i + 1, lineEnd);
+                    if (isEnabledLine(text, first, trimSpaces(text, first, lineEnd))) {
+                        text.delete(i + 1, Math.min(lineEnd + 1, text.length()));
+                    }
+                    lineEnd = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the index after text[start, start + count) replaced before characters.
+     */
+    void update(CharSequence text, int start, int before, int count) {
+        mText = text;
+        int delta = count - before;
+        // the cheat in front too, the edit may have removed the line that starts the first one,
+        // and the first cheat always, it may not start with a '[' line
+        int first = Math.max(find(start) - 1, 0);
+        int last = Math.min(Math.max(find(start + before), first), mCount - 1);
+        Builder builder;
+        while (true) {
+            int begin = first == 0 ? 0 : mStart[first];
+            int end = last + 1 < mCount ? mStart[last + 1] + delta : text.length();
+            builder = new Builder();
+            builder.addLines(text, begin, end);
+            // a cheat without codes belongs to the cheat after it
+            if (!builder.finish() || last + 1 >= mCount) {
+                break;
+            }
+            last++;
+        }
+
+        int removed = last - first + 1;
+        int added = builder.mCount;
+        int newCount = mCount - removed + added;
+        int[] newStart = new int[newCount];
+        byte[] newFlags = new byte[newCount];
+        EditorActivity.CheatEntry[] newEntries = new EditorActivity.CheatEntry[newCount];
+        System.arraycopy(mStart, 0, newStart, 0, first);
+        System.arraycopy(mFlags, 0, newFlags, 0, first);
+        System.arraycopy(mEntries, 0, newEntries, 0, first);
+        System.arraycopy(builder.mStart, 0, newStart, first, added);
+        System.arraycopy(builder.mFlags, 0, newFlags, first, added);
+        int tail = mCount - last - 1;
+        for (int i = 0; i < tail; ++i) {
+            newStart[first + added + i] = mStart[last + 1 + i] + delta;
+        }
+        System.arraycopy(mFlags, last + 1, newFlags, first + added, tail);
+        System.arraycopy(mEntries, last + 1, newEntries, first + added, tail);
+        mCount = newCount;
+        mStart = newStart;
+        mFlags = newFlags;
+        mEntries = newEntries;
+    }
+
+    private int getEnd(int index) {
+        return index + 1 < mCount ? mStart[index + 1] : mText.length();
+    }
+
+    // the cheat the offset is in, -1 in front of the first one
+    private int find(int offset) {
+        int index = Arrays.binarySearch(mStart, 0, mCount, offset);
+        return index < 0 ? -index - 2 : index;
+    }
+
+    // the characters GatewayCheat::Parse strips from both ends of a line
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static int skipSpaces(CharSequence text, int begin, int end) {
+        while (begin < end && isSpace(text.charAt(begin))) {
+            begin++;
+        }
+        return begin;
+    }
+
+    private static int trimSpaces(CharSequence text, int begin, int end) {
+        while (end > begin && isSpace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    // of a trimmed line that is not empty, a lone '[' is a code line to the native parser
+    private static int getLineType(CharSequence text, int begin, int end) {
+        char c = text.charAt(begin);
+        if (c == '[' && end - begin >= 2) {
+            return LINE_NAME;
+        } else if (c != '*') {
+            return LINE_CODE;
+        }
+        return isEnabledLine(text, begin, end) ? LINE_ENABLED : LINE_COMMENT;
+    }
+
+    private static boolean isEnabledLine(CharSequence text, int begin, int end) {
+        String enabled = EditorActivity.CHEAT_ENABLED_TEXT;
+        if (end - begin != enabled.length()) {
+            return false;
+        }
+        for (int i = 0; i < enabled.length(); ++i) {
+            if (text.charAt(begin + i) != enabled.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
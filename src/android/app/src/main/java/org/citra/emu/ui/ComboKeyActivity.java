@@ -10,10 +10,13 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -26,6 +29,7 @@ import com.nononsenseapps.filepicker.DividerItemDecoration;
 
 import org.citra.emu.NativeLibrary;
 import org.citra.emu.R;
+import org.citra.emu.utils.ComboKeyHelper;
 
 import java.util.ArrayList;
 
@@ -75,16 +79,11 @@ public final class ComboKeyActivity extends AppCompatActivity {
 
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         for (int i = 0; i < mComboKeys.length; ++i) {
-            String value = prefs.getString("combo_key_" + i, "");
-            String[] keyStrs = value.split(",");
-            ArrayList<Integer> keys = new ArrayList<>();
-            for (String key: keyStrs) {
-                if (!key.isEmpty()) {
-                    keys.add(Integer.parseInt(key));
-                }
-            }
+            String value = prefs.getString(ComboKeyHelper.PREF_COMBO_KEY + i, "");
+            ArrayList<Integer> keys = ComboKeyHelper.parseKeys(value);
             mComboKeys[i] = new SettingModel();
             mComboKeys[i].name = getString(R.string.combo_key_name, i + 1);
+            mComboKeys[i].macro = prefs.getString(ComboKeyHelper.PREF_COMBO_MACRO + i, "");
             for (int j = 0; j < mComboKeys[i].keys.length; ++j) {
                 mComboKeys[i].keys[j] = new KeyModel();
                 mComboKeys[i].keys[j].name = getString(KeyTexts[j]);
@@ -111,7 +110,8 @@ public final class ComboKeyActivity extends AppCompatActivity {
             if (sb.length() > 0) {
                 sb.setLength(sb.length() - 1);
             }
-            editor.putString("combo_key_" + i, sb.toString());
+            editor.putString(ComboKeyHelper.PREF_COMBO_KEY + i, sb.toString());
+            editor.putString(ComboKeyHelper.PREF_COMBO_MACRO + i, mComboKeys[i].macro.trim());
         }
         editor.apply();
     }
@@ -179,18 +179,23 @@ public final class ComboKeyActivity extends AppCompatActivity {
 
     static class SettingModel {
         String name;
+        String macro;
         KeyModel[] keys = new KeyModel[12];
     }
 
-    static class SettingViewHolder extends RecyclerView.ViewHolder {
+    static class SettingViewHolder extends RecyclerView.ViewHolder implements TextWatcher {
 
         private KeyAdapter mAdapter;
         private TextView mName;
+        private EditText mMacro;
+        private SettingModel mModel;
 
         public SettingViewHolder(View itemView) {
             super(itemView);
 
             mName = itemView.findViewById(R.id.text_setting_name);
+            mMacro = itemView.findViewById(R.id.edit_macro);
+            mMacro.addTextChangedListener(this);
 
             mAdapter = new KeyAdapter();
             RecyclerView listView = itemView.findViewById(R.id.list_keys);
@@ -202,8 +207,30 @@ public final class ComboKeyActivity extends AppCompatActivity {
         }
 
         public void bind(SettingModel model) {
+            mModel = null;
             mName.setText(model.name);
+            mMacro.setText(model.macro);
             mAdapter.bind(model.keys);
+            mModel = model;
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (mModel == null) {
+                return;
+            }
+            mModel.macro = s.toString();
+            if (!mModel.macro.trim().isEmpty() && ComboKeyHelper.parseMacro(mModel.macro) == null) {
+                mMacro.setError(mMacro.getContext().getString(R.string.combo_key_macro_invalid));
+            } else {
+                mMacro.setError(null);
+            }
         }
     }
 
@@ -39,16 +39,35 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.citra.emu.NativeLibrary;
 import org.citra.emu.R;
+import org.citra.emu.settings.MenuTag;
+import org.citra.emu.settings.SettingsActivity;
+import org.citra.emu.utils.CheatDatabase;
 import org.citra.emu.utils.DirectoryInitialization;
 
 public final class EditorActivity extends AppCompatActivity {
     public static final String ARG_PROGRAM_ID = "program_id";
     public static final String ARG_PROGRAM_TITLE = "program_title";
-    private static final String CHEAT_ENABLED_TEXT = "*citra_enabled";
+    // the game is running, changes are applied to it when confirmed
+    public static final String ARG_RUNNING = "running";
+    public static final String ARG_PROGRAM_PATH = "program_path";
+    // the running game has to reload its cheat file
+    public static final int RESULT_RELOAD_CHEATS = RESULT_FIRST_USER;
+    static final String CHEAT_ENABLED_TEXT = "*citra_enabled";
+
+    // every write of a cheat file goes through this one thread, so they land in the order made
+    private static final ExecutorService sCheatWriter =
+        Executors.newSingleThreadExecutor(r -> new Thread(r, "CheatSave"));
 
     static class CheatEntry {
         boolean enabled = false;
@@ -72,10 +91,19 @@ public final class EditorActivity extends AppCompatActivity {
             }
             return sb.toString();
         }
+
+        // the lines of this cheat in the cheat file
+        public List<String> toLines() {
+            List<String> lines = new ArrayList<>(infos);
+            if (enabled) {
+                lines.add(CHEAT_ENABLED_TEXT);
+            }
+            lines.addAll(codes);
+            return lines;
+        }
     }
 
     class CheatEntryViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
-        private CheatEntry mModel;
         private TextView mTextName;
         private TextView mTextDescription;
         private CheckBox mCheckbox;
@@ -88,8 +116,8 @@ public final class EditorActivity extends AppCompatActivity {
             itemView.setOnClickListener(this);
         }
 
-        public void bind(CheatEntry entry) {
-            mModel = entry;
+        public void bind(int position) {
+            CheatEntry entry = mIndex.getEntry(position);
             mTextName.setText(entry.getName());
             mTextDescription.setText(entry.getInfo());
             mCheckbox.setChecked(entry.enabled);
@@ -98,18 +126,17 @@ public final class EditorActivity extends AppCompatActivity {
 
         @Override
         public void onClick(View v) {
-            if (mModel.codes.size() > 0) {
-                mModel.enabled = !mModel.enabled;
-                mCheckbox.setChecked(mModel.enabled);
-            } else {
-                mModel.enabled = false;
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && mIndex.hasCodes(position)) {
+                // the text stays the cheat file, the index follows the edit
+                boolean enabled = !mIndex.isEnabled(position);
+                mIndex.setEnabled(mEditor.getText(), position, enabled);
+                mCheckbox.setChecked(enabled);
             }
         }
     }
 
     class CheatEntryAdapter extends RecyclerView.Adapter<CheatEntryViewHolder> {
-        private List<CheatEntry> mDataset;
-
         @NonNull
         @Override
         public CheatEntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -120,31 +147,33 @@ public final class EditorActivity extends AppCompatActivity {
 
         @Override
         public int getItemCount() {
-            return mDataset != null ? mDataset.size() : 0;
+            return mIndex != null ? mIndex.getCount() : 0;
         }
 
         @Override
         public void onBindViewHolder(@NonNull CheatEntryViewHolder holder, int position) {
-            holder.bind(mDataset.get(position));
-        }
-
-        public void loadCheats(List<CheatEntry> list) {
-            mDataset = list;
-            notifyDataSetChanged();
+            holder.bind(position);
         }
     }
 
     private String mProgramId;
-    private boolean mReloadText;
+    // null while the game runs
+    private String mProgramPath;
     private EditText mEditor;
     private RecyclerView mListView;
     private CheatEntryAdapter mAdapter;
-    private List<CheatEntry> mCheats;
-
-    public static void launch(Context context, String programId, String title) {
+    // cheats of the editor text, null until the file is loaded
+    private CheatIndex mIndex;
+    // the cheats as the running game has them
+    private CheatIndex mRunningCheats;
+    // the text as loaded, the cheat file is only written if it changes
+    private String mLoadedText;
+
+    public static void launch(Context context, String programId, String title, String path) {
         Intent settings = new Intent(context, EditorActivity.class);
         settings.putExtra(ARG_PROGRAM_ID, programId);
         settings.putExtra(ARG_PROGRAM_TITLE, title);
+        settings.putExtra(ARG_PROGRAM_PATH, path);
         context.startActivity(settings);
     }
 
@@ -155,20 +184,18 @@ public final class EditorActivity extends AppCompatActivity {
 
         final String title = getIntent().getStringExtra(ARG_PROGRAM_TITLE);
         mProgramId = getIntent().getStringExtra(ARG_PROGRAM_ID);
+        mProgramPath = getIntent().getStringExtra(ARG_PROGRAM_PATH);
 
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
         setTitle(title);
 
-        mCheats = new ArrayList<>();
-
         TextView gameInfo = findViewById(R.id.game_info);
         gameInfo.setText("ID: " + mProgramId);
 
         mEditor = findViewById(R.id.code_content);
         mListView = findViewById(R.id.code_list);
 
-        mReloadText = false;
         mEditor.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {
@@ -177,7 +204,9 @@ public final class EditorActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                mReloadText = true;
+                if (mIndex != null) {
+                    mIndex.update(s, start, before, count);
+                }
             }
 
             @Override
@@ -193,8 +222,15 @@ public final class EditorActivity extends AppCompatActivity {
         mListView.setLayoutManager(new LinearLayoutManager(this));
 
         Button buttonConfirm = findViewById(R.id.button_confirm);
+        buttonConfirm.setEnabled(false);
         buttonConfirm.setOnClickListener(view -> {
-            saveCheatCode(mProgramId);
+            if (mRunningCheats == null || applyCheatChanges()) {
+                saveCheatCode(mProgramId, true);
+            } else {
+                // the game reloads the file as soon as the result arrives
+                saveCheatCode(mProgramId, false);
+                setResult(RESULT_RELOAD_CHEATS);
+            }
             mEditor.clearFocus();
             finish();
         });
@@ -205,8 +241,26 @@ public final class EditorActivity extends AppCompatActivity {
             finish();
         });
 
-        loadCheatFile(mProgramId);
-        toggleListView(mCheats.size() > 0);
+        toggleListView(true);
+        boolean running = getIntent().getBooleanExtra(ARG_RUNNING, false);
+        new Thread(() -> {
+            CheatIndex.Builder builder = new CheatIndex.Builder();
+            String content = loadCheatFile(mProgramId, builder);
+            CheatIndex index = builder.build(content);
+            CheatIndex runningCheats = running ? index.copy(content) : null;
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                mEditor.setText(content);
+                index.setText(mEditor.getText());
+                mIndex = index;
+                mLoadedText = content;
+                mRunningCheats = runningCheats;
+                buttonConfirm.setEnabled(true);
+                toggleListView(index.getCount() > 0);
+            });
+        }, "CheatLoader").start();
     }
 
     @Override
@@ -220,7 +274,16 @@ public final class EditorActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.menu_toggle_list:
-                toggleListView(mEditor.getVisibility() == View.VISIBLE);
+                // the editor text is replaced once the file is loaded
+                if (mIndex != null) {
+                    toggleListView(mEditor.getVisibility() == View.VISIBLE);
+                }
+                return true;
+
+            case R.id.menu_game_settings:
+                SettingsActivity.launch(this, MenuTag.CONFIG, mProgramId,
+                                        getIntent().getStringExtra(ARG_PROGRAM_TITLE),
+                                        mProgramPath);
                 return true;
 
             case R.id.menu_delete_sdmc:
@@ -238,18 +301,10 @@ public final class EditorActivity extends AppCompatActivity {
             imm.hideSoftInputFromWindow(getWindow().getDecorView().getWindowToken(), 0);
             mListView.setVisibility(View.VISIBLE);
             mEditor.setVisibility(View.INVISIBLE);
-            // reload
-            if (mReloadText) {
-                mCheats.clear();
-                loadCheatCode(mEditor.getText().toString());
-                mReloadText = false;
-            }
-            mAdapter.loadCheats(mCheats);
+            mAdapter.notifyDataSetChanged();
         } else {
             mListView.setVisibility(View.INVISIBLE);
             mEditor.setVisibility(View.VISIBLE);
-            // reload
-            mEditor.setText(loadCheatText());
         }
     }
 
@@ -273,92 +328,160 @@ public final class EditorActivity extends AppCompatActivity {
         builder.show();
     }
 
-    private void loadCheatFile(String programId) {
+    /**
+     * Reads the cheat file with trimmed lines, the text the editor works on, and indexes the
+     * cheats while reading. Titles without a cheat file start with their bundled cheats.
+     */
+    private static String loadCheatFile(String programId, CheatIndex.Builder builder) {
         File cheatFile = DirectoryInitialization.getCheatFile(programId);
-        mCheats.clear();
-        if (cheatFile == null || !cheatFile.exists()) {
-            return;
+        if (cheatFile == null) {
+            return "";
         }
 
         StringBuilder sb = new StringBuilder();
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(cheatFile));
+            Reader source;
+            if (cheatFile.exists()) {
+                source = new FileReader(cheatFile);
+            } else {
+                String bundled = CheatDatabase.read(programId);
+                if (bundled == null) {
+                    return "";
+                }
+                source = new StringReader(bundled);
+            }
+            BufferedReader reader = new BufferedReader(source);
             String line = reader.readLine();
             while (line != null) {
+                int lineStart = sb.length();
                 sb.append(line.trim());
-                sb.append(System.lineSeparator());
+                builder.addLine(sb, lineStart, sb.length());
+                sb.append('\n');
                 line = reader.readLine();
             }
             reader.close();
         } catch (IOException e) {
             //
         }
-
-        loadCheatCode(sb.toString());
+        return sb.toString();
     }
 
-    private void loadCheatCode(String data) {
-        String[] lines = data.split(System.lineSeparator());
-        CheatEntry entry = new CheatEntry();
-        for (String line : lines) {
-            if (!line.isEmpty()) {
-                if (line.charAt(0) == '[') {
-                    if (entry.infos.size() > 0 || entry.codes.size() > 0) {
-                        mCheats.add(entry);
-                        entry = new CheatEntry();
-                    }
-                    entry.infos.add(line);
-                } else if (line.charAt(0) == '*') {
-                    if (CHEAT_ENABLED_TEXT.equals(line)) {
-                        entry.enabled = true;
-                    } else {
-                        entry.infos.add(line);
+    /**
+     * Sends the cheats that changed since the editor opened to the running game. Returns false
+     * if cheats were removed or could not be updated, or the game ends up with another number of
+     * cheats than the file has, then the game has to reload the file.
+     */
+    private boolean applyCheatChanges() {
+        int[] before = mRunningCheats.getCodeEntries();
+        int[] after = mIndex.getCodeEntries();
+        // the indices only line up while both sides split the file into the same cheats
+        if (after.length < before.length || before.length != NativeLibrary.getCheatCount()) {
+            return false;
+        }
+        for (int i = 0; i < after.length; ++i) {
+            CheatEntry entry = mIndex.getEntry(after[i]);
+            if (i < before.length) {
+                CheatEntry old = mRunningCheats.getEntry(before[i]);
+                if (old.infos.equals(entry.infos) && old.codes.equals(entry.codes)) {
+                    if (old.enabled != entry.enabled) {
+                        NativeLibrary.setCheatEnabled(i, entry.enabled);
                     }
-                } else {
-                    entry.codes.add(line);
+                    continue;
                 }
             }
+            if (!NativeLibrary.updateCheat(i, entry.toLines().toArray(new String[0]))) {
+                return false;
+            }
         }
+        return after.length == NativeLibrary.getCheatCount();
+    }
 
-        if (entry.infos.size() > 0 || entry.codes.size() > 0) {
-            mCheats.add(entry);
+    /**
+     * Writes the cheat file, in the background unless the game is about to reload it.
+     */
+    private void saveCheatCode(String programId, boolean async) {
+        File cheatFile = DirectoryInitialization.getCheatFile(programId);
+        String content = mEditor.getText().toString();
+        if (cheatFile == null || (!cheatFile.exists() && content.equals(mLoadedText))) {
+            return;
+        }
+        Future<?> write = sCheatWriter.submit(() -> writeCheatFile(cheatFile, content));
+        if (!async) {
+            waitFor(write);
         }
     }
 
-    private String loadCheatText() {
-        StringBuilder sb = new StringBuilder();
-        for(CheatEntry entry : mCheats) {
-            for (String info : entry.infos) {
-                sb.append(info);
-                sb.append(System.lineSeparator());
-            }
-            if (entry.enabled) {
-                sb.append(CHEAT_ENABLED_TEXT);
-                sb.append(System.lineSeparator());
-            }
-            for (String code : entry.codes) {
-                sb.append(code);
-                sb.append(System.lineSeparator());
-            }
-            sb.append(System.lineSeparator());
+    // written next to the file and renamed over it, a game booted meanwhile reads the old or the
+    // new text, never a part of it
+    private static void writeCheatFile(File cheatFile, String content) {
+        // an empty file keeps the bundled cheats of the title away
+        String programId = cheatFile.getName().replace(".txt", "");
+        if (content.isEmpty() && !CheatDatabase.contains(programId)) {
+            cheatFile.delete();
+            return;
+        }
+        File temp = new File(cheatFile.getPath() + ".tmp");
+        try (FileWriter writer = new FileWriter(temp)) {
+            writer.write(content);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(cheatFile)) {
+            temp.delete();
         }
-        return sb.toString();
     }
 
-    private void saveCheatCode(String programId) {
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Appends a disabled cheat to the cheat file of a game, used by the memory tools.
+     */
+    public static boolean appendCheat(String programId, String name, List<String> codes) {
         File cheatFile = DirectoryInitialization.getCheatFile(programId);
-        String content = mReloadText ? mEditor.getText().toString() : loadCheatText();
-        if (content.isEmpty()) {
-            cheatFile.delete();
-        } else {
-            try {
-                FileWriter writer = new FileWriter(cheatFile);
-                writer.write(content);
-                writer.close();
-            } catch (IOException e) {
-                //
+        if (cheatFile == null) {
+            return false;
+        }
+        // after the saves of the editor that are still pending
+        Boolean appended =
+            waitFor(sCheatWriter.submit(() -> appendCheatFile(programId, cheatFile, name, codes)));
+        return appended != null && appended;
+    }
+
+    private static boolean appendCheatFile(String programId, File cheatFile, String name,
+                                           List<String> codes) {
+        StringBuilder sb = new StringBuilder();
+        if (!cheatFile.exists()) {
+            // the file replaces the bundled cheats from now on
+            String bundled = CheatDatabase.read(programId);
+            if (bundled != null) {
+                sb.append(bundled);
             }
         }
+        sb.append(System.lineSeparator());
+        sb.append('[').append(name).append(']');
+        sb.append(System.lineSeparator());
+        for (String code : codes) {
+            sb.append(code);
+            sb.append(System.lineSeparator());
+        }
+        try {
+            FileWriter writer = new FileWriter(cheatFile, true);
+            writer.write(sb.toString());
+            writer.close();
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
     }
 
     public static boolean deleteContents(File dir) {
@@ -8,6 +8,7 @@ import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
+import android.hardware.input.InputManager;
 import android.os.Bundle;
 import android.view.InputDevice;
 import android.view.KeyEvent;
@@ -19,16 +20,16 @@ import androidx.appcompat.app.AppCompatActivity;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.util.List;
 import org.citra.emu.NativeLibrary;
 import org.citra.emu.R;
 import org.citra.emu.model.GameFile;
-import org.citra.emu.utils.ControllerMappingHelper;
+import org.citra.emu.utils.ControllerRegistry;
 
 public final class EmulationActivity extends AppCompatActivity {
     private static final String EXTRA_GAME_ID = "GameId";
     private static final String EXTRA_GAME_NAME = "GameName";
     private static final String EXTRA_GAME_PATH = "GamePath";
+    private static final String EXTRA_AUTO_TUNE = "AutoTune";
     public static final int REQUEST_PICK_IMAGE = 1;
     public static final int REQUEST_CHEAT_CODE = 2;
 
@@ -39,6 +40,7 @@ public final class EmulationActivity extends AppCompatActivity {
     private String mGamePath;
     private boolean mMenuVisible;
     private EmulationFragment mEmulationFragment;
+    private final ControllerRegistry mControllers = new ControllerRegistry();
 
     public static void launch(Context context, GameFile game) {
         Intent intent = new Intent(context, EmulationActivity.class);
@@ -48,6 +50,20 @@ public final class EmulationActivity extends AppCompatActivity {
         context.startActivity(intent);
     }
 
+    /**
+     * Boots the game once for every settings profile the native auto tuner measures, the best
+     * one is saved to the settings of the game.
+     */
+    public static void launchAutoTune(Context context, String gameId, String gameName,
+                                      String gamePath) {
+        Intent intent = new Intent(context, EmulationActivity.class);
+        intent.putExtra(EXTRA_GAME_ID, gameId);
+        intent.putExtra(EXTRA_GAME_NAME, gameName);
+        intent.putExtra(EXTRA_GAME_PATH, gamePath);
+        intent.putExtra(EXTRA_AUTO_TUNE, true);
+        context.startActivity(intent);
+    }
+
     public static EmulationActivity get() {
         return sInstance.get();
     }
@@ -75,7 +91,8 @@ public final class EmulationActivity extends AppCompatActivity {
         mEmulationFragment = (EmulationFragment)getSupportFragmentManager().findFragmentById(
             R.id.fragment_emulation);
         if (mEmulationFragment == null) {
-            mEmulationFragment = EmulationFragment.newInstance(mGamePath);
+            boolean autoTune = getIntent().getBooleanExtra(EXTRA_AUTO_TUNE, false);
+            mEmulationFragment = EmulationFragment.newInstance(mGamePath, autoTune);
             getSupportFragmentManager()
                 .beginTransaction()
                 .add(R.id.fragment_emulation, mEmulationFragment)
@@ -83,6 +100,13 @@ public final class EmulationActivity extends AppCompatActivity {
         }
 
         setTitle(mGameName);
+        mControllers.register((InputManager)getSystemService(Context.INPUT_SERVICE));
+    }
+
+    @Override
+    protected void onDestroy() {
+        mControllers.unregister((InputManager)getSystemService(Context.INPUT_SERVICE));
+        super.onDestroy();
     }
 
     @Override
@@ -164,22 +188,7 @@ public final class EmulationActivity extends AppCompatActivity {
         if (event.getActionMasked() == MotionEvent.ACTION_CANCEL)
             return true;
 
-        InputDevice input = event.getDevice();
-        List<InputDevice.MotionRange> motions = input.getMotionRanges();
-
-        for (InputDevice.MotionRange range : motions) {
-            int axis = range.getAxis();
-            float origValue = event.getAxisValue(axis);
-            float value = ControllerMappingHelper.scaleAxis(input, axis, origValue);
-            // If the input is still in the "flat" area, that means it's really zero.
-            // This is used to compensate for imprecision in joysticks.
-            if (Math.abs(value) > range.getFlat()) {
-                NativeLibrary.MoveEvent(axis, value);
-            } else {
-                NativeLibrary.MoveEvent(axis, 0.0f);
-            }
-        }
-
+        mControllers.dispatchMotionEvent(event);
         return true;
     }
 
@@ -211,7 +220,10 @@ public final class EmulationActivity extends AppCompatActivity {
             image.getPixels(pixels, 0, dstWidth, 0, 0, dstWidth, dstHeight);
             NativeLibrary.HandleImage(pixels, dstWidth, dstHeight);
         } else if (requestCode == REQUEST_CHEAT_CODE) {
-            NativeLibrary.reloadCheatCode();
+            // the editor applies what it can to the running game by itself
+            if (resultCode == EditorActivity.RESULT_RELOAD_CHEATS) {
+                NativeLibrary.reloadCheatCode();
+            }
         }
     }
 
@@ -287,6 +299,10 @@ public final class EmulationActivity extends AppCompatActivity {
         }
     }
 
+    public String getGameId() {
+        return mGameId;
+    }
+
     public String getGameName() {
         return mGameName;
     }
@@ -312,13 +328,14 @@ public final class EmulationActivity extends AppCompatActivity {
     }
 
     public void launchMemoryViewer() {
-        MemoryActivity.launch(this);
+        MemoryActivity.launch(this, mGameId);
     }
 
     public void launchCheatCode() {
         Intent intent = new Intent(this, EditorActivity.class);
         intent.putExtra(EditorActivity.ARG_PROGRAM_ID, mGameId);
         intent.putExtra(EditorActivity.ARG_PROGRAM_TITLE, mGameName);
+        intent.putExtra(EditorActivity.ARG_RUNNING, true);
         startActivityForResult(intent, REQUEST_CHEAT_CODE);
     }
 
@@ -1,10 +1,8 @@
 package org.citra.emu.ui;
 
-import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.Choreographer;
 import android.view.LayoutInflater;
@@ -25,15 +23,15 @@ import org.citra.emu.overlay.InputOverlay;
 import org.citra.emu.overlay.LassoOverlay;
 import org.citra.emu.overlay.ResizeOverlay;
 import org.citra.emu.utils.TranslateHelper;
+import org.citra.emu.utils.TranslatePipeline;
 
-public final class EmulationFragment extends Fragment implements SurfaceHolder.Callback, Choreographer.FrameCallback {
+public final class EmulationFragment extends Fragment
+    implements SurfaceHolder.Callback, Choreographer.FrameCallback, TranslatePipeline.Listener {
     private static final String KEY_GAMEPATH = "gamepath";
-
-    private static final int TASK_PROGRESS_BAIDUOCR0 = 0;
-    private static final int TASK_PROGRESS_BAIDUOCR1 = 1;
-    private static final int TASK_PROGRESS_TRANSLATE = 2;
+    private static final String KEY_AUTO_TUNE = "auto_tune";
 
     private String mPath;
+    private boolean mAutoTune;
     private Surface mSurface;
     private EmulationState mState;
     private boolean mRunWhenSurfaceIsValid;
@@ -43,57 +41,12 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
     private LassoOverlay mLassoOverlay;
     private TextView mTranslateText;
     private Button mBtnDone;
+    private TranslatePipeline mTranslatePipeline;
 
-    private static class BaiduOCRTask extends AsyncTask<Bitmap, Integer, Integer> {
-        @SuppressLint("StaticFieldLeak")
-        EmulationFragment mParent;
-
-        public BaiduOCRTask(EmulationFragment parent) {
-            mParent = parent;
-        }
-
-        @Override
-        protected void onPreExecute() {
-            TranslateHelper.IsRunning = true;
-        }
-
-        @Override
-        protected Integer doInBackground(Bitmap... args) {
-            Bitmap image = args[0];
-            publishProgress(TASK_PROGRESS_BAIDUOCR0);
-            int error = TranslateHelper.RequestBaiduOCR(image);
-            if (error == TranslateHelper.ERROR_BAIDUOCR_TRY_AGAIN) {
-                publishProgress(TASK_PROGRESS_BAIDUOCR1);
-                error = TranslateHelper.RequestBaiduOCR(image);
-            }
-            if (error == TranslateHelper.ERROR_SUCCESS && TranslateHelper.Service != TranslateHelper.NONE_TRANSLATE) {
-                publishProgress(TASK_PROGRESS_TRANSLATE);
-                if (TranslateHelper.Service == TranslateHelper.GOOGLE_TRANSLATE) {
-                    error = TranslateHelper.RequestGoogle();
-                } else if (TranslateHelper.Service == TranslateHelper.YOUDAO_TRANSLATE) {
-                    error = TranslateHelper.RequestYoudao();
-                } else if (TranslateHelper.Service == TranslateHelper.YEEKIT_TRANSLATE) {
-                    error = TranslateHelper.RequestYeekit();
-                }
-            }
-            return error;
-        }
-
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            mParent.setTranslateProgress(values[0]);
-        }
-
-        @Override
-        protected void onPostExecute(Integer error) {
-            TranslateHelper.IsRunning = false;
-            mParent.setTranslateText(error);
-        }
-    }
-
-    public static EmulationFragment newInstance(String gamePath) {
+    public static EmulationFragment newInstance(String gamePath, boolean autoTune) {
         Bundle args = new Bundle();
         args.putString(KEY_GAMEPATH, gamePath);
+        args.putBoolean(KEY_AUTO_TUNE, autoTune);
         EmulationFragment fragment = new EmulationFragment();
         fragment.setArguments(args);
         return fragment;
@@ -107,7 +60,15 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
         setRetainInstance(true);
 
         mPath = getArguments().getString(KEY_GAMEPATH);
+        mAutoTune = getArguments().getBoolean(KEY_AUTO_TUNE);
         mState = EmulationState.STOPPED;
+        mTranslatePipeline = new TranslatePipeline(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        mTranslatePipeline.release();
+        super.onDestroy();
     }
 
     @Override
@@ -209,29 +170,32 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
         super.onPause();
     }
 
-    public void setTranslateProgress(int progress) {
+    @Override
+    public void onTranslateProgress(int progress) {
         layoutTranslateText();
-        if (progress == TASK_PROGRESS_BAIDUOCR0) {
+        if (progress == TranslatePipeline.PROGRESS_OCR) {
             mTranslateText.setText("百度识图");
-        } else if (progress == TASK_PROGRESS_BAIDUOCR1) {
+        } else if (progress == TranslatePipeline.PROGRESS_OCR_RETRY) {
             mTranslateText.setText("超时重试");
-        } else if (progress == TASK_PROGRESS_TRANSLATE) {
+        } else if (progress == TranslatePipeline.PROGRESS_TRANSLATE) {
             mTranslateText.setText("翻译文本");
         }
     }
 
-    public void setTranslateText(int error) {
+    @Override
+    public void onTranslateResult(TranslateHelper.Result result) {
+        int error = result.error;
         layoutTranslateText();
         if (error == TranslateHelper.ERROR_SUCCESS) {
             StringBuilder sb = new StringBuilder();
             if (TranslateHelper.ShowOCRResults) {
-                for (int i = 0; i < TranslateHelper.BaiduOCRResults.size(); ++i) {
-                    sb.append(TranslateHelper.BaiduOCRResults.get(i));
+                for (int i = 0; i < result.ocrResults.size(); ++i) {
+                    sb.append(result.ocrResults.get(i));
                     sb.append(System.lineSeparator());
                 }
             }
-            for (int i = 0; i < TranslateHelper.TranslateResults.size(); ++i) {
-                sb.append(TranslateHelper.TranslateResults.get(i));
+            for (int i = 0; i < result.translateResults.size(); ++i) {
+                sb.append(result.translateResults.get(i));
                 sb.append(System.lineSeparator());
             }
             mTranslateText.setText(sb.toString());
@@ -282,7 +246,8 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
     }
 
     public void requestScreenshot() {
-        if (TranslateHelper.IsRunning) {
+        // the previous box may still be translated, only its OCR has to be done
+        if (TranslateHelper.IsRunning || mTranslatePipeline.isRecognizing()) {
             mTranslateText.setText("等待翻译");
             return;
         } else {
@@ -296,9 +261,8 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
                 int fit_width = Math.min(rect.width(), screenshot.getWidth() - rect.left);
                 int fit_height = Math.min(rect.height(), screenshot.getHeight() - rect.top);
                 Bitmap image = Bitmap.createBitmap(screenshot, rect.left, rect.top, fit_width, fit_height);
-                BaiduOCRTask task = new BaiduOCRTask(this);
-                TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageJPN;
-                task.execute(image);
+                String gameId = ((EmulationActivity)getActivity()).getGameId();
+                mTranslatePipeline.submit(image, gameId);
             });
         });
     }
@@ -365,7 +329,11 @@ public final class EmulationFragment extends Fragment implements SurfaceHolder.C
         mRunWhenSurfaceIsValid = false;
         if (mState == EmulationState.STOPPED) {
             NativeLibrary.SurfaceChanged(mSurface);
-            new Thread(() -> NativeLibrary.Run(mPath), "NativeEmulation").start();
+            if (mAutoTune) {
+                new Thread(() -> NativeLibrary.RunAutoTune(mPath), "NativeEmulation").start();
+            } else {
+                new Thread(() -> NativeLibrary.Run(mPath), "NativeEmulation").start();
+            }
         } else if (mState == EmulationState.PAUSED) {
             NativeLibrary.SurfaceChanged(mSurface);
             NativeLibrary.ResumeEmulation();
@@ -528,7 +528,8 @@ public final class MainActivity extends AppCompatActivity {
         public boolean onLongClick(View view) {
             GameViewHolder holder = (GameViewHolder)view.getTag();
             GameFile model = holder.getModel();
-            EditorActivity.launch(view.getContext(), model.getId(), model.getName());
+            EditorActivity.launch(view.getContext(), model.getId(), model.getName(),
+                                  model.getPath());
             return true;
         }
 
@@ -7,6 +7,7 @@ package org.citra.emu.ui;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
@@ -16,6 +17,9 @@ import com.nononsenseapps.filepicker.DividerItemDecoration;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
@@ -23,9 +27,11 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.RadioGroup;
 import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -37,15 +43,23 @@ import androidx.preference.PreferenceManager;
 
 import org.citra.emu.NativeLibrary;
 import org.citra.emu.R;
+import org.citra.emu.utils.DirectoryInitialization;
+import org.citra.emu.utils.GuestMemory;
 
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
 public final class MemoryActivity extends AppCompatActivity {
     private static final int PAGE_SIZE = 0x1000;
     private static final int PAGE_MASK = PAGE_SIZE - 1;
     private static final int PAGE_BITS = 12;
-    private static final int PAGE_TABLE_NUM_ENTRIES = 1 << (32 - PAGE_BITS);
 
     private static final int MEM_REGION_ALL_MEMORY = 0;
     private int mMemRegion = 0;
@@ -53,6 +67,9 @@ public final class MemoryActivity extends AppCompatActivity {
     private static int VALUE_TYPE_FOUR_BYTES = 0;
     private static int VALUE_TYPE_TWO_BYTES = 1;
     private static int VALUE_TYPE_ONE_BYTE = 2;
+    private static int VALUE_TYPE_FLOAT = 3;
+    private static int VALUE_TYPE_DOUBLE = 4;
+    private static int VALUE_TYPE_BYTE_PATTERN = 5;
     private int mValueType = 0;
 
     private static final int SEARCH_TYPE_SPECIFIED_VALUE = 0;
@@ -65,6 +82,12 @@ public final class MemoryActivity extends AppCompatActivity {
     private static final int SCAN_TYPE_BIGGER_OR_EQUAL = 3;
     private static final int SCAN_TYPE_SMALLER_THAN = 4;
     private static final int SCAN_TYPE_SMALLER_OR_EQUAL = 5;
+    private static final int SCAN_TYPE_INCREASED_BY = 6;
+    private static final int SCAN_TYPE_DECREASED_BY = 7;
+    private static final int SCAN_TYPE_BETWEEN = 8;
+
+    // floating point tolerance of a search without a typed value
+    private static final double DEFAULT_EPSILON = 1e-6;
     private int mScanType = 0;
 
     //private static final String PREF_MEM_REGION = "search_mem_region";
@@ -75,9 +98,29 @@ public final class MemoryActivity extends AppCompatActivity {
     private static final String PREF_ADDR_STOP = "search_addr_stop";
     private static final String RPEF_VALUE_IS_HEX = "search_value_is_hex";
     private static final String PREF_SEARCH_VALUE = "search_value";
+    private static final String PREF_SEARCH_VALUE2 = "search_value2";
+    private static final String PREF_POINTER_DEPTH = "pointer_scan_depth";
+    private static final String PREF_POINTER_OFFSET = "pointer_scan_offset";
+    private static final String PREF_DUMP_PAUSE = "memory_dump_pause";
+    private static final String EXTRA_GAME_ID = "GameId";
+
+    private static WeakReference<MemoryActivity> sInstance = new WeakReference<>(null);
+    private static final int MAX_WATCH_ENTRIES = 256;
+    // (addr, value type, frozen, value) quads as passed to NativeLibrary.setWatchList
+    private static int[] sWatchEntries = new int[0];
+    private static int[] sWatchValues = new int[0];
+    // the title the watch list belongs to, another title starts with an empty list
+    private static String sWatchGameId;
+    private static final int MEMORY_REFRESH_INTERVAL = 500;
 
     private MemoryAdapter mAdapter;
     private RecyclerView mListView;
+    private LinearLayoutManager mLayoutManager;
+    private Handler mRefreshHandler;
+    private ProgressBar mProgressSearch;
+    private Button mBtnSearch;
+    private boolean mIsSearching;
+    private String mGameId;
 
     private boolean mIsInitialized;
     private Spinner mSpinnerMemRegion;
@@ -88,6 +131,7 @@ public final class MemoryActivity extends AppCompatActivity {
     private EditText mEditRegionStart;
     private EditText mEditRegionStop;
     private EditText mEditSearchValue;
+    private EditText mEditSearchValue2;
     private CheckBox mHexCheckBox;
 
     interface ListDataSet {
@@ -119,123 +163,308 @@ public final class MemoryActivity extends AppCompatActivity {
     }
 
     public static class SearchResultDataSet implements ListDataSet {
-        private int[] mResults;
+        private static final int PAGE_ROWS = 256;
+        // two pages, so scrolling across a page boundary does not refetch on every bind
+        private final int[][] mPages;
+        private final int[] mPageIndex = {-1, -1};
+        private final int[] mPageRows = new int[2];
+        private int mNextSlot;
+        private int mCount;
+        private int mValueType;
+        // ints per record, an address and the value
+        private int mWords;
+
+        public SearchResultDataSet(int count, int valueType) {
+            mCount = count;
+            mValueType = valueType;
+            mWords = valueType == VALUE_TYPE_DOUBLE ? 3 : 2;
+            mPages = new int[2][PAGE_ROWS * mWords];
+        }
 
-        public SearchResultDataSet(int[] results) {
-            mResults = results;
+        @Override
+        public int size() {
+            return mCount + 1;
+        }
+
+        @Override
+        public String get(int position) {
+            if (position == 0) {
+                return String.format("Search results: %d (Click to edit)", mCount);
+            } else {
+                int row = position - 1;
+                int slot = loadPage(row / PAGE_ROWS);
+                int i = (row % PAGE_ROWS) * mWords;
+                if (i >= mPageRows[slot] * mWords) {
+                    return "";
+                }
+                long addr = GetUnsigned(mPages[slot][i]);
+                int value = mPages[slot][i + 1];
+                if (mValueType == VALUE_TYPE_DOUBLE) {
+                    long bits = GetUnsigned(value) | ((long)mPages[slot][i + 2] << 32);
+                    return "[" + Long2Hex(addr) + "]:  " + Double.longBitsToDouble(bits);
+                } else if (mValueType == VALUE_TYPE_FLOAT) {
+                    return "[" + Long2Hex(addr) + "]:  " + Float.intBitsToFloat(value);
+                }
+                return "[" + Long2Hex(addr) + "]:  " + Long2Hex(GetUnsigned(value));
+            }
+        }
+
+        private int loadPage(int page) {
+            for (int slot = 0; slot < mPageIndex.length; ++slot) {
+                if (mPageIndex[slot] == page) {
+                    return slot;
+                }
+            }
+            int slot = mNextSlot;
+            mNextSlot = (mNextSlot + 1) % mPageIndex.length;
+            mPageIndex[slot] = page;
+            mPageRows[slot] = NativeLibrary.getSearchResultPage(page * PAGE_ROWS, PAGE_ROWS, mPages[slot]);
+            return slot;
+        }
+    }
+
+    public static class PointerResultDataSet implements ListDataSet {
+        private final int mTarget;
+        // width of the value at the target, four, two or one bytes
+        private final int mValueType;
+        // (length, static base, offsets...) records from NativeLibrary.scanPointers
+        private final int[] mChains;
+        private final int[] mStarts;
+
+        public PointerResultDataSet(int target, int valueType, int[] chains) {
+            mTarget = target;
+            mValueType = valueType;
+            mChains = chains;
+            int count = 0;
+            for (int i = 0; i < chains.length; i += chains[i] + 1) {
+                count++;
+            }
+            mStarts = new int[count];
+            for (int i = 0, n = 0; n < count; i += chains[i] + 1) {
+                mStarts[n++] = i;
+            }
         }
 
         @Override
         public int size() {
-            return (mResults.length / 2) + 1;
+            return mStarts.length + 1;
         }
 
         @Override
         public String get(int position) {
             if (position == 0) {
-                return String.format("Search results: %d (Click to edit)", mResults.length / 2);
+                return String.format("Pointers to %s: %d (Click to add as cheat)",
+                                     Long2Hex(GetUnsigned(mTarget)), mStarts.length);
+            }
+            return "[" + Long2Hex(GetUnsigned(mChains[mStarts[position - 1] + 1])) + "]" +
+                   getOffsets(position);
+        }
+
+        public int getTarget() {
+            return mTarget;
+        }
+
+        public int getValueSize() {
+            if (mValueType == VALUE_TYPE_TWO_BYTES) {
+                return 2;
+            } else if (mValueType == VALUE_TYPE_ONE_BYTE) {
+                return 1;
+            }
+            return 4;
+        }
+
+        public String getCheatName(int position) {
+            return "Pointer " + Long2Hex(GetUnsigned(mChains[mStarts[position - 1] + 1])) +
+                   getOffsets(position);
+        }
+
+        private String getOffsets(int position) {
+            int start = mStarts[position - 1];
+            StringBuilder sb = new StringBuilder();
+            for (int i = start + 2; i <= start + mChains[start]; ++i) {
+                sb.append(" + ").append(Integer.toHexString(mChains[i]).toUpperCase());
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Gateway code that follows the chain and writes value to its end, with a write as wide
+         * as the value so the bytes next to it stay untouched.
+         */
+        public List<String> getCheatCodes(int position, int value) {
+            int start = mStarts[position - 1];
+            int end = start + mChains[start];
+            List<String> codes = new ArrayList<>();
+            codes.add(String.format("B%07X 00000000", mChains[start + 1]));
+            for (int i = start + 2; i < end; ++i) {
+                codes.add(String.format("B%07X 00000000", mChains[i]));
+            }
+            if (mValueType == VALUE_TYPE_TWO_BYTES) {
+                codes.add(String.format("1%07X %08X", mChains[end], value & 0xFFFF));
+            } else if (mValueType == VALUE_TYPE_ONE_BYTE) {
+                codes.add(String.format("2%07X %08X", mChains[end], value & 0xFF));
             } else {
-                int i = (position - 1) * 2;
-                long addr = GetUnsigned(mResults[i]);
-                long value = GetUnsigned(mResults[i + 1]);
-                return "[" + Long2Hex(addr) + "]:  " + Long2Hex(value);
+                codes.add(String.format("0%07X %08X", mChains[end], value));
+            }
+            codes.add("D2000000 00000000");
+            return codes;
+        }
+    }
+
+    public static class DumpDiffDataSet implements ListDataSet {
+        // (addr, size) pairs from NativeLibrary.diffMemoryDumps
+        private final int[] mRanges;
+
+        public DumpDiffDataSet(int[] ranges) {
+            mRanges = ranges;
+        }
+
+        @Override
+        public int size() {
+            return mRanges.length / 2 + 1;
+        }
+
+        @Override
+        public String get(int position) {
+            if (position == 0) {
+                return String.format("Changed ranges: %d (Click to edit)", size() - 1);
+            }
+            int i = (position - 1) * 2;
+            long addr = GetUnsigned(mRanges[i]);
+            long size = GetUnsigned(mRanges[i + 1]);
+            return "[" + Long2Hex(addr) + ", " + Long2Hex(addr + size) + ") - " + NativeLibrary.Size2String(size);
+        }
+    }
+
+    public static class WatchListDataSet implements ListDataSet {
+        @Override
+        public int size() {
+            return sWatchEntries.length / 4 + 1;
+        }
+
+        @Override
+        public String get(int position) {
+            if (position == 0) {
+                return String.format("Watch list: %d (Click to edit, long press to remove)", size() - 1);
+            }
+            int i = (position - 1) * 4;
+            long addr = GetUnsigned(sWatchEntries[i]);
+            String text = "[" + Long2Hex(addr) + "]:  ";
+            if (position - 1 < sWatchValues.length) {
+                text += Long2Hex(GetUnsigned(sWatchValues[position - 1]));
             }
+            return sWatchEntries[i + 2] != 0 ? text + "  *" : text;
         }
     }
 
     public static class MemoryViewDataSet implements ListDataSet {
-        private final int mByteCount = 8;
-        private Object[] mPointers = new Object[PAGE_TABLE_NUM_ENTRIES];
-        private int[] mPageTable;
-        private long mAddrStart;
-        private long mAddrStop;
-        private long mCount;
+        private static final int BYTES_PER_ROW = 8;
+        private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+        // "[0x00000000]:   00 00 00 00   00 00 00 00"
+        public static final int ROW_LENGTH = 41;
+
+        // mapped parts of [start, stop), and the number of rows before each of them
+        private final long[] mRegionStart;
+        private final int[] mRowOffset;
+        private final int mRowCount;
 
         public MemoryViewDataSet(long start, long stop) {
-            mAddrStart = start;
-            mAddrStop = stop;
-            mCount = 0;
-            mPageTable = NativeLibrary.loadPageTable();
-
-            for (int i = 0; i < mPageTable.length; i += 2) {
-                long addr = GetUnsigned(mPageTable[i]);
-                long size = GetUnsigned(mPageTable[i + 1]);
-                if (start >= addr && start < addr + size) {
-                    if (stop > addr + size) {
-                        mCount += (addr + size) - start;
-                    } else {
-                        mCount = stop - start;
-                        break;
-                    }
-                } else if (stop < addr + size) {
-                    mCount += stop - addr;
-                    break;
-                } else {
-                    mCount += size;
+            int[] pageTable = NativeLibrary.loadPageTable();
+            long[] regionStart = new long[pageTable.length / 2];
+            int[] rowOffset = new int[pageTable.length / 2];
+            int regions = 0;
+            long rows = 0;
+            for (int i = 0; i < pageTable.length; i += 2) {
+                long addr = GetUnsigned(pageTable[i]);
+                long size = GetUnsigned(pageTable[i + 1]);
+                long begin = Math.max(addr, start & ~3L);
+                long end = Math.min(addr + size, stop);
+                if (begin < end && rows < Integer.MAX_VALUE) {
+                    regionStart[regions] = begin;
+                    rowOffset[regions] = (int)rows;
+                    regions++;
+                    rows += (end - begin + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
                 }
             }
-
-            if (mCount < mByteCount) {
-                mCount = mByteCount;
-            }
+            mRegionStart = Arrays.copyOf(regionStart, regions);
+            mRowOffset = Arrays.copyOf(rowOffset, regions);
+            mRowCount = (int)Math.min(rows, Integer.MAX_VALUE);
         }
 
         @Override
         public int size() {
-            return (int)(mCount / mByteCount);
+            return mRowCount;
         }
 
         @Override
         public String get(int position) {
-            long targetAddr = mPageTable != null && mPageTable.length > 0 ? mPageTable[0] : 0;
-            long targetOffset = position * mByteCount;
-            for (int i = 0; i < mPageTable.length; ++i) {
-                long addr = GetUnsigned(mPageTable[i]);
-                long size = GetUnsigned(mPageTable[i + 1]);
-                if (mAddrStart >= addr + size) {
-                    // continue;
-                } else if (mAddrStart >= addr && mAddrStart < addr + size) {
-                    if (mAddrStart + targetOffset > addr + size) {
-                        targetOffset -= (addr + size) - mAddrStart;
-                    } else {
-                        targetAddr = mAddrStart + targetOffset;
-                        break;
-                    }
-                } else if (mAddrStart + targetOffset < addr + size) {
-                    targetAddr = addr + targetOffset;
-                    break;
-                } else {
-                    targetOffset -= size;
-                }
+            char[] row = new char[ROW_LENGTH];
+            return new String(row, 0, format(position, row));
+        }
+
+        /**
+         * Renders a row into out, which must hold ROW_LENGTH chars, and returns its length.
+         */
+        public int format(int position, char[] out) {
+            int region = Arrays.binarySearch(mRowOffset, position);
+            if (region < 0) {
+                region = -region - 2;
             }
+            long addr = mRegionStart[region] + (long)(position - mRowOffset[region]) * BYTES_PER_ROW;
+
+            int n = 0;
+            out[n++] = '[';
+            out[n++] = '0';
+            out[n++] = 'x';
+            n = formatHex(addr, out, n);
+            out[n++] = ']';
+            out[n++] = ':';
+            out[n++] = ' ';
+            out[n++] = ' ';
+            // the view is looked up on every bind, it is released when the game stops
+            GuestMemory memory = GuestMemory.get();
+            n = formatBytes(memory.read(addr, 4), out, n);
+            out[n++] = ' ';
+            out[n++] = ' ';
+            n = formatBytes(memory.read(addr + 4, 4), out, n);
+            return n;
+        }
 
-            long value0 = read32(targetAddr);
-            long value1 = read32(targetAddr + 4);
-            return "[" + Long2Hex(targetAddr) + "]:  " + Long2View(value0) + "  " + Long2View(value1);
+        private int formatHex(long value, char[] out, int n) {
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                out[n++] = HEX_CHARS[(int)(value >> shift) & 0xF];
+            }
+            return n;
         }
 
-        public long read32(long addr) {
-            int pageIndex = (int)(addr >> PAGE_BITS);
-            int pageOffset = (int)(addr & PAGE_MASK);
-            if (mPointers[pageIndex] == null) {
-                mPointers[pageIndex] = NativeLibrary.loadPage(pageIndex);
-                if (mPointers[pageIndex] == null) {
-                    // load page error
-                    return 0;
-                }
+        // same layout as Long2View, most significant byte first
+        private int formatBytes(int value, char[] out, int n) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                int b = (value >> shift) & 0xFF;
+                out[n++] = ' ';
+                out[n++] = HEX_CHARS[b >> 4];
+                out[n++] = HEX_CHARS[b & 0xF];
             }
-            return Bytes2Long((byte[]) mPointers[pageIndex], pageOffset, 4);
+            return n;
         }
     }
 
     public class MemoryHolder extends RecyclerView.ViewHolder {
 
         private TextView mTextView;
+        private char[] mRow;
 
         public MemoryHolder(View itemView) {
             super(itemView);
             mTextView = itemView.findViewById(R.id.text_view);
             itemView.setOnClickListener((View v) -> {
+                if (mAdapter.isShowing(PointerResultDataSet.class)) {
+                    int position = getAdapterPosition();
+                    if (position > 0) {
+                        exportPointerChain(position);
+                    }
+                    return;
+                }
                 String text = mTextView.getText().toString();
                 if (text.isEmpty()) {
                     return;
@@ -244,11 +473,27 @@ public final class MemoryActivity extends AppCompatActivity {
                 int addr = GetSigned(Hex2Long(textAddr));
                 MemoryEditorDialog.newInstance(addr).show(getSupportFragmentManager(), "MemoryEditorDialog");
             });
+            itemView.setOnLongClickListener((View v) -> {
+                int position = getAdapterPosition();
+                if (!mAdapter.isShowing(WatchListDataSet.class) || position < 1) {
+                    return false;
+                }
+                removeWatch(position - 1);
+                return true;
+            });
         }
 
         public void bind(String text) {
             mTextView.setText(text);
         }
+
+        public void bind(MemoryViewDataSet dataset, int position) {
+            // the text view keeps a reference to the chars, so each holder has its own row
+            if (mRow == null) {
+                mRow = new char[MemoryViewDataSet.ROW_LENGTH];
+            }
+            mTextView.setText(mRow, 0, dataset.format(position, mRow));
+        }
     }
 
     public class MemoryAdapter extends RecyclerView.Adapter<MemoryHolder> {
@@ -265,7 +510,11 @@ public final class MemoryActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull MemoryHolder holder, int position) {
-            holder.bind(mDataSet.get(position));
+            if (mDataSet instanceof MemoryViewDataSet) {
+                holder.bind((MemoryViewDataSet)mDataSet, position);
+            } else {
+                holder.bind(mDataSet.get(position));
+            }
         }
 
         @Override
@@ -277,6 +526,27 @@ public final class MemoryActivity extends AppCompatActivity {
             mDataSet = dataset;
             notifyDataSetChanged();
         }
+
+        public boolean isShowing(Class<? extends ListDataSet> type) {
+            return type.isInstance(mDataSet);
+        }
+
+        public ListDataSet getDataSet() {
+            return mDataSet;
+        }
+
+        /**
+         * Rereads guest memory for the rows on screen.
+         */
+        public void refreshMemory(LinearLayoutManager layoutManager) {
+            if (mDataSet instanceof MemoryViewDataSet) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first != RecyclerView.NO_POSITION) {
+                    notifyItemRangeChanged(first, last - first + 1);
+                }
+            }
+        }
     }
 
     public static class MemoryEditorDialog extends DialogFragment {
@@ -311,7 +581,7 @@ public final class MemoryActivity extends AppCompatActivity {
             EditText editFloat = contents.findViewById(R.id.edit_float_value);
 
             // memory value
-            int memValue = NativeLibrary.readMemory(addr, mValueType);
+            int memValue = readValue(GetUnsigned(addr));
             editHex.setText(Long2Hex(GetUnsigned(memValue)).substring(2));
             editInt.setText(Long.toString(GetUnsigned(memValue)));
             editFloat.setText(Float.toString(Float.intBitsToFloat(memValue)));
@@ -424,7 +694,7 @@ public final class MemoryActivity extends AppCompatActivity {
                 }
                 editAddr.setText(Long2Hex(value).substring(2));
 
-                int rawValue = NativeLibrary.readMemory(GetSigned(value), mValueType);
+                int rawValue = readValue(value);
                 editHex.setText(Long2Hex(GetUnsigned(rawValue)).substring(2));
                 editInt.setText(Long.toString(GetUnsigned(rawValue)));
                 editFloat.setText(Float.toString(Float.intBitsToFloat(rawValue)));
@@ -443,7 +713,7 @@ public final class MemoryActivity extends AppCompatActivity {
                 }
                 editAddr.setText(Long2Hex(value).substring(2));
 
-                int rawValue = NativeLibrary.readMemory(GetSigned(value), mValueType);
+                int rawValue = readValue(value);
                 editHex.setText(Long2Hex(GetUnsigned(rawValue)).substring(2));
                 editInt.setText(Long.toString(GetUnsigned(rawValue)));
                 editFloat.setText(Float.toString(Float.intBitsToFloat(rawValue)));
@@ -460,7 +730,7 @@ public final class MemoryActivity extends AppCompatActivity {
                 }
                 String text = editAddr.getText().toString();
                 long value = Hex2Long(text);
-                int rawValue = NativeLibrary.readMemory(GetSigned(value), mValueType);
+                int rawValue = readValue(value);
                 editHex.setText(Long2Hex(GetUnsigned(rawValue)).substring(2));
                 editInt.setText(Long.toString(GetUnsigned(rawValue)));
                 editFloat.setText(Float.toString(Float.intBitsToFloat(rawValue)));
@@ -470,12 +740,33 @@ public final class MemoryActivity extends AppCompatActivity {
             btnRead.setOnClickListener((View v) -> {
                 String text = editAddr.getText().toString();
                 long value = Hex2Long(text);
-                int rawValue = NativeLibrary.readMemory(GetSigned(value), mValueType);
+                int rawValue = readValue(value);
                 editHex.setText(Long2Hex(GetUnsigned(rawValue)).substring(2));
                 editInt.setText(Long.toString(GetUnsigned(rawValue)));
                 editFloat.setText(Float.toString(Float.intBitsToFloat(rawValue)));
             });
 
+            Button btnWatch = contents.findViewById(R.id.btn_watch);
+            btnWatch.setOnClickListener((View v) -> {
+                long address = Hex2Long(editAddr.getText().toString());
+                addWatch(GetSigned(address), mValueType, false, 0);
+            });
+
+            Button btnFreeze = contents.findViewById(R.id.btn_freeze);
+            btnFreeze.setOnClickListener((View v) -> {
+                long address = Hex2Long(editAddr.getText().toString());
+                long value = Hex2Long(editHex.getText().toString());
+                addWatch(GetSigned(address), mValueType, true, GetSigned(value));
+            });
+
+            Button btnPointers = contents.findViewById(R.id.btn_pointer_scan);
+            btnPointers.setOnClickListener((View v) -> {
+                long address = Hex2Long(editAddr.getText().toString());
+                MemoryActivity activity = (MemoryActivity)getActivity();
+                activity.showPointerScanDialog(GetSigned(address), mValueType);
+                dismiss();
+            });
+
             Button btnWrite = contents.findViewById(R.id.btn_write);
             btnWrite.setOnClickListener((View v) -> {
                 String textAddr = editAddr.getText().toString();
@@ -488,17 +779,34 @@ public final class MemoryActivity extends AppCompatActivity {
             builder.setView(contents);
             return builder.create();
         }
+
+        private int readValue(long addr) {
+            int size = 4;
+            if (mValueType == VALUE_TYPE_TWO_BYTES) {
+                size = 2;
+            } else if (mValueType == VALUE_TYPE_ONE_BYTE) {
+                size = 1;
+            }
+            return GuestMemory.get().read(addr, size);
+        }
     }
 
-    public static void launch(Context context) {
+    public static void launch(Context context, String gameId) {
         Intent intent = new Intent(context, MemoryActivity.class);
+        intent.putExtra(EXTRA_GAME_ID, gameId);
         context.startActivity(intent);
     }
 
+    public static MemoryActivity get() {
+        return sInstance.get();
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_memory);
+        sInstance = new WeakReference<>(this);
+        mGameId = getIntent().getStringExtra(EXTRA_GAME_ID);
 
         Toolbar toolbar = findViewById(R.id.toolbar_main);
         setSupportActionBar(toolbar);
@@ -508,22 +816,37 @@ public final class MemoryActivity extends AppCompatActivity {
         mListView.setAdapter(mAdapter);
         Drawable lineDivider = getDrawable(R.drawable.line_divider);
         mListView.addItemDecoration(new DividerItemDecoration(lineDivider));
-        RecyclerView.LayoutManager layoutManager = new LinearLayoutManager(this);
-        mListView.setLayoutManager(layoutManager);
+        mLayoutManager = new LinearLayoutManager(this);
+        mListView.setLayoutManager(mLayoutManager);
+        mRefreshHandler = new Handler(getMainLooper());
+
+        if (!Objects.equals(sWatchGameId, mGameId)) {
+            sWatchGameId = mGameId;
+            sWatchEntries = new int[0];
+            sWatchValues = new int[0];
+        } else if (sWatchEntries.length > 0) {
+            // the native list is emptied on every boot, the same title gets its entries back
+            setWatchEntries(sWatchEntries);
+        }
 
-        int[] previousResults = NativeLibrary.getSearchResults();
-        if (previousResults.length > 0) {
+        // the previous results were searched with the saved value type
+        mValueType = PreferenceManager.getDefaultSharedPreferences(this).getInt(PREF_VALUE_TYPE, mValueType);
+        int previousResults = NativeLibrary.getSearchResultCount();
+        if (previousResults > 0) {
             loadResults(previousResults);
         } else {
             loadPageTable();
         }
 
         mEditSearchValue = findViewById(R.id.edit_search_value);
+        mEditSearchValue2 = findViewById(R.id.edit_search_value2);
         mEditRegionStart = findViewById(R.id.edit_region_start);
         mEditRegionStop = findViewById(R.id.edit_region_stop);
         mHexCheckBox = findViewById(R.id.checkbox_hex);
+        mProgressSearch = findViewById(R.id.progress_search);
 
         mEditSearchValue.setSelectAllOnFocus(true);
+        mEditSearchValue2.setSelectAllOnFocus(true);
         mEditRegionStart.setSelectAllOnFocus(true);
         mEditRegionStop.setSelectAllOnFocus(true);
 
@@ -572,6 +895,7 @@ public final class MemoryActivity extends AppCompatActivity {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 mValueType = position;
+                updateSearchValueState();
             }
 
             @Override
@@ -586,13 +910,11 @@ public final class MemoryActivity extends AppCompatActivity {
         adapter2.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         mSpinnerSearchType.setAdapter(adapter2);
         mSpinnerSearchType.setSelection(mSearchType);
-        mSpinnerSearchType.setEnabled(false);
-        mSpinnerSearchType.setClickable(false);
         mSpinnerSearchType.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 mSearchType = position;
-                mEditSearchValue.setEnabled(position == SEARCH_TYPE_SPECIFIED_VALUE);
+                updateSearchValueState();
             }
 
             @Override
@@ -611,6 +933,7 @@ public final class MemoryActivity extends AppCompatActivity {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 mScanType = position;
+                updateSearchValueState();
             }
 
             @Override
@@ -619,22 +942,47 @@ public final class MemoryActivity extends AppCompatActivity {
             }
         });
 
-        Button btnSearch = findViewById(R.id.btn_search);
-        btnSearch.setOnClickListener(view -> {
+        mBtnSearch = findViewById(R.id.btn_search);
+        mBtnSearch.setOnClickListener(view -> {
+            if (mIsSearching) {
+                NativeLibrary.cancelSearchMemory();
+                return;
+            }
             String strValue = mEditSearchValue.getText().toString();
+            String strValue2 = mEditSearchValue2.getText().toString();
             String strStart = mEditRegionStart.getText().toString();
             String strStop = mEditRegionStop.getText().toString();
             boolean isHex = mHexCheckBox.isChecked();
             int startAddr = GetSigned(Hex2Long(strStart));
             int stopAddr = GetSigned(Hex2Long(strStop));
             long value = 0;
-            try {
-                value = Long.parseLong(strValue, isHex ? 16 : 10);
-            } catch (NumberFormatException e) {
-                // ignore
+            long value2 = 0;
+            double epsilon = 0;
+            byte[] pattern = null;
+            byte[] mask = null;
+            if (mValueType == VALUE_TYPE_FLOAT || mValueType == VALUE_TYPE_DOUBLE) {
+                value = Double.doubleToRawLongBits(ParseDouble(strValue));
+                value2 = Double.doubleToRawLongBits(ParseDouble(strValue2));
+                // an unknown search compares with the previous values, the field may be stale
+                boolean hasValue = mSearchType == SEARCH_TYPE_SPECIFIED_VALUE ||
+                                   mScanType == SCAN_TYPE_INCREASED_BY ||
+                                   mScanType == SCAN_TYPE_DECREASED_BY;
+                epsilon = hasValue ? GetEpsilon(strValue) : DEFAULT_EPSILON;
+            } else if (mValueType == VALUE_TYPE_BYTE_PATTERN) {
+                pattern = new byte[strValue.length()];
+                mask = new byte[strValue.length()];
+                int size = ParsePattern(strValue, pattern, mask);
+                if (size == 0) {
+                    return;
+                }
+                pattern = Arrays.copyOf(pattern, size);
+                mask = Arrays.copyOf(mask, size);
+            } else {
+                value = ParseLong(strValue, isHex);
+                value2 = ParseLong(strValue2, isHex);
             }
-            int[] results = NativeLibrary.searchMemory(startAddr, stopAddr, mValueType, mSearchType, mScanType, GetSigned(value));
-            loadResults(results);
+            startSearch(startAddr, stopAddr, mValueType, mSearchType, mScanType, value, value2,
+                        epsilon, pattern, mask);
         });
 
         Button btnView = findViewById(R.id.btn_view);
@@ -646,16 +994,50 @@ public final class MemoryActivity extends AppCompatActivity {
             loadMemory(start, stop);
         });
 
+        Button btnWatchList = findViewById(R.id.btn_watch_list);
+        btnWatchList.setOnClickListener(view -> loadWatchList());
+
         Button btnReset = findViewById(R.id.btn_reset);
         btnReset.setOnClickListener(view -> {
+            if (mIsSearching) {
+                return;
+            }
             NativeLibrary.resetSearchResults();
             loadPageTable();
         });
+
+        // a saved session is inflated off the main thread, the page table shows until it's back
+        if (previousResults == 0) {
+            startRestoreSession();
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        MenuInflater inflater = getMenuInflater();
+        inflater.inflate(R.menu.menu_memory, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.menu_dump_memory:
+                showDumpDialog();
+                return true;
+
+            case R.id.menu_diff_dumps:
+                showDiffDialog();
+                return true;
+        }
+
+        return false;
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        mRefreshHandler.removeCallbacks(mRefreshMemory);
 
         SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(this).edit();
         editor.putInt(PREF_SEARCH_TYPE, mSearchType);
@@ -666,13 +1048,18 @@ public final class MemoryActivity extends AppCompatActivity {
         editor.putString(PREF_ADDR_START, mEditRegionStart.getText().toString());
         editor.putString(PREF_ADDR_STOP, mEditRegionStop.getText().toString());
         editor.putString(PREF_SEARCH_VALUE, mEditSearchValue.getText().toString());
+        editor.putString(PREF_SEARCH_VALUE2, mEditSearchValue2.getText().toString());
         editor.apply();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        mRefreshHandler.postDelayed(mRefreshMemory, MEMORY_REFRESH_INTERVAL);
+        loadSearchPreferences();
+    }
 
+    private void loadSearchPreferences() {
         SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
         mSearchType = pref.getInt(PREF_SEARCH_TYPE, mSearchType);
         mSpinnerSearchType.setSelection(mSearchType);
@@ -686,6 +1073,245 @@ public final class MemoryActivity extends AppCompatActivity {
         mEditRegionStart.setText(pref.getString(PREF_ADDR_START, mEditRegionStart.getText().toString()));
         mEditRegionStop.setText(pref.getString(PREF_ADDR_STOP, mEditRegionStop.getText().toString()));
         mEditSearchValue.setText(pref.getString(PREF_SEARCH_VALUE, mEditSearchValue.getText().toString()));
+        mEditSearchValue2.setText(pref.getString(PREF_SEARCH_VALUE2, mEditSearchValue2.getText().toString()));
+    }
+
+    // keeps the memory view current while the game runs
+    private final Runnable mRefreshMemory = new Runnable() {
+        @Override
+        public void run() {
+            if (NativeLibrary.IsRunning()) {
+                mAdapter.refreshMemory(mLayoutManager);
+            }
+            mRefreshHandler.postDelayed(this, MEMORY_REFRESH_INTERVAL);
+        }
+    };
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mIsSearching) {
+            NativeLibrary.cancelSearchMemory();
+        }
+    }
+
+    /**
+     * An unknown search compares with the previous values, only the change filters take a value.
+     * A range needs the second value, which the unknown search has no use for.
+     */
+    private void updateSearchValueState() {
+        mEditSearchValue.setEnabled(mSearchType == SEARCH_TYPE_SPECIFIED_VALUE ||
+                                    mScanType == SCAN_TYPE_INCREASED_BY ||
+                                    mScanType == SCAN_TYPE_DECREASED_BY);
+        boolean isRange = mSearchType == SEARCH_TYPE_SPECIFIED_VALUE &&
+                          mScanType == SCAN_TYPE_BETWEEN && mValueType != VALUE_TYPE_BYTE_PATTERN;
+        mEditSearchValue2.setVisibility(isRange ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Runs the search on a worker thread, the native side reports progress through
+     * updateSearchProgress and returns -1 when the search was cancelled.
+     */
+    private void startSearch(int startAddr, int stopAddr, int valueType, int searchType,
+                             int scanType, long value, long value2, double epsilon,
+                             byte[] pattern, byte[] mask) {
+        setSearching(true);
+        new Thread(() -> {
+            int results = NativeLibrary.searchMemory(startAddr, stopAddr, valueType, searchType,
+                                                     scanType, value, value2, epsilon, pattern, mask);
+            runOnUiThread(() -> {
+                setSearching(false);
+                if (results >= 0 && !isDestroyed()) {
+                    loadResults(results, valueType);
+                }
+            });
+        }, "MemorySearch").start();
+    }
+
+    /**
+     * Pointer scans share the progress bar and cancel button of the search, and return null
+     * when cancelled.
+     */
+    private void startPointerScan(int target, int valueType, int maxDepth, int maxOffset) {
+        setSearching(true);
+        new Thread(() -> {
+            int[] chains = NativeLibrary.scanPointers(target, maxDepth, maxOffset);
+            runOnUiThread(() -> {
+                setSearching(false);
+                if (chains != null && !isDestroyed()) {
+                    mAdapter.loadDataSet(new PointerResultDataSet(target, valueType, chains));
+                    mListView.scrollToPosition(0);
+                }
+            });
+        }, "PointerScan").start();
+    }
+
+    private void setSearching(boolean searching) {
+        mIsSearching = searching;
+        mBtnSearch.setText(searching ? R.string.memory_btn_cancel : R.string.memory_btn_search);
+        mProgressSearch.setProgress(0);
+        mProgressSearch.setVisibility(searching ? View.VISIBLE : View.GONE);
+    }
+
+    public void showPointerScanDialog(int target, int valueType) {
+        if (mIsSearching) {
+            return;
+        }
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
+        ViewGroup contents = (ViewGroup)getLayoutInflater().inflate(R.layout.dialog_pointer_scan, null);
+        EditText editDepth = contents.findViewById(R.id.edit_pointer_depth);
+        EditText editOffset = contents.findViewById(R.id.edit_pointer_offset);
+        editDepth.setText(Integer.toString(pref.getInt(PREF_POINTER_DEPTH, 3)));
+        editOffset.setText(Integer.toHexString(pref.getInt(PREF_POINTER_OFFSET, 0x400)).toUpperCase());
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(Long2Hex(GetUnsigned(target)));
+        builder.setView(contents);
+        builder.setPositiveButton(android.R.string.ok, (DialogInterface dialog, int which) -> {
+            int depth;
+            try {
+                depth = Integer.parseInt(editDepth.getText().toString());
+            } catch (NumberFormatException e) {
+                depth = 3;
+            }
+            int offset = GetSigned(Hex2Long(editOffset.getText().toString()));
+            pref.edit().putInt(PREF_POINTER_DEPTH, depth).putInt(PREF_POINTER_OFFSET, offset).apply();
+            startPointerScan(target, valueType, depth, offset);
+        });
+        builder.setNegativeButton(android.R.string.cancel, null);
+        builder.show();
+    }
+
+    private static File getDumpDirectory() {
+        File dir = new File(DirectoryInitialization.getUserDirectory(), "dump" + File.separator + "memory");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return null;
+        }
+        return dir;
+    }
+
+    /**
+     * Dumps the region of the search fields, the dump goes straight from guest memory to the
+     * file on the native side and shares the progress bar and cancel button of the search.
+     */
+    private void showDumpDialog() {
+        File dir = getDumpDirectory();
+        if (mIsSearching || dir == null) {
+            return;
+        }
+        long start = Hex2Long(mEditRegionStart.getText().toString());
+        long stop = Hex2Long(mEditRegionStop.getText().toString());
+        String name = (mGameId != null ? mGameId : "memory") + "_" + Long2Hex(start).substring(2) +
+                      "-" + Long2Hex(stop).substring(2) + "_" +
+                      new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".bin";
+        File file = new File(dir, name);
+
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean[] pause = {pref.getBoolean(PREF_DUMP_PAUSE, true)};
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(name);
+        builder.setMultiChoiceItems(new String[] {getString(R.string.memory_dump_pause)}, pause,
+                                    (DialogInterface dialog, int which, boolean isChecked) -> pause[0] = isChecked);
+        builder.setPositiveButton(android.R.string.ok, (DialogInterface dialog, int which) -> {
+            pref.edit().putBoolean(PREF_DUMP_PAUSE, pause[0]).apply();
+            startDump(GetSigned(start), GetSigned(stop), file, pause[0]);
+        });
+        builder.setNegativeButton(android.R.string.cancel, null);
+        builder.show();
+    }
+
+    private void startDump(int startAddr, int stopAddr, File file, boolean pause) {
+        setSearching(true);
+        new Thread(() -> {
+            long size = NativeLibrary.dumpMemory(startAddr, stopAddr, file.getPath(), pause);
+            runOnUiThread(() -> {
+                setSearching(false);
+                if (isDestroyed()) {
+                    return;
+                }
+                if (size < 0) {
+                    Toast.makeText(this, R.string.memory_dump_failed, Toast.LENGTH_SHORT).show();
+                } else {
+                    String text = getString(R.string.memory_dump_saved, NativeLibrary.Size2String(size), file.getName());
+                    Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+                }
+            });
+        }, "MemoryDump").start();
+    }
+
+    /**
+     * Lists the ranges that changed from the older to the newer of two selected dumps.
+     */
+    private void showDiffDialog() {
+        File dir = getDumpDirectory();
+        File[] files = dir != null ? dir.listFiles((File f) -> f.getName().endsWith(".bin")) : null;
+        if (mIsSearching || files == null || files.length < 2) {
+            return;
+        }
+        // newest first
+        Arrays.sort(files, (File a, File b) -> Long.compare(b.lastModified(), a.lastModified()));
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            names[i] = files[i].getName();
+        }
+
+        boolean[] checked = new boolean[files.length];
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.memory_diff_select);
+        builder.setMultiChoiceItems(names, checked,
+                                    (DialogInterface dialog, int which, boolean isChecked) -> checked[which] = isChecked);
+        builder.setPositiveButton(android.R.string.ok, (DialogInterface dialog, int which) -> {
+            List<File> selected = new ArrayList<>();
+            for (int i = 0; i < files.length; ++i) {
+                if (checked[i]) {
+                    selected.add(files[i]);
+                }
+            }
+            if (selected.size() == 2) {
+                startDiff(selected.get(1), selected.get(0));
+            } else {
+                Toast.makeText(this, R.string.memory_diff_select, Toast.LENGTH_SHORT).show();
+            }
+        });
+        builder.setNegativeButton(android.R.string.cancel, null);
+        builder.show();
+    }
+
+    private void startDiff(File older, File newer) {
+        setSearching(true);
+        new Thread(() -> {
+            int[] ranges = NativeLibrary.diffMemoryDumps(older.getPath(), newer.getPath());
+            runOnUiThread(() -> {
+                setSearching(false);
+                if (isDestroyed()) {
+                    return;
+                }
+                if (ranges == null) {
+                    Toast.makeText(this, R.string.memory_diff_failed, Toast.LENGTH_SHORT).show();
+                } else {
+                    mAdapter.loadDataSet(new DumpDiffDataSet(ranges));
+                    mListView.scrollToPosition(0);
+                }
+            });
+        }, "MemoryDiff").start();
+    }
+
+    private void exportPointerChain(int position) {
+        PointerResultDataSet dataset = (PointerResultDataSet)mAdapter.getDataSet();
+        int value =
+            GuestMemory.get().read(GetUnsigned(dataset.getTarget()), dataset.getValueSize());
+        String name = dataset.getCheatName(position);
+        if (mGameId != null &&
+            EditorActivity.appendCheat(mGameId, name, dataset.getCheatCodes(position, value))) {
+            Toast.makeText(this, R.string.memory_pointer_exported, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    public void updateSearchProgress(int scanned, int total) {
+        if (mIsSearching && total > 0) {
+            mProgressSearch.setMax(total);
+            mProgressSearch.setProgress(scanned);
+        }
     }
 
     public void loadPageTable() {
@@ -700,8 +1326,110 @@ public final class MemoryActivity extends AppCompatActivity {
         }
     }
 
-    public void loadResults(int[] results) {
-        mAdapter.loadDataSet(new SearchResultDataSet(results));
+    public void loadWatchList() {
+        mAdapter.loadDataSet(new WatchListDataSet());
+        mListView.scrollToPosition(0);
+    }
+
+    public void updateWatchValues(int[] values) {
+        sWatchValues = values;
+        if (mAdapter.isShowing(WatchListDataSet.class)) {
+            mAdapter.notifyItemRangeChanged(1, Math.min(values.length, sWatchEntries.length / 4));
+        }
+    }
+
+    /**
+     * Adds an address to the watch list, or replaces the entry already watching it.
+     */
+    public static void addWatch(int addr, int valueType, boolean frozen, int value) {
+        int[] entries = sWatchEntries;
+        int i = 0;
+        while (i < entries.length && entries[i] != addr) {
+            i += 4;
+        }
+        if (i == entries.length) {
+            if (entries.length / 4 >= MAX_WATCH_ENTRIES) {
+                return;
+            }
+            entries = Arrays.copyOf(entries, entries.length + 4);
+        } else {
+            entries = entries.clone();
+        }
+        entries[i] = addr;
+        entries[i + 1] = valueType;
+        entries[i + 2] = frozen ? 1 : 0;
+        entries[i + 3] = value;
+        setWatchEntries(entries);
+    }
+
+    private static void removeWatch(int index) {
+        int[] entries = new int[sWatchEntries.length - 4];
+        System.arraycopy(sWatchEntries, 0, entries, 0, index * 4);
+        System.arraycopy(sWatchEntries, index * 4 + 4, entries, index * 4, entries.length - index * 4);
+        setWatchEntries(entries);
+    }
+
+    private static void setWatchEntries(int[] entries) {
+        sWatchEntries = entries;
+        // values come back with the next snapshot of the native watch list
+        sWatchValues = new int[0];
+        NativeLibrary.setWatchList(entries);
+        MemoryActivity activity = get();
+        if (activity != null && activity.mAdapter.isShowing(WatchListDataSet.class)) {
+            activity.mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Picks up the search saved for this title by an earlier run, its parameters go to the
+     * preferences that onResume loads into the search fields.
+     */
+    /**
+     * Restores the session saved for this title on a worker thread, like startSearch, then shows
+     * its results and fills the search fields with its parameters.
+     */
+    private void startRestoreSession() {
+        setSearching(true);
+        new Thread(() -> {
+            int[] session = NativeLibrary.restoreSearchSession();
+            runOnUiThread(() -> {
+                setSearching(false);
+                if (isDestroyed() || session == null || session[0] == 0) {
+                    return;
+                }
+                applySearchSession(session);
+                loadSearchPreferences();
+                loadResults(session[0], session[3]);
+            });
+        }, "MemoryRestore").start();
+    }
+
+    private void applySearchSession(int[] session) {
+        mValueType = session[3];
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
+        SharedPreferences.Editor editor = pref.edit();
+        editor.putString(PREF_ADDR_START, Long2Hex(GetUnsigned(session[1])).substring(2));
+        editor.putString(PREF_ADDR_STOP, Long2Hex(GetUnsigned(session[2])).substring(2));
+        editor.putInt(PREF_VALUE_TYPE, session[3]);
+        editor.putInt(PREF_SEARCH_TYPE, session[4]);
+        editor.putInt(PREF_SCAN_TYPE, session[5]);
+        // a pattern is not kept by the session, the field keeps what was typed last
+        if (mValueType != VALUE_TYPE_BYTE_PATTERN) {
+            boolean isHex = pref.getBoolean(RPEF_VALUE_IS_HEX, false);
+            long value = GetUnsigned(session[6]) | ((long)session[7] << 32);
+            long value2 = GetUnsigned(session[8]) | ((long)session[9] << 32);
+            editor.putString(PREF_SEARCH_VALUE, FormatSearchValue(mValueType, value, isHex));
+            editor.putString(PREF_SEARCH_VALUE2, FormatSearchValue(mValueType, value2, isHex));
+        }
+        editor.apply();
+    }
+
+    public void loadResults(int count) {
+        loadResults(count, mValueType);
+    }
+
+    public void loadResults(int count, int valueType) {
+        mAdapter.loadDataSet(new SearchResultDataSet(count, valueType));
         mListView.scrollToPosition(0);
     }
 
@@ -757,6 +1485,91 @@ public final class MemoryActivity extends AppCompatActivity {
         return value;
     }
 
+    /**
+     * The text the search button parses back into value, floating point values are double bits.
+     */
+    public static String FormatSearchValue(int valueType, long value, boolean isHex) {
+        if (valueType == VALUE_TYPE_FLOAT || valueType == VALUE_TYPE_DOUBLE) {
+            return Double.toString(Double.longBitsToDouble(value));
+        }
+        return Long.toString(value, isHex ? 16 : 10).toUpperCase();
+    }
+
+    public static long ParseLong(String text, boolean isHex) {
+        try {
+            return Long.parseLong(text, isHex ? 16 : 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static double ParseDouble(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Half a unit of the last digit typed, so "100" matches 99.5 to 100.5 and "12.5" matches
+     * 12.45 to 12.55, games rarely store the exact value shown on screen. Without a value, as in
+     * an unknown search against the previous values, only rounding noise is tolerated.
+     */
+    public static double GetEpsilon(String text) {
+        if (text.trim().isEmpty()) {
+            return DEFAULT_EPSILON;
+        }
+        int dot = text.indexOf('.');
+        int decimals = 0;
+        if (dot != -1) {
+            while (dot + 1 + decimals < text.length() &&
+                   Character.isDigit(text.charAt(dot + 1 + decimals))) {
+                decimals++;
+            }
+        }
+        return 0.5 * Math.pow(10, -decimals);
+    }
+
+    /**
+     * Parses hex bytes like "12 34 ?? 5?", a '?' digit matches any value. Returns the number of
+     * bytes written to pattern and mask, or 0 if the text is not a pattern.
+     */
+    public static int ParsePattern(String text, byte[] pattern, byte[] mask) {
+        int size = 0;
+        int digits = 0;
+        int value = 0;
+        int bits = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (digits == 1) {
+                    return 0;
+                }
+                continue;
+            }
+            int v = Character.digit(c, 16);
+            if (c == '?') {
+                value <<= 4;
+                bits <<= 4;
+            } else if (v != -1) {
+                value = value << 4 | v;
+                bits = bits << 4 | 0xF;
+            } else {
+                return 0;
+            }
+            if (++digits == 2) {
+                pattern[size] = (byte)value;
+                mask[size] = (byte)bits;
+                size++;
+                digits = 0;
+                value = 0;
+                bits = 0;
+            }
+        }
+        return digits == 0 ? size : 0;
+    }
+
     public static long GetUnsigned(int signed) {
         return signed < 0 ? 2 * (long) Integer.MAX_VALUE + 2 + signed : signed;
     }
@@ -7,6 +7,7 @@ import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.util.Log;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -25,6 +26,7 @@ import androidx.preference.PreferenceManager;
 
 import com.nononsenseapps.filepicker.DividerItemDecoration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import org.citra.emu.NativeLibrary;
 import org.citra.emu.R;
 import org.citra.emu.overlay.InputOverlay;
@@ -443,7 +445,8 @@ public class RunningSettingDialog extends DialogFragment {
     }
 
     public class SettingsAdapter extends RecyclerView.Adapter<SettingViewHolder> {
-        private int[] mRunningSettings;
+        // the native values by setting id, null while the native settings aren't shown
+        private SparseIntArray mRunningSettings;
         private int mJoystickRelative;
         private int mShowRightJoystick;
         private int mHideInputOverlay;
@@ -496,8 +499,13 @@ public class RunningSettingDialog extends DialogFragment {
         }
 
         public void loadSettingsMenu() {
-            int i = 0;
-            mRunningSettings = NativeLibrary.getRunningSettings();
+            mRunningSettings = new SparseIntArray();
+            int[] settings = NativeLibrary.getRunningSettings();
+            if (settings.length > 0 && settings[0] == NativeLibrary.RUNNING_SETTINGS_VERSION) {
+                for (int i = 1; i + 1 < settings.length; i += 2) {
+                    mRunningSettings.put(settings[i], settings[i + 1]);
+                }
+            }
             mSettings = new ArrayList<>();
 
             // pref settings
@@ -534,28 +542,34 @@ public class RunningSettingDialog extends DialogFragment {
             // native settings
             mSettings.add(new SettingsItem(SettingsItem.SETTING_CORE_TICKS_HACK,
                     R.string.setting_core_ticks_hack,
-                    SettingsItem.TYPE_CHECKBOX, mRunningSettings[i++]));
+                    SettingsItem.TYPE_CHECKBOX,
+                    mRunningSettings.get(SettingsItem.SETTING_CORE_TICKS_HACK)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_SKIP_SLOW_DRAW,
                     R.string.setting_skip_slow_draw,
-                    SettingsItem.TYPE_CHECKBOX, mRunningSettings[i++]));
+                    SettingsItem.TYPE_CHECKBOX,
+                    mRunningSettings.get(SettingsItem.SETTING_SKIP_SLOW_DRAW)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_SKIP_CPU_WRITE,
                     R.string.setting_skip_cpu_write,
-                    SettingsItem.TYPE_CHECKBOX, mRunningSettings[i++]));
+                    SettingsItem.TYPE_CHECKBOX,
+                    mRunningSettings.get(SettingsItem.SETTING_SKIP_CPU_WRITE)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_TEXTURE_LOAD_HACK,
                     R.string.setting_texture_load_hack,
-                    SettingsItem.TYPE_CHECKBOX, mRunningSettings[i++]));
+                    SettingsItem.TYPE_CHECKBOX,
+                    mRunningSettings.get(SettingsItem.SETTING_TEXTURE_LOAD_HACK)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_SCALE_FACTOR,
                     R.string.running_resolution, SettingsItem.TYPE_RADIO_GROUP,
-                    mRunningSettings[i++]));
+                    mRunningSettings.get(SettingsItem.SETTING_SCALE_FACTOR)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_SCREEN_LAYOUT,
                     R.string.running_layout, SettingsItem.TYPE_RADIO_GROUP,
-                    mRunningSettings[i++]));
+                    mRunningSettings.get(SettingsItem.SETTING_SCREEN_LAYOUT)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_CUSTOM_LAYOUT,
                     R.string.running_custom_layout,
-                    SettingsItem.TYPE_CHECKBOX, mRunningSettings[i++]));
+                    SettingsItem.TYPE_CHECKBOX,
+                    mRunningSettings.get(SettingsItem.SETTING_CUSTOM_LAYOUT)));
             mSettings.add(new SettingsItem(SettingsItem.SETTING_FRAME_LIMIT,
                     R.string.running_frame_limit,
-                    SettingsItem.TYPE_SEEK_BAR, mRunningSettings[i++]));
+                    SettingsItem.TYPE_SEEK_BAR,
+                    mRunningSettings.get(SettingsItem.SETTING_FRAME_LIMIT)));
             notifyDataSetChanged();
         }
 
@@ -664,17 +678,20 @@ public class RunningSettingDialog extends DialogFragment {
             editor.apply();
             activity.refreshControls();
 
-            // native settings
-            boolean isChanged = false;
-            int[] newSettings = new int[mRunningSettings.length];
-            for (int i = 0; i < mRunningSettings.length; ++i) {
-                newSettings[i] = mSettings.get(i).getValue();
-                if (newSettings[i] != mRunningSettings[i]) {
-                    isChanged = true;
+            // native settings, only the ones that changed
+            int count = 0;
+            int[] changes = new int[1 + mSettings.size() * 2];
+            changes[count++] = NativeLibrary.RUNNING_SETTINGS_VERSION;
+            for (SettingsItem item : mSettings) {
+                int id = item.getSetting();
+                if (mRunningSettings.indexOfKey(id) >= 0 &&
+                    mRunningSettings.get(id) != item.getValue()) {
+                    changes[count++] = id;
+                    changes[count++] = item.getValue();
                 }
             }
-            if (isChanged) {
-                NativeLibrary.setRunningSettings(newSettings);
+            if (count > 1) {
+                NativeLibrary.setRunningSettings(Arrays.copyOf(changes, count));
             }
             mRunningSettings = null;
         }
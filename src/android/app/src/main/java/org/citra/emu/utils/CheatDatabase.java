@@ -0,0 +1,191 @@
+package org.citra.emu.utils;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The cheats bundled with the app, packed into one file by the packCheats gradle task, see
+ * build.gradle for the layout. A title only gets its own file in the cheats directory once its
+ * cheats are edited, that file then replaces the bundled ones.
+ */
+public final class CheatDatabase {
+    public static final String FILE_NAME = "cheats.pack";
+    private static final int MAGIC = 0x42444843; // "CHDB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 24;
+    // the text of a title is at most this large, the same limit as native
+    private static final int MAX_TEXT_SIZE = 16 * 1024 * 1024;
+
+    // index of the installed file, loaded on first use
+    private static long sLoadedTime = -1;
+    private static long[] sProgramIds = new long[0];
+    private static int[] sOffsets;
+    private static int[] sPackedSizes;
+    private static int[] sSizes;
+
+    /**
+     * Copies the database out of the assets, unless the installed one has the same header.
+     */
+    static void install(Context context, File output) {
+        try {
+            InputStream in = context.getAssets().open(FILE_NAME);
+            byte[] header = new byte[HEADER_SIZE];
+            int read = in.read(header);
+            if (read == HEADER_SIZE && !Arrays.equals(header, readHeader(output))) {
+                File temp = new File(output.getPath() + ".tmp");
+                OutputStream out = new FileOutputStream(temp);
+                out.write(header);
+                byte[] buffer = new byte[64 * 1024];
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                out.close();
+                if (!temp.renameTo(output)) {
+                    temp.delete();
+                }
+            }
+            in.close();
+        } catch (IOException e) {
+            //
+        }
+    }
+
+    public static synchronized boolean contains(String programId) {
+        return findIndex(programId) >= 0;
+    }
+
+    /**
+     * Returns the bundled cheats of a title, null if there are none.
+     */
+    public static synchronized String read(String programId) {
+        int index = findIndex(programId);
+        if (index < 0) {
+            return null;
+        }
+
+        byte[] packed = new byte[sPackedSizes[index]];
+        byte[] text = new byte[sSizes[index]];
+        Inflater inflater = new Inflater();
+        try (RandomAccessFile file = new RandomAccessFile(getFile(), "r")) {
+            file.seek(sOffsets[index] & 0xFFFFFFFFL);
+            file.readFully(packed);
+            inflater.setInput(packed);
+            if (inflater.inflate(text) != text.length) {
+                return null;
+            }
+        } catch (IOException | DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static int findIndex(String programId) {
+        long id;
+        try {
+            id = Long.parseUnsignedLong(programId, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        loadIndex();
+        // sorted as unsigned, the same as signed for the title ids
+        return Arrays.binarySearch(sProgramIds, id);
+    }
+
+    private static File getFile() {
+        return new File(DirectoryInitialization.getCheatsDirectory(), FILE_NAME);
+    }
+
+    // the index is read again whenever a new database is installed, a file that fails its checksum
+    // or points outside of itself is treated as empty
+    private static void loadIndex() {
+        File file = getFile();
+        long time = file.lastModified();
+        if (time == sLoadedTime) {
+            return;
+        }
+        sLoadedTime = time;
+        sProgramIds = new long[0];
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long length = input.length();
+            byte[] header = new byte[HEADER_SIZE];
+            input.readFully(header);
+            ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return;
+            }
+            long count = buffer.getInt() & 0xFFFFFFFFL;
+            int checksum = buffer.getInt();
+            long dataOffset = HEADER_SIZE + count * ENTRY_SIZE;
+            if (dataOffset > length || !verifyChecksum(input, checksum)) {
+                return;
+            }
+
+            int entryCount = (int)count;
+            byte[] entries = new byte[entryCount * ENTRY_SIZE];
+            input.seek(HEADER_SIZE);
+            input.readFully(entries);
+            buffer = ByteBuffer.wrap(entries).order(ByteOrder.LITTLE_ENDIAN);
+            long[] programIds = new long[entryCount];
+            int[] offsets = new int[entryCount];
+            int[] packedSizes = new int[entryCount];
+            int[] sizes = new int[entryCount];
+            for (int i = 0; i < entryCount; ++i) {
+                programIds[i] = buffer.getLong();
+                offsets[i] = buffer.getInt();
+                packedSizes[i] = buffer.getInt();
+                sizes[i] = buffer.getInt();
+                buffer.getInt();
+                long offset = offsets[i] & 0xFFFFFFFFL;
+                if (offset < dataOffset || offset + (packedSizes[i] & 0xFFFFFFFFL) > length ||
+                    packedSizes[i] < 0 || sizes[i] < 0 || sizes[i] > MAX_TEXT_SIZE) {
+                    return;
+                }
+            }
+            sOffsets = offsets;
+            sPackedSizes = packedSizes;
+            sSizes = sizes;
+            sProgramIds = programIds;
+        } catch (IOException e) {
+            //
+        }
+    }
+
+    // crc32 of everything after the header, the input is positioned right after it
+    private static boolean verifyChecksum(RandomAccessFile input, int checksum)
+        throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            crc.update(buffer, 0, read);
+        }
+        return (int)crc.getValue() == checksum;
+    }
+
+    private static byte[] readHeader(File file) {
+        byte[] header = new byte[HEADER_SIZE];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.readFully(header);
+        } catch (IOException e) {
+            return null;
+        }
+        return header;
+    }
+}
@@ -0,0 +1,128 @@
+package org.citra.emu.utils;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.citra.emu.NativeLibrary.ButtonType;
+
+/**
+ * Parses combo keys and compiles them into the step array used by the native macro engine.
+ *
+ * A combo key is either a comma list of buttons held together while the key is pressed, or a
+ * timed sequence such as "A:2 W:3 B:1" (press A for 2 frames, wait 3 frames, press B for 1 frame).
+ * Buttons of one step are joined with '+', a step without frames is held until the key is released.
+ */
+public final class ComboKeyHelper {
+    public static final String PREF_COMBO_KEY = "combo_key_";
+    public static final String PREF_COMBO_MACRO = "combo_macro_";
+
+    private static final String WAIT = "W";
+    private static final String[] ButtonNames = {
+            "A", "B", "X", "Y", "UP", "DOWN", "LEFT", "RIGHT", "L", "R", "START", "SELECT", "ZL", "ZR",
+    };
+    private static final int[] ButtonValues = {
+            ButtonType.N3DS_BUTTON_A, ButtonType.N3DS_BUTTON_B, ButtonType.N3DS_BUTTON_X,
+            ButtonType.N3DS_BUTTON_Y, ButtonType.N3DS_DPAD_UP, ButtonType.N3DS_DPAD_DOWN,
+            ButtonType.N3DS_DPAD_LEFT, ButtonType.N3DS_DPAD_RIGHT, ButtonType.N3DS_BUTTON_L,
+            ButtonType.N3DS_BUTTON_R, ButtonType.N3DS_BUTTON_START, ButtonType.N3DS_BUTTON_SELECT,
+            ButtonType.N3DS_BUTTON_ZL, ButtonType.N3DS_BUTTON_ZR,
+    };
+
+    public static ArrayList<Integer> parseKeys(String value) {
+        ArrayList<Integer> keys = new ArrayList<>();
+        for (String key : value.split(",")) {
+            if (!key.isEmpty()) {
+                keys.add(Integer.parseInt(key));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Compiles a timed sequence into (buttons mask, frames) pairs, or returns null if it is invalid.
+     */
+    public static int[] parseMacro(String value) {
+        String[] tokens = value.trim().toUpperCase(Locale.ROOT).split("\\s+");
+        int[] steps = new int[tokens.length * 2];
+        int count = 0;
+        for (String token : tokens) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int frames = 0;
+            int colon = token.indexOf(':');
+            String keys = token;
+            if (colon != -1) {
+                keys = token.substring(0, colon);
+                frames = parseFrames(token.substring(colon + 1));
+                if (frames <= 0) {
+                    return null;
+                }
+            }
+
+            int buttons = 0;
+            if (WAIT.equals(keys)) {
+                if (frames == 0) {
+                    return null;
+                }
+            } else {
+                for (String key : keys.split("\\+")) {
+                    int button = getButton(key);
+                    if (button == -1) {
+                        return null;
+                    }
+                    buttons |= 1 << button;
+                }
+            }
+            steps[count++] = buttons;
+            steps[count++] = frames;
+        }
+        return count > 0 ? Arrays.copyOf(steps, count) : null;
+    }
+
+    /**
+     * Compiles the combo key at index, preferring its timed sequence over the held key list.
+     */
+    public static int[] compile(SharedPreferences prefs, int index) {
+        String macro = prefs.getString(PREF_COMBO_MACRO + index, "");
+        if (!macro.trim().isEmpty()) {
+            int[] steps = parseMacro(macro);
+            if (steps != null) {
+                return steps;
+            }
+        }
+
+        int buttons = 0;
+        for (int key : parseKeys(prefs.getString(PREF_COMBO_KEY + index, ""))) {
+            buttons |= 1 << key;
+        }
+        return buttons != 0 ? new int[] {buttons, 0} : new int[0];
+    }
+
+    private static int parseFrames(String value) {
+        if (value.isEmpty() || value.length() > 4) {
+            return -1;
+        }
+        int frames = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            frames = frames * 10 + (c - '0');
+        }
+        return frames;
+    }
+
+    private static int getButton(String name) {
+        for (int i = 0; i < ButtonNames.length; ++i) {
+            if (ButtonNames[i].equals(name)) {
+                return ButtonValues[i];
+            }
+        }
+        return -1;
+    }
+}
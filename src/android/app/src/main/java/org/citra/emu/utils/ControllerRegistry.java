@@ -0,0 +1,124 @@
+package org.citra.emu.utils;
+
+import android.hardware.input.InputManager;
+import android.util.SparseArray;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.util.List;
+
+import org.citra.emu.NativeLibrary;
+
+/**
+ * Keeps a precomputed axis transform table per connected controller, so motion events only cost
+ * table lookups. Tables are dropped whenever Android reports the device as changed or removed.
+ */
+public final class ControllerRegistry implements InputManager.InputDeviceListener {
+    private static final class AxisTable {
+        final int[] axes;
+        final float[] scales;
+        final float[] offsets;
+        final float[] deadzones;
+        final float[] values;
+
+        AxisTable(int size) {
+            axes = new int[size];
+            scales = new float[size];
+            offsets = new float[size];
+            deadzones = new float[size];
+            values = new float[size];
+        }
+    }
+
+    private final SparseArray<AxisTable> mTables = new SparseArray<>();
+
+    public void register(InputManager manager) {
+        manager.registerInputDeviceListener(this, null);
+    }
+
+    public void unregister(InputManager manager) {
+        manager.unregisterInputDeviceListener(this);
+        mTables.clear();
+    }
+
+    /**
+     * Forwards the axes of a joystick event whose value changed since the previous event.
+     */
+    public void dispatchMotionEvent(MotionEvent event) {
+        AxisTable table = mTables.get(event.getDeviceId());
+        if (table == null) {
+            InputDevice device = event.getDevice();
+            if (device == null) {
+                return;
+            }
+            table = buildTable(device);
+            mTables.put(device.getId(), table);
+        }
+
+        final int[] axes = table.axes;
+        for (int i = 0; i < axes.length; ++i) {
+            float value = event.getAxisValue(axes[i]) * table.scales[i] + table.offsets[i];
+            // If the input is still in the "flat" area, that means it's really zero.
+            // This is used to compensate for imprecision in joysticks.
+            if (Math.abs(value) <= table.deadzones[i]) {
+                value = 0.0f;
+            }
+            if (value != table.values[i]) {
+                table.values[i] = value;
+                NativeLibrary.MoveEvent(axes[i], value);
+            }
+        }
+    }
+
+    private static AxisTable buildTable(InputDevice device) {
+        List<InputDevice.MotionRange> ranges = device.getMotionRanges();
+        int[] axes = new int[ranges.size()];
+        float[] deadzones = new float[ranges.size()];
+        int count = 0;
+        for (InputDevice.MotionRange range : ranges) {
+            if (range.isFromSource(InputDevice.SOURCE_CLASS_JOYSTICK) &&
+                indexOf(axes, count, range.getAxis()) == -1) {
+                axes[count] = range.getAxis();
+                deadzones[count] = range.getFlat();
+                count++;
+            }
+        }
+
+        AxisTable table = new AxisTable(count);
+        for (int i = 0; i < count; ++i) {
+            int axis = axes[i];
+            // scaleAxis is affine, sampling it twice gives the whole transform
+            float offset = ControllerMappingHelper.scaleAxis(device, axis, 0.0f);
+            table.axes[i] = axis;
+            table.offsets[i] = offset;
+            table.scales[i] = ControllerMappingHelper.scaleAxis(device, axis, 1.0f) - offset;
+            table.deadzones[i] = deadzones[i];
+            table.values[i] = Float.NaN;
+        }
+        return table;
+    }
+
+    private static int indexOf(int[] array, int size, int value) {
+        for (int i = 0; i < size; ++i) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void onInputDeviceAdded(int deviceId) {
+        mTables.remove(deviceId);
+    }
+
+    @Override
+    public void onInputDeviceRemoved(int deviceId) {
+        mTables.remove(deviceId);
+    }
+
+    @Override
+    public void onInputDeviceChanged(int deviceId) {
+        mTables.remove(deviceId);
+    }
+}
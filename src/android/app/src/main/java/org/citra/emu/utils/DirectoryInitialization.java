@@ -48,11 +48,13 @@ public final class DirectoryInitialization {
     private static void initializeExternalStorage(Context context) {
         File shaders = new File(getShadersDirectory());
         File sysdata = new File(getSysDataDirectory());
-        File cheats = new File(getCheatsDirectory());
         File sdmc = new File(getSDMCDirectory());
         copyAssetFolder("shaders", shaders, false, context);
         copyAssetFolder("sysdata", sysdata, false, context);
-        copyAssetFolder("cheats", cheats, false, context);
+        File cheats = new File(getCheatsDirectory());
+        if (cheats.isDirectory() || cheats.mkdir()) {
+            CheatDatabase.install(context, new File(cheats, CheatDatabase.FILE_NAME));
+        }
         copyAssetFolder("sdmc", sdmc, false, context);
     }
 
@@ -80,6 +82,11 @@ public final class DirectoryInitialization {
         return getUserDirectory() + File.separator + "config" + File.separator + "config-mmj.ini";
     }
 
+    public static String getGameConfigFile(String gameId) {
+        return getUserDirectory() + File.separator + "config" + File.separator + "game" +
+            File.separator + gameId + ".ini";
+    }
+
     public static String getShadersDirectory() {
         return getUserDirectory() + File.separator + "shaders";
     }
@@ -92,6 +99,10 @@ public final class DirectoryInitialization {
         return getUserDirectory() + File.separator + "cheats";
     }
 
+    public static String getTranslateCacheDirectory() {
+        return getUserDirectory() + File.separator + "translate";
+    }
+
     public static String getAmiiboDirectory() {
         return getUserDirectory() + File.separator + "amiibo";
     }
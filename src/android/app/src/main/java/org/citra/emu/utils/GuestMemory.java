@@ -0,0 +1,133 @@
+package org.citra.emu.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.citra.emu.NativeLibrary;
+
+/**
+ * Read-only view of guest memory through direct buffers over the mapped regions, so reading a
+ * value costs no JNI call. The view is rebuilt whenever the native page table generation changes,
+ * unmapped addresses read as zero. Native releases the view before it frees guest memory, reads of
+ * a released view return zero, so callers should not hold on to an instance.
+ */
+public final class GuestMemory {
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    private static final GuestMemory EMPTY = new GuestMemory(-1, new long[0], new long[0], new ByteBuffer[0]);
+
+    private static GuestMemory sInstance = EMPTY;
+
+    private final int mGeneration;
+    // sorted by start address
+    private final long[] mStart;
+    private final long[] mEnd;
+    private final ByteBuffer[] mBuffers;
+    // guarded by the class lock, a read in progress holds off release()
+    private boolean mAlive = true;
+
+    private GuestMemory(int generation, long[] start, long[] end, ByteBuffer[] buffers) {
+        mGeneration = generation;
+        mStart = start;
+        mEnd = end;
+        mBuffers = buffers;
+    }
+
+    /**
+     * Returns the current view, costs one JNI call to check the page table generation.
+     */
+    public static synchronized GuestMemory get() {
+        int generation = NativeLibrary.getMemoryGeneration();
+        if (sInstance.mGeneration != generation) {
+            sInstance = load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Ends every view handed out so far, returns once no read is in progress.
+     */
+    public static synchronized void release() {
+        sInstance.mAlive = false;
+        sInstance = EMPTY;
+    }
+
+    private static GuestMemory load() {
+        // the page table may change while the buffers are mapped, then the regions are reloaded
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; ++attempt) {
+            int[] regions = NativeLibrary.loadMemoryRegions();
+            int count = (regions.length - 1) / 2;
+            long[] start = new long[count];
+            long[] end = new long[count];
+            ByteBuffer[] buffers = new ByteBuffer[count];
+            boolean mapped = true;
+            for (int i = 0; i < count && mapped; ++i) {
+                int addr = regions[1 + i * 2];
+                int size = regions[2 + i * 2];
+                ByteBuffer buffer = NativeLibrary.mapMemoryRegion(addr, size);
+                if (buffer == null) {
+                    mapped = false;
+                } else {
+                    // duplicates of a buffer are big endian again, set the order last
+                    buffers[i] = buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+                    start[i] = addr & 0xFFFFFFFFL;
+                    end[i] = start[i] + (size & 0xFFFFFFFFL);
+                }
+            }
+            if (mapped && NativeLibrary.getMemoryGeneration() == regions[0]) {
+                return new GuestMemory(regions[0], start, end, buffers);
+            }
+        }
+        return EMPTY;
+    }
+
+    public boolean isMapped(long addr) {
+        synchronized (GuestMemory.class) {
+            return mAlive && find(addr) != -1;
+        }
+    }
+
+    /**
+     * Reads a little endian value of 1, 2 or 4 bytes, zero extended.
+     */
+    public int read(long addr, int size) {
+        synchronized (GuestMemory.class) {
+            return mAlive ? readLocked(addr, size) : 0;
+        }
+    }
+
+    private int readLocked(long addr, int size) {
+        int region = find(addr);
+        if (region != -1 && addr + size <= mEnd[region]) {
+            ByteBuffer buffer = mBuffers[region];
+            int offset = (int)(addr - mStart[region]);
+            if (size == 4) {
+                return buffer.getInt(offset);
+            } else if (size == 2) {
+                return buffer.getShort(offset) & 0xFFFF;
+            } else {
+                return buffer.get(offset) & 0xFF;
+            }
+        }
+
+        // unmapped or crossing into the next region
+        int value = 0;
+        for (int i = size - 1; i >= 0; --i) {
+            value = (value << 8) | readByte(addr + i);
+        }
+        return value;
+    }
+
+    private int readByte(long addr) {
+        int region = find(addr);
+        return region != -1 ? mBuffers[region].get((int)(addr - mStart[region])) & 0xFF : 0;
+    }
+
+    private int find(long addr) {
+        int region = Arrays.binarySearch(mStart, addr);
+        if (region < 0) {
+            region = -region - 2;
+        }
+        return region >= 0 && addr < mEnd[region] ? region : -1;
+    }
+}
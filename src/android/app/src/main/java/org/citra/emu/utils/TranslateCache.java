@@ -0,0 +1,278 @@
+package org.citra.emu.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * OCR and translation results of the text boxes of a title, keyed by a difference hash of the
+ * captured region and a checksum of a finer thumbnail, so a box that shows up again needs no
+ * network request. The match is exact, a box only hits when it is captured over the same region
+ * and both parts of the key are equal. The least recently used entries are dropped once the cache
+ * is full, the file keeps them in that order.
+ */
+public final class TranslateCache {
+    private static final int MAGIC = 0x43525443; // "CTRC"
+    private static final int VERSION = 2;
+    private static final int MAX_ENTRIES = 1024;
+    // difference hash of a 17x16 gray scale thumbnail, 256 bits
+    private static final int HASH_WIDTH = 16;
+    private static final int HASH_HEIGHT = 16;
+    private static final int HASH_WORDS = HASH_WIDTH * HASH_HEIGHT / 64;
+    // boxes with the same text length and layout often share the hash, so the key also has the
+    // crc32 of a 64x32 thumbnail with 16 gray levels, kept in the word after the hash
+    private static final int CHECK_WIDTH = 64;
+    private static final int CHECK_HEIGHT = 32;
+    private static final int KEY_WORDS = HASH_WORDS + 1;
+
+    public static final class Entry {
+        final long[] hash;
+        final int language;
+        // as detected by the OCR, the translation is from this language, null if unknown
+        public final String ocrLanguage;
+        public final ArrayList<String> ocrResults;
+        // translated by this service, none if the results were only recognized
+        public int service;
+        public ArrayList<String> translateResults;
+
+        Entry(long[] hash, int language, String ocrLanguage, ArrayList<String> ocrResults) {
+            this.hash = hash;
+            this.language = language;
+            this.ocrLanguage = ocrLanguage;
+            this.ocrResults = ocrResults;
+            this.service = TranslateHelper.NONE_TRANSLATE;
+            this.translateResults = new ArrayList<>();
+        }
+    }
+
+    private static TranslateCache sInstance;
+
+    private final String mGameId;
+    // in access order, the eldest is evicted first
+    private final LinkedHashMap<Entry, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // lookups don't wait for the file, only writes wait for each other
+    private final Object mWriteLock = new Object();
+    private boolean mSaving;
+
+    private TranslateCache(String gameId) {
+        mGameId = gameId;
+    }
+
+    /**
+     * Returns the cache of a title, loading it from disk when another title used the cache last.
+     */
+    public static synchronized TranslateCache get(String gameId) {
+        if (sInstance == null || !sInstance.mGameId.equals(gameId)) {
+            sInstance = new TranslateCache(gameId);
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the key of a captured box, the perceptual hash followed by the checksum.
+     */
+    public static long[] computeHash(Bitmap image) {
+        Bitmap thumbnail = Bitmap.createScaledBitmap(image, HASH_WIDTH + 1, HASH_HEIGHT, true);
+        int[] pixels = new int[(HASH_WIDTH + 1) * HASH_HEIGHT];
+        thumbnail.getPixels(pixels, 0, HASH_WIDTH + 1, 0, 0, HASH_WIDTH + 1, HASH_HEIGHT);
+        if (thumbnail != image) {
+            thumbnail.recycle();
+        }
+
+        long[] hash = new long[KEY_WORDS];
+        int bit = 0;
+        for (int y = 0; y < HASH_HEIGHT; ++y) {
+            int row = y * (HASH_WIDTH + 1);
+            int left = luminance(pixels[row]);
+            for (int x = 1; x <= HASH_WIDTH; ++x) {
+                int right = luminance(pixels[row + x]);
+                if (left > right) {
+                    hash[bit >> 6] |= 1L << (bit & 63);
+                }
+                left = right;
+                bit++;
+            }
+        }
+        hash[HASH_WORDS] = computeChecksum(image);
+        return hash;
+    }
+
+    private static long computeChecksum(Bitmap image) {
+        Bitmap thumbnail = Bitmap.createScaledBitmap(image, CHECK_WIDTH, CHECK_HEIGHT, true);
+        int[] pixels = new int[CHECK_WIDTH * CHECK_HEIGHT];
+        thumbnail.getPixels(pixels, 0, CHECK_WIDTH, 0, 0, CHECK_WIDTH, CHECK_HEIGHT);
+        if (thumbnail != image) {
+            thumbnail.recycle();
+        }
+
+        byte[] levels = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; ++i) {
+            levels[i] = (byte)(luminance(pixels[i]) / 1000 >> 4);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(levels);
+        return crc.getValue();
+    }
+
+    private static int luminance(int color) {
+        return Color.red(color) * 299 + Color.green(color) * 587 + Color.blue(color) * 114;
+    }
+
+    /**
+     * Returns the entry of the box recognized in the same language with the same key, null if
+     * there is none.
+     */
+    public synchronized Entry find(long[] hash, int language) {
+        for (Entry entry : mEntries.keySet()) {
+            if (entry.language == language && Arrays.equals(entry.hash, hash)) {
+                // marks it as recently used
+                mEntries.get(entry);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public synchronized Entry put(long[] hash, int language, String ocrLanguage,
+                                  List<String> ocrResults) {
+        Entry entry = new Entry(hash, language, ocrLanguage, new ArrayList<>(ocrResults));
+        mEntries.put(entry, entry);
+        Iterator<Entry> eldest = mEntries.keySet().iterator();
+        while (mEntries.size() > MAX_ENTRIES) {
+            eldest.next();
+            eldest.remove();
+        }
+        save();
+        return entry;
+    }
+
+    public synchronized void setTranslation(Entry entry, int service, List<String> results) {
+        entry.service = service;
+        entry.translateResults = new ArrayList<>(results);
+        save();
+    }
+
+    /**
+     * Writes the cache in the background, a save that hasn't started yet writes the newest
+     * entries too. Runs when an entry is added or translated, a hit only reorders the entries in
+     * memory and the file picks up the order with the next change.
+     */
+    private synchronized void save() {
+        if (mSaving) {
+            return;
+        }
+        mSaving = true;
+        new Thread(() -> {
+            ArrayList<Entry> entries;
+            synchronized (this) {
+                mSaving = false;
+                entries = new ArrayList<>(mEntries.keySet());
+            }
+            synchronized (mWriteLock) {
+                write(entries);
+            }
+        }, "TranslateCacheSave").start();
+    }
+
+    private File getFile() {
+        File dir = new File(DirectoryInitialization.getTranslateCacheDirectory());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return null;
+        }
+        return new File(dir, mGameId + ".bin");
+    }
+
+    private void load() {
+        File file = getFile();
+        if (file == null || !file.exists()) {
+            return;
+        }
+
+        try (DataInputStream input =
+                 new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; ++i) {
+                long[] hash = new long[KEY_WORDS];
+                for (int j = 0; j < KEY_WORDS; ++j) {
+                    hash[j] = input.readLong();
+                }
+                int language = input.readByte();
+                String ocrLanguage = input.readUTF();
+                Entry entry = new Entry(hash, language, ocrLanguage.isEmpty() ? null : ocrLanguage,
+                                        readLines(input));
+                entry.service = input.readByte();
+                entry.translateResults = readLines(input);
+                mEntries.put(entry, entry);
+            }
+        } catch (IOException e) {
+            // a damaged file keeps the entries read so far
+        }
+    }
+
+    // eldest first, so loading restores the access order
+    private void write(List<Entry> entries) {
+        File file = getFile();
+        if (file == null) {
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output =
+                 new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                for (long word : entry.hash) {
+                    output.writeLong(word);
+                }
+                output.writeByte(entry.language);
+                output.writeUTF(entry.ocrLanguage != null ? entry.ocrLanguage : "");
+                writeLines(output, entry.ocrResults);
+                output.writeByte(entry.service);
+                writeLines(output, entry.translateResults);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private static ArrayList<String> readLines(DataInputStream input) throws IOException {
+        int count = input.readUnsignedShort();
+        ArrayList<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            lines.add(input.readUTF());
+        }
+        return lines;
+    }
+
+    private static void writeLines(DataOutputStream output, List<String> lines)
+        throws IOException {
+        output.writeShort(lines.size());
+        for (String line : lines) {
+            output.writeUTF(line);
+        }
+    }
+}
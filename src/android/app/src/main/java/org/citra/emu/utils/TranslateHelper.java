@@ -7,10 +7,10 @@ import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -83,6 +83,24 @@ public final class TranslateHelper {
     private static final String GoogleLanguageENG = "en";
     private static final String GoogleLanguageKOR = "ko";
 
+    // the servers, pointed at a local stand-in when testing
+    public static String BaiduServer = "https://aip.baidubce.com";
+    public static String YoudaoServer = "https://fanyi.youdao.com";
+    public static String YeekitServer = "https://www.yeekit.com";
+    public static String GoogleServer = "https://translate.google.cn";
+
+    // every attempt gets an answer or an error within these, a stalled server can't hold up the
+    // boxes queued behind it
+    static final int CONNECT_TIMEOUT = 5000;
+    static final int READ_TIMEOUT = 10000;
+    static final int MAX_ATTEMPTS = 3;
+    private static final int RETRY_DELAY = 250;
+    // all the attempts of one stage of a box end within this, shortened when testing
+    static int StageTimeout = 20000;
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)AppleWebKit/537.36 (KHTML, like Gecko) Chrome/78.0.3904.97 Safari/537.36";
+    private static final String FORM_CONTENT = "application/x-www-form-urlencoded";
+
     public static boolean IsRunning = false;
     public static boolean ShowOCRResults = false;
     public static int Service = TranslateHelper.GOOGLE_TRANSLATE;
@@ -91,10 +109,80 @@ public final class TranslateHelper {
     public static String BaiduOCRKey = null;
     public static String BaiduOCRSecret = null;
     public static String BaiduOCRToken = null;
-    public static String BaiduOCRLanguage = null;
     public static boolean BaiduOCRHighPrecision = false;
-    public static ArrayList<String> BaiduOCRResults = null;
-    public static ArrayList<String> TranslateResults = null;
+
+    /**
+     * What one captured box turned into, each request fills its own.
+     */
+    public static final class Result {
+        public int error = ERROR_SUCCESS;
+        // as detected by the OCR, the translation is from this language, null if unknown
+        public String ocrLanguage;
+        public ArrayList<String> ocrResults = new ArrayList<>();
+        public ArrayList<String> translateResults = new ArrayList<>();
+    }
+
+    /**
+     * The attempts a request has left and the deadline of its stage. HttpRequest and the callers
+     * that try again on an error in the response take from the same attempts, so the retries don't
+     * multiply, and each attempt only waits as long as the deadline allows.
+     */
+    public static final class Attempts {
+        private final long mDeadline;
+        private int mCount;
+
+        public Attempts(long deadline) {
+            mDeadline = deadline;
+        }
+
+        /**
+         * Returns the deadline of a stage whose first request starts now, in System.nanoTime().
+         */
+        public static long Deadline() {
+            return System.nanoTime() + StageTimeout * 1000000L;
+        }
+
+        /**
+         * Returns true if another attempt can start, after the delay it would wait first.
+         */
+        public boolean hasNext() {
+            return mCount < MAX_ATTEMPTS && getDelay() < getRemaining();
+        }
+
+        /**
+         * Waits before the attempt if it isn't the first, returns false if none is left or the
+         * thread was interrupted.
+         */
+        boolean next() {
+            if (!hasNext()) {
+                return false;
+            }
+            long delay = getDelay();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            mCount++;
+            return true;
+        }
+
+        // a timeout cut down to the time left, never 0 as that would wait forever
+        int getTimeout(int timeout) {
+            return (int)Math.max(1, Math.min(timeout, getRemaining()));
+        }
+
+        private long getDelay() {
+            return mCount > 0 ? (long)RETRY_DELAY << (mCount - 1) : 0;
+        }
+
+        private long getRemaining() {
+            return (mDeadline - System.nanoTime()) / 1000000L;
+        }
+    }
 
     public static void Initialize(String key, String secret) {
         if (IsRunning) {
@@ -131,11 +219,91 @@ public final class TranslateHelper {
         }).start();
     }
 
+    public static String HttpRequest(String urlStr, String payload, String userAgent) {
+        return HttpRequest(urlStr, payload, userAgent, new Attempts(Attempts.Deadline()));
+    }
+
+    /**
+     * Returns the body of a successful response, null if the request failed. It's a POST if there
+     * is a payload. Network errors and server errors are tried again after a growing delay, while
+     * attempts are left. The body is always read to its end and the connection isn't closed, so
+     * the next request to the same server reuses it from the keep-alive pool instead of another
+     * TCP and TLS handshake.
+     */
+    public static String HttpRequest(String urlStr, String payload, String userAgent,
+                                     Attempts attempts) {
+        byte[] data = payload != null ? payload.getBytes(StandardCharsets.UTF_8) : null;
+        while (attempts.next()) {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(urlStr).openConnection();
+                connection.setConnectTimeout(attempts.getTimeout(CONNECT_TIMEOUT));
+                connection.setReadTimeout(attempts.getTimeout(READ_TIMEOUT));
+                connection.setUseCaches(false);
+                if (userAgent != null) {
+                    connection.setRequestProperty("User-Agent", userAgent);
+                }
+                if (data != null) {
+                    connection.setRequestMethod("POST");
+                    connection.setRequestProperty("Content-Type", FORM_CONTENT);
+                    connection.setDoOutput(true);
+                    connection.setFixedLengthStreamingMode(data.length);
+                    try (OutputStream output = connection.getOutputStream()) {
+                        output.write(data);
+                    }
+                }
+
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_OK) {
+                    return ReadBody(connection.getInputStream());
+                }
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    ReadBody(error);
+                }
+                Log.v("citra", "HttpRequest status: " + status);
+                if (status < HttpURLConnection.HTTP_INTERNAL_ERROR && status != 429) {
+                    return null;
+                }
+            } catch (IOException e) {
+                // a broken connection must not go back to the pool
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                Log.v("citra", "HttpRequest: " + e);
+            }
+        }
+        return null;
+    }
+
+    // line breaks are dropped, the yeekit response is cut by its text before it's parsed
+    private static String ReadBody(InputStream input) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = input) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8)
+            .replace("\r", "")
+            .replace("\n", "");
+    }
+
+    private static String JoinText(ArrayList<String> lines) {
+        StringBuilder textSB = new StringBuilder();
+        for (String text : lines) {
+            textSB.append(text);
+            textSB.append(' ');
+        }
+        return textSB.toString();
+    }
+
     public static int RequestBaiduToken() {
         String key = TranslateHelper.BaiduOCRKey;
         String secret = TranslateHelper.BaiduOCRSecret;
-        String urlStr = "https://aip.baidubce.com/oauth/2.0/token?grant_type=client_credentials&client_id=%s&client_secret=%s";
-        String content = null;
+        String urlStr = BaiduServer + "/oauth/2.0/token?grant_type=client_credentials&client_id=%s&client_secret=%s";
 
         Log.v("citra", "RequestBaiduToken");
 
@@ -143,29 +311,7 @@ public final class TranslateHelper {
             return ERROR_BAIDUTOKEN_INVALID_CLIENT;
         }
 
-        try {
-            URL url = new URL(String.format(urlStr, key, secret));
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.connect();
-
-            int status = connection.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
-                    sb.append(System.lineSeparator());
-                }
-                reader.close();
-                content = sb.toString();
-            }
-
-            connection.disconnect();
-        } catch (Exception e) {
-            // TODO
-        }
-
+        String content = HttpRequest(String.format(urlStr, key, secret), null, null);
         if (content == null || content.isEmpty()) {
             return ERROR_BAIDUTOKEN_NET_ERROR;
         }
@@ -195,22 +341,22 @@ public final class TranslateHelper {
         return ERROR_BAIDUTOKEN_INVALID_CONTENT;
     }
 
-    public static int RequestBaiduOCR(Bitmap image) {
-        String urlStr = null;
-        String content = null;
+    public static int RequestBaiduOCR(Bitmap image, int language, Result result,
+                                      Attempts attempts) {
+        String urlStr;
         if (TranslateHelper.BaiduOCRHighPrecision) {
-            urlStr = "https://aip.baidubce.com/rest/2.0/ocr/v1/accurate_basic?access_token=%s";
+            urlStr = BaiduServer + "/rest/2.0/ocr/v1/accurate_basic?access_token=%s";
         } else {
-            urlStr = "https://aip.baidubce.com/rest/2.0/ocr/v1/general_basic?access_token=%s";
+            urlStr = BaiduServer + "/rest/2.0/ocr/v1/general_basic?access_token=%s";
         }
 
-        TranslateHelper.BaiduOCRLanguage = null;
-        if (TranslateHelper.Language == TranslateHelper.LANGUAGE_JPN) {
-            TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageJPN;
-        } else if (TranslateHelper.Language == TranslateHelper.LANGUAGE_ENG) {
-            TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageENG;
-        } else if (TranslateHelper.Language == TranslateHelper.LANGUAGE_KOR) {
-            TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageKOR;
+        result.ocrLanguage = null;
+        if (language == TranslateHelper.LANGUAGE_JPN) {
+            result.ocrLanguage = TranslateHelper.BaiduOCRLanguageJPN;
+        } else if (language == TranslateHelper.LANGUAGE_ENG) {
+            result.ocrLanguage = TranslateHelper.BaiduOCRLanguageENG;
+        } else if (language == TranslateHelper.LANGUAGE_KOR) {
+            result.ocrLanguage = TranslateHelper.BaiduOCRLanguageKOR;
         }
 
         Log.v("citra", "RequestBaiduOCR");
@@ -221,41 +367,17 @@ public final class TranslateHelper {
         image.compress(Bitmap.CompressFormat.JPEG, 90, pixels);
         String data = Base64.encodeToString(pixels.toByteArray(), Base64.NO_WRAP);
 
+        String content = null;
         try {
-            URL url = new URL(String.format(urlStr, TranslateHelper.BaiduOCRToken));
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.setUseCaches(false);
-
-            connection.connect();
-            DataOutputStream output = new DataOutputStream(connection.getOutputStream());
             data = URLEncoder.encode(data, "UTF-8");
             String payload;
-            if (TranslateHelper.BaiduOCRLanguage != null) {
-                payload = String.format("image=%s&language_type=%s", data, TranslateHelper.BaiduOCRLanguage);
+            if (result.ocrLanguage != null) {
+                payload = String.format("image=%s&language_type=%s", data, result.ocrLanguage);
             } else {
                 payload = "detect_language=true&image=" + data;
             }
-            output.write(payload.getBytes(StandardCharsets.UTF_8));
-            output.flush();
-            output.close();
-
-            int status = connection.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
-                }
-                reader.close();
-                content = sb.toString();
-            }
-
-            connection.disconnect();
+            content = HttpRequest(String.format(urlStr, TranslateHelper.BaiduOCRToken), payload, null,
+                                  attempts);
         } catch (Exception e) {
             // TODO
         }
@@ -270,21 +392,21 @@ public final class TranslateHelper {
                 Log.v("citra", json.toString());
                 JSONArray results = json.getJSONArray("words_result");
                 int totalLength = 0;
-                TranslateHelper.BaiduOCRResults = new ArrayList<>();
+                result.ocrResults = new ArrayList<>();
                 for (int i = 0; i < results.length(); ++i) {
                     String text = results.getJSONObject(i).getString("words");
                     totalLength += text.length();
-                    TranslateHelper.BaiduOCRResults.add(text);
+                    result.ocrResults.add(text);
                 }
 
                 if (json.has("language")) {
                     int lan = json.getInt("language");
                     if (lan == 0) {
-                        TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageENG;
+                        result.ocrLanguage = TranslateHelper.BaiduOCRLanguageENG;
                     } else if (lan == 1) {
-                        TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageJPN;
+                        result.ocrLanguage = TranslateHelper.BaiduOCRLanguageJPN;
                     } else if (lan == 2) {
-                        TranslateHelper.BaiduOCRLanguage = TranslateHelper.BaiduOCRLanguageKOR;
+                        result.ocrLanguage = TranslateHelper.BaiduOCRLanguageKOR;
                     } else if (lan == 3) {
                         // Chinese
                     }
@@ -317,62 +439,28 @@ public final class TranslateHelper {
         return ERROR_BAIDUOCR_INVALID_CONTENT;
     }
 
-    public static int RequestYoudao() {
+    public static int RequestYoudao(Result result, Attempts attempts) {
         String content = null;
-        String urlStr = "https://fanyi.youdao.com/translate?smartresult=dict&smartresult=rule";
-        String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)AppleWebKit/537.36 (KHTML, like Gecko) Chrome/78.0.3904.97 Safari/537.36";
+        String urlStr = YoudaoServer + "/translate?smartresult=dict&smartresult=rule";
         String payload = "i=%s&from=%s&to=zh-CHS&smartresult=dict&client=fanyideskweb&doctype=json&version=2.1&keyfrom=fanyi.web&action=FY_BY_REALTIME&typoResult=false";
 
-        StringBuilder textSB = new StringBuilder();
-        for (String text : TranslateHelper.BaiduOCRResults) {
-            textSB.append(text);
-            textSB.append(' ');
-        }
-        String text = textSB.toString();
+        String text = JoinText(result.ocrResults);
         String language = TranslateHelper.YoudaoLanguageAUTO;
-        if (TranslateHelper.BaiduOCRLanguage == null) {
+        if (result.ocrLanguage == null) {
             language = TranslateHelper.YoudaoLanguageAUTO;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
             language = TranslateHelper.YoudaoLanguageENG;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
             language = TranslateHelper.YoudaoLanguageJPN;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
             language = TranslateHelper.YoudaoLanguageKOR;
         }
 
         Log.v("citra", "RequestYoudao text: " + text);
 
         try {
-            URL url = new URL(urlStr);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setRequestProperty("User-Agent", userAgent);
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.setUseCaches(false);
-
-            connection.connect();
-            DataOutputStream output = new DataOutputStream(connection.getOutputStream());
             payload = String.format(payload, URLEncoder.encode(text, "UTF-8"), language);
-            output.write(payload.getBytes(StandardCharsets.UTF_8));
-            output.flush();
-            output.close();
-
-            int status = connection.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
-                }
-                reader.close();
-                content = sb.toString();
-            }
-
-            connection.disconnect();
-
+            content = HttpRequest(urlStr, payload, USER_AGENT, attempts);
         } catch (Exception e) {
             // TODO
         }
@@ -386,9 +474,9 @@ public final class TranslateHelper {
             if (json.has("translateResult")) {
                 JSONArray translateResults = json.getJSONArray("translateResult");
                 JSONArray results = translateResults.getJSONArray(0);
-                TranslateHelper.TranslateResults = new ArrayList<>();
+                result.translateResults = new ArrayList<>();
                 for (int i = 0; i < results.length(); ++i) {
-                    TranslateHelper.TranslateResults.add(results.getJSONObject(i).getString("tgt"));
+                    result.translateResults.add(results.getJSONObject(i).getString("tgt"));
                 }
                 return ERROR_SUCCESS;
             } else {
@@ -403,62 +491,28 @@ public final class TranslateHelper {
         return ERROR_YOUDAO_INVALID_CONTENT;
     }
 
-    public static int RequestYeekit() {
+    public static int RequestYeekit(Result result, Attempts attempts) {
         String content = null;
-        String urlStr = "https://www.yeekit.com/site/dotranslate";
-        String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)AppleWebKit/537.36 (KHTML, like Gecko) Chrome/78.0.3904.97 Safari/537.36";
+        String urlStr = YeekitServer + "/site/dotranslate";
         String payload = "content%%5B%%5D=%s&sourceLang=%s&targetLang=nzh";
 
-        StringBuilder textSB = new StringBuilder();
-        for (String text : TranslateHelper.BaiduOCRResults) {
-            textSB.append(text);
-            textSB.append(' ');
-        }
-        String text = textSB.toString();
+        String text = JoinText(result.ocrResults);
         String language = TranslateHelper.GoogleLanguageAUTO;
-        if (TranslateHelper.BaiduOCRLanguage == null) {
+        if (result.ocrLanguage == null) {
             language = TranslateHelper.YeekitLanguageAUTO;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
             language = TranslateHelper.YeekitLanguageENG;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
             language = TranslateHelper.YeekitLanguageJPN;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
             language = TranslateHelper.YeekitLanguageKOR;
         }
 
         Log.v("citra", "RequestYeekit text: " + text);
 
         try {
-            URL url = new URL(urlStr);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setRequestProperty("User-Agent", userAgent);
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.setUseCaches(false);
-
-            connection.connect();
-            DataOutputStream output = new DataOutputStream(connection.getOutputStream());
             payload = String.format(payload, URLEncoder.encode(text, "UTF-8"), language);
-            output.write(payload.getBytes(StandardCharsets.UTF_8));
-            output.flush();
-            output.close();
-
-            int status = connection.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
-                }
-                reader.close();
-                content = sb.toString();
-            }
-
-            connection.disconnect();
-
+            content = HttpRequest(urlStr, payload, USER_AGENT, attempts);
         } catch (Exception e) {
             // TODO
         }
@@ -471,9 +525,9 @@ public final class TranslateHelper {
             content = content.substring(2, content.length() - 2).replace("\\n", "").replace("\\\"", "\"");
             JSONObject json = new JSONObject(content);
             JSONArray results = json.getJSONArray("translation").getJSONObject(0).getJSONArray("translated").getJSONObject(0).getJSONArray("translation list").getJSONArray(0);
-            TranslateHelper.TranslateResults = new ArrayList<>();
+            result.translateResults = new ArrayList<>();
             for (int i = 0; i < results.length(); ++i) {
-                TranslateHelper.TranslateResults.add(results.getString(i));
+                result.translateResults.add(results.getString(i));
             }
             return ERROR_SUCCESS;
         } catch (Exception e) {
@@ -484,50 +538,26 @@ public final class TranslateHelper {
         return ERROR_YEEKIT_INVALID_CONTENT;
     }
 
-    public static int RequestGoogle() {
+    public static int RequestGoogle(Result result, Attempts attempts) {
         String content = null;
-        String urlStr = "https://translate.google.cn/translate_a/single?client=webapp&sl=%s&tl=zh-CN&hl=zh-CN&dt=at&dt=bd&dt=ex&dt=ld&dt=md&dt=qca&dt=rw&dt=rm&dt=sos&dt=ss&dt=t&otf=2&ssel=0&tsel=0&kc=1&tk=%s&q=%s";
-        String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)AppleWebKit/537.36 (KHTML, like Gecko) Chrome/78.0.3904.97 Safari/537.36";
+        String urlStr = GoogleServer + "/translate_a/single?client=webapp&sl=%s&tl=zh-CN&hl=zh-CN&dt=at&dt=bd&dt=ex&dt=ld&dt=md&dt=qca&dt=rw&dt=rm&dt=sos&dt=ss&dt=t&otf=2&ssel=0&tsel=0&kc=1&tk=%s&q=%s";
 
-        StringBuilder textSB = new StringBuilder();
-        for (String text : TranslateHelper.BaiduOCRResults) {
-            textSB.append(text);
-            textSB.append(' ');
-        }
-        String text = textSB.toString();
+        String text = JoinText(result.ocrResults);
         String language = TranslateHelper.GoogleLanguageAUTO;
-        if (TranslateHelper.BaiduOCRLanguage == null) {
+        if (result.ocrLanguage == null) {
             language = TranslateHelper.GoogleLanguageAUTO;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageENG)) {
             language = TranslateHelper.GoogleLanguageENG;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageJPN)) {
             language = TranslateHelper.GoogleLanguageJPN;
-        } else if (TranslateHelper.BaiduOCRLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
+        } else if (result.ocrLanguage.equals(TranslateHelper.BaiduOCRLanguageKOR)) {
             language = TranslateHelper.GoogleLanguageKOR;
         }
 
         Log.v("citra", "RequestGoogle text: " + text);
 
         try {
-            URL url = new URL(String.format(urlStr, language, GoogleTranslateToken(text),  URLEncoder.encode(text, "UTF-8")));
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestProperty("User-Agent", userAgent);
-            connection.connect();
-
-            int status = connection.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
-                }
-                reader.close();
-                content = sb.toString();
-            }
-
-            connection.disconnect();
-
+            content = HttpRequest(String.format(urlStr, language, GoogleTranslateToken(text), URLEncoder.encode(text, "UTF-8")), null, USER_AGENT, attempts);
         } catch (Exception e) {
             // TODO
         }
@@ -538,9 +568,9 @@ public final class TranslateHelper {
 
         try {
             JSONArray json = new JSONArray(content).getJSONArray(0);
-            TranslateHelper.TranslateResults = new ArrayList<>();
+            result.translateResults = new ArrayList<>();
             for (int i = 0; i < json.length() - 1; ++i) {
-                TranslateHelper.TranslateResults.add(json.getJSONArray(i).getString(0));
+                result.translateResults.add(json.getJSONArray(i).getString(0));
             }
             return ERROR_SUCCESS;
         } catch (Exception e) {
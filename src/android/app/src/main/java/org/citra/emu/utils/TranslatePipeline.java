@@ -0,0 +1,158 @@
+package org.citra.emu.utils;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recognizes and translates the captured boxes on two threads of its own, so the OCR of the next
+ * box runs while the one before is being translated. The results reach the listener on the main
+ * thread in the order the boxes were submitted, each in its own TranslateHelper.Result. The OCR of
+ * a box and its translation each get a deadline of their own when their first request starts, so
+ * a slow server fails the stage in the end, and a box queued behind another isn't failed early.
+ */
+public final class TranslatePipeline {
+    public static final int PROGRESS_OCR = 0;
+    public static final int PROGRESS_OCR_RETRY = 1;
+    public static final int PROGRESS_TRANSLATE = 2;
+
+    public interface Listener {
+        void onTranslateProgress(int progress);
+
+        void onTranslateResult(TranslateHelper.Result result);
+    }
+
+    private final Listener mListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mOCRExecutor =
+        Executors.newSingleThreadExecutor(r -> new Thread(r, "TranslateOCR"));
+    private final ExecutorService mTranslateExecutor =
+        Executors.newSingleThreadExecutor(r -> new Thread(r, "TranslateText"));
+    // boxes submitted and not recognized yet
+    private final AtomicInteger mRecognizing = new AtomicInteger();
+    private volatile boolean mReleased;
+
+    public TranslatePipeline(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Returns true while a box waits for its OCR, a box being translated doesn't hold up the next.
+     */
+    public boolean isRecognizing() {
+        return mRecognizing.get() > 0;
+    }
+
+    /**
+     * Queues a box, the service and language are the ones set at this point.
+     */
+    public void submit(Bitmap image, String gameId) {
+        final int service = TranslateHelper.Service;
+        final int language = TranslateHelper.Language;
+        mRecognizing.incrementAndGet();
+        try {
+            mOCRExecutor.execute(() -> {
+                TranslateHelper.Result result = new TranslateHelper.Result();
+                TranslateCache cache = TranslateCache.get(gameId);
+                TranslateCache.Entry entry;
+                try {
+                    entry = recognize(image, language, cache, result);
+                } finally {
+                    mRecognizing.decrementAndGet();
+                }
+                try {
+                    mTranslateExecutor.execute(() -> {
+                        translate(service, cache, entry, result);
+                        postResult(result);
+                    });
+                } catch (RejectedExecutionException e) {
+                    // released
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mRecognizing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops both threads, a request in flight ends within its timeouts and nothing more is
+     * delivered.
+     */
+    public void release() {
+        mReleased = true;
+        mOCRExecutor.shutdownNow();
+        mTranslateExecutor.shutdownNow();
+    }
+
+    // a box seen before needs no OCR, and no translation if the service is the same
+    private TranslateCache.Entry recognize(Bitmap image, int language, TranslateCache cache,
+                                           TranslateHelper.Result result) {
+        long[] hash = TranslateCache.computeHash(image);
+        TranslateCache.Entry entry = cache.find(hash, language);
+        if (entry != null) {
+            result.ocrLanguage = entry.ocrLanguage;
+            result.ocrResults = entry.ocrResults;
+            return entry;
+        }
+
+        // a busy answer is tried again with the attempts the network errors left
+        postProgress(PROGRESS_OCR);
+        TranslateHelper.Attempts attempts = new TranslateHelper.Attempts(TranslateHelper.Attempts.Deadline());
+        for (;;) {
+            result.error = TranslateHelper.RequestBaiduOCR(image, language, result, attempts);
+            if (result.error != TranslateHelper.ERROR_BAIDUOCR_TRY_AGAIN || !attempts.hasNext()) {
+                break;
+            }
+            postProgress(PROGRESS_OCR_RETRY);
+        }
+        if (result.error != TranslateHelper.ERROR_SUCCESS) {
+            return null;
+        }
+        return cache.put(hash, language, result.ocrLanguage, result.ocrResults);
+    }
+
+    // only this thread sets translations, so a box recognized twice in a row is translated once
+    private void translate(int service, TranslateCache cache, TranslateCache.Entry entry,
+                           TranslateHelper.Result result) {
+        if (result.error == TranslateHelper.ERROR_SUCCESS &&
+            service != TranslateHelper.NONE_TRANSLATE) {
+            if (entry.service == service) {
+                result.translateResults = entry.translateResults;
+            } else {
+                postProgress(PROGRESS_TRANSLATE);
+                TranslateHelper.Attempts attempts = new TranslateHelper.Attempts(TranslateHelper.Attempts.Deadline());
+                if (service == TranslateHelper.GOOGLE_TRANSLATE) {
+                    result.error = TranslateHelper.RequestGoogle(result, attempts);
+                } else if (service == TranslateHelper.YOUDAO_TRANSLATE) {
+                    result.error = TranslateHelper.RequestYoudao(result, attempts);
+                } else if (service == TranslateHelper.YEEKIT_TRANSLATE) {
+                    result.error = TranslateHelper.RequestYeekit(result, attempts);
+                }
+                if (result.error == TranslateHelper.ERROR_SUCCESS) {
+                    cache.setTranslation(entry, service, result.translateResults);
+                }
+            }
+        }
+    }
+
+    private void postProgress(int progress) {
+        mHandler.post(() -> {
+            if (!mReleased) {
+                mListener.onTranslateProgress(progress);
+            }
+        });
+    }
+
+    private void postResult(TranslateHelper.Result result) {
+        mHandler.post(() -> {
+            if (!mReleased) {
+                mListener.onTranslateResult(result);
+            }
+        });
+    }
+}
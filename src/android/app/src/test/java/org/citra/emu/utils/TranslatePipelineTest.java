@@ -0,0 +1,317 @@
+package org.citra.emu.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Runs the requests of TranslateHelper and TranslatePipeline against a local stand-in for the
+ * OCR and translation servers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TranslatePipelineTest {
+    private static final String OCR_PATH = "/rest/2.0/ocr/v1/general_basic";
+    private static final String YOUDAO_PATH = "/translate";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mUrl;
+    // lets the handlers that stall return once the test is done
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final List<TranslateHelper.Result> mResults = new ArrayList<>();
+    private TranslatePipeline mPipeline;
+
+    private String mBaiduServer;
+    private String mYoudaoServer;
+    private String mYeekitServer;
+    private String mGoogleServer;
+    private String mUserPath;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+
+        mBaiduServer = TranslateHelper.BaiduServer;
+        mYoudaoServer = TranslateHelper.YoudaoServer;
+        mYeekitServer = TranslateHelper.YeekitServer;
+        mGoogleServer = TranslateHelper.GoogleServer;
+        TranslateHelper.BaiduServer = mUrl;
+        TranslateHelper.YoudaoServer = mUrl;
+        TranslateHelper.YeekitServer = mUrl;
+        TranslateHelper.GoogleServer = mUrl;
+        TranslateHelper.BaiduOCRToken = "token";
+        TranslateHelper.BaiduOCRHighPrecision = false;
+        TranslateHelper.Service = TranslateHelper.YOUDAO_TRANSLATE;
+        TranslateHelper.Language = TranslateHelper.LANGUAGE_JPN;
+
+        // the cache files go to the user directory
+        mUserPath = setUserDirectory(mFolder.getRoot().getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mPipeline != null) {
+            mPipeline.release();
+        }
+        mRelease.countDown();
+        mServer.stop(0);
+
+        TranslateHelper.BaiduServer = mBaiduServer;
+        TranslateHelper.YoudaoServer = mYoudaoServer;
+        TranslateHelper.YeekitServer = mYeekitServer;
+        TranslateHelper.GoogleServer = mGoogleServer;
+        TranslateHelper.BaiduOCRToken = null;
+        TranslateHelper.Service = TranslateHelper.GOOGLE_TRANSLATE;
+        TranslateHelper.Language = TranslateHelper.LANGUAGE_AUTO;
+        TranslateHelper.StageTimeout = 20000;
+        setUserDirectory(mUserPath);
+    }
+
+    @Test
+    public void serverErrorIsTriedAgain() {
+        AtomicInteger requests = new AtomicInteger();
+        handle("/busy", (exchange, body) -> {
+            if (requests.incrementAndGet() == 1) {
+                respond(exchange, 503, "busy");
+            } else {
+                respond(exchange, 200, "{\"ok\":1}");
+            }
+        });
+        assertEquals("{\"ok\":1}", TranslateHelper.HttpRequest(mUrl + "/busy", null, null));
+        assertEquals(2, requests.get());
+
+        // a client error won't change by asking again
+        AtomicInteger missing = new AtomicInteger();
+        handle("/missing", (exchange, body) -> {
+            missing.incrementAndGet();
+            respond(exchange, 404, "missing");
+        });
+        assertNull(TranslateHelper.HttpRequest(mUrl + "/missing", "a=1", null));
+        assertEquals(1, missing.get());
+    }
+
+    @Test
+    public void stalledServerFailsAtDeadline() {
+        TranslateHelper.StageTimeout = 1000;
+        AtomicInteger requests = new AtomicInteger();
+        handle("/stall", (exchange, body) -> {
+            requests.incrementAndGet();
+            await(mRelease);
+            respond(exchange, 200, "late");
+        });
+
+        long start = System.nanoTime();
+        TranslateHelper.Attempts attempts =
+            new TranslateHelper.Attempts(TranslateHelper.Attempts.Deadline());
+        assertNull(TranslateHelper.HttpRequest(mUrl + "/stall", null, null, attempts));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsed + " ms", elapsed < 2000);
+        // the read timeout used up the time, there was none left to try again
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void busyOCRSharesAttemptsWithServerErrors() {
+        AtomicInteger requests = new AtomicInteger();
+        handle(OCR_PATH, (exchange, body) -> {
+            if (requests.incrementAndGet() == 1) {
+                respond(exchange, 500, "error");
+            } else {
+                respond(exchange, 200, "{\"error_code\":18,\"error_msg\":\"qps limit\"}");
+            }
+        });
+
+        mPipeline = new TranslatePipeline(mListener);
+        mPipeline.submit(createBox(), "0004000000000000");
+        List<TranslateHelper.Result> results = awaitResults(1);
+        assertEquals(1, results.size());
+        assertEquals(TranslateHelper.ERROR_BAIDUOCR_TRY_AGAIN, results.get(0).error);
+        assertEquals(TranslateHelper.MAX_ATTEMPTS, requests.get());
+    }
+
+    @Test
+    public void slowOCRLeavesTheTranslationItsTime() {
+        TranslateHelper.StageTimeout = 1000;
+        handle(OCR_PATH, (exchange, body) -> {
+            sleep(700);
+            respond(exchange, 200, "{\"words_result\":[{\"words\":\"box\"}]}");
+        });
+        handle(YOUDAO_PATH, (exchange, body) -> {
+            sleep(700);
+            respond(exchange, 200, "{\"translateResult\":[[{\"tgt\":\"box done\"}]]}");
+        });
+
+        mPipeline = new TranslatePipeline(mListener);
+        // a title of its own, the cache of the others is kept in memory
+        mPipeline.submit(createBox(), "0004000000001000");
+        List<TranslateHelper.Result> results = awaitResults(1);
+        assertEquals(1, results.size());
+        assertEquals(TranslateHelper.ERROR_SUCCESS, results.get(0).error);
+        assertEquals(Collections.singletonList("box done"), results.get(0).translateResults);
+    }
+
+    @Test
+    public void resultsArriveInSubmitOrder() {
+        // the boxes are told apart by the order their OCR requests arrive in
+        AtomicInteger boxes = new AtomicInteger();
+        handle(OCR_PATH, (exchange, body) -> {
+            int box = boxes.getAndIncrement();
+            respond(exchange, 200, "{\"words_result\":[{\"words\":\"box " + box + "\"}]}");
+        });
+        // the first box takes longest to translate, the others finish before it
+        handle(YOUDAO_PATH, (exchange, body) -> {
+            String text = getParameter(body, "i").trim();
+            if (text.equals("box 0")) {
+                sleep(500);
+            }
+            respond(exchange, 200, "{\"translateResult\":[[{\"tgt\":\"" + text + " done\"}]]}");
+        });
+
+        mPipeline = new TranslatePipeline(mListener);
+        final int count = 3;
+        for (int i = 0; i < count; ++i) {
+            // one title each, so no box finds another in the cache
+            mPipeline.submit(createBox(), "000400000000000" + i);
+        }
+        List<TranslateHelper.Result> results = awaitResults(count);
+        assertEquals(count, results.size());
+        for (int i = 0; i < count; ++i) {
+            TranslateHelper.Result result = results.get(i);
+            assertEquals(TranslateHelper.ERROR_SUCCESS, result.error);
+            assertEquals(Collections.singletonList("box " + i), result.ocrResults);
+            assertEquals(Collections.singletonList("box " + i + " done"),
+                         result.translateResults);
+        }
+    }
+
+    private final TranslatePipeline.Listener mListener = new TranslatePipeline.Listener() {
+        @Override
+        public void onTranslateProgress(int progress) {
+        }
+
+        @Override
+        public void onTranslateResult(TranslateHelper.Result result) {
+            mResults.add(result);
+        }
+    };
+
+    // the results are delivered on the main looper, which runs on the test thread
+    private List<TranslateHelper.Result> awaitResults(int count) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (mResults.size() < count && System.nanoTime() < end) {
+            sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        return mResults;
+    }
+
+    private static Bitmap createBox() {
+        return Bitmap.createBitmap(64, 32, Bitmap.Config.ARGB_8888);
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, String body) throws IOException;
+    }
+
+    private void handle(String path, Handler handler) {
+        mServer.createContext(path, exchange -> {
+            try {
+                handler.handle(exchange, readBody(exchange));
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body)
+        throws IOException {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(data);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = exchange.getRequestBody()) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String getParameter(String form, String name) throws IOException {
+        for (String pair : form.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    private static String setUserDirectory(String path) throws Exception {
+        Field field = DirectoryInitialization.class.getDeclaredField("mUserPath");
+        field.setAccessible(true);
+        String previous = (String)field.get(null);
+        field.set(null, path);
+        return previous;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+#include "auto_tuner.h"
+
+#include <algorithm>
+#include <fmt/format.h>
+
+#include "config/config.h"
+#include "config/main_settings.h"
+
+// frames of the boot before measuring, shaders of the first screens are compiled here too
+static constexpr u32 WARMUP_FRAMES = 120;
+static constexpr u32 MEASURE_FRAMES = 600;
+// the frame time of full speed, with some slack
+static constexpr float FRAME_BUDGET_MS = 1000.0f / 60.0f * 1.05f;
+// a frame this long is a hitch, mostly a shader compiled on the spot
+static constexpr float STALL_MS = 50.0f;
+// a candidate has to beat the current values by this much, the tie goes to the more accurate
+static constexpr float MIN_GAIN = 0.05f;
+static constexpr u16 MAX_RESOLUTION_FACTOR = 4;
+
+AutoTuner::Profile AutoTuner::Profile::FromConfig() {
+    Profile profile;
+    profile.shader_type = Config::Get(Config::SHADER_TYPE);
+    profile.use_present_thread = Config::Get(Config::USE_PRESENT_THREAD);
+    profile.use_hw_shader = Config::Get(Config::USE_HW_SHADER);
+    profile.accurate_mul = Config::Get(Config::SHADERS_ACCURATE_MUL);
+    profile.resolution_factor =
+        std::clamp<u16>(Config::Get(Config::RESOLUTION_FACTOR), 1, MAX_RESOLUTION_FACTOR);
+    return profile;
+}
+
+void AutoTuner::Profile::Apply() const {
+    Settings::values.use_separable_shader = shader_type == 2;
+    Settings::values.use_shader_cache = shader_type == 1;
+    Settings::values.use_present_thread = use_present_thread;
+    Settings::values.stream_buffer_hack = !use_present_thread;
+    Settings::values.use_hw_shader = use_hw_shader;
+    Settings::values.shaders_accurate_mul = accurate_mul;
+    Settings::values.resolution_factor = resolution_factor;
+}
+
+// the overrides of a title only keep the values that differ from the base config
+template <typename T>
+static void SaveValue(const Config::ConfigInfo<T>& info, const T& value) {
+    if (!Config::HasGame()) {
+        Config::GetLayer().Set(info, value);
+        return;
+    }
+    Config::Layer& game = Config::GetGameLayer();
+    if (Config::GetLayer().Get(info) != value) {
+        game.Set(info, value);
+    } else if (game.Exists(info.location)) {
+        game.DeleteKey(info.location);
+    }
+}
+
+void AutoTuner::Profile::Save() const {
+    SaveValue(Config::SHADER_TYPE, shader_type);
+    SaveValue(Config::USE_PRESENT_THREAD, use_present_thread);
+    SaveValue(Config::USE_HW_SHADER, use_hw_shader);
+    SaveValue(Config::SHADERS_ACCURATE_MUL, accurate_mul);
+    SaveValue(Config::RESOLUTION_FACTOR, resolution_factor);
+    Config::Save();
+}
+
+std::string AutoTuner::Profile::ToString() const {
+    return fmt::format("shader type {}, present thread {}, hw shader {}, accurate mul {}, "
+                       "resolution {}x",
+                       shader_type, use_present_thread ? "on" : "off",
+                       use_hw_shader ? "on" : "off", static_cast<u32>(accurate_mul),
+                       resolution_factor);
+}
+
+AutoTuner& AutoTuner::GetInstance() {
+    static AutoTuner instance;
+    return instance;
+}
+
+void AutoTuner::Start(const Profile& current) {
+    m_active = true;
+    m_done = false;
+    m_cancelled = false;
+    m_measured = 0;
+    m_best = current;
+    m_best_result = {};
+    // the current settings first, every candidate is compared against them
+    m_dim = DIM_BASELINE;
+    m_queue = {current};
+    m_queue_pos = 0;
+}
+
+void AutoTuner::Stop() {
+    m_active = false;
+    m_queue.clear();
+    m_frame_times.clear();
+    m_frame_times.shrink_to_fit();
+}
+
+bool AutoTuner::NextProfile(Profile* profile) {
+    if (!m_active || m_cancelled)
+        return false;
+
+    while (m_queue_pos >= m_queue.size()) {
+        if (++m_dim == DIM_COUNT) {
+            m_done = true;
+            return false;
+        }
+        QueueCandidates(m_dim);
+    }
+
+    m_current = m_queue[m_queue_pos++];
+    m_frames = 0;
+    m_frame_times.clear();
+    m_frame_times.reserve(MEASURE_FRAMES);
+    *profile = m_current;
+    return true;
+}
+
+void AutoTuner::QueueCandidates(u32 dim) {
+    m_queue.clear();
+    m_queue_pos = 0;
+    Profile candidate = m_best;
+    switch (dim) {
+    case DIM_HW_SHADER:
+        candidate.use_hw_shader = !m_best.use_hw_shader;
+        m_queue.push_back(candidate);
+        break;
+    case DIM_SHADER_TYPE:
+        for (u8 type = 0; type < 3; ++type) {
+            if (type != m_best.shader_type) {
+                candidate.shader_type = type;
+                m_queue.push_back(candidate);
+            }
+        }
+        break;
+    case DIM_PRESENT_THREAD:
+        candidate.use_present_thread = !m_best.use_present_thread;
+        m_queue.push_back(candidate);
+        break;
+    case DIM_ACCURATE_MUL:
+        // only the generated vertex shaders sanitize their multiplications
+        if (!m_best.use_hw_shader)
+            break;
+        for (u32 mul = 0; mul < 3; ++mul) {
+            if (mul != static_cast<u32>(m_best.accurate_mul)) {
+                candidate.accurate_mul = static_cast<Settings::AccurateMul>(mul);
+                m_queue.push_back(candidate);
+            }
+        }
+        break;
+    case DIM_RESOLUTION:
+        // the highest factor that still runs at full speed, assuming a higher one is never faster
+        if (m_best_result.p90 <= FRAME_BUDGET_MS) {
+            for (u16 factor = m_best.resolution_factor + 1; factor <= MAX_RESOLUTION_FACTOR;
+                 ++factor) {
+                candidate.resolution_factor = factor;
+                m_queue.push_back(candidate);
+            }
+        } else {
+            for (u16 factor = m_best.resolution_factor - 1; factor >= 1; --factor) {
+                candidate.resolution_factor = factor;
+                m_queue.push_back(candidate);
+            }
+        }
+        break;
+    }
+}
+
+bool AutoTuner::OnFrame() {
+    const auto now = std::chrono::steady_clock::now();
+    if (m_frames > WARMUP_FRAMES) {
+        m_frame_times.push_back(
+            std::chrono::duration<float, std::milli>(now - m_last_frame).count());
+    }
+    m_last_frame = now;
+    return ++m_frames > WARMUP_FRAMES + MEASURE_FRAMES || m_cancelled;
+}
+
+void AutoTuner::EndProfile() {
+    // stopped by the user or the title, the remaining candidates can't be compared
+    if (m_cancelled || m_frame_times.size() < MEASURE_FRAMES) {
+        m_cancelled = true;
+        return;
+    }
+
+    const Result result = Measure();
+    m_measured++;
+    if (m_dim == DIM_BASELINE) {
+        m_best_result = result;
+    } else if (m_dim != DIM_RESOLUTION) {
+        if (result.score < m_best_result.score * (1.0f - MIN_GAIN)) {
+            m_best = m_current;
+            m_best_result = result;
+        }
+    } else if (m_current.resolution_factor > m_best.resolution_factor) {
+        if (result.p90 <= FRAME_BUDGET_MS) {
+            m_best = m_current;
+            m_best_result = result;
+        } else {
+            m_queue_pos = m_queue.size();
+        }
+    } else {
+        m_best = m_current;
+        m_best_result = result;
+        if (result.p90 <= FRAME_BUDGET_MS)
+            m_queue_pos = m_queue.size();
+    }
+}
+
+AutoTuner::Result AutoTuner::Measure() {
+    Result result;
+    float stall_time = 0;
+    for (float time : m_frame_times) {
+        if (time >= STALL_MS) {
+            result.stalls++;
+            stall_time += time;
+        }
+    }
+
+    std::vector<float>& times = m_frame_times;
+    const auto percentile = [&times](u32 percent) {
+        auto nth = times.begin() + (times.size() - 1) * percent / 100;
+        std::nth_element(times.begin(), nth, times.end());
+        return *nth;
+    };
+    result.p50 = percentile(50);
+    result.p90 = percentile(90);
+    result.p99 = percentile(99);
+    result.score = result.p90 + stall_time / times.size();
+    return result;
+}
+
+std::string AutoTuner::GetSummary() const {
+    return fmt::format("{}\n\n{} profiles measured, frame time p50 {:.1f} ms, p90 {:.1f} ms, "
+                       "p99 {:.1f} ms, {} stalls",
+                       m_best.ToString(), m_measured, m_best_result.p50, m_best_result.p90,
+                       m_best_result.p99, m_best_result.stalls);
+}
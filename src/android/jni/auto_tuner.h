@@ -0,0 +1,103 @@
+#pragma once
+
+#include <atomic>
+#include <chrono>
+#include <string>
+#include <vector>
+
+#include "common/common_types.h"
+#include "core/settings.h"
+
+/**
+ * Finds the device dependent renderer settings that run a title best. Every candidate profile
+ * boots the title again and runs its boot sequence without input, the same frames each time,
+ * while the host time of every emulated frame is measured. The settings are searched one at a
+ * time, keeping the best values found so far, instead of trying every combination.
+ */
+class AutoTuner {
+public:
+    struct Profile {
+        u8 shader_type;
+        bool use_present_thread;
+        bool use_hw_shader;
+        Settings::AccurateMul accurate_mul;
+        u16 resolution_factor;
+
+        static Profile FromConfig();
+        // only read when the title boots
+        void Apply() const;
+        // to the overrides of the title, the base config without one
+        void Save() const;
+        std::string ToString() const;
+    };
+
+    static AutoTuner& GetInstance();
+
+    void Start(const Profile& current);
+    void Stop();
+    // any thread, ends the search without saving
+    void Cancel() {
+        m_cancelled = true;
+    }
+    bool IsActive() const {
+        return m_active;
+    }
+
+    // the next profile to boot with, false once the search is done or was cancelled
+    bool NextProfile(Profile* profile);
+    // emulation thread, once per emulated frame, true once enough frames were measured or the
+    // search was cancelled
+    bool OnFrame();
+    // after the title of the current profile shut down
+    void EndProfile();
+
+    // whether every candidate was measured, false if a run was cut short
+    bool IsDone() const {
+        return m_done;
+    }
+    const Profile& GetBest() const {
+        return m_best;
+    }
+    std::string GetSummary() const;
+
+private:
+    enum Dimension : u32 {
+        DIM_BASELINE,
+        DIM_HW_SHADER,
+        DIM_SHADER_TYPE,
+        DIM_PRESENT_THREAD,
+        DIM_ACCURATE_MUL,
+        DIM_RESOLUTION,
+        DIM_COUNT,
+    };
+
+    struct Result {
+        float p50 = 0;
+        float p90 = 0;
+        float p99 = 0;
+        u32 stalls = 0;
+        // p90 plus the stall time spread over all frames, lower is better
+        float score = 0;
+    };
+
+    AutoTuner() = default;
+
+    void QueueCandidates(u32 dim);
+    Result Measure();
+
+    bool m_active = false;
+    bool m_done = false;
+    std::atomic<bool> m_cancelled{false};
+    u32 m_dim = DIM_BASELINE;
+    std::vector<Profile> m_queue;
+    u32 m_queue_pos = 0;
+    u32 m_measured = 0;
+
+    Profile m_current{};
+    Profile m_best{};
+    Result m_best_result;
+
+    u32 m_frames = 0;
+    std::chrono::steady_clock::time_point m_last_frame;
+    std::vector<float> m_frame_times;
+};
@@ -0,0 +1,99 @@
+#include "cheat_database.h"
+
+#include <algorithm>
+#include <vector>
+
+#include <zlib.h>
+
+#include "common/file_util.h"
+#include "common/logging/log.h"
+
+// layout written by the packCheats gradle task
+static const u32 PACK_MAGIC = 0x42444843; // "CHDB"
+static const u32 PACK_VERSION = 1;
+
+struct PackHeader {
+    u32 magic;
+    u32 version;
+    u32 count;
+    u32 checksum;
+};
+static_assert(sizeof(PackHeader) == 16, "PackHeader has the wrong size");
+
+struct PackEntry {
+    u64 program_id;
+    u32 offset;
+    u32 packed_size;
+    u32 size;
+    u32 reserved;
+};
+static_assert(sizeof(PackEntry) == 24, "PackEntry has the wrong size");
+
+// the text of a title is at most this large, so a bad entry can't make us allocate more
+static const u32 MAX_TEXT_SIZE = 16 * 1024 * 1024;
+
+// crc32 of the rest of the file, which the header carries
+static bool VerifyChecksum(FileUtil::IOFile& file, u64 remaining, u32 checksum) {
+    std::vector<u8> buffer(64 * 1024);
+    uLong crc = crc32(0, Z_NULL, 0);
+    while (remaining > 0) {
+        const std::size_t length =
+            static_cast<std::size_t>(std::min<u64>(remaining, buffer.size()));
+        if (file.ReadBytes(buffer.data(), length) != length) {
+            return false;
+        }
+        crc = crc32(crc, buffer.data(), static_cast<uInt>(length));
+        remaining -= length;
+    }
+    return crc == checksum;
+}
+
+std::string readCheatDatabase(u64 program_id) {
+    const std::string path =
+        FileUtil::GetUserPath(FileUtil::UserPath::CheatsDir) + "cheats.pack";
+    FileUtil::IOFile file(path, "rb");
+    PackHeader header{};
+    if (!file.IsOpen() || file.ReadBytes(&header, sizeof(header)) != sizeof(header) ||
+        header.magic != PACK_MAGIC || header.version != PACK_VERSION) {
+        return {};
+    }
+
+    // the entries and the data they point to have to be inside the file
+    const u64 file_size = file.GetSize();
+    const u64 data_offset = sizeof(PackHeader) + u64{header.count} * sizeof(PackEntry);
+    if (data_offset > file_size ||
+        !VerifyChecksum(file, file_size - sizeof(PackHeader), header.checksum) ||
+        !file.Seek(sizeof(PackHeader), SEEK_SET)) {
+        LOG_ERROR(Frontend, "Bad cheat database {}", path);
+        return {};
+    }
+
+    std::vector<PackEntry> entries(header.count);
+    if (file.ReadArray(entries.data(), entries.size()) != entries.size()) {
+        return {};
+    }
+    const auto entry = std::lower_bound(
+        entries.begin(), entries.end(), program_id,
+        [](const PackEntry& entry, u64 id) { return entry.program_id < id; });
+    if (entry == entries.end() || entry->program_id != program_id) {
+        return {};
+    }
+    if (entry->offset < data_offset || entry->offset + u64{entry->packed_size} > file_size ||
+        entry->size > MAX_TEXT_SIZE) {
+        LOG_ERROR(Frontend, "Bad cheat database entry for {:016X}", program_id);
+        return {};
+    }
+
+    std::vector<u8> packed(entry->packed_size);
+    std::string text(entry->size, '\0');
+    uLongf size = entry->size;
+    if (!file.Seek(entry->offset, SEEK_SET) ||
+        file.ReadBytes(packed.data(), packed.size()) != packed.size() ||
+        uncompress(reinterpret_cast<Bytef*>(text.data()), &size, packed.data(), packed.size()) !=
+            Z_OK ||
+        size != entry->size) {
+        LOG_ERROR(Frontend, "Bad cheat database entry for {:016X}", program_id);
+        return {};
+    }
+    return text;
+}
@@ -0,0 +1,9 @@
+#pragma once
+
+#include <string>
+
+#include "common/common_types.h"
+
+// reads the cheats of a title from the cheats.pack database bundled with the app, which java
+// installs in the cheats directory, returns an empty string if the title has none
+std::string readCheatDatabase(u64 program_id);
@@ -5,6 +5,7 @@
 #include <algorithm>
 #include <list>
 #include <map>
+#include <memory>
 
 #include "config/config.h"
 #include "config/config_loader.h"
@@ -12,11 +13,34 @@
 
 namespace Config {
 static Layer s_layer(ConfigLoaders::GenerateConfigLoader());
+static Layer s_empty_game_layer(nullptr);
+static std::map<u64, std::unique_ptr<Layer>> s_game_layers;
+static Layer* s_game_layer = &s_empty_game_layer;
 
 Layer& GetLayer() {
     return s_layer;
 }
 
+Layer& GetGameLayer() {
+    return *s_game_layer;
+}
+
+void SetGame(u64 program_id) {
+    if (program_id == 0) {
+        s_game_layer = &s_empty_game_layer;
+        return;
+    }
+
+    auto& layer = s_game_layers[program_id];
+    if (!layer)
+        layer = std::make_unique<Layer>(ConfigLoaders::GenerateGameConfigLoader(program_id));
+    s_game_layer = layer.get();
+}
+
+bool HasGame() {
+    return s_game_layer != &s_empty_game_layer;
+}
+
 void SaveDefault() {
     // core
     s_layer.Set(USE_CPU_JIT, USE_CPU_JIT.default_value);
@@ -10,36 +10,55 @@
 #include <optional>
 #include <string>
 
+#include "common/common_types.h"
 #include "config/config_info.h"
 #include "config/layer.h"
 
 namespace Config {
 
 Layer& GetLayer();
+// settings the current title overrides, empty without a title
+Layer& GetGameLayer();
+
+// Selects the title whose overrides are merged over the base layer, 0 for none. The layers of
+// titles run before are kept and only read again once their file changes.
+void SetGame(u64 program_id);
+bool HasGame();
 
 // Explicit load and save of layers
 inline void Load() {
     GetLayer().Load();
+    GetGameLayer().Load();
 }
 
 inline void Save() {
     GetLayer().Save();
+    GetGameLayer().Save();
 }
 
 inline void Clear() {
     GetLayer().Clear();
+    GetGameLayer().Clear();
 }
 
 void SaveDefault();
 
 template <typename T>
 inline T Get(const ConfigInfo<T>& info) {
+    Layer& game = GetGameLayer();
+    if (game.Exists(info.location))
+        return game.Get(info);
     return GetLayer().Get(info);
 }
 
+// a setting the title overrides is changed in its layer, so the base keeps its value
 template <typename T>
 inline void Set(const ConfigInfo<T>& info, const std::common_type_t<T>& value) {
-    GetLayer().Set(info, value);
+    Layer& game = GetGameLayer();
+    if (game.Exists(info.location))
+        game.Set(info, value);
+    else
+        GetLayer().Set(info, value);
 }
 
 } // namespace Config
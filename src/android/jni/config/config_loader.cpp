@@ -10,8 +10,12 @@
 #include <memory>
 #include <string>
 #include <type_traits>
+#include <utility>
 #include <variant>
 
+#include <sys/stat.h>
+#include <fmt/format.h>
+
 #include "common/common_types.h"
 #include "common/file_util.h"
 #include "config/config.h"
@@ -20,14 +24,29 @@
 namespace ConfigLoaders {
 
 static const char* CONFIG_FILE = "config-mmj.ini";
+static const char* GAME_CONFIG_DIR = "game/";
+
+// modification time and size of a file, to tell whether it changed since it was read
+using FileStamp = std::pair<s64, s64>;
+
+static FileStamp GetFileStamp(const std::string& path) {
+    struct stat st;
+    if (stat(path.c_str(), &st) != 0)
+        return {-1, -1};
+    return {static_cast<s64>(st.st_mtim.tv_sec) * 1000000000 + st.st_mtim.tv_nsec,
+            static_cast<s64>(st.st_size)};
+}
 
 // INI layer configuration loader
-class BaseConfigLayerLoader final : public Config::ConfigLayerLoader {
+class IniConfigLayerLoader : public Config::ConfigLayerLoader {
 public:
-    BaseConfigLayerLoader() : ConfigLayerLoader() {}
+    IniConfigLayerLoader() : ConfigLayerLoader() {}
+
     void Load(Config::Layer* layer) override {
+        const std::string ini_path = GetPath();
+        m_stamp = GetFileStamp(ini_path);
         IniFile ini;
-        if (!ini.Load(FileUtil::GetUserPath(FileUtil::UserPath::ConfigDir) + CONFIG_FILE))
+        if (!ini.Load(ini_path))
             return;
 
         const std::list<IniFile::Section>& system_sections = ini.GetSections();
@@ -40,9 +59,21 @@ public:
         }
     }
 
+    bool IsUpToDate() const override {
+        return m_stamp.first != -1 && GetFileStamp(GetPath()) == m_stamp;
+    }
+
+protected:
+    virtual std::string GetPath() const = 0;
+
+    FileStamp m_stamp{-1, -1};
+};
+
+class BaseConfigLayerLoader final : public IniConfigLayerLoader {
+public:
     void Save(Config::Layer* layer) override {
         IniFile ini;
-        std::string ini_path = FileUtil::GetUserPath(FileUtil::UserPath::ConfigDir) + CONFIG_FILE;
+        std::string ini_path = GetPath();
         ini.Load(ini_path);
         for (const auto& config : layer->GetLayerMap()) {
             const Config::ConfigLocation& location = config.first;
@@ -55,7 +86,49 @@ public:
             }
         }
         ini.Save(ini_path);
+        m_stamp = GetFileStamp(ini_path);
+    }
+
+protected:
+    std::string GetPath() const override {
+        return FileUtil::GetUserPath(FileUtil::UserPath::ConfigDir) + CONFIG_FILE;
+    }
+};
+
+class GameConfigLayerLoader final : public IniConfigLayerLoader {
+public:
+    explicit GameConfigLayerLoader(u64 program_id) : m_program_id(program_id) {}
+
+    // only the overridden keys are written, the file goes away with the last one
+    void Save(Config::Layer* layer) override {
+        IniFile ini;
+        bool empty = true;
+        for (const auto& config : layer->GetLayerMap()) {
+            if (config.second) {
+                ini.GetOrCreateSection(config.first.section)->Set(config.first.key, *config.second);
+                empty = false;
+            }
+        }
+
+        const std::string ini_path = GetPath();
+        if (empty) {
+            FileUtil::Delete(ini_path);
+        } else {
+            FileUtil::CreateFullPath(ini_path);
+            ini.Save(ini_path);
+        }
+        m_stamp = GetFileStamp(ini_path);
+    }
+
+protected:
+    std::string GetPath() const override {
+        return fmt::format("{}{}{:016X}.ini",
+                           FileUtil::GetUserPath(FileUtil::UserPath::ConfigDir), GAME_CONFIG_DIR,
+                           m_program_id);
     }
+
+private:
+    u64 m_program_id;
 };
 
 // Loader generation
@@ -63,4 +136,8 @@ std::unique_ptr<Config::ConfigLayerLoader> GenerateConfigLoader() {
     return std::make_unique<BaseConfigLayerLoader>();
 }
 
+std::unique_ptr<Config::ConfigLayerLoader> GenerateGameConfigLoader(u64 program_id) {
+    return std::make_unique<GameConfigLayerLoader>(program_id);
+}
+
 } // namespace ConfigLoaders
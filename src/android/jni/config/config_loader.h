@@ -6,10 +6,14 @@
 
 #include <memory>
 
+#include "common/common_types.h"
+
 namespace Config {
 class ConfigLayerLoader;
 } // namespace Config
 
 namespace ConfigLoaders {
 std::unique_ptr<Config::ConfigLayerLoader> GenerateConfigLoader();
+// sparse layer of the settings one title overrides, config/game/<program id>.ini
+std::unique_ptr<Config::ConfigLayerLoader> GenerateGameConfigLoader(u64 program_id);
 } // namespace ConfigLoaders
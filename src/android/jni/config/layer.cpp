@@ -49,8 +49,11 @@ ConstSection Layer::GetSection(const std::string& section) const {
 }
 
 void Layer::Load() {
-    if (m_loader)
+    // a layer without unsaved changes keeps its values while its source is unchanged
+    if (m_loader && (m_is_dirty || m_map.empty() || !m_loader->IsUpToDate())) {
+        m_map.clear();
         m_loader->Load(this);
+    }
     m_is_dirty = false;
 }
 
@@ -50,6 +50,10 @@ public:
     virtual ~ConfigLayerLoader();
     virtual void Load(Layer* config_layer) = 0;
     virtual void Save(Layer* config_layer) = 0;
+    // whether the source didn't change since the last Load or Save
+    virtual bool IsUpToDate() const {
+        return false;
+    }
 };
 
 class Section {
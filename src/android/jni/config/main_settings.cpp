@@ -78,6 +78,8 @@ const ConfigInfo<std::string> C_STICK_UP{{"Controls", "c_stick_up"}, "code:14,di
 const ConfigInfo<std::string> C_STICK_DOWN{{"Controls", "c_stick_down"}, "code:14,dir:+"};
 const ConfigInfo<std::string> C_STICK_LEFT{{"Controls", "c_stick_left"}, "code:11,dir:-"};
 const ConfigInfo<std::string> C_STICK_RIGHT{{"Controls", "c_stick_right"}, "code:11,dir:+"};
+const ConfigInfo<u16> MOTION_SAMPLING_RATE{{"Controls", "motion_sampling_rate"}, 100};
+const ConfigInfo<u16> MOTION_BATCH_LATENCY{{"Controls", "motion_batch_latency"}, 16};
 
 // custom layout
 const ConfigInfo<bool> USE_CUSTOM_LAYOUT{{"Layout", "custom_layout"}, false};
@@ -85,6 +85,8 @@ extern const ConfigInfo<std::string> C_STICK_UP;
 extern const ConfigInfo<std::string> C_STICK_DOWN;
 extern const ConfigInfo<std::string> C_STICK_LEFT;
 extern const ConfigInfo<std::string> C_STICK_RIGHT;
+extern const ConfigInfo<u16> MOTION_SAMPLING_RATE;
+extern const ConfigInfo<u16> MOTION_BATCH_LATENCY;
 
 // custom layout
 extern const ConfigInfo<bool> USE_CUSTOM_LAYOUT;
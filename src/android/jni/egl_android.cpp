@@ -6,6 +6,8 @@
 #include "video_core/renderer_base.h"
 #include "video_core/video_core.h"
 
+#include "jni_common.h"
+
 static constexpr std::array<EGLint, 15> egl_attribs{EGL_SURFACE_TYPE,
                                                     EGL_WINDOW_BIT,
                                                     EGL_RENDERABLE_TYPE,
@@ -101,6 +103,10 @@ void EGLAndroid::UpdateSurface(ANativeWindow* surface) {
 
 void EGLAndroid::UpdateLayout() {
     UpdateCurrentFramebufferLayout(window_width, window_height);
+    // the java side maps touches itself, hand it the new bottom screen once per layout change
+    const auto& bottom_screen = GetFramebufferLayout().bottom_screen;
+    UpdateTouchLayout(bottom_screen.left, bottom_screen.top, bottom_screen.right,
+                      bottom_screen.bottom);
 }
 
 void EGLAndroid::CreateWindowSurface() {
@@ -1,5 +1,6 @@
 #include "input_manager.h"
 
+#include <algorithm>
 #include <tuple>
 
 #include <android/log.h>
@@ -88,6 +89,8 @@ void InputManager::InitProfile() {
     };
 
     mButtonKeys.clear();
+    mUserKeys.clear();
+    mMacroButtons = 0;
     for (int i = 0; i < buttonConfigs.size(); ++i) {
         const std::string& config = buttonConfigs[i];
         Common::ParamPackage param(config);
@@ -125,7 +128,11 @@ void InputManager::InitProfile() {
     profile.analogs[Settings::NativeAnalog::CStick] =
         fmt::format("axis_x:2,axis_y:3,max_value:1,engine:{}", TOUCHSCREEN);
 
-    profile.motion_device = "engine:motion_emu,update_period:100,sensitivity:0.01,tilt_clamp:90.0";
+    // sampling_rate (Hz) and batch_latency (ms) are only used by the sensor backed device
+    profile.motion_device = fmt::format(
+        "engine:motion_emu,update_period:100,sensitivity:0.01,tilt_clamp:90.0,"
+        "sampling_rate:{},batch_latency:{}",
+        Config::Get(Config::MOTION_SAMPLING_RATE), Config::Get(Config::MOTION_BATCH_LATENCY));
     profile.touch_device = "engine:emu_window";
     profile.udp_input_address = "127.0.0.1";
     profile.udp_input_port = 26760;
@@ -161,10 +168,16 @@ bool InputManager::KeyEvent(int button, float value) {
     for (auto code : mButtonKeys) {
         if (code == button) {
             if (value >= 1.0f) {
+                if (std::find(mUserKeys.begin(), mUserKeys.end(), button) == mUserKeys.end()) {
+                    mUserKeys.push_back(button);
+                }
                 InputCommon::GetKeyboard()->PressKey(button);
             } else {
-                InputCommon::GetKeyboard()->ReleaseKey(button);
-                InputCommon::GetKeyboard()->ReleaseKey(REVERSE_KEY_START + button);
+                for (int key : {button, REVERSE_KEY_START + button}) {
+                    mUserKeys.erase(std::remove(mUserKeys.begin(), mUserKeys.end(), key),
+                                    mUserKeys.end());
+                    ReleaseKey(key);
+                }
             }
             return true;
         }
@@ -187,6 +200,38 @@ bool InputManager::KeyEvent(int button, float value) {
     return false;
 }
 
+bool InputManager::MacroEvent(int button, bool pressed) {
+    const int key = mButtonKeys[button];
+    if (pressed) {
+        mMacroButtons |= 1u << button;
+        InputCommon::GetKeyboard()->PressKey(key);
+    } else {
+        mMacroButtons &= ~(1u << button);
+        if (std::find(mUserKeys.begin(), mUserKeys.end(), key) == mUserKeys.end()) {
+            ReleaseKey(key);
+        }
+    }
+    return true;
+}
+
+// only once no combo macro holds a button mapped to the key
+void InputManager::ReleaseKey(int key) {
+    for (u32 i = 0; i < mButtonKeys.size(); ++i) {
+        if ((mMacroButtons & (1u << i)) && mButtonKeys[i] == key) {
+            return;
+        }
+    }
+    InputCommon::GetKeyboard()->ReleaseKey(key);
+}
+
+bool InputManager::IsKeyMapped(int button, float value) const {
+    if (value < 0) {
+        button = REVERSE_KEY_START + button;
+    }
+    return std::find(mButtonKeys.begin(), mButtonKeys.end(), button) != mButtonKeys.end() ||
+           std::find(mCirclePadKeys.begin(), mCirclePadKeys.end(), button) != mCirclePadKeys.end();
+}
+
 void InputManager::BeginTilt(int x, int y) {
     InputCommon::GetMotionEmu()->BeginTilt(x, y);
 }
@@ -3,6 +3,8 @@
 #include <string>
 #include <vector>
 
+#include "common/common_types.h"
+
 class InputManager {
 public:
     enum ButtonType {
@@ -39,6 +41,8 @@ public:
     float GetInput(int button);
     bool InputEvent(int button, float value);
     bool KeyEvent(int button, float value);
+    bool MacroEvent(int button, bool pressed);
+    bool IsKeyMapped(int button, float value) const;
 
     void BeginTilt(int x, int y);
     void Tilt(int x, int y);
@@ -47,7 +51,12 @@ public:
 private:
     InputManager();
 
+    void ReleaseKey(int key);
+
     std::vector<int> mButtonKeys;
     std::vector<int> mCirclePadKeys;
     std::vector<float> mAnalogs;
+    // a key stays pressed while the user or a combo macro holds it
+    std::vector<int> mUserKeys;
+    u32 mMacroButtons = 0;
 };
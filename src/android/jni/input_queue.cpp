@@ -0,0 +1,219 @@
+#include "input_queue.h"
+
+#include <algorithm>
+#include <chrono>
+#include <cmath>
+
+#include "common/logging/log.h"
+#include "core/frontend/emu_window.h"
+
+#include "input_manager.h"
+#include "macro_engine.h"
+
+// touch actions, see NativeLibrary.TouchEvent
+static const int TOUCH_PRESSED = 1;
+static const int TOUCH_MOVED = 2;
+static const int TOUCH_RELEASED = 4;
+static const int BEGIN_TILT = 8;
+static const int TILT = 16;
+static const int END_TILT = 32;
+
+// max number of distinct buttons pressed and axes moved in one frame
+static const u32 MAX_PRESSED_PER_FRAME = 32;
+static const u32 MAX_AXES_PER_FRAME = 16;
+
+static s64 GetTimestamp() {
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(
+               std::chrono::steady_clock::now().time_since_epoch())
+        .count();
+}
+
+InputQueue& InputQueue::GetInstance() {
+    static InputQueue s_input_queue;
+    return s_input_queue;
+}
+
+bool InputQueue::PushButton(int button, float value) {
+    return Push(EventType::Button, button, value, 0.0f);
+}
+
+bool InputQueue::PushKey(int key, float value) {
+    return Push(EventType::Key, key, value, 0.0f);
+}
+
+bool InputQueue::PushAxis(int axis, float value) {
+    return Push(EventType::Axis, axis, value, 0.0f);
+}
+
+bool InputQueue::PushTouch(int action, float x, float y) {
+    return Push(EventType::Touch, action, x, y);
+}
+
+bool InputQueue::PushMacro(int index, int action) {
+    return Push(EventType::Macro, index, static_cast<float>(action), 0.0f);
+}
+
+bool InputQueue::Push(EventType type, s32 code, float x, float y) {
+    const u32 tail = mTail.load(std::memory_order_relaxed);
+    const u32 next = (tail + 1) & QUEUE_MASK;
+    if (next == mHead.load(std::memory_order_acquire)) {
+        LOG_WARNING(Frontend, "Input queue is full, dropping event {}", code);
+        return false;
+    }
+
+    mEvents[tail] = {GetTimestamp(), type, code, x, y};
+    mTail.store(next, std::memory_order_release);
+    return true;
+}
+
+bool InputQueue::Drain(Frontend::EmuWindow& window) {
+    // Buttons pressed during this frame. A release of one of them stays queued until the next
+    // frame, so the game always sees the press for at least one frame.
+    std::array<s32, MAX_PRESSED_PER_FRAME> pressed;
+    u32 num_pressed = 0;
+    bool touch_pressed = false;
+    bool changed = false;
+
+    // Only the last touch move, tilt and value of each axis in a frame matter to the game. They
+    // are copied out of the ring, which the producer may reuse once the head moves past them.
+    // An axis jittering around the press threshold of a key mapped to it would otherwise end the
+    // frame at each crossing.
+    std::optional<Event> touch_moved;
+    std::optional<Event> tilt;
+    std::array<Event, MAX_AXES_PER_FRAME> axes;
+    u32 num_axes = 0;
+    const auto flush_moves = [&] {
+        if (touch_moved) {
+            Dispatch(window, *touch_moved);
+            touch_moved.reset();
+        }
+        if (tilt) {
+            Dispatch(window, *tilt);
+            tilt.reset();
+        }
+    };
+
+    u32 head = mHead.load(std::memory_order_relaxed);
+    const u32 tail = mTail.load(std::memory_order_acquire);
+    while (head != tail) {
+        const Event& event = mEvents[head];
+        if (event.type == EventType::Touch) {
+            if (event.code & TOUCH_PRESSED) {
+                touch_pressed = true;
+            } else if ((event.code & TOUCH_RELEASED) && touch_pressed) {
+                break;
+            }
+
+            if (event.code == TOUCH_MOVED || event.code == TILT) {
+                (event.code == TILT ? tilt : touch_moved) = event;
+                head = (head + 1) & QUEUE_MASK;
+                mHead.store(head, std::memory_order_release);
+                continue;
+            }
+            flush_moves();
+        } else if (IsAnalog(event)) {
+            const auto end = axes.begin() + num_axes;
+            const auto axis = std::find_if(axes.begin(), end, [&event](const Event& other) {
+                return other.type == event.type && other.code == event.code;
+            });
+            if (axis != end) {
+                *axis = event;
+            } else if (num_axes == axes.size()) {
+                break;
+            } else {
+                axes[num_axes++] = event;
+            }
+            head = (head + 1) & QUEUE_MASK;
+            mHead.store(head, std::memory_order_release);
+            continue;
+        } else {
+            const s32 key = (static_cast<s32>(event.type) << 24) | event.code;
+            const auto end = pressed.begin() + num_pressed;
+            const bool is_pressed = std::find(pressed.begin(), end, key) != end;
+            if (std::abs(event.x) >= 1.0f) {
+                if (!is_pressed) {
+                    if (num_pressed == pressed.size()) {
+                        break;
+                    }
+                    pressed[num_pressed++] = key;
+                }
+            } else if (is_pressed) {
+                break;
+            }
+        }
+
+        changed |= Dispatch(window, event);
+        head = (head + 1) & QUEUE_MASK;
+        mHead.store(head, std::memory_order_release);
+    }
+
+    flush_moves();
+    for (u32 i = 0; i < num_axes; ++i) {
+        changed |= Dispatch(window, axes[i]);
+    }
+    return changed;
+}
+
+bool InputQueue::Settle(Frontend::EmuWindow& window) {
+    // Nothing is held for the next frame, events queued while the game is paused would
+    // otherwise replay frame by frame on resume. The state they leave is still applied, so a
+    // key released meanwhile doesn't stay pressed.
+    bool changed = false;
+    u32 head = mHead.load(std::memory_order_relaxed);
+    const u32 tail = mTail.load(std::memory_order_acquire);
+    while (head != tail) {
+        const Event event = mEvents[head];
+        head = (head + 1) & QUEUE_MASK;
+        mHead.store(head, std::memory_order_release);
+        changed |= Dispatch(window, event);
+    }
+    return changed;
+}
+
+void InputQueue::Clear() {
+    mHead.store(mTail.load(std::memory_order_acquire), std::memory_order_release);
+}
+
+// analog values, only the last one of a frame is applied
+bool InputQueue::IsAnalog(const Event& event) {
+    return event.type == EventType::Axis ||
+           (event.type == EventType::Button && event.code >= InputManager::N3DS_CPAD_X);
+}
+
+bool InputQueue::Dispatch(Frontend::EmuWindow& window, const Event& event) {
+    InputManager& input = InputManager::GetInstance();
+    switch (event.type) {
+    case EventType::Button:
+        return input.InputEvent(event.code, event.x);
+    case EventType::Key:
+    case EventType::Axis:
+        return input.KeyEvent(event.code, event.x);
+    case EventType::Touch: {
+        const int action = event.code;
+        if (action & (TOUCH_PRESSED | TOUCH_MOVED)) {
+            window.TouchPressedNormalized(event.x, event.y);
+        } else if (action & TOUCH_RELEASED) {
+            window.TouchReleased();
+        }
+
+        const int x = static_cast<int>(event.x);
+        const int y = static_cast<int>(event.y);
+        if (action & BEGIN_TILT) {
+            input.BeginTilt(-x / 3, -y / 3);
+        } else if (action & TILT) {
+            input.Tilt(-x / 3, -y / 3);
+        } else if (action & END_TILT) {
+            input.EndTilt();
+        }
+        return false;
+    }
+    case EventType::Macro:
+        if (event.x >= 1.0f) {
+            MacroEngine::GetInstance().Start(event.code);
+        } else {
+            MacroEngine::GetInstance().Stop(event.code);
+        }
+        return false;
+    }
+    return false;
+}
@@ -0,0 +1,63 @@
+#pragma once
+
+#include <array>
+#include <atomic>
+#include <optional>
+
+#include "common/common_types.h"
+
+namespace Frontend {
+class EmuWindow;
+}
+
+/**
+ * Single-producer/single-consumer ring of input events. The UI thread pushes without locking,
+ * the emulation thread drains the ring once per emulated frame.
+ */
+class InputQueue {
+public:
+    enum class EventType : u8 {
+        Button, // overlay button, goes through InputManager::InputEvent
+        Key,    // gamepad key, goes through InputManager::KeyEvent
+        Axis,   // gamepad axis, goes through InputManager::KeyEvent
+        Touch,  // touch screen (mapped to 0..1 by java) or touch tilt (view pixels)
+        Macro,  // combo key, goes through MacroEngine
+    };
+
+    struct Event {
+        s64 timestamp;
+        EventType type;
+        s32 code;
+        float x;
+        float y;
+    };
+
+    static InputQueue& GetInstance();
+
+    // producer (UI thread)
+    bool PushButton(int button, float value);
+    bool PushKey(int key, float value);
+    bool PushAxis(int axis, float value);
+    bool PushTouch(int action, float x, float y);
+    bool PushMacro(int index, int action);
+
+    // consumer (emulation thread)
+    bool Drain(Frontend::EmuWindow& window);
+    bool Settle(Frontend::EmuWindow& window);
+    void Clear();
+
+private:
+    InputQueue() = default;
+
+    bool Push(EventType type, s32 code, float x, float y);
+    static bool IsAnalog(const Event& event);
+    bool Dispatch(Frontend::EmuWindow& window, const Event& event);
+
+    static constexpr u32 QUEUE_SIZE = 512;
+    static constexpr u32 QUEUE_MASK = QUEUE_SIZE - 1;
+    static_assert((QUEUE_SIZE & QUEUE_MASK) == 0, "queue size must be a power of two");
+
+    std::array<Event, QUEUE_SIZE> mEvents{};
+    alignas(64) std::atomic<u32> mHead{0};
+    alignas(64) std::atomic<u32> mTail{0};
+};
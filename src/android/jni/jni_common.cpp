@@ -17,6 +17,7 @@ public:
             env->GetStaticMethodID(mClazz, "loadImageFromFile", "(Ljava/lang/String;)V");
         mUpdateProgress =
             env->GetStaticMethodID(mClazz, "updateProgress", "(Ljava/lang/String;II)V");
+        mUpdateSearchProgress = env->GetStaticMethodID(mClazz, "updateSearchProgress", "(II)V");
         mNotifyGameShudown = env->GetStaticMethodID(mClazz, "notifyGameShudown", "()V");
         mShowInputBoxDialog = env->GetStaticMethodID(
             mClazz, "showInputBoxDialog",
@@ -28,6 +29,9 @@ public:
         mPickImage = env->GetStaticMethodID(mClazz, "pickImage", "(II)V");
         mSetupTranslater = env->GetStaticMethodID(mClazz, "setupTranslater", "(Ljava/lang/String;Ljava/lang/String;)V");
         mHandleNFCScanning = env->GetStaticMethodID(mClazz, "handleNFCScanning", "(Z)V");
+        mUpdateTouchLayout = env->GetStaticMethodID(mClazz, "updateTouchLayout", "(IIII)V");
+        mUpdateWatchValues = env->GetStaticMethodID(mClazz, "updateWatchValues", "([I)V");
+        mReleaseGuestMemory = env->GetStaticMethodID(mClazz, "releaseGuestMemory", "()V");
     }
 
     ~NativeLibrary() {
@@ -51,6 +55,10 @@ public:
         GetEnvForThread()->CallStaticVoidMethod(mClazz, mUpdateProgress, name, written, total);
     }
 
+    void UpdateSearchProgress(jint scanned, jint total) {
+        GetEnvForThread()->CallStaticVoidMethod(mClazz, mUpdateSearchProgress, scanned, total);
+    }
+
     void ShowInputBoxDialog(jint maxLength, jstring error, jstring hint, jstring button0, jstring button1,
                             jstring button2) {
         GetEnvForThread()->CallStaticVoidMethod(mClazz, mShowInputBoxDialog, maxLength, error, hint,
@@ -82,6 +90,19 @@ public:
         GetEnvForThread()->CallStaticVoidMethod(mClazz, mHandleNFCScanning, isScanning);
     }
 
+    void UpdateTouchLayout(jint left, jint top, jint right, jint bottom) {
+        GetEnvForThread()->CallStaticVoidMethod(mClazz, mUpdateTouchLayout, left, top, right,
+                                                bottom);
+    }
+
+    void UpdateWatchValues(jintArray values) {
+        GetEnvForThread()->CallStaticVoidMethod(mClazz, mUpdateWatchValues, values);
+    }
+
+    void ReleaseGuestMemory() {
+        GetEnvForThread()->CallStaticVoidMethod(mClazz, mReleaseGuestMemory);
+    }
+
     bool CheckRecordPermission() {
         JNIEnv* env = GetEnvForThread();
         const std::string permission{"android.permission.RECORD_AUDIO"};
@@ -97,11 +118,15 @@ private:
     jmethodID mSaveImageToFile;
     jmethodID mLoadImageFromFile;
     jmethodID mUpdateProgress;
+    jmethodID mUpdateSearchProgress;
     jmethodID mNotifyGameShudown;
     jmethodID mShowInputBoxDialog;
     jmethodID mShowMessageDialog;
     jmethodID mShowMiiSelectorDialog;
     jmethodID mHandleNFCScanning;
+    jmethodID mUpdateTouchLayout;
+    jmethodID mUpdateWatchValues;
+    jmethodID mReleaseGuestMemory;
     jmethodID mPickImage;
     jmethodID mSetupTranslater;
 };
@@ -186,6 +211,10 @@ void UpdateProgress(const std::string& name, u32 written, u32 total) {
     s_native_library->UpdateProgress(ToJString(name), written, total);
 }
 
+void UpdateSearchProgress(u32 scanned, u32 total) {
+    s_native_library->UpdateSearchProgress(scanned, total);
+}
+
 void NotifyGameShudown() {
     s_native_library->NotifyGameShudown();
 }
@@ -202,6 +231,20 @@ void HandleNFCScanning(bool isScanning) {
     s_native_library->HandleNFCScanning(isScanning);
 }
 
+void UpdateTouchLayout(int left, int top, int right, int bottom) {
+    s_native_library->UpdateTouchLayout(left, top, right, bottom);
+}
+
+void UpdateWatchValues(const std::vector<u32>& values) {
+    jintArray array = ToJIntArray(values.data(), values.size());
+    s_native_library->UpdateWatchValues(array);
+    GetEnvForThread()->DeleteLocalRef(array);
+}
+
+void ReleaseGuestMemory() {
+    s_native_library->ReleaseGuestMemory();
+}
+
 void ShowInputBoxDialog(int maxLength, const std::string& error, const std::string& hint, const std::string& button0,
                         const std::string& button1, const std::string& button2) {
     s_native_library->ShowInputBoxDialog(maxLength, ToJString(error), ToJString(hint), ToJString(button0),
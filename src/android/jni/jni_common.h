@@ -19,14 +19,23 @@ extern std::function<void(u32* pixels, u32 width, u32 height)> g_image_loading_c
 void SaveImageToFile(const std::string& path, const std::vector<u8>& pixels, u32 width, u32 height);
 void LoadImageFromFile(const std::string& path, std::vector<u8>& pixels, u32& width, u32& height);
 void UpdateProgress(const std::string& name, u32 written, u32 total);
+void UpdateSearchProgress(u32 scanned, u32 total);
 void NotifyGameShudown();
 void ShowInputBoxDialog(int maxLength, const std::string& error, const std::string& hint, const std::string& button0,
                         const std::string& button1, const std::string& button2);
 void ShowMiiSelectorDialog(bool cancel, const std::string& title,
                            const std::vector<std::string>& miis);
+// the types of ShowMessageDialog, NativeLibrary has the same
+enum MessageType {
+    MESSAGE_ERROR = 0,
+    MESSAGE_AUTO_TUNE = 1,
+};
 void ShowMessageDialog(int type, const std::string& msg);
 void PickImage(u32 width, u32 height);
 void SetupTranslater(const std::string& key, const std::string& secret);
 void HandleNFCScanning(bool isScanning);
+void UpdateTouchLayout(int left, int top, int right, int bottom);
+void UpdateWatchValues(const std::vector<u32>& values);
+void ReleaseGuestMemory();
 int GetDisplayRotation();
 bool CheckRecordPermission();
@@ -0,0 +1,104 @@
+#include "macro_engine.h"
+
+#include "input_manager.h"
+
+MacroEngine& MacroEngine::GetInstance() {
+    static MacroEngine s_macro_engine;
+    return s_macro_engine;
+}
+
+void MacroEngine::SetMacro(u32 index, const u32* data, u32 size) {
+    if (index >= MAX_MACROS) {
+        return;
+    }
+
+    auto steps = std::make_shared<Steps>();
+    steps->reserve(size / 2);
+    for (u32 i = 0; i + 1 < size; i += 2) {
+        steps->push_back({data[i], data[i + 1]});
+    }
+
+    std::lock_guard lock{mMutex};
+    mMacros[index] = std::move(steps);
+}
+
+void MacroEngine::Start(u32 index) {
+    if (index >= MAX_MACROS) {
+        return;
+    }
+
+    Running& macro = mRunning[index];
+    {
+        std::lock_guard lock{mMutex};
+        macro.steps = mMacros[index];
+    }
+    const bool empty = !macro.steps || macro.steps->empty();
+    macro.step = 0;
+    macro.frames_left = empty ? 0 : (*macro.steps)[0].frames;
+    macro.held = true;
+    macro.active = !empty;
+}
+
+void MacroEngine::Stop(u32 index) {
+    if (index < MAX_MACROS) {
+        mRunning[index].held = false;
+    }
+}
+
+bool MacroEngine::Step() {
+    u32 buttons = 0;
+    for (Running& macro : mRunning) {
+        if (!macro.active) {
+            continue;
+        }
+
+        // skip finished steps, a hold step finishes when the combo key is released
+        const Steps& steps = *macro.steps;
+        while (macro.step < steps.size()) {
+            const MacroStep& step = steps[macro.step];
+            if (step.frames == 0 ? macro.held : macro.frames_left > 0) {
+                break;
+            }
+            if (++macro.step < steps.size()) {
+                macro.frames_left = steps[macro.step].frames;
+            }
+        }
+
+        if (macro.step == steps.size()) {
+            macro.active = false;
+            macro.steps.reset();
+            continue;
+        }
+
+        buttons |= steps[macro.step].buttons;
+        if (macro.frames_left > 0) {
+            macro.frames_left--;
+        }
+    }
+    return Apply(buttons);
+}
+
+void MacroEngine::Reset() {
+    for (Running& macro : mRunning) {
+        macro.active = false;
+        macro.steps.reset();
+    }
+    mButtons = 0;
+}
+
+bool MacroEngine::Apply(u32 buttons) {
+    u32 changed = buttons ^ mButtons;
+    if (changed == 0) {
+        return false;
+    }
+
+    // a button the user holds too stays pressed when the macro lets go of it
+    InputManager& input = InputManager::GetInstance();
+    for (int i = 0; i < InputManager::N3DS_CPAD_X; ++i) {
+        if (changed & (1u << i)) {
+            input.MacroEvent(i, (buttons & (1u << i)) != 0);
+        }
+    }
+    mButtons = buttons;
+    return true;
+}
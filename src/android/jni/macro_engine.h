@@ -0,0 +1,54 @@
+#pragma once
+
+#include <array>
+#include <memory>
+#include <mutex>
+#include <vector>
+
+#include "common/common_types.h"
+
+/**
+ * Runs combo key macros against the emulated frame counter. Each macro is compiled once into a
+ * flat step array, stepping it costs no JNI traffic.
+ */
+class MacroEngine {
+public:
+    static constexpr u32 MAX_MACROS = 3;
+
+    struct MacroStep {
+        u32 buttons; // bitmask of InputManager::ButtonType
+        u32 frames;  // 0 holds the step until the combo key is released
+    };
+
+    static MacroEngine& GetInstance();
+
+    // from java, data is a list of (buttons, frames) pairs
+    void SetMacro(u32 index, const u32* data, u32 size);
+
+    // emulation thread
+    void Start(u32 index);
+    void Stop(u32 index);
+    bool Step();
+    void Reset();
+
+private:
+    MacroEngine() = default;
+
+    bool Apply(u32 buttons);
+
+    using Steps = std::vector<MacroStep>;
+
+    struct Running {
+        std::shared_ptr<const Steps> steps;
+        u32 step = 0;
+        u32 frames_left = 0;
+        bool held = false;
+        bool active = false;
+    };
+
+    std::mutex mMutex;
+    // replaced as a whole by SetMacro, a running macro keeps the steps it started with
+    std::array<std::shared_ptr<const Steps>, MAX_MACROS> mMacros;
+    std::array<Running, MAX_MACROS> mRunning;
+    u32 mButtons = 0;
+};
@@ -2,6 +2,7 @@
 #include <atomic>
 #include <condition_variable>
 #include <mutex>
+#include <sstream>
 #include <string>
 
 #include <android/log.h>
@@ -12,6 +13,7 @@
 #include "common/file_util.h"
 #include "core/core.h"
 #include "core/cheats/cheats.h"
+#include "core/cheats/gateway_cheat.h"
 #include "core/frontend/applets/default_applets.h"
 #include "core/frontend/mic.h"
 #include "core/hle/service/am/am.h"
@@ -23,29 +25,37 @@
 #include "core/settings.h"
 #include "video_core/video_core.h"
 
+#include "auto_tuner.h"
 #include "camera/still_image_camera.h"
+#include "cheat_database.h"
 #include "config/main_settings.h"
 #include "egl_android.h"
 #include "input_manager.h"
+#include "input_queue.h"
 #include "jni_common.h"
 #include "keyboard.h"
+#include "macro_engine.h"
 #include "png_handler.h"
 #include "mem_region.h"
+#include "running_settings.h"
 #include "mic.h"
 #include "ndk_motion.h"
+#include "watch_list.h"
 
 static ANativeWindow* s_surface = nullptr;
 
-static std::atomic<bool> s_update_hid;
 static std::atomic<bool> s_stop_running;
 static std::atomic<bool> s_is_running;
+// the emulation thread is waiting in its pause loop, guarded by s_running_mutex
+static bool s_is_parked = false;
 static std::mutex s_running_mutex;
 static std::condition_variable s_running_cv;
 static std::unique_ptr<EGLAndroid> s_render_window;
 static std::shared_ptr<AndroidKeyboard> s_keyboard;
 static std::map<std::string, std::unique_ptr<Loader::AppLoader>> s_app_loaders;
 
-void BootGame(const std::string& path) {
+// returns false if the title couldn't be loaded
+bool BootGame(const std::string& path) {
     s_render_window = std::make_unique<EGLAndroid>(Settings::values.use_present_thread);
     s_render_window->Initialize(s_surface);
 
@@ -98,12 +108,21 @@ void BootGame(const std::string& path) {
             ShowMessageDialog(0, "Error while loading ROM! An unknown error occured.");
             break;
         }
-        return;
+        return false;
     }
 
     auto hid = system.ServiceManager().GetService<Service::HID::Module::Interface>("hid:USER")->GetModule();
 
-    s_update_hid = false;
+    InputQueue& input_queue = InputQueue::GetInstance();
+    input_queue.Clear();
+    MacroEngine& macro_engine = MacroEngine::GetInstance();
+    macro_engine.Reset();
+    WatchList& watch_list = WatchList::GetInstance();
+    watch_list.Reset();
+    setGuestMemoryAlive(true);
+    AutoTuner& tuner = AutoTuner::GetInstance();
+    u32 last_frame = VideoCore::g_renderer->GetCurrentFrame();
+
     s_stop_running = false;
     s_is_running = true;
     while (!s_stop_running) {
@@ -117,31 +136,57 @@ void BootGame(const std::string& path) {
                                                  system.GetStatusDetails()));
                 break;
             }
-            if (s_update_hid) {
-                hid->UpdatePad();
-                s_update_hid = false;
+            // apply queued input once per emulated frame
+            const u32 current_frame = VideoCore::g_renderer->GetCurrentFrame();
+            if (current_frame != last_frame) {
+                last_frame = current_frame;
+                bool input_changed = input_queue.Drain(*s_render_window);
+                input_changed |= macro_engine.Step();
+                if (input_changed) {
+                    hid->UpdatePad();
+                }
+                watch_list.Apply();
+                if (tuner.IsActive() && tuner.OnFrame()) {
+                    // this profile is measured, boot the next one
+                    break;
+                }
             }
         } else {
             // Ensure no audio bleeds out while game is paused
             const float volume = Settings::values.volume;
             Settings::values.volume = 0;
 
+            // input queued up to now is applied at once, not held for frames that won't come
+            if (input_queue.Settle(*s_render_window)) {
+                hid->UpdatePad();
+            }
+
             std::unique_lock lock{s_running_mutex};
+            s_is_parked = true;
+            s_running_cv.notify_all();
             s_running_cv.wait(lock, [] { return s_is_running || s_stop_running; });
+            s_is_parked = false;
             s_render_window->PollEvents();
             Settings::values.volume = volume;
+            if (input_queue.Settle(*s_render_window)) {
+                hid->UpdatePad();
+            }
         }
     }
 
+    // a memory search may still be reading guest memory
+    resetSearchResults();
+    // the direct buffers of GuestMemory point into memory freed by the shutdown
+    setGuestMemoryAlive(false);
+
     // Shutdown the core emulation
     s_render_window->DoneCurrent();
     hid.reset();
     system.Shutdown();
     s_render_window.reset();
     s_is_running = false;
-    resetSearchResults();
     Config::Save();
-    NotifyGameShudown();
+    return true;
 }
 
 static Loader::AppLoader* GetAppLoader(const std::string& path) {
@@ -272,6 +317,8 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_SetUserPath(JNIEnv* env,
     }
     // Register real Mic factory
     Frontend::Mic::RegisterRealMicFactory(std::make_unique<AndroidMicFactory>());
+    // titles without a cheat file use the bundled cheats
+    Cheats::CheatEngine::SetCheatDatabase(readCheatDatabase);
 
     //
     Core::System& system{Core::System::GetInstance()};
@@ -326,36 +373,36 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_HandleImage(JNIEnv* env,
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_InputEvent(JNIEnv* env, jclass obj,
                                                                    jint button, jfloat value) {
-    if (InputManager::GetInstance().InputEvent(button, value)) {
-        s_update_hid = true;
-    }
+    InputQueue::GetInstance().PushButton(button, value);
 }
 
-JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_TouchEvent(JNIEnv* env, jclass obj,
-                                                                   jint action, jint x, jint y) {
-    const int TOUCH_PRESSED = 1;
-    const int TOUCH_MOVED = 2;
-    const int TOUCH_RELEASED = 4;
-    const int BEGIN_TILT = 8;
-    const int TILT = 16;
-    const int END_TILT = 32;
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_ComboKeyEvent(JNIEnv* env, jclass obj,
+                                                                      jint index, jint action) {
+    InputQueue::GetInstance().PushMacro(index, action);
+}
 
-    if (s_render_window) {
-        if (action & TOUCH_PRESSED) {
-            s_render_window->TouchPressed(x, y);
-        } else if (action & TOUCH_MOVED) {
-            s_render_window->TouchMoved(x, y);
-        } else if (action & TOUCH_RELEASED) {
-            s_render_window->TouchReleased();
-        }
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_setComboMacro(JNIEnv* env, jclass obj,
+                                                                      jint index,
+                                                                      jintArray jSteps) {
+    jsize size = env->GetArrayLength(jSteps);
+    jint* steps = env->GetIntArrayElements(jSteps, nullptr);
+    MacroEngine::GetInstance().SetMacro(index, reinterpret_cast<const u32*>(steps), size);
+    env->ReleaseIntArrayElements(jSteps, steps, JNI_ABORT);
+}
 
-        if (action & BEGIN_TILT) {
-            InputManager::GetInstance().BeginTilt(-x / 3, -y / 3);
-        } else if (action & TILT) {
-            InputManager::GetInstance().Tilt(-x / 3, -y / 3);
-        } else if (action & END_TILT) {
-            InputManager::GetInstance().EndTilt();
-        }
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_setWatchList(JNIEnv* env, jclass obj,
+                                                                     jintArray jEntries) {
+    jsize size = env->GetArrayLength(jEntries);
+    jint* entries = env->GetIntArrayElements(jEntries, nullptr);
+    WatchList::GetInstance().SetEntries(reinterpret_cast<const u32*>(entries), size);
+    env->ReleaseIntArrayElements(jEntries, entries, JNI_ABORT);
+}
+
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_TouchEvent(JNIEnv* env, jclass obj,
+                                                                   jint action, jfloat x,
+                                                                   jfloat y) {
+    if (s_is_running) {
+        InputQueue::GetInstance().PushTouch(action, x, y);
     }
 }
 
@@ -367,24 +414,27 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_KeyboardEvent(JNIEnv* en
 
 JNIEXPORT jboolean JNICALL Java_org_citra_emu_NativeLibrary_KeyEvent(JNIEnv* env, jclass obj,
                                                                      jint button, jint action) {
-    if (InputManager::GetInstance().KeyEvent(button, action)) {
-        s_update_hid = true;
-        return true;
+    if (InputManager::GetInstance().IsKeyMapped(button, action)) {
+        return InputQueue::GetInstance().PushKey(button, action);
     }
     return false;
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_MoveEvent(JNIEnv* env, jclass obj,
                                                                   jint axis, jfloat value) {
-    if (InputManager::GetInstance().KeyEvent(axis, value * value * value)) {
-        s_update_hid = true;
+    const float cubic = value * value * value;
+    if (InputManager::GetInstance().IsKeyMapped(axis, cubic)) {
+        InputQueue::GetInstance().PushAxis(axis, cubic);
     }
 }
 
-JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_Run(JNIEnv* env, jclass obj,
-                                                            jstring jFile) {
-    // reload config
-    Config::Clear();
+static void LoadConfig(const std::string& path) {
+    // reload config, with the overrides of the title merged over it
+    u64 program_id = 0;
+    Loader::AppLoader* loader = GetAppLoader(path);
+    if (loader)
+        loader->ReadProgramId(program_id);
+    Config::SetGame(program_id);
     Config::Load();
     // system
     Settings::values.use_cpu_jit = Config::Get(Config::USE_CPU_JIT);
@@ -469,9 +519,49 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_Run(JNIEnv* env, jclass
     cfg->UpdateConfigNANDSavegame();
 
     SetupTranslater(Config::Get(Config::BAIDU_OCR_KEY), Config::Get(Config::BAIDU_OCR_SECRET));
+}
+
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_Run(JNIEnv* env, jclass obj,
+                                                            jstring jFile) {
+    const std::string path = GetJString(jFile);
+    LoadConfig(path);
+    if (BootGame(path)) {
+        NotifyGameShudown();
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_RunAutoTune(JNIEnv* env, jclass obj,
+                                                                    jstring jFile) {
+    const std::string path = GetJString(jFile);
+    LoadConfig(path);
 
-    // run
-    BootGame(GetJString(jFile));
+    // unthrottled and muted, so the frame times show what the device can do
+    const bool use_frame_limit = Settings::values.use_frame_limit;
+    const float volume = Settings::values.volume;
+    Settings::values.use_frame_limit = false;
+    Settings::values.volume = 0;
+
+    AutoTuner& tuner = AutoTuner::GetInstance();
+    AutoTuner::Profile profile = AutoTuner::Profile::FromConfig();
+    tuner.Start(profile);
+    bool booted = true;
+    while (booted && tuner.NextProfile(&profile)) {
+        profile.Apply();
+        Settings::Apply();
+        booted = BootGame(path);
+        tuner.EndProfile();
+    }
+
+    Settings::values.use_frame_limit = use_frame_limit;
+    Settings::values.volume = volume;
+    if (tuner.IsDone()) {
+        tuner.GetBest().Save();
+        ShowMessageDialog(MESSAGE_AUTO_TUNE, tuner.GetSummary());
+    }
+    tuner.Stop();
+    if (booted) {
+        NotifyGameShudown();
+    }
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_ResumeEmulation(JNIEnv* env, jclass obj) {
@@ -485,67 +575,32 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_PauseEmulation(JNIEnv* e
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_StopEmulation(JNIEnv* env, jclass obj) {
+    // the auto tuner may be between two boots of the title
+    AutoTuner::GetInstance().Cancel();
     s_stop_running = true;
-    s_render_window->StopPresenting();
+    if (s_render_window)
+        s_render_window->StopPresenting();
     s_running_cv.notify_all();
 }
 
 JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_getRunningSettings(JNIEnv* env,
                                                                                 jclass obj) {
-    int i = 0;
-    int settings[8];
-
-    // get settings
-    settings[i++] = Settings::values.core_ticks_hack > 0;
-    settings[i++] = Settings::values.skip_slow_draw;
-    settings[i++] = Settings::values.skip_cpu_write;
-    settings[i++] = Settings::values.texture_load_hack;
-    settings[i++] = std::min(std::max(Settings::values.resolution_factor - 1, 0), 3);
-    settings[i++] = static_cast<int>(Settings::values.layout_option);
-    settings[i++] = Settings::values.custom_layout;
-    settings[i++] = Settings::values.frame_limit / 2;
-
-    jintArray array = env->NewIntArray(i);
-    env->SetIntArrayRegion(array, 0, i, settings);
+    std::vector<s32> settings = getRunningSettings();
+    jintArray array = env->NewIntArray(settings.size());
+    env->SetIntArrayRegion(array, 0, settings.size(), settings.data());
     return array;
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_setRunningSettings(JNIEnv* env, jclass obj,
                                                                            jintArray array) {
-    int i = 0;
     jint* settings = env->GetIntArrayElements(array, nullptr);
+    const u32 costs = applyRunningSettings(settings, env->GetArrayLength(array));
+    env->ReleaseIntArrayElements(array, settings, JNI_ABORT);
 
-    // FMV Hack
-    Settings::SetFMVHack(settings[i++] > 0);
-
-    // Skip Slow Draw
-    Settings::values.skip_slow_draw = settings[i++] > 0;
-
-    // Skip CPU Write
-    Settings::values.skip_cpu_write = settings[i++] > 0;
-
-    //
-    Settings::values.texture_load_hack = settings[i++] > 0;
-    Config::Set(Config::TEXTURE_LOAD_HACK, Settings::values.texture_load_hack);
-
-    // Scale Factor
-    Settings::values.resolution_factor = settings[i++] + 1;
-    Config::Set(Config::RESOLUTION_FACTOR, Settings::values.resolution_factor);
-
-    // Change Layout
-    auto screen_layout = static_cast<Settings::LayoutOption>(settings[i++]);
-    Settings::values.layout_option = screen_layout;
-    Config::Set(Config::LAYOUT_OPTION, Settings::values.layout_option);
-
-    //
-    Settings::values.custom_layout = settings[i++] > 0;
-    Config::Set(Config::USE_CUSTOM_LAYOUT, Settings::values.custom_layout);
-
-    Settings::values.frame_limit = settings[i++] * 2;
-
-    s_render_window->UpdateLayout();
-
-    env->ReleaseIntArrayElements(array, settings, 0);
+    // live settings are picked up by the core, the rest waits for the next boot
+    if ((costs & static_cast<u32>(RunningSettingCost::Layout)) && s_render_window) {
+        s_render_window->UpdateLayout();
+    }
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_setCustomLayout(JNIEnv* env, jclass obj,
@@ -617,22 +672,99 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_Screenshot(JNIEnv* env,
     };
 }
 
-JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_searchMemory(JNIEnv* env, jclass obj,
-                                                                           jint start_addr,
-                                                                           jint stop_addr,
-                                                                           jint value_type,
-                                                                           jint search_type,
-                                                                           jint scan_type,
-                                                                           jint value) {
-    return searchMemoryRegion(start_addr, stop_addr, value_type, search_type, scan_type, value);
+JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_searchMemory(JNIEnv* env, jclass obj,
+                                                                      jint start_addr,
+                                                                      jint stop_addr,
+                                                                      jint value_type,
+                                                                      jint search_type,
+                                                                      jint scan_type,
+                                                                      jlong value,
+                                                                      jlong value2,
+                                                                      jdouble epsilon,
+                                                                      jbyteArray pattern,
+                                                                      jbyteArray mask) {
+    const auto to_bytes = [env](jbyteArray array) {
+        std::vector<u8> bytes;
+        if (array != nullptr) {
+            bytes.resize(env->GetArrayLength(array));
+            env->GetByteArrayRegion(array, 0, bytes.size(), reinterpret_cast<jbyte*>(bytes.data()));
+        }
+        return bytes;
+    };
+    return searchMemoryRegion(start_addr, stop_addr, value_type, search_type, scan_type, value,
+                              value2, epsilon, to_bytes(pattern), to_bytes(mask));
+}
+
+JNIEXPORT jlong JNICALL Java_org_citra_emu_NativeLibrary_dumpMemory(JNIEnv* env, jclass obj,
+                                                                     jint start_addr,
+                                                                     jint stop_addr,
+                                                                     jstring path,
+                                                                     jboolean pause) {
+    // a paused capture waits until the emulation thread stops between two run loops
+    bool was_running = false;
+    if (pause) {
+        std::unique_lock lock{s_running_mutex};
+        was_running = s_is_running.exchange(false);
+        if (was_running) {
+            s_running_cv.wait_for(lock, std::chrono::seconds(1),
+                                  [] { return s_is_parked || s_stop_running; });
+        }
+    }
+
+    const s64 size = dumpMemoryRegion(start_addr, stop_addr, GetJString(path));
+
+    if (was_running) {
+        // the emulation may have been stopped meanwhile, it must not be marked running again
+        std::lock_guard lock{s_running_mutex};
+        if (!s_stop_running) {
+            s_is_running = true;
+        }
+        s_running_cv.notify_all();
+    }
+    return size;
+}
+
+JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_diffMemoryDumps(JNIEnv* env,
+                                                                          jclass obj,
+                                                                          jstring path_a,
+                                                                          jstring path_b) {
+    std::vector<u32> ranges;
+    if (!diffMemoryDumps(GetJString(path_a), GetJString(path_b), ranges)) {
+        return nullptr;
+    }
+    return ToJIntArray(ranges.data(), ranges.size());
 }
 
-JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_getSearchResults(JNIEnv* env, jclass obj) {
-    return getSearchResults();
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_cancelSearchMemory(JNIEnv* env, jclass obj) {
+    cancelSearchMemory();
+}
+
+JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_restoreSearchSession(JNIEnv* env,
+                                                                               jclass obj) {
+    std::vector<u32> params;
+    if (!restoreSearchSession(params)) {
+        return nullptr;
+    }
+    return ToJIntArray(params.data(), params.size());
+}
+
+JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_getSearchResultCount(JNIEnv* env,
+                                                                              jclass obj) {
+    return getSearchResultCount();
+}
+
+JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_getSearchResultPage(JNIEnv* env,
+                                                                             jclass obj,
+                                                                             jint offset,
+                                                                             jint count,
+                                                                             jintArray out) {
+    return getSearchResultPage(offset, count, out);
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_resetSearchResults(JNIEnv* env, jclass obj) {
     resetSearchResults();
+    // only an explicit reset drops the saved session, shutting down keeps it
+    deleteSearchSession();
 }
 
 JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_loadPageTable(JNIEnv* env, jclass obj) {
@@ -663,34 +795,33 @@ JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_loadPageTable(JNIEn
     return array;
 }
 
-JNIEXPORT jbyteArray JNICALL Java_org_citra_emu_NativeLibrary_loadPage(JNIEnv* env, jclass obj, jint index) {
-    Core::System& system{Core::System::GetInstance()};
-    auto p = system.Memory().GetCurrentPageTable()->pointers[index];
-    if (p != nullptr) {
-        jbyteArray array = env->NewByteArray(Memory::PAGE_SIZE);
-        env->SetByteArrayRegion(array, 0, Memory::PAGE_SIZE, reinterpret_cast<const jbyte *>(p));
-        return array;
-    } else {
+JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_scanPointers(JNIEnv* env, jclass obj,
+                                                                         jint target,
+                                                                         jint maxDepth,
+                                                                         jint maxOffset) {
+    std::vector<u32> chains;
+    if (!scanPointers(target, maxDepth, maxOffset, chains)) {
         return nullptr;
     }
+    return ToJIntArray(chains.data(), chains.size());
 }
 
-JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_readMemory(JNIEnv* env, jclass obj, jint jAddr, jint valueType) {
-    u32 addr = static_cast<u32>(jAddr);
-    u32 index = addr >> Memory::PAGE_BITS;
-    u32 offset = addr & Memory::PAGE_MASK;
-    Core::System& system{Core::System::GetInstance()};
-    auto p = system.Memory().GetCurrentPageTable()->pointers[index];
-    if (p != nullptr) {
-        if (valueType == 0) {
-            return *reinterpret_cast<u32*>(p + offset);
-        } else if (valueType == 1) {
-            return *reinterpret_cast<u16*>(p + offset);
-        } else if (valueType == 2) {
-            return *reinterpret_cast<u8*>(p + offset);
-        }
-    }
-    return 0;
+JNIEXPORT jintArray JNICALL Java_org_citra_emu_NativeLibrary_loadMemoryRegions(JNIEnv* env,
+                                                                                jclass obj) {
+    std::vector<u32> regions = getMemoryRegions();
+    jintArray array = env->NewIntArray(regions.size());
+    env->SetIntArrayRegion(array, 0, regions.size(), reinterpret_cast<const jint*>(regions.data()));
+    return array;
+}
+
+JNIEXPORT jobject JNICALL Java_org_citra_emu_NativeLibrary_mapMemoryRegion(JNIEnv* env, jclass obj,
+                                                                          jint start, jint size) {
+    return mapMemoryRegion(static_cast<u32>(start), static_cast<u32>(size));
+}
+
+JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_getMemoryGeneration(JNIEnv* env,
+                                                                           jclass obj) {
+    return Memory::MemorySystem::GetPageTableGeneration();
 }
 
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_writeMemory(JNIEnv* env, jclass obj, jint jAddr, jint valueType, jint value) {
@@ -715,6 +846,42 @@ JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_reloadCheatCode(JNIEnv*
     system.CheatEngine().ReloadCheatFile();
 }
 
+JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_setCheatEnabled(JNIEnv* env, jclass obj,
+                                                                        jint index,
+                                                                        jboolean enabled) {
+    Core::System& system{Core::System::GetInstance()};
+    system.CheatEngine().SetCheatEnabled(index, enabled);
+}
+
+JNIEXPORT jint JNICALL Java_org_citra_emu_NativeLibrary_getCheatCount(JNIEnv* env, jclass obj) {
+    Core::System& system{Core::System::GetInstance()};
+    return static_cast<jint>(system.CheatEngine().GetCheats().size());
+}
+
+JNIEXPORT jboolean JNICALL Java_org_citra_emu_NativeLibrary_updateCheat(JNIEnv* env, jclass obj,
+                                                                       jint index,
+                                                                       jobjectArray jLines) {
+    // the lines of one cheat as they appear in the cheat file
+    std::stringstream stream;
+    for (const std::string& line : JStringArrayToVector(jLines)) {
+        stream << line << '\n';
+    }
+    auto cheats = Cheats::GatewayCheat::Parse(stream);
+    if (cheats.size() != 1) {
+        return false;
+    }
+
+    Core::System& system{Core::System::GetInstance()};
+    Cheats::CheatEngine& engine = system.CheatEngine();
+    std::shared_ptr<Cheats::CheatBase> cheat = std::move(cheats.front());
+    if (index == static_cast<jint>(engine.GetCheats().size())) {
+        engine.AddCheat(cheat);
+    } else {
+        engine.UpdateCheat(index, cheat);
+    }
+    return true;
+}
+
 JNIEXPORT void JNICALL Java_org_citra_emu_NativeLibrary_loadAmiibo(JNIEnv* env, jclass obj,
                                                                    jstring jPath) {
     Core::System& system{Core::System::GetInstance()};
@@ -1,8 +1,26 @@
 #include "mem_region.h"
 
+#include <algorithm>
+#include <array>
+#include <atomic>
+#include <chrono>
+#include <cmath>
+#include <cstring>
+#include <memory>
+#include <mutex>
+#include <thread>
+#include <type_traits>
+#include <vector>
+
+#include <fmt/format.h>
+#include <zlib.h>
+
 #include "jni_common.h"
 #include "common/common_types.h"
+#include "common/file_util.h"
+#include "common/hash.h"
 #include "core/core.h"
+#include "core/loader/loader.h"
 #include "core/memory.h"
 
 // search type
@@ -13,6 +31,9 @@ static const u32 SEARCH_TYPE_UNKNOWN_SEARCH = 1;
 static const u32 VALUE_TYPE_FOUR_BYTES = 0;
 static const u32 VALUE_TYPE_TWO_BYTES = 1;
 static const u32 VALUE_TYPE_ONE_BYTE = 2;
+static const u32 VALUE_TYPE_FLOAT = 3;
+static const u32 VALUE_TYPE_DOUBLE = 4;
+static const u32 VALUE_TYPE_BYTE_PATTERN = 5;
 
 // scan type
 static const u32 SCAN_TYPE_EQUAL_TO = 0;
@@ -21,34 +42,247 @@ static const u32 SCAN_TYPE_BIGGER_THAN = 2;
 static const u32 SCAN_TYPE_BIGGER_OR_EQUAL = 3;
 static const u32 SCAN_TYPE_SMALLER_THAN = 4;
 static const u32 SCAN_TYPE_SMALLER_OR_EQUAL = 5;
+// only for unknown search, compares against the previous value
+static const u32 SCAN_TYPE_INCREASED_BY = 6;
+static const u32 SCAN_TYPE_DECREASED_BY = 7;
+// only for specified value search, between value and value2
+static const u32 SCAN_TYPE_BETWEEN = 8;
 
-static bool EqualTo(u32 lhs, u32 rhs) {
-    return lhs == rhs;
-}
+// integers are compared as u32, floating point values as themselves
+template <typename T>
+using ScanValue = std::conditional_t<std::is_floating_point_v<T>, T, u32>;
 
-static bool NotEqualTo(u32 lhs, u32 rhs) {
-    return lhs != rhs;
+// results are records of an address and the value in u32 words, a double takes two of them
+template <typename T>
+static constexpr u32 ResultWords() {
+    return 1 + (sizeof(T) + 3) / 4;
 }
 
-static bool BiggerThan(u32 lhs, u32 rhs) {
-    return lhs > rhs;
+static u32 resultWords(u32 value_type) {
+    return value_type == VALUE_TYPE_DOUBLE ? ResultWords<double>() : ResultWords<u32>();
 }
 
-static bool BiggerOrEqual(u32 lhs, u32 rhs) {
-    return lhs >= rhs;
+template <typename T>
+static void WriteResult(u32* out, u32 addr, T value) {
+    out[0] = addr;
+    if constexpr (std::is_floating_point_v<T>) {
+        std::memcpy(out + 1, &value, sizeof(value));
+    } else {
+        out[1] = value;
+    }
 }
 
-static bool SmallerThan(u32 lhs, u32 rhs) {
-    return lhs < rhs;
+template <typename T>
+static void PushResult(std::vector<u32>& results, u32 addr, T value) {
+    const std::size_t size = results.size();
+    results.resize(size + ResultWords<T>());
+    WriteResult(results.data() + size, addr, value);
 }
 
-static bool SmallerOrEqual(u32 lhs, u32 rhs) {
-    return lhs <= rhs;
+template <typename T>
+static T ReadResultValue(const u32* record) {
+    if constexpr (std::is_floating_point_v<T>) {
+        T value;
+        std::memcpy(&value, record + 1, sizeof(value));
+        return value;
+    } else {
+        return static_cast<T>(record[1]);
+    }
 }
 
-using ScanHandler = bool(*)(u32, u32);
-static ScanHandler scan_handlers[6] = {
-        &EqualTo, &NotEqualTo, &BiggerThan, &BiggerOrEqual, &SmallerThan, &SmallerOrEqual};
+// Comparators are types rather than function pointers, so each scan type gets its own copy of
+// the scan loops with the comparison inlined.
+// floating point values are equal within epsilon
+struct EqualTo {
+    double epsilon;
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        if constexpr (std::is_floating_point_v<T>) {
+            return std::abs(lhs - rhs) <= static_cast<T>(epsilon);
+        } else {
+            return lhs == rhs;
+        }
+    }
+};
+
+struct NotEqualTo {
+    double epsilon;
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return !EqualTo{epsilon}(lhs, rhs);
+    }
+};
+
+struct BiggerThan {
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return lhs > rhs;
+    }
+};
+
+struct BiggerOrEqual {
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return lhs >= rhs;
+    }
+};
+
+struct SmallerThan {
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return lhs < rhs;
+    }
+};
+
+struct SmallerOrEqual {
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return lhs <= rhs;
+    }
+};
+
+struct IncreasedBy {
+    u32 delta;
+    double fdelta;
+    double epsilon;
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        if constexpr (std::is_floating_point_v<T>) {
+            return std::abs(lhs - rhs - static_cast<T>(fdelta)) <= static_cast<T>(epsilon);
+        } else {
+            return static_cast<T>(lhs - rhs) == static_cast<T>(delta);
+        }
+    }
+};
+
+struct DecreasedBy {
+    u32 delta;
+    double fdelta;
+    double epsilon;
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        return IncreasedBy{delta, fdelta, epsilon}(rhs, lhs);
+    }
+};
+
+// rhs is the low end of the range
+struct Between {
+    u32 high;
+    double fhigh;
+    template <typename T>
+    bool operator()(T lhs, T rhs) const {
+        if constexpr (std::is_floating_point_v<T>) {
+            return lhs >= rhs && lhs <= static_cast<T>(fhigh);
+        } else {
+            return lhs >= rhs && lhs <= static_cast<T>(high);
+        }
+    }
+};
+
+// max number of threads used by the first pass
+static const u32 MAX_SCAN_THREADS = 8;
+// how often the first pass reports progress
+static const std::chrono::milliseconds SCAN_PROGRESS_INTERVAL{100};
+
+static std::atomic<bool> g_scan_cancelled{false};
+
+// an unknown search keeps its candidates in the snapshot until there are this few of them
+static const u32 MAX_SNAPSHOT_RESULTS = 1 << 20;
+
+// a snapshot page is compressed on its own, a window of one page is all it can use
+static const int PAGE_WINDOW_BITS = 12;
+static_assert((1u << PAGE_WINDOW_BITS) >= Memory::PAGE_SIZE, "window must cover a page");
+
+/**
+ * zlib streams reused for every page of one pass over a snapshot, a page is too small to pay
+ * for setting up a stream each time.
+ */
+class PageCodec {
+public:
+    PageCodec() {
+        deflateInit2(&mDeflate, Z_BEST_SPEED, Z_DEFLATED, PAGE_WINDOW_BITS, 8, Z_DEFAULT_STRATEGY);
+        inflateInit2(&mInflate, PAGE_WINDOW_BITS);
+    }
+
+    ~PageCodec() {
+        deflateEnd(&mDeflate);
+        inflateEnd(&mInflate);
+    }
+
+    PageCodec(const PageCodec&) = delete;
+    PageCodec& operator=(const PageCodec&) = delete;
+
+    // returns the compressed size, 0 if the page doesn't get smaller than out_size
+    u32 Compress(const u8* page, u8* out, u32 out_size) {
+        deflateReset(&mDeflate);
+        mDeflate.next_in = const_cast<u8*>(page);
+        mDeflate.avail_in = Memory::PAGE_SIZE;
+        mDeflate.next_out = out;
+        mDeflate.avail_out = out_size;
+        return deflate(&mDeflate, Z_FINISH) == Z_STREAM_END ? mDeflate.total_out : 0;
+    }
+
+    bool Decompress(const u8* data, u32 size, u8* page) {
+        inflateReset(&mInflate);
+        mInflate.next_in = const_cast<u8*>(data);
+        mInflate.avail_in = size;
+        mInflate.next_out = page;
+        mInflate.avail_out = Memory::PAGE_SIZE;
+        return inflate(&mInflate, Z_FINISH) == Z_STREAM_END &&
+               mInflate.total_out == Memory::PAGE_SIZE;
+    }
+
+private:
+    z_stream mDeflate{};
+    z_stream mInflate{};
+};
+
+/**
+ * One page of an unknown search snapshot. The content is kept compressed, pages that were all
+ * zero keep nothing, and pages drop out of the snapshot as soon as a filter leaves no
+ * candidate in them.
+ */
+struct SnapshotPage {
+    u32 index = 0;
+    u32 count = 0;           // candidates left in this page
+    // page content at the last filter: empty if it was all zero, the plain page if it didn't
+    // compress, zlib data otherwise
+    std::vector<u8> data;
+    std::vector<u64> bits;   // one bit per value in the page
+
+    void Load(PageCodec& codec, u8* out) const {
+        if (data.empty()) {
+            std::memset(out, 0, Memory::PAGE_SIZE);
+        } else if (data.size() == Memory::PAGE_SIZE) {
+            std::memcpy(out, data.data(), Memory::PAGE_SIZE);
+        } else if (!codec.Decompress(data.data(), data.size(), out)) {
+            std::memset(out, 0, Memory::PAGE_SIZE);
+        }
+    }
+
+    void Store(PageCodec& codec, const u8* p) {
+        if (std::all_of(p, p + Memory::PAGE_SIZE, [](u8 b) { return b == 0; })) {
+            data.clear();
+            data.shrink_to_fit();
+            return;
+        }
+        std::array<u8, Memory::PAGE_SIZE> buffer;
+        const u32 size = codec.Compress(p, buffer.data(), Memory::PAGE_SIZE - 1);
+        if (size == 0) {
+            data.assign(p, p + Memory::PAGE_SIZE);
+        } else {
+            data.assign(buffer.data(), buffer.data() + size);
+        }
+        data.shrink_to_fit();
+    }
+};
+
+// sets the bits [first, last)
+static void setBits(std::vector<u64>& bits, u32 first, u32 last) {
+    for (u32 j = first; j < last; ++j) {
+        bits[j / 64] |= u64{1} << (j % 64);
+    }
+}
 
 struct SearchSession {
     bool initialized = false;
@@ -58,208 +292,1417 @@ struct SearchSession {
     u32 search_type = 0;
     u32 scan_type = 0;
     u32 value = 0;
+    u32 value2 = 0;
+    // the values of a floating point search
+    double fvalue = 0.0;
+    double fvalue2 = 0.0;
+    double epsilon = 0.0;
+    // byte pattern search, a mask bit of 0 matches any bit
+    std::vector<u8> pattern;
+    std::vector<u8> mask;
     std::vector<u32> results;
-    std::array<u8*, Memory::PAGE_TABLE_NUM_ENTRIES> pointers{};
-
-    void reset() {
-        initialized = false;
-        start_addr = 0;
-        stop_addr = 0;
-        value_type = 0;
-        search_type = 0;
-        scan_type = 0;
-        value = 0;
-        results.clear();
-        for (u32 i = 0; i < pointers.size(); ++i) {
-            if (pointers[i] != nullptr) {
-                delete[] pointers[i];
-                pointers[i] = nullptr;
-            }
-        }
+    // candidates of an unknown search that still has too many of them for the results list
+    std::vector<SnapshotPage> snapshot;
+    u32 snapshot_count = 0;
+
+    u32 count() const {
+        return snapshot.empty() ? results.size() / resultWords(value_type) : snapshot_count;
     }
 };
 
-static SearchSession g_search_session{};
+// A search works on a session of its own and publishes it in place of the previous one once it
+// is done, so the result getters on the UI thread only ever wait for that swap, never for a scan.
+static std::shared_ptr<const SearchSession> g_search_session = std::make_shared<SearchSession>();
+// one search, pointer scan or dump at a time
+static std::mutex g_search_mutex;
+// guards g_search_session itself, never held while memory is scanned
+static std::mutex g_results_mutex;
+
+static std::shared_ptr<const SearchSession> getSearchSession() {
+    std::lock_guard lock{g_results_mutex};
+    return g_search_session;
+}
+
+// the previous session is freed by whoever releases it last, outside the lock
+static void publishSearchSession(std::shared_ptr<const SearchSession> session) {
+    std::lock_guard lock{g_results_mutex};
+    g_search_session.swap(session);
+}
+
+template <typename Visitor>
+static bool VisitScanType(u32 scan_type, const SearchSession& session, Visitor&& visitor) {
+    switch (scan_type) {
+    case SCAN_TYPE_EQUAL_TO:
+        return visitor(EqualTo{session.epsilon});
+    case SCAN_TYPE_NOT_EQUAL_TO:
+        return visitor(NotEqualTo{session.epsilon});
+    case SCAN_TYPE_BIGGER_THAN:
+        return visitor(BiggerThan{});
+    case SCAN_TYPE_BIGGER_OR_EQUAL:
+        return visitor(BiggerOrEqual{});
+    case SCAN_TYPE_SMALLER_THAN:
+        return visitor(SmallerThan{});
+    case SCAN_TYPE_SMALLER_OR_EQUAL:
+        return visitor(SmallerOrEqual{});
+    case SCAN_TYPE_INCREASED_BY:
+        return visitor(IncreasedBy{session.value, session.fvalue, session.epsilon});
+    case SCAN_TYPE_DECREASED_BY:
+        return visitor(DecreasedBy{session.value, session.fvalue, session.epsilon});
+    case SCAN_TYPE_BETWEEN:
+        return visitor(Between{session.value2, session.fvalue2});
+    }
+    return false;
+}
+
+template <typename T>
+static ScanValue<T> GetScanValue(const SearchSession& session) {
+    if constexpr (std::is_floating_point_v<T>) {
+        return static_cast<T>(session.fvalue);
+    } else {
+        return session.value;
+    }
+}
 
-template<typename T>
-void searchInResults(const SearchSession& session, std::vector<u32>& results) {
+// filters the previous results with the parameters of session
+template <typename T, typename Compare>
+void searchInResults(const SearchSession& session, const std::vector<u32>& previous,
+                     std::vector<u32>& results, Compare compare) {
     Core::System& system{Core::System::GetInstance()};
     auto pagetable = system.Memory().GetCurrentPageTable();
 
-    for (u32 i = 0; i < session.results.size(); i += 2) {
-        u32 addr = session.results[i];
+    for (u32 i = 0; i < previous.size(); i += ResultWords<T>()) {
+        u32 addr = previous[i];
         if (addr < session.start_addr || addr > session.stop_addr) {
             continue;
         }
-        u32 old_value = session.results[i + 1];
         u32 page_index = addr >> Memory::PAGE_BITS;
         u32 page_offset = addr & Memory::PAGE_MASK;
         auto p = pagetable->pointers[page_index];
         if (p != nullptr) {
-            u32 new_value = *reinterpret_cast<const T*>(p + page_offset);
-            if (scan_handlers[session.scan_type](new_value, session.value)) {
-                results.push_back(addr);
-                results.push_back(new_value);
+            const T new_value = *reinterpret_cast<const T*>(p + page_offset);
+            if (compare(static_cast<ScanValue<T>>(new_value), GetScanValue<T>(session))) {
+                PushResult(results, addr, new_value);
             }
         }
     }
 }
 
-template<typename T>
-void searchMemory(SearchSession& session) {
-    u32 start = static_cast<u32>(session.start_addr);
-    u32 startPage = start >> Memory::PAGE_BITS;
-    u32 startOffset = start & Memory::PAGE_MASK;
+template <typename T, typename Compare>
+static void searchPage(const u8* page, u32 page_addr, u32 begin, u32 end, ScanValue<T> value,
+                       Compare compare, std::vector<u32>& results) {
+    const T* p = reinterpret_cast<const T*>(page + begin);
+    const u32 count = (end - begin) / sizeof(T);
+
+    // Most pages have no hit at all, count them first with a branch free loop that the
+    // compiler vectorizes, and only walk the page again when there is something to collect.
+    u32 hits = 0;
+    for (u32 j = 0; j < count; ++j) {
+        hits += compare(static_cast<ScanValue<T>>(p[j]), value);
+    }
+    if (hits == 0) {
+        return;
+    }
+
+    for (u32 j = 0; j < count; ++j) {
+        if (compare(static_cast<ScanValue<T>>(p[j]), value)) {
+            PushResult(results, page_addr + begin + j * sizeof(T), p[j]);
+        }
+    }
+}
+
+/**
+ * Calls scan(page_index, begin, end, results) for every mapped page between the session
+ * addresses on up to MAX_SCAN_THREADS threads, and appends what they found to the session
+ * results in address order. Offsets in the first page are aligned down to align.
+ */
+template <typename Scan>
+static bool scanMappedPages(SearchSession& session, u32 align, Scan scan) {
+    const u32 start = session.start_addr;
+    const u32 start_page = start >> Memory::PAGE_BITS;
+    const u32 start_offset = (start & Memory::PAGE_MASK) & ~(align - 1);
+
+    const u32 stop = session.stop_addr;
+    const u32 stop_page = stop >> Memory::PAGE_BITS;
+    const u32 stop_offset = stop & Memory::PAGE_MASK;
+
+    Core::System& system{Core::System::GetInstance()};
+    auto pagetable = system.Memory().GetCurrentPageTable();
+
+    std::vector<u32> pages;
+    for (u32 i = start_page; i <= stop_page; ++i) {
+        if (pagetable->pointers[i] != nullptr) {
+            pages.push_back(i);
+        }
+    }
+    if (pages.empty()) {
+        return true;
+    }
+
+    // every thread scans one contiguous range of pages into its own buffer, so the buffers
+    // only have to be appended in order to keep the results sorted by address
+    const u32 num_threads = std::clamp<u32>(std::thread::hardware_concurrency(), 1,
+                                            std::min<u32>(MAX_SCAN_THREADS, pages.size()));
+    const u32 pages_per_thread = (pages.size() + num_threads - 1) / num_threads;
+    std::vector<std::vector<u32>> buffers(num_threads);
+    std::vector<std::thread> threads;
+    std::atomic<u32> pages_done{0};
+    std::atomic<u32> threads_done{0};
+
+    for (u32 t = 0; t < num_threads; ++t) {
+        threads.emplace_back([&, t] {
+            const u32 first = t * pages_per_thread;
+            const u32 last = std::min<u32>(first + pages_per_thread, pages.size());
+            for (u32 k = first; k < last && !g_scan_cancelled; ++k) {
+                const u32 i = pages[k];
+                const u32 begin = i == start_page ? start_offset : 0;
+                const u32 end = i == stop_page ? stop_offset : Memory::PAGE_SIZE;
+                if (begin < end) {
+                    scan(i, begin, end, buffers[t]);
+                }
+                pages_done.fetch_add(1, std::memory_order_relaxed);
+            }
+            threads_done.fetch_add(1, std::memory_order_release);
+        });
+    }
+
+    while (threads_done.load(std::memory_order_acquire) < num_threads) {
+        UpdateSearchProgress(pages_done.load(std::memory_order_relaxed), pages.size());
+        std::this_thread::sleep_for(SCAN_PROGRESS_INTERVAL);
+    }
+    for (auto& thread : threads) {
+        thread.join();
+    }
+    if (g_scan_cancelled) {
+        return false;
+    }
 
-    u32 stop = static_cast<u32>(session.stop_addr);
-    u32 stopPage = stop >> Memory::PAGE_BITS;
-    u32 stopOffset = stop & Memory::PAGE_MASK;
+    std::size_t size = 0;
+    for (const auto& buffer : buffers) {
+        size += buffer.size();
+    }
+    session.results.reserve(size);
+    for (const auto& buffer : buffers) {
+        session.results.insert(session.results.end(), buffer.begin(), buffer.end());
+    }
+    UpdateSearchProgress(pages.size(), pages.size());
+    return true;
+}
 
+template <typename T, typename Compare>
+bool searchMemory(SearchSession& session, Compare compare) {
     Core::System& system{Core::System::GetInstance()};
     auto pagetable = system.Memory().GetCurrentPageTable();
+    const ScanValue<T> value = GetScanValue<T>(session);
+    return scanMappedPages(session, sizeof(T),
+                           [&](u32 i, u32 begin, u32 end, std::vector<u32>& results) {
+                               searchPage<T>(pagetable->pointers[i], i << Memory::PAGE_BITS,
+                                             begin, end, value, compare, results);
+                           });
+}
+
+// longest byte pattern, the bytes a match may read from the next page fit in one page
+static const u32 MAX_PATTERN_SIZE = 256;
 
-    for (u32 i = startPage; i <= stopPage; ++i) {
-        auto base_ptr = pagetable->pointers[i];
-        if (base_ptr != nullptr) {
-            const u8* startp = base_ptr + startOffset;
-            const u8* stopp = (stopPage == i) ? base_ptr + stopOffset : base_ptr + Memory::PAGE_SIZE;
-            const T* p = reinterpret_cast<const T*>(startp);
-            const T* stoppT = reinterpret_cast<const T*>(stopp);
-            while (p < stoppT) {
-                if (scan_handlers[session.scan_type](*p, session.value)) {
-                    u32 addr = (i << Memory::PAGE_BITS) + (reinterpret_cast<const u8*>(p) - startp);
-                    u32 value32 = *p;
-                    session.results.push_back(addr);
-                    session.results.push_back(value32);
+/**
+ * Horspool search for a byte pattern with a bit mask. Pattern bytes with a partial mask match
+ * several byte values, each of them gets the shift of that position in the skip table.
+ */
+class PatternMatcher {
+public:
+    PatternMatcher(const std::vector<u8>& pattern, const std::vector<u8>& mask)
+        : mPattern(pattern), mMask(mask) {
+        const u32 size = mPattern.size();
+        for (u32 k = 0; k < size; ++k) {
+            mPattern[k] &= mMask[k];
+        }
+        mShift.fill(size);
+        // later positions have smaller shifts and overwrite the earlier ones
+        for (u32 k = 0; k + 1 < size; ++k) {
+            if (mMask[k] == 0xFF) {
+                mShift[mPattern[k]] = size - 1 - k;
+                continue;
+            }
+            for (u32 c = 0; c < 256; ++c) {
+                if ((c & mMask[k]) == mPattern[k]) {
+                    mShift[c] = size - 1 - k;
                 }
-                p += 1;
             }
         }
-        startOffset = 0;
     }
+
+    u32 Size() const {
+        return mPattern.size();
+    }
+
+    bool Matches(const u8* p) const {
+        for (u32 k = mPattern.size(); k-- > 0;) {
+            if ((p[k] & mMask[k]) != mPattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // calls found(offset) for every match starting in [begin, end) of data
+    template <typename Found>
+    void Search(const u8* data, u32 size, u32 begin, u32 end, Found&& found) const {
+        const u32 last = mPattern.size() - 1;
+        u32 pos = begin;
+        while (pos < end && pos + last < size) {
+            if (Matches(data + pos)) {
+                found(pos);
+            }
+            pos += mShift[data[pos + last]];
+        }
+    }
+
+private:
+    std::vector<u8> mPattern;
+    std::vector<u8> mMask;
+    std::array<u32, 256> mShift;
+};
+
+// reads size bytes at addr, which may span pages, returns false if any of them is unmapped
+static bool readGuestBytes(const Memory::PageTable& pagetable, u32 addr, u32 size, u8* out) {
+    while (size > 0) {
+        const u8* p = pagetable.pointers[addr >> Memory::PAGE_BITS];
+        if (p == nullptr) {
+            return false;
+        }
+        const u32 offset = addr & Memory::PAGE_MASK;
+        const u32 n = std::min(size, Memory::PAGE_SIZE - offset);
+        std::memcpy(out, p + offset, n);
+        out += n;
+        addr += n;
+        size -= n;
+    }
+    return true;
+}
+
+// the value shown for a pattern match is the word at its address
+static u32 readMatchValue(const Memory::PageTable& pagetable, u32 addr) {
+    u8 bytes[4]{};
+    readGuestBytes(pagetable, addr, sizeof(bytes), bytes);
+    return bytes[0] | (bytes[1] << 8) | (bytes[2] << 16) | (static_cast<u32>(bytes[3]) << 24);
 }
 
-template<typename T>
-void compareInResults(const SearchSession& session, std::vector<u32>& results) {
+static bool searchPattern(const SearchSession& previous, SearchSession& session) {
     Core::System& system{Core::System::GetInstance()};
     auto pagetable = system.Memory().GetCurrentPageTable();
+    const PatternMatcher matcher{session.pattern, session.mask};
+    const u32 tail = matcher.Size() - 1;
 
-    for (u32 i = 0; i < session.results.size(); i += 2) {
-        u32 addr = session.results[i];
+    if (previous.initialized) {
+        std::vector<u8> bytes(matcher.Size());
+        for (u32 i = 0; i < previous.results.size(); i += ResultWords<u32>()) {
+            const u32 addr = previous.results[i];
+            if (addr >= session.start_addr && addr <= session.stop_addr &&
+                readGuestBytes(*pagetable, addr, bytes.size(), bytes.data()) &&
+                matcher.Matches(bytes.data())) {
+                PushResult(session.results, addr, readMatchValue(*pagetable, addr));
+            }
+        }
+        session.initialized = true;
+        return true;
+    }
+
+    const u32 stop_page = session.stop_addr >> Memory::PAGE_BITS;
+    const bool finished = scanMappedPages(
+        session, 1, [&](u32 i, u32 begin, u32 end, std::vector<u32>& results) {
+            // matches starting near the end of the page continue into the next mapped one
+            const u8* page = pagetable->pointers[i];
+            const u8* next = i < stop_page ? pagetable->pointers[i + 1] : nullptr;
+            std::array<u8, Memory::PAGE_SIZE + MAX_PATTERN_SIZE> buffer;
+            const u8* data = page;
+            u32 size = Memory::PAGE_SIZE;
+            if (next != nullptr && tail > 0) {
+                std::memcpy(buffer.data(), page, Memory::PAGE_SIZE);
+                std::memcpy(buffer.data() + Memory::PAGE_SIZE, next, tail);
+                data = buffer.data();
+                size += tail;
+            }
+            const u32 page_addr = i << Memory::PAGE_BITS;
+            matcher.Search(data, size, begin, end, [&](u32 offset) {
+                PushResult(results, page_addr + offset,
+                           readMatchValue(*pagetable, page_addr + offset));
+            });
+        });
+    if (!finished) {
+        return false;
+    }
+    session.initialized = !session.results.empty();
+    return true;
+}
+
+template <typename T, typename Compare>
+void compareInResults(const SearchSession& session, const std::vector<u32>& previous,
+                      std::vector<u32>& results, Compare compare) {
+    Core::System& system{Core::System::GetInstance()};
+    auto pagetable = system.Memory().GetCurrentPageTable();
+
+    for (u32 i = 0; i < previous.size(); i += ResultWords<T>()) {
+        u32 addr = previous[i];
         if (addr < session.start_addr || addr > session.stop_addr) {
             continue;
         }
-        u32 old_value = session.results[i + 1];
+        const T old_value = ReadResultValue<T>(previous.data() + i);
         u32 page_index = addr >> Memory::PAGE_BITS;
         u32 page_offset = addr & Memory::PAGE_MASK;
         auto p = pagetable->pointers[page_index];
         if (p != nullptr) {
-            u32 new_value = *reinterpret_cast<const T*>(p + page_offset);
-            if (scan_handlers[session.scan_type](new_value, old_value)) {
-                results.push_back(addr);
-                results.push_back(new_value);
+            const T new_value = *reinterpret_cast<const T*>(p + page_offset);
+            if (compare(new_value, old_value)) {
+                PushResult(results, addr, new_value);
             }
         }
     }
 }
 
-template<typename T>
-void compareMemory(SearchSession& session) {
+// the candidates are the values between the session addresses, the same the first pass of a
+// specified value search looks at
+template <typename T>
+void takeSnapshot(SearchSession& session) {
     Core::System& system{Core::System::GetInstance()};
     auto pagetable = system.Memory().GetCurrentPageTable();
+    PageCodec codec;
 
-    for (u32 i = 0 ; i < pagetable->pointers.size(); ++i) {
+    constexpr u32 values_per_page = Memory::PAGE_SIZE / sizeof(T);
+    const u32 start_page = session.start_addr >> Memory::PAGE_BITS;
+    const u32 start_value = (session.start_addr & Memory::PAGE_MASK) / sizeof(T);
+    const u32 stop_page = session.stop_addr >> Memory::PAGE_BITS;
+    const u32 stop_value = (session.stop_addr & Memory::PAGE_MASK) / sizeof(T);
+    for (u32 i = start_page; i <= stop_page; ++i) {
         auto p = pagetable->pointers[i];
-        auto q = session.pointers[i];
-        if (p != nullptr) {
-            if (q == nullptr) {
-                q = new u8[Memory::PAGE_SIZE];
-                std::memcpy(q, p, Memory::PAGE_SIZE);
-                session.pointers[i] = q;
-            } else {
-                const T* pT = reinterpret_cast<const T*>(p);
-                const T* qT = reinterpret_cast<const T*>(q);
-                for (u32 j = 0; j < Memory::PAGE_SIZE; j += sizeof(T)) {
-                    if (scan_handlers[session.scan_type](*pT, *qT)) {
-                        u32 addr = (i << Memory::PAGE_SIZE) + j;
-                        u32 value32 = *pT;
-                        session.results.push_back(addr);
-                        session.results.push_back(value32);
-                    }
-                    pT++;
-                    qT++;
+        if (p == nullptr) {
+            continue;
+        }
+        const u32 first = i == start_page ? start_value : 0;
+        const u32 last = i == stop_page ? stop_value : values_per_page;
+        if (first >= last) {
+            continue;
+        }
+        SnapshotPage page;
+        page.index = i;
+        page.count = last - first;
+        page.bits.assign(values_per_page / 64, 0);
+        setBits(page.bits, first, last);
+        page.Store(codec, p);
+        session.snapshot_count += page.count;
+        session.snapshot.push_back(std::move(page));
+    }
+}
+
+// the pages of the previous snapshot that still have candidates go to the new one
+template <typename T, typename Compare>
+void filterSnapshot(const SearchSession& previous, SearchSession& session, Compare compare) {
+    Core::System& system{Core::System::GetInstance()};
+    auto pagetable = system.Memory().GetCurrentPageTable();
+    PageCodec codec;
+    std::array<u8, Memory::PAGE_SIZE> old_data;
+
+    u32 total = 0;
+    for (const SnapshotPage& old_page : previous.snapshot) {
+        const u8* p = pagetable->pointers[old_page.index];
+        if (p == nullptr) {
+            continue;
+        }
+        SnapshotPage page;
+        page.index = old_page.index;
+        page.bits = old_page.bits;
+        const T* new_values = reinterpret_cast<const T*>(p);
+        old_page.Load(codec, old_data.data());
+        const T* old_values = reinterpret_cast<const T*>(old_data.data());
+        u32 count = 0;
+        for (u32 w = 0; w < page.bits.size(); ++w) {
+            u64 bits = page.bits[w];
+            while (bits != 0) {
+                const u32 bit = __builtin_ctzll(bits);
+                const u32 j = w * 64 + bit;
+                if (compare(new_values[j], old_values[j])) {
+                    count++;
+                } else {
+                    page.bits[w] &= ~(u64{1} << bit);
                 }
+                bits &= bits - 1;
             }
         }
+        if (count > 0) {
+            // the next filter compares against the values as they are now
+            page.count = count;
+            page.Store(codec, p);
+            session.snapshot.push_back(std::move(page));
+            total += count;
+        }
     }
+    session.snapshot_count = total;
 }
 
-jintArray searchMemoryRegion(u32 start_addr, u32 stop_addr, u32 value_type, u32 search_type, u32 scan_type, u32 value) {
-    if (g_search_session.search_type != search_type ||
-        g_search_session.value_type != value_type ||
-        g_search_session.start_addr > start_addr ||
-        g_search_session.stop_addr < stop_addr) {
-        g_search_session.reset();
+// turns the snapshot into a plain results list once it is small enough
+template <typename T>
+void flattenSnapshot(SearchSession& session) {
+    PageCodec codec;
+    std::array<u8, Memory::PAGE_SIZE> data;
+    session.results.clear();
+    session.results.reserve(session.snapshot_count * ResultWords<T>());
+    for (const SnapshotPage& page : session.snapshot) {
+        page.Load(codec, data.data());
+        const T* values = reinterpret_cast<const T*>(data.data());
+        for (u32 w = 0; w < page.bits.size(); ++w) {
+            u64 bits = page.bits[w];
+            while (bits != 0) {
+                const u32 j = w * 64 + __builtin_ctzll(bits);
+                PushResult(session.results, (page.index << Memory::PAGE_BITS) + j * sizeof(T),
+                           values[j]);
+                bits &= bits - 1;
+            }
+        }
     }
+    session.snapshot.clear();
+    session.snapshot.shrink_to_fit();
+    session.snapshot_count = 0;
+}
 
-    g_search_session.start_addr = start_addr;
-    g_search_session.stop_addr = stop_addr;
-    g_search_session.value_type = value_type;
-    g_search_session.search_type = search_type;
-    g_search_session.scan_type = scan_type;
-    g_search_session.value = value;
+// copies up to count candidates starting at offset as result records
+template <typename T>
+u32 readSnapshot(const SearchSession& session, u32 offset, u32 count, u32* out) {
+    PageCodec codec;
+    std::array<u8, Memory::PAGE_SIZE> data;
+    u32 copied = 0;
+    for (const SnapshotPage& page : session.snapshot) {
+        if (copied == count) {
+            break;
+        }
+        if (offset >= page.count) {
+            offset -= page.count;
+            continue;
+        }
+        page.Load(codec, data.data());
+        const T* values = reinterpret_cast<const T*>(data.data());
+        for (u32 w = 0; w < page.bits.size() && copied < count; ++w) {
+            u64 bits = page.bits[w];
+            const u32 num_bits = __builtin_popcountll(bits);
+            if (offset >= num_bits) {
+                offset -= num_bits;
+                continue;
+            }
+            while (bits != 0 && copied < count) {
+                const u32 j = w * 64 + __builtin_ctzll(bits);
+                bits &= bits - 1;
+                if (offset > 0) {
+                    offset--;
+                    continue;
+                }
+                WriteResult(out + copied * ResultWords<T>(),
+                            (page.index << Memory::PAGE_BITS) + j * sizeof(T), values[j]);
+                copied++;
+            }
+        }
+    }
+    return copied;
+}
 
-    if (search_type == SEARCH_TYPE_SPECIFIED_VALUE) {
-        if (!g_search_session.initialized) {
-            if (g_search_session.value_type == VALUE_TYPE_FOUR_BYTES) {
-                searchMemory<u32>(g_search_session);
-            } else if (g_search_session.value_type == VALUE_TYPE_TWO_BYTES) {
-                searchMemory<u16>(g_search_session);
-            } else if (g_search_session.value_type == VALUE_TYPE_ONE_BYTE) {
-                searchMemory<u8>(g_search_session);
+// session has the new parameters and no results yet, previous is the published session
+template <typename T>
+static bool searchSession(const SearchSession& previous, SearchSession& session) {
+    u32 scan_type = session.scan_type;
+    if (session.search_type == SEARCH_TYPE_SPECIFIED_VALUE &&
+        (scan_type == SCAN_TYPE_INCREASED_BY || scan_type == SCAN_TYPE_DECREASED_BY)) {
+        // there is no previous value to compare with
+        scan_type = SCAN_TYPE_EQUAL_TO;
+    } else if (session.search_type == SEARCH_TYPE_UNKNOWN_SEARCH && scan_type == SCAN_TYPE_BETWEEN) {
+        // a range is a specified value, unknown searches only compare with the previous value
+        scan_type = SCAN_TYPE_EQUAL_TO;
+    }
+    return VisitScanType(scan_type, session, [&previous, &session](auto compare) {
+        if (session.search_type == SEARCH_TYPE_SPECIFIED_VALUE) {
+            if (!previous.initialized) {
+                if (!searchMemory<T>(session, compare)) {
+                    return false;
+                }
+                session.initialized = !session.results.empty();
+            } else {
+                session.initialized = true;
+                searchInResults<T>(session, previous.results, session.results, compare);
             }
-            g_search_session.initialized = !g_search_session.results.empty();
-        } else if (!g_search_session.results.empty()) {
-            std::vector<u32> results;
-            if (g_search_session.value_type == VALUE_TYPE_FOUR_BYTES) {
-                searchInResults<u32>(g_search_session, results);
-            } else if (g_search_session.value_type == VALUE_TYPE_TWO_BYTES) {
-                searchInResults<u16>(g_search_session, results);
-            } else if (g_search_session.value_type == VALUE_TYPE_ONE_BYTE) {
-                searchInResults<u8>(g_search_session, results);
+        } else if (session.search_type == SEARCH_TYPE_UNKNOWN_SEARCH) {
+            if (!previous.initialized) {
+                // the first unknown search only records the values to compare with later
+                takeSnapshot<T>(session);
+                session.initialized = !session.snapshot.empty();
+            } else if (!previous.snapshot.empty()) {
+                session.initialized = true;
+                filterSnapshot<T>(previous, session, compare);
+                if (session.snapshot_count <= MAX_SNAPSHOT_RESULTS) {
+                    flattenSnapshot<T>(session);
+                }
+            } else {
+                session.initialized = true;
+                compareInResults<T>(session, previous.results, session.results, compare);
             }
-            g_search_session.results.swap(results);
-        }
-    } else if (search_type == SEARCH_TYPE_UNKNOWN_SEARCH) {
-        if (!g_search_session.initialized) {
-            if (g_search_session.value_type == VALUE_TYPE_FOUR_BYTES) {
-                compareMemory<u32>(g_search_session);
-            } else if (g_search_session.value_type == VALUE_TYPE_TWO_BYTES) {
-                compareMemory<u16>(g_search_session);
-            } else if (g_search_session.value_type == VALUE_TYPE_ONE_BYTE) {
-                compareMemory<u8>(g_search_session);
+        }
+        return true;
+    });
+}
+
+// floating point values come as the bits of a double, the value type must be set
+static void setSearchValues(SearchSession& session, u64 value, u64 value2, double epsilon) {
+    if (session.value_type == VALUE_TYPE_FLOAT || session.value_type == VALUE_TYPE_DOUBLE) {
+        std::memcpy(&session.fvalue, &value, sizeof(double));
+        std::memcpy(&session.fvalue2, &value2, sizeof(double));
+        session.epsilon = epsilon;
+    } else {
+        session.value = static_cast<u32>(value);
+        session.value2 = static_cast<u32>(value2);
+    }
+}
+
+/**
+ * The search session of a title is saved after every step, so the narrowing survives the game
+ * closing or the process being killed. The file is a header and a zlib compressed payload of
+ * either the results, as address deltas and value words in varints, or the snapshot pages, as page
+ * index deltas and candidate bits. Snapshot page contents are not saved, a restored snapshot
+ * compares with the memory as it is when restored.
+ */
+struct SessionHeader {
+    u32 magic;
+    u32 version;
+    u32 start_addr;
+    u32 stop_addr;
+    u32 value_type;
+    u32 search_type;
+    u32 scan_type;
+    u32 is_snapshot;
+    u32 count;         // results or snapshot pages
+    u32 raw_size;
+    u32 compressed_size;
+    u32 reserved;
+    // the search values as searchMemoryRegion takes them
+    u64 value;
+    u64 value2;
+    double epsilon;
+};
+
+static const u32 SESSION_MAGIC = 0x48435253; // "SRCH"
+static const u32 SESSION_VERSION = 3;
+// payloads bigger than this are not restored
+static const u32 MAX_SESSION_SIZE = 256 * 1024 * 1024;
+
+static std::string getSessionPath() {
+    Core::System& system{Core::System::GetInstance()};
+    u64 program_id = 0;
+    if (!system.IsPoweredOn() ||
+        system.GetAppLoader().ReadProgramId(program_id) != Loader::ResultStatus::Success) {
+        return {};
+    }
+    return fmt::format("{}search/{:016X}.bin", FileUtil::GetUserPath(FileUtil::UserPath::UserDir),
+                       program_id);
+}
+
+static void writeVarint(std::vector<u8>& out, u32 value) {
+    while (value >= 0x80) {
+        out.push_back(static_cast<u8>(value | 0x80));
+        value >>= 7;
+    }
+    out.push_back(static_cast<u8>(value));
+}
+
+static bool readVarint(const u8*& p, const u8* end, u32& value) {
+    value = 0;
+    for (u32 shift = 0; shift < 35 && p != end; shift += 7) {
+        const u8 b = *p++;
+        value |= static_cast<u32>(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+            return true;
+        }
+    }
+    return false;
+}
+
+static void saveSearchSession(const SearchSession& session) {
+    const std::string path = getSessionPath();
+    if (path.empty()) {
+        return;
+    }
+    if (!session.initialized) {
+        FileUtil::Delete(path);
+        return;
+    }
+
+    std::vector<u8> raw;
+    u32 count = 0;
+    if (session.snapshot.empty()) {
+        const u32 words = resultWords(session.value_type);
+        count = session.results.size() / words;
+        raw.reserve(session.results.size() * 2);
+        u32 last_addr = 0;
+        for (u32 i = 0; i < session.results.size(); i += words) {
+            // results are sorted by address, so the deltas are small
+            writeVarint(raw, session.results[i] - last_addr);
+            for (u32 w = 1; w < words; ++w) {
+                writeVarint(raw, session.results[i + w]);
             }
-            g_search_session.initialized = !g_search_session.results.empty();
-        } else if (!g_search_session.results.empty()) {
-            std::vector<u32> results;
-            if (g_search_session.value_type == VALUE_TYPE_FOUR_BYTES) {
-                compareInResults<u32>(g_search_session, results);
-            } else if (g_search_session.value_type == VALUE_TYPE_TWO_BYTES) {
-                compareInResults<u16>(g_search_session, results);
-            } else if (g_search_session.value_type == VALUE_TYPE_ONE_BYTE) {
-                compareInResults<u8>(g_search_session, results);
+            last_addr = session.results[i];
+        }
+    } else {
+        count = session.snapshot.size();
+        u32 last_index = 0;
+        for (const SnapshotPage& page : session.snapshot) {
+            writeVarint(raw, page.index - last_index);
+            writeVarint(raw, page.bits.size());
+            const u8* bits = reinterpret_cast<const u8*>(page.bits.data());
+            raw.insert(raw.end(), bits, bits + page.bits.size() * sizeof(u64));
+            last_index = page.index;
+        }
+    }
+
+    uLongf compressed_size = compressBound(raw.size());
+    std::vector<u8> compressed(compressed_size);
+    if (compress2(compressed.data(), &compressed_size, raw.data(), raw.size(), Z_BEST_SPEED) != Z_OK) {
+        return;
+    }
+
+    u64 value = session.value;
+    u64 value2 = session.value2;
+    if (session.value_type == VALUE_TYPE_FLOAT || session.value_type == VALUE_TYPE_DOUBLE) {
+        std::memcpy(&value, &session.fvalue, sizeof(value));
+        std::memcpy(&value2, &session.fvalue2, sizeof(value2));
+    }
+    const SessionHeader header{SESSION_MAGIC,
+                               SESSION_VERSION,
+                               session.start_addr,
+                               session.stop_addr,
+                               session.value_type,
+                               session.search_type,
+                               session.scan_type,
+                               !session.snapshot.empty(),
+                               count,
+                               static_cast<u32>(raw.size()),
+                               static_cast<u32>(compressed_size),
+                               0,
+                               value,
+                               value2,
+                               session.epsilon};
+    // the previous session stays intact until the new one is completely written
+    const std::string temp_path = path + ".tmp";
+    FileUtil::CreateFullPath(path);
+    {
+        FileUtil::IOFile file(temp_path, "wb");
+        if (!file.IsOpen() || file.WriteObject(header) != 1 ||
+            file.WriteBytes(compressed.data(), compressed_size) != compressed_size) {
+            file.Close();
+            FileUtil::Delete(temp_path);
+            return;
+        }
+    }
+    FileUtil::Rename(temp_path, path);
+}
+
+template <typename T>
+static bool restoreSnapshot(SearchSession& session, const u8* p, const u8* end, u32 count) {
+    Core::System& system{Core::System::GetInstance()};
+    auto pagetable = system.Memory().GetCurrentPageTable();
+    constexpr u32 words_per_page = Memory::PAGE_SIZE / sizeof(T) / 64;
+    PageCodec codec;
+
+    u32 index = 0;
+    for (u32 i = 0; i < count; ++i) {
+        u32 delta;
+        u32 num_words;
+        if (!readVarint(p, end, delta) || !readVarint(p, end, num_words) ||
+            num_words != words_per_page ||
+            static_cast<std::size_t>(end - p) < num_words * sizeof(u64)) {
+            return false;
+        }
+        index += delta;
+        if (index >= Memory::PAGE_TABLE_NUM_ENTRIES) {
+            return false;
+        }
+        SnapshotPage page;
+        page.index = index;
+        page.bits.resize(num_words);
+        std::memcpy(page.bits.data(), p, num_words * sizeof(u64));
+        p += num_words * sizeof(u64);
+        for (u64 bits : page.bits) {
+            page.count += __builtin_popcountll(bits);
+        }
+        const u8* data = pagetable->pointers[index];
+        if (data != nullptr) {
+            page.Store(codec, data);
+        }
+        session.snapshot_count += page.count;
+        session.snapshot.push_back(std::move(page));
+    }
+    return true;
+}
+
+bool restoreSearchSession(std::vector<u32>& params) {
+    // called on the UI thread, a search that is running has a session already
+    std::unique_lock lock{g_search_mutex, std::try_to_lock};
+    if (!lock.owns_lock()) {
+        return false;
+    }
+    const std::string path = getSessionPath();
+    FileUtil::IOFile file(path, "rb");
+    SessionHeader header{};
+    if (path.empty() || !file.IsOpen() || file.ReadBytes(&header, sizeof(header)) != sizeof(header) ||
+        header.magic != SESSION_MAGIC || header.version != SESSION_VERSION ||
+        header.raw_size > MAX_SESSION_SIZE || header.compressed_size > MAX_SESSION_SIZE ||
+        header.value_type > VALUE_TYPE_BYTE_PATTERN || header.search_type > SEARCH_TYPE_UNKNOWN_SEARCH ||
+        header.scan_type > SCAN_TYPE_BETWEEN) {
+        return false;
+    }
+    // a record takes a byte per varint at least, and a snapshot page its index and size
+    const u64 min_record_size = header.is_snapshot ? 2 : resultWords(header.value_type);
+    if (u64{header.count} * min_record_size > header.raw_size) {
+        return false;
+    }
+
+    std::vector<u8> compressed(header.compressed_size);
+    std::vector<u8> raw(header.raw_size);
+    uLongf raw_size = raw.size();
+    if (file.ReadBytes(compressed.data(), compressed.size()) != compressed.size() ||
+        uncompress(raw.data(), &raw_size, compressed.data(), compressed.size()) != Z_OK ||
+        raw_size != raw.size()) {
+        return false;
+    }
+
+    auto restored_session = std::make_shared<SearchSession>();
+    SearchSession& session = *restored_session;
+    session.start_addr = header.start_addr;
+    session.stop_addr = header.stop_addr;
+    session.value_type = header.value_type;
+    session.search_type = header.search_type;
+    session.scan_type = header.scan_type;
+    setSearchValues(session, header.value, header.value2, header.epsilon);
+
+    const u8* p = raw.data();
+    const u8* end = p + raw.size();
+    bool restored = true;
+    if (header.is_snapshot) {
+        if (header.value_type == VALUE_TYPE_FOUR_BYTES || header.value_type == VALUE_TYPE_FLOAT) {
+            restored = restoreSnapshot<u32>(session, p, end, header.count);
+        } else if (header.value_type == VALUE_TYPE_TWO_BYTES) {
+            restored = restoreSnapshot<u16>(session, p, end, header.count);
+        } else if (header.value_type == VALUE_TYPE_DOUBLE) {
+            restored = restoreSnapshot<double>(session, p, end, header.count);
+        } else {
+            restored = restoreSnapshot<u8>(session, p, end, header.count);
+        }
+    } else {
+        const u32 words = resultWords(session.value_type);
+        session.results.reserve(header.count * words);
+        u32 addr = 0;
+        for (u32 i = 0; i < header.count && restored; ++i) {
+            u32 delta;
+            restored = readVarint(p, end, delta);
+            addr += delta;
+            session.results.push_back(addr);
+            for (u32 w = 1; w < words && restored; ++w) {
+                u32 value;
+                restored = readVarint(p, end, value);
+                session.results.push_back(value);
             }
-            g_search_session.results.swap(results);
         }
     }
+    if (!restored) {
+        return false;
+    }
 
-    return ToJIntArray(g_search_session.results.data(), g_search_session.results.size());
+    session.initialized = session.count() > 0;
+    publishSearchSession(restored_session);
+    params = {session.count(),
+              session.start_addr,
+              session.stop_addr,
+              session.value_type,
+              session.search_type,
+              session.scan_type,
+              static_cast<u32>(header.value),
+              static_cast<u32>(header.value >> 32),
+              static_cast<u32>(header.value2),
+              static_cast<u32>(header.value2 >> 32)};
+    return true;
 }
 
-jintArray getSearchResults() {
-    return ToJIntArray(g_search_session.results.data(), g_search_session.results.size());
+void deleteSearchSession() {
+    std::lock_guard lock{g_search_mutex};
+    const std::string path = getSessionPath();
+    if (!path.empty()) {
+        FileUtil::Delete(path);
+    }
+}
+
+s32 searchMemoryRegion(u32 start_addr, u32 stop_addr, u32 value_type, u32 search_type,
+                       u32 scan_type, u64 value, u64 value2, double epsilon,
+                       std::vector<u8> pattern, std::vector<u8> mask) {
+    if (value_type == VALUE_TYPE_BYTE_PATTERN) {
+        if (search_type == SEARCH_TYPE_UNKNOWN_SEARCH) {
+            // a pattern is a specified value, an unknown search watches single bytes instead
+            value_type = VALUE_TYPE_ONE_BYTE;
+        } else if (pattern.empty() || pattern.size() > MAX_PATTERN_SIZE ||
+                   mask.size() != pattern.size()) {
+            return -1;
+        }
+    }
+
+    std::lock_guard lock{g_search_mutex};
+    g_scan_cancelled = false;
+
+    // a search with other types or a wider range starts over
+    static const SearchSession empty_session{};
+    const std::shared_ptr<const SearchSession> published = getSearchSession();
+    const SearchSession& previous =
+        published->search_type != search_type || published->value_type != value_type ||
+                published->start_addr > start_addr || published->stop_addr < stop_addr
+            ? empty_session
+            : *published;
+
+    auto next = std::make_shared<SearchSession>();
+    SearchSession& session = *next;
+    session.start_addr = start_addr;
+    session.stop_addr = stop_addr;
+    session.value_type = value_type;
+    session.search_type = search_type;
+    session.scan_type = scan_type;
+    setSearchValues(session, value, value2, epsilon);
+    session.pattern = std::move(pattern);
+    session.mask = std::move(mask);
+
+    bool finished = false;
+    if (value_type == VALUE_TYPE_FOUR_BYTES) {
+        finished = searchSession<u32>(previous, session);
+    } else if (value_type == VALUE_TYPE_TWO_BYTES) {
+        finished = searchSession<u16>(previous, session);
+    } else if (value_type == VALUE_TYPE_ONE_BYTE) {
+        finished = searchSession<u8>(previous, session);
+    } else if (value_type == VALUE_TYPE_FLOAT) {
+        finished = searchSession<float>(previous, session);
+    } else if (value_type == VALUE_TYPE_DOUBLE) {
+        finished = searchSession<double>(previous, session);
+    } else if (value_type == VALUE_TYPE_BYTE_PATTERN) {
+        finished = searchPattern(previous, session);
+    }
+    if (!finished) {
+        // the previous results stay
+        return -1;
+    }
+
+    saveSearchSession(session);
+    const s32 count = session.count();
+    publishSearchSession(std::move(next));
+    return count;
+}
+
+void cancelSearchMemory() {
+    g_scan_cancelled = true;
+}
+
+u32 getSearchResultCount() {
+    return getSearchSession()->count();
+}
+
+u32 getSearchResultPage(u32 offset, u32 count, jintArray out) {
+    // the session stays alive while it's read, even if a search replaces it meanwhile
+    const std::shared_ptr<const SearchSession> published = getSearchSession();
+    const SearchSession& session = *published;
+    const u32 total = session.count();
+    if (offset >= total) {
+        return 0;
+    }
+
+    JNIEnv* env = GetEnvForThread();
+    const u32 words = resultWords(session.value_type);
+    count = std::min({count, total - offset, static_cast<u32>(env->GetArrayLength(out)) / words});
+    if (session.snapshot.empty()) {
+        env->SetIntArrayRegion(
+            out, 0, count * words,
+            reinterpret_cast<const jint*>(session.results.data() + offset * words));
+        return count;
+    }
+
+    std::vector<u32> page(count * words);
+    if (session.value_type == VALUE_TYPE_FOUR_BYTES) {
+        count = readSnapshot<u32>(session, offset, count, page.data());
+    } else if (session.value_type == VALUE_TYPE_TWO_BYTES) {
+        count = readSnapshot<u16>(session, offset, count, page.data());
+    } else if (session.value_type == VALUE_TYPE_FLOAT) {
+        count = readSnapshot<float>(session, offset, count, page.data());
+    } else if (session.value_type == VALUE_TYPE_DOUBLE) {
+        count = readSnapshot<double>(session, offset, count, page.data());
+    } else {
+        count = readSnapshot<u8>(session, offset, count, page.data());
+    }
+    env->SetIntArrayRegion(out, 0, count * words, reinterpret_cast<const jint*>(page.data()));
+    return count;
 }
 
 void resetSearchResults() {
-    g_search_session.reset();
+    // a running first pass stops at the next page
+    g_scan_cancelled = true;
+    std::lock_guard lock{g_search_mutex};
+    publishSearchSession(std::make_shared<SearchSession>());
+}
+
+static std::atomic<bool> g_guest_memory_alive{false};
+
+void setGuestMemoryAlive(bool alive) {
+    g_guest_memory_alive = alive;
+    if (!alive) {
+        // returns once no Java read is in progress, later mappings fail until the next boot
+        ReleaseGuestMemory();
+    }
+}
+
+std::vector<u32> getMemoryRegions() {
+    Core::System& system{Core::System::GetInstance()};
+    std::vector<u32> regions{Memory::MemorySystem::GetPageTableGeneration()};
+    if (!g_guest_memory_alive || !system.IsPoweredOn() || system.Memory().GetCurrentPageTable() == nullptr) {
+        return regions;
+    }
+    auto pagetable = system.Memory().GetCurrentPageTable();
+
+    // a region must be contiguous in guest and host memory to be seen through one buffer
+    const u8* end_pointer = nullptr;
+    for (u32 i = 0; i < pagetable->pointers.size(); ++i) {
+        const u8* p = pagetable->pointers[i];
+        if (p == nullptr) {
+            end_pointer = nullptr;
+            continue;
+        }
+        if (p != end_pointer) {
+            regions.push_back(i << Memory::PAGE_BITS);
+            regions.push_back(0);
+        }
+        regions.back() += Memory::PAGE_SIZE;
+        end_pointer = p + Memory::PAGE_SIZE;
+    }
+    return regions;
+}
+
+jobject mapMemoryRegion(u32 start_addr, u32 size) {
+    Core::System& system{Core::System::GetInstance()};
+    if (!g_guest_memory_alive || !system.IsPoweredOn()) {
+        return nullptr;
+    }
+    auto pagetable = system.Memory().GetCurrentPageTable();
+    if (pagetable == nullptr || size == 0 || ((start_addr | size) & Memory::PAGE_MASK) != 0 ||
+        start_addr + size - 1 < start_addr) {
+        return nullptr;
+    }
+
+    const u32 first = start_addr >> Memory::PAGE_BITS;
+    u8* p = pagetable->pointers[first];
+    for (u32 i = 0; i < (size >> Memory::PAGE_BITS); ++i) {
+        if (p == nullptr || pagetable->pointers[first + i] != p + i * Memory::PAGE_SIZE) {
+            return nullptr;
+        }
+    }
+    return GetEnvForThread()->NewDirectByteBuffer(p, size);
+}
+
+// pointer scan limits, the number of chains grows exponentially with the depth
+static const u32 MAX_POINTER_DEPTH = 8;
+static const u32 MAX_POINTER_OFFSET = 0x0FFFFFFF;
+static const u32 MAX_POINTER_RESULTS = 4096;
+static const u32 MAX_POINTER_NODES = 1 << 20;
+
+// a pointer found in guest memory, the index is sorted by value
+struct PointerEntry {
+    u32 value;
+    u32 addr;
+
+    bool operator<(const PointerEntry& other) const {
+        return value < other.value || (value == other.value && addr < other.addr);
+    }
+};
+
+// one step of a chain, the value at addr plus offset is the address of the parent node
+struct PointerNode {
+    u32 addr;
+    u32 offset;
+    u32 parent;
+};
+
+// code and data of the process image keep their address across boots
+static bool isStaticAddress(u32 addr) {
+    return addr >= Memory::PROCESS_IMAGE_VADDR && addr < Memory::PROCESS_IMAGE_VADDR_END;
+}
+
+/**
+ * Collects every aligned word of mapped memory whose value points into mapped memory. Every thread
+ * sorts its own range of pages, the sorted runs are merged afterwards.
+ */
+static std::vector<PointerEntry> buildPointerIndex(const Memory::PageTable& pagetable,
+                                                   const std::vector<u32>& pages,
+                                                   std::atomic<u32>& pages_done) {
+    const u32 num_threads = std::clamp<u32>(std::thread::hardware_concurrency(), 1,
+                                            std::min<u32>(MAX_SCAN_THREADS, pages.size()));
+    const u32 pages_per_thread = (pages.size() + num_threads - 1) / num_threads;
+    std::vector<std::vector<PointerEntry>> buffers(num_threads);
+    std::vector<std::thread> threads;
+
+    for (u32 t = 0; t < num_threads; ++t) {
+        threads.emplace_back([&, t] {
+            const u32 first = t * pages_per_thread;
+            const u32 last = std::min<u32>(first + pages_per_thread, pages.size());
+            std::vector<PointerEntry>& buffer = buffers[t];
+            for (u32 k = first; k < last && !g_scan_cancelled; ++k) {
+                const u32 i = pages[k];
+                const u8* page = pagetable.pointers[i];
+                for (u32 offset = 0; offset < Memory::PAGE_SIZE; offset += sizeof(u32)) {
+                    u32 value;
+                    std::memcpy(&value, page + offset, sizeof(u32));
+                    if ((value & 3) == 0 && pagetable.pointers[value >> Memory::PAGE_BITS]) {
+                        buffer.push_back({value, (i << Memory::PAGE_BITS) | offset});
+                    }
+                }
+                pages_done.fetch_add(1, std::memory_order_relaxed);
+            }
+            std::sort(buffer.begin(), buffer.end());
+        });
+    }
+    for (auto& thread : threads) {
+        thread.join();
+    }
+
+    std::vector<PointerEntry> index;
+    for (auto& buffer : buffers) {
+        const std::size_t middle = index.size();
+        index.insert(index.end(), buffer.begin(), buffer.end());
+        std::inplace_merge(index.begin(), index.begin() + middle, index.end());
+        std::vector<PointerEntry>().swap(buffer);
+    }
+    return index;
+}
+
+/**
+ * Expands one level of the reverse search. Every thread looks up the pointers that land at most
+ * max_offset below its share of the level, so each new node knows its offset and parent.
+ */
+static std::vector<PointerNode> expandPointerLevel(const std::vector<PointerEntry>& index,
+                                                   const std::vector<PointerNode>& nodes,
+                                                   u32 level_begin, u32 level_end,
+                                                   u32 max_offset) {
+    const u32 level_size = level_end - level_begin;
+    const u32 num_threads = std::clamp<u32>(std::thread::hardware_concurrency(), 1,
+                                            std::min<u32>(MAX_SCAN_THREADS, level_size));
+    const u32 nodes_per_thread = (level_size + num_threads - 1) / num_threads;
+    std::vector<std::vector<PointerNode>> buffers(num_threads);
+    std::vector<std::thread> threads;
+
+    for (u32 t = 0; t < num_threads; ++t) {
+        threads.emplace_back([&, t] {
+            const u32 first = level_begin + t * nodes_per_thread;
+            const u32 last = std::min<u32>(first + nodes_per_thread, level_end);
+            std::vector<PointerNode>& buffer = buffers[t];
+            for (u32 n = first; n < last && !g_scan_cancelled; ++n) {
+                const u32 target = nodes[n].addr;
+                const u32 low = target - std::min(target, max_offset);
+                auto it = std::lower_bound(index.begin(), index.end(), PointerEntry{low, 0});
+                for (; it != index.end() && it->value <= target; ++it) {
+                    if (buffer.size() == MAX_POINTER_NODES) {
+                        return;
+                    }
+                    buffer.push_back({it->addr, target - it->value, n});
+                }
+            }
+        });
+    }
+    for (auto& thread : threads) {
+        thread.join();
+    }
+
+    std::vector<PointerNode> level;
+    for (const auto& buffer : buffers) {
+        level.insert(level.end(), buffer.begin(), buffer.end());
+    }
+    return level;
+}
+
+bool scanPointers(u32 target, u32 max_depth, u32 max_offset, std::vector<u32>& chains) {
+    std::lock_guard lock{g_search_mutex};
+    g_scan_cancelled = false;
+    max_depth = std::clamp<u32>(max_depth, 1, MAX_POINTER_DEPTH);
+    max_offset = std::min(max_offset, MAX_POINTER_OFFSET);
+
+    Core::System& system{Core::System::GetInstance()};
+    const Memory::PageTable& pagetable = *system.Memory().GetCurrentPageTable();
+    std::vector<u32> pages;
+    for (u32 i = 0; i < pagetable.pointers.size(); ++i) {
+        if (pagetable.pointers[i] != nullptr) {
+            pages.push_back(i);
+        }
+    }
+    if (pages.empty()) {
+        return true;
+    }
+
+    // progress counts the pages of the index, then one page worth per level
+    const u32 total = pages.size() + max_depth;
+    std::atomic<u32> pages_done{0};
+    std::vector<PointerEntry> index;
+    std::thread builder([&] { index = buildPointerIndex(pagetable, pages, pages_done); });
+    while (pages_done.load(std::memory_order_relaxed) < pages.size() && !g_scan_cancelled) {
+        UpdateSearchProgress(pages_done.load(std::memory_order_relaxed), total);
+        std::this_thread::sleep_for(SCAN_PROGRESS_INTERVAL);
+    }
+    builder.join();
+
+    // breadth first from the target, so shorter chains come first; an address reached again
+    // would only give longer chains and is not expanded twice
+    std::vector<PointerNode> nodes{{target, 0, 0}};
+    std::vector<PointerNode> bases;
+    std::vector<u32> visited{target};
+    u32 level_begin = 0;
+    u32 level_end = 1;
+    for (u32 depth = 1; depth <= max_depth && level_begin < level_end; ++depth) {
+        if (g_scan_cancelled) {
+            return false;
+        }
+        UpdateSearchProgress(pages.size() + depth - 1, total);
+
+        std::vector<u32> next;
+        for (const PointerNode& node :
+             expandPointerLevel(index, nodes, level_begin, level_end, max_offset)) {
+            if (isStaticAddress(node.addr)) {
+                if (bases.size() < MAX_POINTER_RESULTS) {
+                    bases.push_back(node);
+                }
+            } else if (depth < max_depth && nodes.size() < MAX_POINTER_NODES &&
+                       !std::binary_search(visited.begin(), visited.end(), node.addr)) {
+                next.push_back(node.addr);
+                nodes.push_back(node);
+            }
+        }
+        level_begin = level_end;
+        level_end = nodes.size();
+
+        const std::size_t middle = visited.size();
+        std::sort(next.begin(), next.end());
+        visited.insert(visited.end(), next.begin(), next.end());
+        std::inplace_merge(visited.begin(), visited.begin() + middle, visited.end());
+    }
+    if (g_scan_cancelled) {
+        return false;
+    }
+
+    // every chain is its length followed by the static base and the offsets from the base
+    // down to the target
+    for (const PointerNode& base : bases) {
+        const std::size_t length_index = chains.size();
+        chains.push_back(0);
+        chains.push_back(base.addr);
+        chains.push_back(base.offset);
+        for (u32 n = base.parent; n != 0; n = nodes[n].parent) {
+            chains.push_back(nodes[n].offset);
+        }
+        chains[length_index] = chains.size() - length_index - 1;
+    }
+    UpdateSearchProgress(total, total);
+    return true;
+}
+
+/**
+ * A memory dump is a header, the list of mapped page runs, one hash per page and the pages
+ * themselves. Unmapped pages are holes and take no space, and dumps are compared through the
+ * hashes first so only pages that changed are read back.
+ */
+struct DumpHeader {
+    u32 magic;
+    u32 version;
+    u32 start_addr;
+    u32 stop_addr;
+    u32 num_regions;
+    u32 num_pages;
+};
+
+struct DumpRegion {
+    u32 addr;
+    u32 size;
+};
+
+static const u32 DUMP_MAGIC = 0x504D5544; // "DUMP"
+static const u32 DUMP_VERSION = 1;
+// max number of changed ranges a diff reports
+static const u32 MAX_DIFF_RANGES = 1 << 16;
+
+s64 dumpMemoryRegion(u32 start_addr, u32 stop_addr, const std::string& path) {
+    std::lock_guard lock{g_search_mutex};
+    g_scan_cancelled = false;
+
+    Core::System& system{Core::System::GetInstance()};
+    if (!system.IsPoweredOn() || start_addr > stop_addr) {
+        return -1;
+    }
+    auto pagetable = system.Memory().GetCurrentPageTable();
+
+    // dumps hold whole pages
+    const u32 start_page = start_addr >> Memory::PAGE_BITS;
+    const u32 stop_page = stop_addr >> Memory::PAGE_BITS;
+    std::vector<DumpRegion> regions;
+    u32 num_pages = 0;
+    for (u32 i = start_page; i <= stop_page; ++i) {
+        if (pagetable->pointers[i] == nullptr) {
+            continue;
+        }
+        const u32 addr = i << Memory::PAGE_BITS;
+        if (!regions.empty() && regions.back().addr + regions.back().size == addr) {
+            regions.back().size += Memory::PAGE_SIZE;
+        } else {
+            regions.push_back({addr, Memory::PAGE_SIZE});
+        }
+        num_pages++;
+    }
+
+    FileUtil::IOFile file(path, "wb");
+    if (!file.IsOpen()) {
+        return -1;
+    }
+    const DumpHeader header{DUMP_MAGIC, DUMP_VERSION, start_page << Memory::PAGE_BITS,
+                            stop_addr | Memory::PAGE_MASK, static_cast<u32>(regions.size()),
+                            num_pages};
+    std::vector<u64> hashes(num_pages);
+    const u64 hashes_offset = sizeof(header) + regions.size() * sizeof(DumpRegion);
+    file.WriteObject(header);
+    file.WriteArray(regions.data(), regions.size());
+    // the hashes are known once the pages are written
+    file.WriteArray(hashes.data(), hashes.size());
+
+    // pages go straight from guest memory to the file
+    u32 page = 0;
+    for (const DumpRegion& region : regions) {
+        for (u32 addr = region.addr; addr - region.addr < region.size; addr += Memory::PAGE_SIZE) {
+            const u8* p = pagetable->pointers[addr >> Memory::PAGE_BITS];
+            if (g_scan_cancelled || p == nullptr) {
+                // cancelled, or the page table changed under the dump
+                file.Close();
+                FileUtil::Delete(path);
+                return -1;
+            }
+            hashes[page] = Common::ComputeHash64(p, Memory::PAGE_SIZE);
+            if (file.WriteBytes(p, Memory::PAGE_SIZE) != Memory::PAGE_SIZE) {
+                file.Close();
+                FileUtil::Delete(path);
+                return -1;
+            }
+            if (++page % 256 == 0) {
+                UpdateSearchProgress(page, num_pages);
+            }
+        }
+    }
+
+    file.Seek(hashes_offset, SEEK_SET);
+    file.WriteArray(hashes.data(), hashes.size());
+    const u64 size = hashes_offset + hashes.size() * sizeof(u64) + u64{num_pages} * Memory::PAGE_SIZE;
+    UpdateSearchProgress(num_pages, num_pages);
+    return file.IsGood() ? static_cast<s64>(size) : -1;
+}
+
+struct MemoryDump {
+    FileUtil::IOFile file;
+    std::vector<u32> pages; // address of every page in the dump
+    std::vector<u64> hashes;
+    u64 data_offset = 0;
+
+    bool Open(const std::string& path) {
+        file = FileUtil::IOFile(path, "rb");
+        DumpHeader header{};
+        if (!file.IsOpen() || file.ReadBytes(&header, sizeof(header)) != sizeof(header) ||
+            header.magic != DUMP_MAGIC || header.version != DUMP_VERSION ||
+            header.num_pages > Memory::PAGE_TABLE_NUM_ENTRIES ||
+            header.num_regions > header.num_pages) {
+            return false;
+        }
+        // every region holds at least one page, and the file has all the pages it lists
+        const u64 expected_size = sizeof(header) + u64{header.num_regions} * sizeof(DumpRegion) +
+                                  u64{header.num_pages} * (sizeof(u64) + Memory::PAGE_SIZE);
+        if (file.GetSize() != expected_size) {
+            return false;
+        }
+        std::vector<DumpRegion> regions(header.num_regions);
+        hashes.resize(header.num_pages);
+        if (file.ReadArray(regions.data(), regions.size()) != regions.size() ||
+            file.ReadArray(hashes.data(), hashes.size()) != hashes.size()) {
+            return false;
+        }
+        // the diff walks the pages of both dumps in address order
+        u64 next_addr = 0;
+        for (const DumpRegion& region : regions) {
+            if (((region.addr | region.size) & Memory::PAGE_MASK) != 0 || region.size == 0 ||
+                region.addr < next_addr ||
+                region.size / Memory::PAGE_SIZE > header.num_pages - pages.size()) {
+                return false;
+            }
+            next_addr = u64{region.addr} + region.size;
+            if (next_addr > u64{Memory::PAGE_TABLE_NUM_ENTRIES} << Memory::PAGE_BITS) {
+                return false;
+            }
+            for (u32 offset = 0; offset < region.size; offset += Memory::PAGE_SIZE) {
+                pages.push_back(region.addr + offset);
+            }
+        }
+        data_offset = file.Tell();
+        return pages.size() == hashes.size();
+    }
+
+    bool ReadPage(u32 index, u8* out) {
+        return file.Seek(data_offset + u64{index} * Memory::PAGE_SIZE, SEEK_SET) &&
+               file.ReadBytes(out, Memory::PAGE_SIZE) == Memory::PAGE_SIZE;
+    }
+};
+
+// appends [addr, addr + size) to the (addr, size) pairs, merging it with the last range
+static void addDiffRange(std::vector<u32>& ranges, u32 addr, u32 size) {
+    const std::size_t n = ranges.size();
+    if (n >= 2 && ranges[n - 2] + ranges[n - 1] == addr) {
+        ranges[n - 1] += size;
+    } else {
+        ranges.push_back(addr);
+        ranges.push_back(size);
+    }
+}
+
+bool diffMemoryDumps(const std::string& path_a, const std::string& path_b, std::vector<u32>& ranges) {
+    MemoryDump a;
+    MemoryDump b;
+    if (!a.Open(path_a) || !b.Open(path_b)) {
+        return false;
+    }
+
+    std::array<u8, Memory::PAGE_SIZE> page_a;
+    std::array<u8, Memory::PAGE_SIZE> page_b;
+    u32 i = 0;
+    u32 j = 0;
+    while ((i < a.pages.size() || j < b.pages.size()) && ranges.size() < MAX_DIFF_RANGES * 2) {
+        // a page in only one of the dumps was mapped or unmapped in between
+        if (j == b.pages.size() || (i < a.pages.size() && a.pages[i] < b.pages[j])) {
+            addDiffRange(ranges, a.pages[i++], Memory::PAGE_SIZE);
+            continue;
+        }
+        if (i == a.pages.size() || b.pages[j] < a.pages[i]) {
+            addDiffRange(ranges, b.pages[j++], Memory::PAGE_SIZE);
+            continue;
+        }
+
+        const u32 addr = a.pages[i];
+        if (a.hashes[i] != b.hashes[j]) {
+            if (!a.ReadPage(i, page_a.data()) || !b.ReadPage(j, page_b.data())) {
+                return false;
+            }
+            for (u32 k = 0; k < Memory::PAGE_SIZE;) {
+                if (page_a[k] == page_b[k]) {
+                    ++k;
+                    continue;
+                }
+                u32 end = k + 1;
+                while (end < Memory::PAGE_SIZE && page_a[end] != page_b[end]) {
+                    ++end;
+                }
+                addDiffRange(ranges, addr + k, end - k);
+                k = end;
+            }
+        }
+        ++i;
+        ++j;
+    }
+    return true;
 }
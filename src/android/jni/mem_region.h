@@ -1,7 +1,37 @@
 #pragma once
 
+#include <string>
+#include <vector>
+
 #include "jni_common.h"
 
-jintArray searchMemoryRegion(u32 start_addr, u32 stop_addr, u32 value_type, u32 search_type, u32 scan_type, u32 value);
-jintArray getSearchResults();
+// value and value2 are the bits of a double for floating point searches, pattern and mask are
+// only used by byte pattern searches
+s32 searchMemoryRegion(u32 start_addr, u32 stop_addr, u32 value_type, u32 search_type,
+                       u32 scan_type, u64 value, u64 value2, double epsilon,
+                       std::vector<u8> pattern, std::vector<u8> mask);
+void cancelSearchMemory();
+u32 getSearchResultCount();
+// copies (address, value) records, the value of a double search takes two words, low first
+u32 getSearchResultPage(u32 offset, u32 count, jintArray out);
 void resetSearchResults();
+
+// the session of the running title is saved after every search, restoring it fills params with
+// [result count, start, stop, value type, search type, scan type, value low, value high,
+// value2 low, value2 high]
+bool restoreSearchSession(std::vector<u32>& params);
+void deleteSearchSession();
+
+// no region is handed out while guest memory is not alive, clearing it releases the Java views
+void setGuestMemoryAlive(bool alive);
+// [page table generation, start, size, ...] of the regions contiguous in guest and host memory
+std::vector<u32> getMemoryRegions();
+jobject mapMemoryRegion(u32 start_addr, u32 size);
+
+// fills chains with (length, static base, offsets...) records, returns false if cancelled
+bool scanPointers(u32 target, u32 max_depth, u32 max_offset, std::vector<u32>& chains);
+
+// streams the mapped pages between the addresses to a dump file, returns its size or -1
+s64 dumpMemoryRegion(u32 start_addr, u32 stop_addr, const std::string& path);
+// fills ranges with (addr, size) pairs of the bytes that differ between two dumps
+bool diffMemoryDumps(const std::string& path_a, const std::string& path_b, std::vector<u32>& ranges);
@@ -1,4 +1,9 @@
+#include <algorithm>
+#include <array>
 #include <chrono>
+#include <condition_variable>
+#include <mutex>
+#include <optional>
 #include <thread>
 
 #include <android/sensor.h>
@@ -17,20 +22,37 @@ class NDKMotion final : public Input::MotionDevice {
     using GETINSTANCEFORPACKAGE = ASensorManager* (*)(const char*);
     using REGISTERSENSOR = int (*)(ASensorEventQueue* queue, ASensor const* sensor, int32_t samplingPeriodUs, int64_t maxBatchReportLatencyUs);
 
+    // sensors are turned off when the game stops reading motion for this long
+    static constexpr std::chrono::milliseconds IDLE_TIMEOUT{1000};
+
     GETINSTANCEFORPACKAGE GetInstanceForPackage = nullptr;
     REGISTERSENSOR RegisterSensor = nullptr;
     void * lib_android = nullptr;
 
     ASensorManager* sensor_manager = nullptr;
-    ALooper* looper = nullptr;
-    ASensorEventQueue* event_queue;
+    std::atomic<ALooper*> looper = nullptr;
+    ASensorEventQueue* event_queue = nullptr;
+    std::array<ASensorRef, 2> sensors{};
+
+    const std::chrono::microseconds sampling_period;
+    const std::chrono::microseconds batch_latency;
 
     mutable std::atomic<Vec3<float>> acceleration{};
     mutable std::atomic<Vec3<float>> rotation{};
     static_assert(decltype(acceleration)::is_always_lock_free, "vectors are not lock free");
+    mutable std::atomic<s64> last_access{};
+    mutable std::atomic<bool> active = false;
+    mutable std::mutex mutex;
+    mutable std::condition_variable cv;
     std::thread poll_thread;
     std::atomic<bool> stop_polling = false;
 
+    static s64 GetTicks() {
+        return std::chrono::duration_cast<std::chrono::milliseconds>(
+                   std::chrono::steady_clock::now().time_since_epoch())
+            .count();
+    }
+
     static Vec3<float> TransformAxes(Vec3<float> in) {
         // 3DS   Y+            Phone     Z+
         // on    |             laying    |
@@ -65,51 +87,77 @@ class NDKMotion final : public Input::MotionDevice {
         return out;
     }
 
-    void Construct(std::chrono::microseconds update_period) {
+    bool Construct() {
+        if (!GetInstanceForPackage || !RegisterSensor) {
+            LOG_CRITICAL(Input, "Could not load sensor functions");
+            return false;
+        }
         sensor_manager = GetInstanceForPackage("org.citra.emu");
         looper = ALooper_prepare(ALOOPER_PREPARE_ALLOW_NON_CALLBACKS);
         if (!sensor_manager || !looper) {
             LOG_CRITICAL(Input, "Could not retrieve sensor manager");
-            return;
+            return false;
         }
         event_queue = ASensorManager_createEventQueue(sensor_manager, looper, 0, nullptr, nullptr);
         if (!event_queue) {
             LOG_ERROR(Input, "Could not create sensor event queue");
-            return;
+            return false;
+        }
+        sensors[0] = ASensorManager_getDefaultSensor(sensor_manager, ASENSOR_TYPE_ACCELEROMETER);
+        sensors[1] = ASensorManager_getDefaultSensor(sensor_manager, ASENSOR_TYPE_GYROSCOPE);
+        return true;
+    }
+
+    void Destruct() {
+        if (event_queue) {
+            ASensorManager_destroyEventQueue(sensor_manager, event_queue);
+            event_queue = nullptr;
         }
-        const auto init_sensor = [this, update_period](int sensor_type) {
-            ASensorRef sensor = ASensorManager_getDefaultSensor(sensor_manager, sensor_type);
+    }
+
+    void EnableSensors() {
+        for (ASensorRef sensor : sensors) {
             if (!sensor) {
-                LOG_ERROR(Input, "Could not find sensor of type {}", sensor_type);
-                return;
+                continue;
             }
+            // the sensor hub collects events for up to batch_latency before waking us up
             int error = RegisterSensor(
                 event_queue, sensor,
-                std::max(ASensor_getMinDelay(sensor), static_cast<int>(update_period.count())), 0);
+                std::max(ASensor_getMinDelay(sensor), static_cast<int>(sampling_period.count())),
+                batch_latency.count());
             if (error < 0)
-                LOG_ERROR(Input, "Registering sensor returned error code {}", error);
-        };
-
-        init_sensor(ASENSOR_TYPE_ACCELEROMETER);
-        init_sensor(ASENSOR_TYPE_GYROSCOPE);
+                LOG_ERROR(Input, "Registering sensor {} returned error code {}",
+                          ASensor_getType(sensor), error);
+        }
     }
 
-    void Destruct() {
-        ASensorManager_destroyEventQueue(sensor_manager, event_queue);
+    void DisableSensors() {
+        for (ASensorRef sensor : sensors) {
+            if (sensor) {
+                ASensorEventQueue_disableSensor(event_queue, sensor);
+            }
+        }
+        // drop whatever was batched, it is stale by the time the game polls again
+        ASensorEvent event{};
+        while (ASensorEventQueue_getEvents(event_queue, &event, 1) > 0) {
+        }
     }
 
-    void Update() const {
-        ALooper_pollAll(0, nullptr, nullptr, nullptr);
-        ASensorEvent event{};
+    void Update() {
+        std::array<ASensorEvent, 16> events;
         std::optional<Vec3<float>> new_accel{}, new_rot{};
-        while (ASensorEventQueue_getEvents(event_queue, &event, 1) > 0) {
-            if (event.type == ASENSOR_TYPE_ACCELEROMETER) {
-                new_accel.emplace(event.vector.x, event.vector.y, event.vector.z);
-            } else if (event.type == ASENSOR_TYPE_GYROSCOPE) {
-                new_rot.emplace(event.vector.x, event.vector.y, event.vector.z);
+        ssize_t count;
+        while ((count = ASensorEventQueue_getEvents(event_queue, events.data(), events.size())) > 0) {
+            for (ssize_t i = 0; i < count; ++i) {
+                const ASensorEvent& event = events[i];
+                if (event.type == ASENSOR_TYPE_ACCELEROMETER) {
+                    new_accel.emplace(event.vector.x, event.vector.y, event.vector.z);
+                } else if (event.type == ASENSOR_TYPE_GYROSCOPE) {
+                    new_rot.emplace(event.vector.x, event.vector.y, event.vector.z);
+                }
+                // occasionally the queue has ASENSOR_TYPE_ADDITIONAL_INFO events
+                // but so far there is no reason to handle them
             }
-            // occasionally the queue has ASENSOR_TYPE_ADDITIONAL_INFO events
-            // but so far there is no reason to handle them
         }
         if (new_accel) {
             // convert from m/(s^2) to g and invert
@@ -121,46 +169,77 @@ class NDKMotion final : public Input::MotionDevice {
         }
     }
 
+    void PollLoop() {
+        if (!Construct()) {
+            Destruct();
+            return;
+        }
+
+        while (!stop_polling) {
+            {
+                // sleep without any wakeups until the game reads motion
+                std::unique_lock lock{mutex};
+                cv.wait(lock, [this] { return active || stop_polling; });
+            }
+            if (stop_polling) {
+                break;
+            }
+
+            EnableSensors();
+            while (!stop_polling) {
+                ALooper_pollAll(static_cast<int>(IDLE_TIMEOUT.count()), nullptr, nullptr, nullptr);
+                Update();
+                if (GetTicks() - last_access > IDLE_TIMEOUT.count()) {
+                    active = false;
+                    break;
+                }
+            }
+            DisableSensors();
+        }
+
+        Destruct();
+    }
+
 public:
-    NDKMotion(std::chrono::microseconds update_period, bool asynchronous = false) {
-        void * lib_android = dlopen("android", RTLD_NOW);
+    NDKMotion(std::chrono::microseconds sampling_period, std::chrono::microseconds batch_latency)
+        : sampling_period(sampling_period), batch_latency(batch_latency) {
+        lib_android = dlopen("libandroid.so", RTLD_NOW);
         GetInstanceForPackage = reinterpret_cast<GETINSTANCEFORPACKAGE>(dlsym(lib_android, "ASensorManager_getInstanceForPackage"));
         RegisterSensor = reinterpret_cast<REGISTERSENSOR>(dlsym(lib_android, "ASensorEventQueue_registerSensor"));
 
-        if (asynchronous) {
-            poll_thread = std::thread([this, update_period] {
-                Construct(update_period);
-                auto start = std::chrono::high_resolution_clock::now();
-                while (!stop_polling) {
-                    Update();
-                    std::this_thread::sleep_until(start += update_period);
-                }
-                Destruct();
-            });
-        } else {
-            Construct(update_period);
-        }
+        poll_thread = std::thread([this] { PollLoop(); });
     }
 
     ~NDKMotion() {
-        if (std::thread::id{} == poll_thread.get_id()) {
-            Destruct();
-        } else {
+        {
+            std::lock_guard lock{mutex};
             stop_polling = true;
-            poll_thread.join();
         }
-        dlclose(lib_android);
+        cv.notify_one();
+        if (looper) {
+            ALooper_wake(looper);
+        }
+        poll_thread.join();
+        if (lib_android) {
+            dlclose(lib_android);
+        }
     }
 
     std::tuple<Vec3<float>, Vec3<float>> GetStatus() const override {
-        if (std::thread::id{} == poll_thread.get_id()) {
-            Update();
+        // HID only polls motion while the game has the accelerometer or gyroscope enabled,
+        // so the first poll is what starts the sensors
+        last_access = GetTicks();
+        if (!active.exchange(true)) {
+            std::lock_guard lock{mutex};
+            cv.notify_one();
         }
         return {acceleration, rotation};
     }
 };
 
 std::unique_ptr<Input::MotionDevice> NDKMotionFactory::Create(const Common::ParamPackage& params) {
-    std::chrono::milliseconds update_period{params.Get("update_period", 4)};
-    return std::make_unique<NDKMotion>(update_period);
+    const int sampling_rate = std::clamp(params.Get("sampling_rate", 100), 10, 1000);
+    std::chrono::microseconds sampling_period{1000000 / sampling_rate};
+    std::chrono::milliseconds batch_latency{std::max(params.Get("batch_latency", 0), 0)};
+    return std::make_unique<NDKMotion>(sampling_period, batch_latency);
 }
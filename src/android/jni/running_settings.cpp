@@ -0,0 +1,105 @@
+#include "running_settings.h"
+
+#include <algorithm>
+#include <iterator>
+
+#include "config/config.h"
+#include "config/main_settings.h"
+#include "core/settings.h"
+
+namespace {
+
+struct RunningSetting {
+    s32 id;
+    RunningSettingCost cost;
+    s32 (*get)();
+    void (*set)(s32 value);
+};
+
+// ids of RunningSettingDialog.SettingsItem
+enum : s32 {
+    SETTING_CORE_TICKS_HACK = 0,
+    SETTING_SKIP_SLOW_DRAW = 1,
+    SETTING_SKIP_CPU_WRITE = 2,
+    SETTING_SCALE_FACTOR = 3,
+    SETTING_SCREEN_LAYOUT = 4,
+    SETTING_TEXTURE_LOAD_HACK = 5,
+    SETTING_CUSTOM_LAYOUT = 6,
+    SETTING_FRAME_LIMIT = 7,
+};
+
+const RunningSetting RUNNING_SETTINGS[] = {
+    {SETTING_CORE_TICKS_HACK, RunningSettingCost::Live,
+     [] { return static_cast<s32>(Settings::values.core_ticks_hack > 0); },
+     [](s32 value) { Settings::SetFMVHack(value > 0); }},
+    {SETTING_SKIP_SLOW_DRAW, RunningSettingCost::Live,
+     [] { return static_cast<s32>(Settings::values.skip_slow_draw); },
+     [](s32 value) { Settings::values.skip_slow_draw = value > 0; }},
+    {SETTING_SKIP_CPU_WRITE, RunningSettingCost::Live,
+     [] { return static_cast<s32>(Settings::values.skip_cpu_write); },
+     [](s32 value) { Settings::values.skip_cpu_write = value > 0; }},
+    {SETTING_TEXTURE_LOAD_HACK, RunningSettingCost::Live,
+     [] { return static_cast<s32>(Settings::values.texture_load_hack); },
+     [](s32 value) {
+         Settings::values.texture_load_hack = value > 0;
+         Config::Set(Config::TEXTURE_LOAD_HACK, Settings::values.texture_load_hack);
+     }},
+    // the scale factor of the auto resolution follows the layout
+    {SETTING_SCALE_FACTOR, RunningSettingCost::Layout,
+     [] { return std::min(std::max(Settings::values.resolution_factor - 1, 0), 3); },
+     [](s32 value) {
+         Settings::values.resolution_factor = value + 1;
+         Config::Set(Config::RESOLUTION_FACTOR, Settings::values.resolution_factor);
+     }},
+    {SETTING_SCREEN_LAYOUT, RunningSettingCost::Layout,
+     [] { return static_cast<s32>(Settings::values.layout_option); },
+     [](s32 value) {
+         Settings::values.layout_option = static_cast<Settings::LayoutOption>(value);
+         Config::Set(Config::LAYOUT_OPTION, Settings::values.layout_option);
+     }},
+    {SETTING_CUSTOM_LAYOUT, RunningSettingCost::Layout,
+     [] { return static_cast<s32>(Settings::values.custom_layout); },
+     [](s32 value) {
+         Settings::values.custom_layout = value > 0;
+         Config::Set(Config::USE_CUSTOM_LAYOUT, Settings::values.custom_layout);
+     }},
+    {SETTING_FRAME_LIMIT, RunningSettingCost::Live,
+     [] { return static_cast<s32>(Settings::values.frame_limit / 2); },
+     [](s32 value) { Settings::values.frame_limit = value * 2; }},
+};
+
+const RunningSetting* FindRunningSetting(s32 id) {
+    for (const auto& setting : RUNNING_SETTINGS) {
+        if (setting.id == id)
+            return &setting;
+    }
+    return nullptr;
+}
+
+} // namespace
+
+std::vector<s32> getRunningSettings() {
+    std::vector<s32> data;
+    data.reserve(1 + std::size(RUNNING_SETTINGS) * 2);
+    data.push_back(RUNNING_SETTINGS_VERSION);
+    for (const auto& setting : RUNNING_SETTINGS) {
+        data.push_back(setting.id);
+        data.push_back(setting.get());
+    }
+    return data;
+}
+
+u32 applyRunningSettings(const s32* data, u32 size) {
+    u32 costs = 0;
+    if (size == 0 || data[0] != RUNNING_SETTINGS_VERSION)
+        return costs;
+
+    for (u32 i = 1; i + 1 < size; i += 2) {
+        const RunningSetting* setting = FindRunningSetting(data[i]);
+        if (!setting || setting->get() == data[i + 1])
+            continue;
+        setting->set(data[i + 1]);
+        costs |= static_cast<u32>(setting->cost);
+    }
+    return costs;
+}
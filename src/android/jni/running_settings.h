@@ -0,0 +1,23 @@
+#pragma once
+
+#include <vector>
+
+#include "common/common_types.h"
+
+// the format of the buffers below, bumped whenever an id changes its meaning
+constexpr s32 RUNNING_SETTINGS_VERSION = 1;
+
+// what applying a changed setting costs, one bit each so a batch reports every cost it hit
+enum class RunningSettingCost : u32 {
+    Live = 0,         // read by the core as it runs
+    Layout = 1 << 0,  // needs the screen layout updated
+    Restart = 1 << 1, // only written to the config, applied at the next boot
+};
+
+// [version, id, value, id, value, ...] of the settings that can be changed in game, the ids are
+// the SETTING_* ones of RunningSettingDialog
+std::vector<s32> getRunningSettings();
+
+// applies the [version, id, value, ...] pairs that differ from the current values, unknown ids
+// are skipped, returns the RunningSettingCost bits of the applied ones
+u32 applyRunningSettings(const s32* data, u32 size);
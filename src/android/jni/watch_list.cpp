@@ -0,0 +1,122 @@
+#include "watch_list.h"
+
+#include <algorithm>
+#include <chrono>
+
+#include "core/core.h"
+#include "core/hle/kernel/process.h"
+#include "core/memory.h"
+
+#include "jni_common.h"
+
+// value type, see MemoryActivity
+static const u32 VALUE_TYPE_FOUR_BYTES = 0;
+static const u32 VALUE_TYPE_TWO_BYTES = 1;
+static const u32 VALUE_TYPE_ONE_BYTE = 2;
+
+static const s64 SNAPSHOT_INTERVAL = 1000 / WatchList::SNAPSHOT_RATE;
+
+static s64 GetTimestamp() {
+    return std::chrono::duration_cast<std::chrono::milliseconds>(
+               std::chrono::steady_clock::now().time_since_epoch())
+        .count();
+}
+
+static u32 GetValueSize(u32 value_type) {
+    if (value_type == VALUE_TYPE_TWO_BYTES) {
+        return 2;
+    } else if (value_type == VALUE_TYPE_ONE_BYTE) {
+        return 1;
+    }
+    return 4;
+}
+
+WatchList& WatchList::GetInstance() {
+    static WatchList s_watch_list;
+    return s_watch_list;
+}
+
+void WatchList::SetEntries(const u32* data, u32 size) {
+    std::vector<Entry> entries;
+    entries.reserve(std::min(size / 4, MAX_ENTRIES));
+    for (u32 i = 0; i + 3 < size && entries.size() < MAX_ENTRIES; i += 4) {
+        entries.push_back({data[i], data[i + 1], data[i + 3], data[i + 2] != 0});
+    }
+
+    std::lock_guard lock{mMutex};
+    mPending.swap(entries);
+    mChanged = true;
+}
+
+void WatchList::Apply() {
+    if (mChanged.exchange(false)) {
+        std::lock_guard lock{mMutex};
+        mEntries = mPending;
+        // java gets the values of a new list right away
+        mValues.clear();
+        mLastSnapshot = 0;
+    }
+    if (mEntries.empty()) {
+        return;
+    }
+
+    Core::System& system{Core::System::GetInstance()};
+    Memory::MemorySystem& memory = system.Memory();
+    const Kernel::Process& process = *system.Kernel().GetCurrentProcess();
+    const auto is_valid = [&](const Entry& entry) {
+        return Memory::IsValidVirtualAddress(process, entry.addr) &&
+               Memory::IsValidVirtualAddress(process,
+                                             entry.addr + GetValueSize(entry.value_type) - 1);
+    };
+
+    for (const Entry& entry : mEntries) {
+        if (!entry.frozen || !is_valid(entry)) {
+            continue;
+        }
+        if (entry.value_type == VALUE_TYPE_TWO_BYTES) {
+            memory.Write16(entry.addr, static_cast<u16>(entry.value));
+        } else if (entry.value_type == VALUE_TYPE_ONE_BYTE) {
+            memory.Write8(entry.addr, static_cast<u8>(entry.value));
+        } else {
+            memory.Write32(entry.addr, entry.value);
+        }
+    }
+
+    const s64 now = GetTimestamp();
+    if (now - mLastSnapshot < SNAPSHOT_INTERVAL) {
+        return;
+    }
+    mLastSnapshot = now;
+
+    std::vector<u32> values(mEntries.size());
+    for (std::size_t i = 0; i < mEntries.size(); ++i) {
+        const Entry& entry = mEntries[i];
+        if (!is_valid(entry)) {
+            continue;
+        }
+        if (entry.value_type == VALUE_TYPE_TWO_BYTES) {
+            values[i] = memory.Read16(entry.addr);
+        } else if (entry.value_type == VALUE_TYPE_ONE_BYTE) {
+            values[i] = memory.Read8(entry.addr);
+        } else {
+            values[i] = memory.Read32(entry.addr);
+        }
+    }
+    // nothing to redraw if no value changed
+    if (values != mValues) {
+        mValues.swap(values);
+        UpdateWatchValues(mValues);
+    }
+}
+
+// a new boot starts without entries, the ones of the last title must not be written to this one
+void WatchList::Reset() {
+    {
+        std::lock_guard lock{mMutex};
+        mPending.clear();
+        mChanged = false;
+    }
+    mEntries.clear();
+    mValues.clear();
+    mLastSnapshot = 0;
+}
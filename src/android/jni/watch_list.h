@@ -0,0 +1,45 @@
+#pragma once
+
+#include <atomic>
+#include <mutex>
+#include <vector>
+
+#include "common/common_types.h"
+
+/**
+ * Guest addresses watched from the memory viewer. Frozen entries are written back in one pass per
+ * emulated frame, and the current values are handed to java at most SNAPSHOT_RATE times a second.
+ */
+class WatchList {
+public:
+    static constexpr u32 MAX_ENTRIES = 256;
+    static constexpr u32 SNAPSHOT_RATE = 10;
+
+    struct Entry {
+        u32 addr;
+        u32 value_type; // same as the memory search value types
+        u32 value;      // written every frame while frozen
+        bool frozen;
+    };
+
+    static WatchList& GetInstance();
+
+    // from java, data is a list of (addr, value type, frozen, value) quads
+    void SetEntries(const u32* data, u32 size);
+
+    // emulation thread
+    void Apply();
+    void Reset();
+
+private:
+    WatchList() = default;
+
+    std::mutex mMutex;
+    std::vector<Entry> mPending;
+    std::atomic<bool> mChanged{false};
+
+    // only touched by the emulation thread
+    std::vector<Entry> mEntries;
+    std::vector<u32> mValues;
+    s64 mLastSnapshot = 0;
+};
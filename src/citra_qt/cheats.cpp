@@ -176,7 +176,7 @@ void CheatDialog::OnRowSelected(int row, int column) {
 void CheatDialog::OnCheckChanged(int state) {
     const QCheckBox* checkbox = qobject_cast<QCheckBox*>(sender());
     int row = static_cast<int>(checkbox->property("row").toInt());
-    cheats[row]->SetEnabled(state);
+    Core::System::GetInstance().CheatEngine().SetCheatEnabled(row, state);
     Core::System::GetInstance().CheatEngine().SaveCheatFile();
 }
 
@@ -4,6 +4,7 @@
 
 #include <fstream>
 #include <functional>
+#include <sstream>
 #include <fmt/format.h>
 #include "common/file_util.h"
 #include "core/cheats/cheats.h"
@@ -18,6 +19,12 @@ namespace Cheats {
 // we use the same value
 constexpr u64 run_interval_ticks = 50'000'000;
 
+static CheatEngine::CheatDatabase cheat_database;
+
+void CheatEngine::SetCheatDatabase(CheatDatabase database) {
+    cheat_database = std::move(database);
+}
+
 CheatEngine::CheatEngine(Core::System& system_) : system(system_) {
     LoadCheatFile();
     Connect();
@@ -42,6 +49,7 @@ std::vector<std::shared_ptr<CheatBase>> CheatEngine::GetCheats() const {
 void CheatEngine::AddCheat(const std::shared_ptr<CheatBase>& cheat) {
     std::unique_lock<std::shared_mutex> lock(cheats_list_mutex);
     cheats_list.push_back(cheat);
+    UpdateEnabledCheats();
 }
 
 void CheatEngine::RemoveCheat(int index) {
@@ -51,6 +59,7 @@ void CheatEngine::RemoveCheat(int index) {
         return;
     }
     cheats_list.erase(cheats_list.begin() + index);
+    UpdateEnabledCheats();
 }
 
 void CheatEngine::UpdateCheat(int index, const std::shared_ptr<CheatBase>& new_cheat) {
@@ -60,6 +69,27 @@ void CheatEngine::UpdateCheat(int index, const std::shared_ptr<CheatBase>& new_c
         return;
     }
     cheats_list[index] = new_cheat;
+    UpdateEnabledCheats();
+}
+
+void CheatEngine::SetCheatEnabled(int index, bool enabled) {
+    std::unique_lock<std::shared_mutex> lock(cheats_list_mutex);
+    if (index < 0 || index >= cheats_list.size()) {
+        LOG_ERROR(Core_Cheats, "Invalid index {}", index);
+        return;
+    }
+    cheats_list[index]->SetEnabled(enabled);
+    UpdateEnabledCheats();
+}
+
+void CheatEngine::UpdateEnabledCheats() {
+    auto enabled = std::make_shared<CheatList>();
+    for (const auto& cheat : cheats_list) {
+        if (cheat->IsEnabled()) {
+            enabled->push_back(cheat);
+        }
+    }
+    std::atomic_store(&enabled_cheats, std::shared_ptr<const CheatList>(std::move(enabled)));
 }
 
 void CheatEngine::SaveCheatFile() const {
@@ -86,6 +116,7 @@ void CheatEngine::ReloadCheatFile() {
     {
         std::unique_lock<std::shared_mutex> lock(cheats_list_mutex);
         cheats_list.clear();
+        UpdateEnabledCheats();
     }
     LoadCheatFile();
 }
@@ -99,24 +130,26 @@ void CheatEngine::LoadCheatFile() {
         FileUtil::CreateDir(cheat_dir);
     }
 
-    if (!FileUtil::Exists(filepath))
-        return;
-
-    auto gateway_cheats = GatewayCheat::LoadFile(filepath);
+    std::vector<std::unique_ptr<CheatBase>> gateway_cheats;
+    if (FileUtil::Exists(filepath)) {
+        gateway_cheats = GatewayCheat::LoadFile(filepath);
+    } else if (cheat_database) {
+        // the cheat file is only written once the cheats of the title are edited
+        std::istringstream stream(
+            cheat_database(system.Kernel().GetCurrentProcess()->codeset->program_id));
+        gateway_cheats = GatewayCheat::Parse(stream);
+    }
     {
         std::unique_lock<std::shared_mutex> lock(cheats_list_mutex);
         std::move(gateway_cheats.begin(), gateway_cheats.end(), std::back_inserter(cheats_list));
+        UpdateEnabledCheats();
     }
 }
 
 void CheatEngine::RunCallback([[maybe_unused]] u64 userdata, int cycles_late) {
-    {
-        std::shared_lock<std::shared_mutex> lock(cheats_list_mutex);
-        for (auto& cheat : cheats_list) {
-            if (cheat->IsEnabled()) {
-                cheat->Execute(system);
-            }
-        }
+    const auto enabled = std::atomic_load(&enabled_cheats);
+    for (const auto& cheat : *enabled) {
+        cheat->Execute(system);
     }
     system.CoreTiming().ScheduleEvent(run_interval_ticks - cycles_late, event);
 }
@@ -4,8 +4,10 @@
 
 #pragma once
 
+#include <functional>
 #include <memory>
 #include <shared_mutex>
+#include <string>
 #include <vector>
 #include "common/common_types.h"
 
@@ -24,6 +26,12 @@ class CheatBase;
 
 class CheatEngine {
 public:
+    /// Returns the bundled cheats of a title, in the cheat file format, or an empty string
+    using CheatDatabase = std::function<std::string(u64 program_id)>;
+
+    /// Sets where titles without a cheat file get their cheats from, set by the frontend
+    static void SetCheatDatabase(CheatDatabase database);
+
     explicit CheatEngine(Core::System& system);
     ~CheatEngine();
     void Connect();
@@ -31,14 +39,23 @@ public:
     void AddCheat(const std::shared_ptr<CheatBase>& cheat);
     void RemoveCheat(int index);
     void UpdateCheat(int index, const std::shared_ptr<CheatBase>& new_cheat);
+    void SetCheatEnabled(int index, bool enabled);
     void SaveCheatFile() const;
     void ReloadCheatFile();
 
 private:
     void LoadCheatFile();
     void RunCallback(u64 userdata, int cycles_late);
-    std::vector<std::shared_ptr<CheatBase>> cheats_list;
+    /// Rebuilds enabled_cheats, called with cheats_list_mutex held
+    void UpdateEnabledCheats();
+
+    using CheatList = std::vector<std::shared_ptr<CheatBase>>;
+    CheatList cheats_list;
     mutable std::shared_mutex cheats_list_mutex;
+    /// Immutable list of the enabled cheats, replaced as a whole whenever cheats_list changes so
+    /// the run callback neither locks nor walks the disabled cheats.
+    /// Accessed through std::atomic_load and std::atomic_store.
+    std::shared_ptr<const CheatList> enabled_cheats = std::make_shared<const CheatList>();
     Core::TimingEventType* event;
     Core::System& system;
 };
@@ -3,9 +3,9 @@
 // Refer to the license.txt file included.
 
 #include <algorithm>
-#include <cmath>
 #include <fstream>
 #include <functional>
+#include <optional>
 #include <string>
 #include <vector>
 #include "common/file_util.h"
@@ -26,39 +26,62 @@ struct State {
     std::size_t loop_back_line = 0;
     std::size_t current_line_nr = 0;
     bool loop_flag = false;
+    /// Pad state, read from HID by the first joker code of the run
+    std::optional<u32> pad_state;
 };
 
-template <typename T, typename ReadFunction, typename WriteFunction>
-static inline std::enable_if_t<std::is_integral_v<T>> WriteOp(
-        const GatewayCheat::CheatLine& line, const State& state,
-        ReadFunction read_func, WriteFunction write_func, Core::System& system) {
-    u32 addr = line.address + state.offset;
-    T val = read_func(addr);
-    if (val != static_cast<T>(line.value)) {
-        write_func(addr, static_cast<T>(line.value));
-        system.InvalidateCacheRange(addr, sizeof(T));
+static bool IsConditional(GatewayCheat::CheatType type) {
+    switch (type) {
+    case GatewayCheat::CheatType::GreaterThan32:
+    case GatewayCheat::CheatType::LessThan32:
+    case GatewayCheat::CheatType::EqualTo32:
+    case GatewayCheat::CheatType::NotEqualTo32:
+    case GatewayCheat::CheatType::GreaterThan16WithMask:
+    case GatewayCheat::CheatType::LessThan16WithMask:
+    case GatewayCheat::CheatType::EqualTo16WithMask:
+    case GatewayCheat::CheatType::NotEqualTo16WithMask:
+    case GatewayCheat::CheatType::Joker:
+        return true;
+    default:
+        return false;
     }
 }
 
-template <typename T, typename ReadFunction, typename CompareFunc>
-static inline std::enable_if_t<std::is_integral_v<T>> CompOp(const GatewayCheat::CheatLine& line,
-                                                             State& state, ReadFunction read_func,
-                                                             CompareFunc comp) {
-    u32 addr = line.address + state.offset;
-    T val = read_func(addr);
-    if (!comp(val)) {
-        state.if_flag++;
+template <typename T>
+static T Read(Memory::MemorySystem& memory, VAddr addr) {
+    if constexpr (sizeof(T) == 4) {
+        return memory.Read32(addr);
+    } else if constexpr (sizeof(T) == 2) {
+        return memory.Read16(addr);
+    } else {
+        return memory.Read8(addr);
+    }
+}
+
+template <typename T>
+static void Write(Memory::MemorySystem& memory, VAddr addr, T value) {
+    if constexpr (sizeof(T) == 4) {
+        memory.Write32(addr, value);
+    } else if constexpr (sizeof(T) == 2) {
+        memory.Write16(addr, value);
+    } else {
+        memory.Write8(addr, value);
     }
 }
 
-static inline void LoadOffsetOp(Memory::MemorySystem& memory, const GatewayCheat::CheatLine& line,
-                                State& state) {
-    u32 addr = line.address + state.offset;
-    state.offset = memory.Read32(addr);
+/// Writes only when the value differs, so the JIT cache is left alone for unchanged values
+template <typename T>
+static inline void WriteIfChanged(Memory::MemorySystem& memory,
+                                  const std::function<void(VAddr, std::size_t)>& invalidate,
+                                  VAddr addr, T value) {
+    if (Read<T>(memory, addr) != value) {
+        Write<T>(memory, addr, value);
+        invalidate(addr, sizeof(T));
+    }
 }
 
-static inline void LoopOp(const GatewayCheat::CheatLine& line, State& state) {
-    state.loop_flag = state.loop_count < line.value;
+static inline void LoopOp(u32 value, State& state) {
+    state.loop_flag = state.loop_count < value;
     state.loop_count++;
     state.loop_back_line = state.current_line_nr;
 }
@@ -89,91 +112,12 @@ static inline void FullTerminateOp(State& state) {
     }
 }
 
-static inline void SetOffsetOp(const GatewayCheat::CheatLine& line, State& state) {
-    state.offset = line.value;
-}
-
-static inline void AddValueOp(const GatewayCheat::CheatLine& line, State& state) {
-    state.reg += line.value;
-}
-
-static inline void SetValueOp(const GatewayCheat::CheatLine& line, State& state) {
-    state.reg = line.value;
-}
-
-template <typename T, typename ReadFunction, typename WriteFunction>
-static inline std::enable_if_t<std::is_integral_v<T>> IncrementiveWriteOp(
-    const GatewayCheat::CheatLine& line, State& state,
-    ReadFunction read_func, WriteFunction write_func, Core::System& system) {
-    u32 addr = line.value + state.offset;
-    T val = read_func(addr);
-    if (val != static_cast<T>(state.reg)) {
-        write_func(addr, static_cast<T>(state.reg));
-        system.InvalidateCacheRange(addr, sizeof(T));
-    }
-    state.offset += sizeof(T);
-}
-
-template <typename T, typename ReadFunction>
-static inline std::enable_if_t<std::is_integral_v<T>> LoadOp(const GatewayCheat::CheatLine& line,
-                                                             State& state, ReadFunction read_func) {
-
-    u32 addr = line.value + state.offset;
-    state.reg = read_func(addr);
-}
-
-static inline void AddOffsetOp(const GatewayCheat::CheatLine& line, State& state) {
-    state.offset += line.value;
-}
-
-static inline void JokerOp(const GatewayCheat::CheatLine& line, State& state,
-                           const Core::System& system) {
-    u32 pad_state = system.ServiceManager()
-                        .GetService<Service::HID::Module::Interface>("hid:USER")
-                        ->GetModule()
-                        ->GetState()
-                        .hex;
-    bool pressed = (pad_state & line.value) == line.value;
-    if (!pressed) {
-        state.if_flag++;
-    }
-}
-
-static inline void PatchOp(const GatewayCheat::CheatLine& line, State& state, Core::System& system,
-                           const std::vector<GatewayCheat::CheatLine>& cheat_lines) {
-    if (state.if_flag > 0) {
-        // Skip over the additional patch lines
-        state.current_line_nr += static_cast<int>(std::ceil(line.value / 8.0));
-        return;
-    }
-    u32 num_bytes = line.value;
-    u32 addr = line.address + state.offset;
-    system.InvalidateCacheRange(addr, num_bytes);
-
-    bool first = true;
-    u32 bit_offset = 0;
-    if (num_bytes > 0)
-        state.current_line_nr++; // skip over the current code
-    while (num_bytes >= 4) {
-        u32 tmp = first ? cheat_lines[state.current_line_nr].first
-                        : cheat_lines[state.current_line_nr].value;
-        if (!first && num_bytes > 4) {
-            state.current_line_nr++;
-        }
-        first = !first;
-        system.Memory().Write32(addr, tmp);
-        addr += 4;
-        num_bytes -= 4;
-    }
-    while (num_bytes > 0) {
-        u32 tmp = (first ? cheat_lines[state.current_line_nr].first
-                         : cheat_lines[state.current_line_nr].value) >>
-                  bit_offset;
-        system.Memory().Write8(addr, tmp);
-        addr += 1;
-        num_bytes -= 1;
-        bit_offset += 8;
-    }
+static u32 ReadPadState(const Core::System& system) {
+    return system.ServiceManager()
+        .GetService<Service::HID::Module::Interface>("hid:USER")
+        ->GetModule()
+        ->GetState()
+        .hex;
 }
 
 GatewayCheat::CheatLine::CheatLine(const std::string& line) {
@@ -207,6 +151,7 @@ GatewayCheat::CheatLine::CheatLine(const std::string& line) {
 GatewayCheat::GatewayCheat(std::string name_, std::vector<CheatLine> cheat_lines_,
                            std::string comments_)
     : name(std::move(name_)), cheat_lines(std::move(cheat_lines_)), comments(std::move(comments_)) {
+    Compile();
 }
 
 GatewayCheat::GatewayCheat(std::string name_, std::string code, std::string comments_)
@@ -221,199 +166,249 @@ GatewayCheat::GatewayCheat(std::string name_, std::string code, std::string comm
             temp_cheat_lines.emplace_back(code_lines[i]);
     }
     cheat_lines = std::move(temp_cheat_lines);
+    Compile();
 }
 
 GatewayCheat::~GatewayCheat() = default;
 
+void GatewayCheat::Compile() {
+    program.clear();
+    patch_data.clear();
+    for (std::size_t i = 0; i < cheat_lines.size(); ++i) {
+        const CheatLine& line = cheat_lines[i];
+        if (line.type == CheatType::Null) {
+            continue;
+        }
+        Instruction op{line.type, line.address, line.value, 0, 0};
+        if (line.type == CheatType::Patch) {
+            // EXXXXXXX YYYYYYYY is followed by YYYYYYYY bytes in ceil(YYYYYYYY / 8) lines, each
+            // line holds two little endian words
+            op.target = static_cast<u32>(patch_data.size());
+            u32 num_bytes = 0;
+            while (num_bytes < line.value && i + 1 < cheat_lines.size()) {
+                const CheatLine& data = cheat_lines[++i];
+                for (const u32 word : {data.first, data.value}) {
+                    for (u32 shift = 0; shift < 32 && num_bytes < line.value; shift += 8) {
+                        patch_data.push_back(static_cast<u8>(word >> shift));
+                        num_bytes++;
+                    }
+                }
+            }
+            op.value = num_bytes;
+        }
+        program.push_back(op);
+    }
+
+    // A failed condition skips to the end if closing its block, or to the first full
+    // terminator, whichever comes first. The blocks opened and closed on the way only change
+    // the nesting depth, which is kept with the target.
+    for (std::size_t i = 0; i < program.size(); ++i) {
+        if (!IsConditional(program[i].type)) {
+            continue;
+        }
+        u32 depth = 1;
+        std::size_t j = i + 1;
+        for (; j < program.size(); ++j) {
+            const CheatType type = program[j].type;
+            if (IsConditional(type)) {
+                depth++;
+            } else if (type == CheatType::FullTerminator ||
+                       (type == CheatType::Terminator && depth == 1)) {
+                break;
+            } else if (type == CheatType::Terminator) {
+                depth--;
+            }
+        }
+        program[i].target = static_cast<u32>(j);
+        program[i].depth = depth;
+    }
+}
+
 void GatewayCheat::Execute(Core::System& system) const {
+    Execute(
+        system.Memory(), [&system] { return ReadPadState(system); },
+        [&system](VAddr addr, std::size_t size) { system.InvalidateCacheRange(addr, size); });
+}
+
+void GatewayCheat::Execute(Memory::MemorySystem& memory, const std::function<u32()>& read_pad,
+                           const std::function<void(VAddr, std::size_t)>& invalidate) const {
     State state;
 
-    Memory::MemorySystem& memory = system.Memory();
-    auto Read8 = [&memory](VAddr addr) { return memory.Read8(addr); };
-    auto Read16 = [&memory](VAddr addr) { return memory.Read16(addr); };
-    auto Read32 = [&memory](VAddr addr) { return memory.Read32(addr); };
-    auto Write8 = [&memory](VAddr addr, u8 value) { memory.Write8(addr, value); };
-    auto Write16 = [&memory](VAddr addr, u16 value) { memory.Write16(addr, value); };
-    auto Write32 = [&memory](VAddr addr, u32 value) { memory.Write32(addr, value); };
+    // a failed condition continues skipping from its precomputed target
+    const auto skip_block = [&state](const Instruction& op) {
+        state.if_flag = op.depth;
+        state.current_line_nr = op.target - 1;
+    };
 
-    for (state.current_line_nr = 0; state.current_line_nr < cheat_lines.size();
+    for (state.current_line_nr = 0; state.current_line_nr < program.size();
          state.current_line_nr++) {
-        auto line = cheat_lines[state.current_line_nr];
+        const Instruction& op = program[state.current_line_nr];
         if (state.if_flag > 0) {
-            switch (line.type) {
-            case CheatType::GreaterThan32:
-            case CheatType::LessThan32:
-            case CheatType::EqualTo32:
-            case CheatType::NotEqualTo32:
-            case CheatType::GreaterThan16WithMask:
-            case CheatType::LessThan16WithMask:
-            case CheatType::EqualTo16WithMask:
-            case CheatType::NotEqualTo16WithMask:
-            case CheatType::Joker:
+            if (IsConditional(op.type)) {
                 // Increment the if_flag to handle the end if correctly
                 state.if_flag++;
-                break;
-            case CheatType::Patch:
-                // EXXXXXXX YYYYYYYY
-                // Copies YYYYYYYY bytes from (current code location + 8) to [XXXXXXXX + offset].
-                // We need to call this here to skip the additional patch lines
-                PatchOp(line, state, system, cheat_lines);
-                break;
-            case CheatType::Terminator:
+            } else if (op.type == CheatType::Terminator) {
                 // D0000000 00000000 - ENDIF
                 TerminateOp(state);
-                break;
-            case CheatType::FullTerminator:
+            } else if (op.type == CheatType::FullTerminator) {
                 // D2000000 00000000 - END; offset = 0; reg = 0;
                 FullTerminateOp(state);
-                break;
-            default:
-                break;
             }
-            // Do not execute any other op code
+            // Do not execute any other op code, the data of patches is not part of the program
             continue;
         }
-        switch (line.type) {
+        switch (op.type) {
         case CheatType::Null:
             break;
         case CheatType::Write32:
             // 0XXXXXXX YYYYYYYY - word[XXXXXXX+offset] = YYYYYYYY
-            WriteOp<u32>(line, state, Read32, Write32, system);
+            WriteIfChanged<u32>(memory, invalidate, op.address + state.offset, op.value);
             break;
         case CheatType::Write16:
             // 1XXXXXXX 0000YYYY - half[XXXXXXX+offset] = YYYY
-            WriteOp<u16>(line, state, Read16, Write16, system);
+            WriteIfChanged<u16>(memory, invalidate, op.address + state.offset, op.value);
             break;
         case CheatType::Write8:
             // 2XXXXXXX 000000YY - byte[XXXXXXX+offset] = YY
-            WriteOp<u8>(line, state, Read8, Write8, system);
+            WriteIfChanged<u8>(memory, invalidate, op.address + state.offset, op.value);
             break;
         case CheatType::GreaterThan32:
             // 3XXXXXXX YYYYYYYY - Execute next block IF YYYYYYYY > word[XXXXXXX]   ;unsigned
-            CompOp<u32>(line, state, Read32, [&line](u32 val) -> bool { return line.value > val; });
+            if (!(op.value > memory.Read32(op.address + state.offset))) {
+                skip_block(op);
+            }
             break;
         case CheatType::LessThan32:
             // 4XXXXXXX YYYYYYYY - Execute next block IF YYYYYYYY < word[XXXXXXX]   ;unsigned
-            CompOp<u32>(line, state, Read32, [&line](u32 val) -> bool { return line.value < val; });
+            if (!(op.value < memory.Read32(op.address + state.offset))) {
+                skip_block(op);
+            }
             break;
         case CheatType::EqualTo32:
             // 5XXXXXXX YYYYYYYY - Execute next block IF YYYYYYYY == word[XXXXXXX]   ;unsigned
-            CompOp<u32>(line, state, Read32,
-                        [&line](u32 val) -> bool { return line.value == val; });
+            if (!(op.value == memory.Read32(op.address + state.offset))) {
+                skip_block(op);
+            }
             break;
         case CheatType::NotEqualTo32:
             // 6XXXXXXX YYYYYYYY - Execute next block IF YYYYYYYY != word[XXXXXXX]   ;unsigned
-            CompOp<u32>(line, state, Read32,
-                        [&line](u32 val) -> bool { return line.value != val; });
+            if (!(op.value != memory.Read32(op.address + state.offset))) {
+                skip_block(op);
+            }
             break;
         case CheatType::GreaterThan16WithMask:
-            // 7XXXXXXX ZZZZYYYY - Execute next block IF YYYY > ((not ZZZZ) AND half[XXXXXXX])
-            CompOp<u16>(line, state, Read16, [&line](u16 val) -> bool {
-                return static_cast<u16>(line.value) > (static_cast<u16>(~line.value >> 16) & val);
-            });
-            break;
         case CheatType::LessThan16WithMask:
-            // 8XXXXXXX ZZZZYYYY - Execute next block IF YYYY < ((not ZZZZ) AND half[XXXXXXX])
-            CompOp<u16>(line, state, Read16, [&line](u16 val) -> bool {
-                return static_cast<u16>(line.value) < (static_cast<u16>(~line.value >> 16) & val);
-            });
-            break;
         case CheatType::EqualTo16WithMask:
+        case CheatType::NotEqualTo16WithMask: {
+            // 7XXXXXXX ZZZZYYYY - Execute next block IF YYYY > ((not ZZZZ) AND half[XXXXXXX])
+            // 8XXXXXXX ZZZZYYYY - Execute next block IF YYYY < ((not ZZZZ) AND half[XXXXXXX])
             // 9XXXXXXX ZZZZYYYY - Execute next block IF YYYY = ((not ZZZZ) AND half[XXXXXXX])
-            CompOp<u16>(line, state, Read16, [&line](u16 val) -> bool {
-                return static_cast<u16>(line.value) == (static_cast<u16>(~line.value >> 16) & val);
-            });
-            break;
-        case CheatType::NotEqualTo16WithMask:
             // AXXXXXXX ZZZZYYYY - Execute next block IF YYYY <> ((not ZZZZ) AND half[XXXXXXX])
-            CompOp<u16>(line, state, Read16, [&line](u16 val) -> bool {
-                return static_cast<u16>(line.value) != (static_cast<u16>(~line.value >> 16) & val);
-            });
+            const u16 value = static_cast<u16>(op.value);
+            const u16 masked = static_cast<u16>(~op.value >> 16) &
+                               memory.Read16(op.address + state.offset);
+            bool result;
+            if (op.type == CheatType::GreaterThan16WithMask) {
+                result = value > masked;
+            } else if (op.type == CheatType::LessThan16WithMask) {
+                result = value < masked;
+            } else if (op.type == CheatType::EqualTo16WithMask) {
+                result = value == masked;
+            } else {
+                result = value != masked;
+            }
+            if (!result) {
+                skip_block(op);
+            }
             break;
+        }
         case CheatType::LoadOffset:
             // BXXXXXXX 00000000 - offset = word[XXXXXXX+offset]
-            LoadOffsetOp(system.Memory(), line, state);
+            state.offset = memory.Read32(op.address + state.offset);
             break;
-        case CheatType::Loop: {
+        case CheatType::Loop:
             // C0000000 YYYYYYYY - LOOP next block YYYYYYYY times
             // TODO(B3N30): Support nested loops if necessary
-            LoopOp(line, state);
+            LoopOp(op.value, state);
             break;
-        }
-        case CheatType::Terminator: {
+        case CheatType::Terminator:
             // D0000000 00000000 - END IF
             TerminateOp(state);
             break;
-        }
-        case CheatType::LoopExecuteVariant: {
+        case CheatType::LoopExecuteVariant:
             // D1000000 00000000 - END LOOP
             LoopExecuteVariantOp(state);
             break;
-        }
-        case CheatType::FullTerminator: {
+        case CheatType::FullTerminator:
             // D2000000 00000000 - NEXT & Flush
             FullTerminateOp(state);
             break;
-        }
-        case CheatType::SetOffset: {
+        case CheatType::SetOffset:
             // D3000000 XXXXXXXX – Sets the offset to XXXXXXXX
-            SetOffsetOp(line, state);
+            state.offset = op.value;
             break;
-        }
-        case CheatType::AddValue: {
+        case CheatType::AddValue:
             // D4000000 XXXXXXXX – reg += XXXXXXXX
-            AddValueOp(line, state);
+            state.reg += op.value;
             break;
-        }
-        case CheatType::SetValue: {
+        case CheatType::SetValue:
             // D5000000 XXXXXXXX – reg = XXXXXXXX
-            SetValueOp(line, state);
+            state.reg = op.value;
             break;
-        }
-        case CheatType::IncrementiveWrite32: {
+        case CheatType::IncrementiveWrite32:
             // D6000000 XXXXXXXX – (32bit) [XXXXXXXX+offset] = reg ; offset += 4
-            IncrementiveWriteOp<u32>(line, state, Read32, Write32, system);
+            WriteIfChanged<u32>(memory, invalidate, op.value + state.offset, state.reg);
+            state.offset += 4;
             break;
-        }
-        case CheatType::IncrementiveWrite16: {
+        case CheatType::IncrementiveWrite16:
             // D7000000 XXXXXXXX – (16bit) [XXXXXXXX+offset] = reg & 0xffff ; offset += 2
-            IncrementiveWriteOp<u16>(line, state, Read16, Write16, system);
+            WriteIfChanged<u16>(memory, invalidate, op.value + state.offset, state.reg);
+            state.offset += 2;
             break;
-        }
-        case CheatType::IncrementiveWrite8: {
+        case CheatType::IncrementiveWrite8:
             // D8000000 XXXXXXXX – (16bit) [XXXXXXXX+offset] = reg & 0xff ; offset++
-            IncrementiveWriteOp<u8>(line, state, Read8, Write8, system);
+            WriteIfChanged<u8>(memory, invalidate, op.value + state.offset, state.reg);
+            state.offset += 1;
             break;
-        }
-        case CheatType::Load32: {
+        case CheatType::Load32:
             // D9000000 XXXXXXXX – reg = [XXXXXXXX+offset]
-            LoadOp<u32>(line, state, Read32);
+            state.reg = memory.Read32(op.value + state.offset);
             break;
-        }
-        case CheatType::Load16: {
+        case CheatType::Load16:
             // DA000000 XXXXXXXX – reg = [XXXXXXXX+offset] & 0xFFFF
-            LoadOp<u16>(line, state, Read16);
+            state.reg = memory.Read16(op.value + state.offset);
             break;
-        }
-        case CheatType::Load8: {
+        case CheatType::Load8:
             // DB000000 XXXXXXXX – reg = [XXXXXXXX+offset] & 0xFF
-            LoadOp<u8>(line, state, Read8);
+            state.reg = memory.Read8(op.value + state.offset);
             break;
-        }
-        case CheatType::AddOffset: {
+        case CheatType::AddOffset:
             // DC000000 XXXXXXXX – offset + XXXXXXXX
-            AddOffsetOp(line, state);
+            state.offset += op.value;
             break;
-        }
-        case CheatType::Joker: {
+        case CheatType::Joker:
             // DD000000 XXXXXXXX – if KEYPAD has value XXXXXXXX execute next block
-            JokerOp(line, state, system);
+            if (!state.pad_state) {
+                state.pad_state = read_pad();
+            }
+            if ((*state.pad_state & op.value) != op.value) {
+                skip_block(op);
+            }
             break;
-        }
         case CheatType::Patch: {
             // EXXXXXXX YYYYYYYY
             // Copies YYYYYYYY bytes from (current code location + 8) to [XXXXXXXX + offset].
-            PatchOp(line, state, system, cheat_lines);
+            u32 addr = op.address + state.offset;
+            invalidate(addr, op.value);
+            const u8* data = patch_data.data() + op.target;
+            u32 i = 0;
+            for (; i + 4 <= op.value; i += 4, addr += 4) {
+                memory.Write32(addr, data[i] | (data[i + 1] << 8) | (data[i + 2] << 16) |
+                                         (static_cast<u32>(data[i + 3]) << 24));
+            }
+            for (; i < op.value; ++i, ++addr) {
+                memory.Write8(addr, data[i]);
+            }
             break;
         }
         }
@@ -469,14 +464,16 @@ std::string GatewayCheat::ToString() const {
 }
 
 std::vector<std::unique_ptr<CheatBase>> GatewayCheat::LoadFile(const std::string& filepath) {
-    std::vector<std::unique_ptr<CheatBase>> cheats;
-
     std::ifstream file;
     OpenFStream(file, filepath, std::ios_base::in);
     if (!file) {
-        return cheats;
+        return {};
     }
+    return Parse(file);
+}
 
+std::vector<std::unique_ptr<CheatBase>> GatewayCheat::Parse(std::istream& file) {
+    std::vector<std::unique_ptr<CheatBase>> cheats;
     std::string comments;
     std::vector<CheatLine> cheat_lines;
     std::string name;
@@ -5,9 +5,17 @@
 #pragma once
 
 #include <atomic>
+#include <functional>
+#include <istream>
 #include <memory>
+#include <vector>
+#include "common/common_types.h"
 #include "core/cheats/cheat_base.h"
 
+namespace Memory {
+class MemorySystem;
+}
+
 namespace Cheats {
 class GatewayCheat final : public CheatBase {
 public:
@@ -59,6 +67,11 @@ public:
 
     void Execute(Core::System& system) const override;
 
+    /// Runs the cheat on memory alone. read_pad is called for the pad state of joker codes and
+    /// invalidate for every range written, Execute(system) passes HID and the CPU caches.
+    void Execute(Memory::MemorySystem& memory, const std::function<u32()>& read_pad,
+                 const std::function<void(VAddr, std::size_t)>& invalidate) const;
+
     bool IsEnabled() const override;
     void SetEnabled(bool enabled) override;
 
@@ -77,10 +90,30 @@ public:
     /// This function will pares the file for such structures
     static std::vector<std::unique_ptr<CheatBase>> LoadFile(const std::string& filepath);
 
+    /// Parses cheats in the format of LoadFile from a stream
+    static std::vector<std::unique_ptr<CheatBase>> Parse(std::istream& stream);
+
 private:
+    /// A cheat line decoded once when the cheat is created. Patch data lines are folded into
+    /// the patch and conditionals know where execution resumes when they fail.
+    struct Instruction {
+        CheatType type;
+        u32 address;
+        u32 value;
+        /// Conditionals: index of the instruction a failed condition skips to.
+        /// Patch: offset of the bytes in patch_data.
+        u32 target;
+        /// Conditionals: nesting depth of the skipped block at target.
+        u32 depth;
+    };
+
+    void Compile();
+
     std::atomic<bool> enabled = false;
     const std::string name;
     std::vector<CheatLine> cheat_lines;
     const std::string comments;
+    std::vector<Instruction> program;
+    std::vector<u8> patch_data;
 };
 } // namespace Cheats
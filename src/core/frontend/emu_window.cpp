@@ -80,13 +80,17 @@ std::tuple<unsigned, unsigned> EmuWindow::ClipToTouchScreen(unsigned new_x, unsi
 void EmuWindow::TouchPressed(unsigned framebuffer_x, unsigned framebuffer_y) {
     if (!IsWithinTouchscreen(framebuffer_layout, framebuffer_x, framebuffer_y))
         return;
-    std::lock_guard guard(touch_state->mutex);
-    touch_state->touch_x =
+    TouchPressedNormalized(
         static_cast<float>(framebuffer_x - framebuffer_layout.bottom_screen.left) /
-        (framebuffer_layout.bottom_screen.right - framebuffer_layout.bottom_screen.left);
-    touch_state->touch_y =
+            (framebuffer_layout.bottom_screen.right - framebuffer_layout.bottom_screen.left),
         static_cast<float>(framebuffer_y - framebuffer_layout.bottom_screen.top) /
-        (framebuffer_layout.bottom_screen.bottom - framebuffer_layout.bottom_screen.top);
+            (framebuffer_layout.bottom_screen.bottom - framebuffer_layout.bottom_screen.top));
+}
+
+void EmuWindow::TouchPressedNormalized(float touch_x, float touch_y) {
+    std::lock_guard guard(touch_state->mutex);
+    touch_state->touch_x = touch_x;
+    touch_state->touch_y = touch_y;
     touch_state->touch_pressed = true;
 }
 
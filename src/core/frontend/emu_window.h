@@ -59,6 +59,13 @@ public:
      */
     void TouchPressed(unsigned framebuffer_x, unsigned framebuffer_y);
 
+    /**
+     * Signal a touch at a position that the frontend already mapped to the touchscreen
+     * @param touch_x Touchscreen x-position, from 0 to 1
+     * @param touch_y Touchscreen y-position, from 0 to 1
+     */
+    void TouchPressedNormalized(float touch_x, float touch_y);
+
     /// Signal that a touch released event has occurred (e.g. mouse click released)
     void TouchReleased();
 
@@ -3,6 +3,7 @@
 // Refer to the license.txt file included.
 
 #include <array>
+#include <atomic>
 #include <cstring>
 #include "audio_core/dsp_interface.h"
 #include "common/assert.h"
@@ -54,6 +55,9 @@ private:
     std::array<bool, NEW_LINEAR_HEAP_SIZE / PAGE_SIZE> new_linear_heap{};
 };
 
+// global rather than per instance, a new memory system must not reuse an old generation
+static std::atomic<u32> g_page_table_generation{0};
+
 class MemorySystem::Impl {
 public:
     // Visual Studio would try to allocate these on compile time if they are std::array, which would
@@ -70,16 +74,23 @@ public:
 };
 
 MemorySystem::MemorySystem() : impl(std::make_unique<Impl>()) {}
-MemorySystem::~MemorySystem() = default;
+MemorySystem::~MemorySystem() {
+    g_page_table_generation++;
+}
 
 void MemorySystem::SetCurrentPageTable(PageTable* page_table) {
     impl->current_page_table = page_table;
+    g_page_table_generation++;
 }
 
 PageTable* MemorySystem::GetCurrentPageTable() const {
     return impl->current_page_table;
 }
 
+u32 MemorySystem::GetPageTableGeneration() {
+    return g_page_table_generation.load(std::memory_order_acquire);
+}
+
 void MemorySystem::MapPages(PageTable& page_table, u32 base, u32 size, u8* memory, PageType type) {
     LOG_DEBUG(HW_Memory, "Mapping {} onto {:08X}-{:08X}", (void*)memory, base * PAGE_SIZE,
               (base + size) * PAGE_SIZE);
@@ -104,6 +115,7 @@ void MemorySystem::MapPages(PageTable& page_table, u32 base, u32 size, u8* memor
         if (memory != nullptr)
             memory += PAGE_SIZE;
     }
+    g_page_table_generation++;
 }
 
 void MemorySystem::MapMemoryRegion(PageTable& page_table, VAddr base, u32 size, u8* target) {
@@ -221,6 +221,12 @@ public:
     void SetCurrentPageTable(PageTable* page_table);
     PageTable* GetCurrentPageTable() const;
 
+    /**
+     * Counter bumped whenever a mapping of the page tables changes or the memory system goes away,
+     * so frontends holding raw pointers into guest memory know when to drop them.
+     */
+    static u32 GetPageTableGeneration();
+
     u8 Read8(VAddr addr);
     u16 Read16(VAddr addr);
     u32 Read32(VAddr addr);
@@ -0,0 +1,340 @@
+// Copyright 2020 Citra Emulator Project
+// Licensed under GPLv2 or any later version
+// Refer to the license.txt file included.
+
+#include <algorithm>
+#include <cmath>
+#include <memory>
+#include <string>
+#include <vector>
+#include <catch2/catch.hpp>
+#include "core/cheats/gateway_cheat.h"
+#include "core/memory.h"
+
+namespace Cheats {
+
+using CheatLine = GatewayCheat::CheatLine;
+using CheatType = GatewayCheat::CheatType;
+
+static constexpr VAddr BASE_ADDR = 0x00100000;
+
+/// The interpreter gateway cheats had before they were compiled, it walks the lines as written
+/// and is what the compiled program has to match.
+static void ExecuteLineByLine(const std::vector<CheatLine>& lines, Memory::MemorySystem& memory,
+                              u32 pad_state) {
+    u32 reg = 0;
+    u32 offset = 0;
+    u32 if_flag = 0;
+    u32 loop_count = 0;
+    std::size_t loop_back_line = 0;
+    bool loop_flag = false;
+    std::size_t nr = 0;
+
+    const auto terminate = [&] {
+        if (if_flag > 0) {
+            if_flag--;
+        }
+    };
+    const auto full_terminate = [&] {
+        if (loop_flag) {
+            nr = loop_back_line - 1;
+        } else {
+            offset = 0;
+            reg = 0;
+            loop_count = 0;
+            if_flag = 0;
+            loop_flag = false;
+        }
+    };
+    const auto compare = [&](bool result) {
+        if (!result) {
+            if_flag++;
+        }
+    };
+    const auto masked = [&](const CheatLine& line) {
+        return static_cast<u16>(~line.value >> 16) & memory.Read16(line.address + offset);
+    };
+    const auto patch = [&](const CheatLine& line) {
+        if (if_flag > 0) {
+            nr += static_cast<int>(std::ceil(line.value / 8.0));
+            return;
+        }
+        u32 num_bytes = line.value;
+        u32 addr = line.address + offset;
+        bool first = true;
+        u32 bit_offset = 0;
+        if (num_bytes > 0)
+            nr++;
+        while (num_bytes >= 4) {
+            const u32 tmp = first ? lines[nr].first : lines[nr].value;
+            if (!first && num_bytes > 4) {
+                nr++;
+            }
+            first = !first;
+            memory.Write32(addr, tmp);
+            addr += 4;
+            num_bytes -= 4;
+        }
+        while (num_bytes > 0) {
+            const u32 tmp = (first ? lines[nr].first : lines[nr].value) >> bit_offset;
+            memory.Write8(addr, tmp);
+            addr += 1;
+            num_bytes -= 1;
+            bit_offset += 8;
+        }
+    };
+
+    for (nr = 0; nr < lines.size(); nr++) {
+        const CheatLine& line = lines[nr];
+        if (if_flag > 0) {
+            switch (line.type) {
+            case CheatType::GreaterThan32:
+            case CheatType::LessThan32:
+            case CheatType::EqualTo32:
+            case CheatType::NotEqualTo32:
+            case CheatType::GreaterThan16WithMask:
+            case CheatType::LessThan16WithMask:
+            case CheatType::EqualTo16WithMask:
+            case CheatType::NotEqualTo16WithMask:
+            case CheatType::Joker:
+                if_flag++;
+                break;
+            case CheatType::Patch:
+                patch(line);
+                break;
+            case CheatType::Terminator:
+                terminate();
+                break;
+            case CheatType::FullTerminator:
+                full_terminate();
+                break;
+            default:
+                break;
+            }
+            continue;
+        }
+        switch (line.type) {
+        case CheatType::Null:
+            break;
+        case CheatType::Write32:
+            memory.Write32(line.address + offset, line.value);
+            break;
+        case CheatType::Write16:
+            memory.Write16(line.address + offset, static_cast<u16>(line.value));
+            break;
+        case CheatType::Write8:
+            memory.Write8(line.address + offset, static_cast<u8>(line.value));
+            break;
+        case CheatType::GreaterThan32:
+            compare(line.value > memory.Read32(line.address + offset));
+            break;
+        case CheatType::LessThan32:
+            compare(line.value < memory.Read32(line.address + offset));
+            break;
+        case CheatType::EqualTo32:
+            compare(line.value == memory.Read32(line.address + offset));
+            break;
+        case CheatType::NotEqualTo32:
+            compare(line.value != memory.Read32(line.address + offset));
+            break;
+        case CheatType::GreaterThan16WithMask:
+            compare(static_cast<u16>(line.value) > masked(line));
+            break;
+        case CheatType::LessThan16WithMask:
+            compare(static_cast<u16>(line.value) < masked(line));
+            break;
+        case CheatType::EqualTo16WithMask:
+            compare(static_cast<u16>(line.value) == masked(line));
+            break;
+        case CheatType::NotEqualTo16WithMask:
+            compare(static_cast<u16>(line.value) != masked(line));
+            break;
+        case CheatType::LoadOffset:
+            offset = memory.Read32(line.address + offset);
+            break;
+        case CheatType::Loop:
+            loop_flag = loop_count < line.value;
+            loop_count++;
+            loop_back_line = nr;
+            break;
+        case CheatType::Terminator:
+            terminate();
+            break;
+        case CheatType::LoopExecuteVariant:
+            if (loop_flag) {
+                nr = loop_back_line - 1;
+            } else {
+                loop_count = 0;
+            }
+            break;
+        case CheatType::FullTerminator:
+            full_terminate();
+            break;
+        case CheatType::SetOffset:
+            offset = line.value;
+            break;
+        case CheatType::AddValue:
+            reg += line.value;
+            break;
+        case CheatType::SetValue:
+            reg = line.value;
+            break;
+        case CheatType::IncrementiveWrite32:
+            memory.Write32(line.value + offset, reg);
+            offset += 4;
+            break;
+        case CheatType::IncrementiveWrite16:
+            memory.Write16(line.value + offset, static_cast<u16>(reg));
+            offset += 2;
+            break;
+        case CheatType::IncrementiveWrite8:
+            memory.Write8(line.value + offset, static_cast<u8>(reg));
+            offset += 1;
+            break;
+        case CheatType::Load32:
+            reg = memory.Read32(line.value + offset);
+            break;
+        case CheatType::Load16:
+            reg = memory.Read16(line.value + offset);
+            break;
+        case CheatType::Load8:
+            reg = memory.Read8(line.value + offset);
+            break;
+        case CheatType::AddOffset:
+            offset += line.value;
+            break;
+        case CheatType::Joker:
+            compare((pad_state & line.value) == line.value);
+            break;
+        case CheatType::Patch:
+            patch(line);
+            break;
+        }
+    }
+}
+
+/// One page of guest memory at BASE_ADDR that both interpreters run on from the same contents
+class CheatMemory {
+public:
+    CheatMemory() : page_table(std::make_unique<Memory::PageTable>()), data(Memory::PAGE_SIZE) {
+        memory.MapMemoryRegion(*page_table, BASE_ADDR, Memory::PAGE_SIZE, data.data());
+        memory.SetCurrentPageTable(page_table.get());
+    }
+
+    ~CheatMemory() {
+        memory.UnmapRegion(*page_table, BASE_ADDR, Memory::PAGE_SIZE);
+    }
+
+    void Clear() {
+        std::fill(data.begin(), data.end(), 0);
+    }
+
+    void Set32(u32 offset, u32 value) {
+        memory.Write32(BASE_ADDR + offset, value);
+    }
+
+    u32 Get32(u32 offset) {
+        return memory.Read32(BASE_ADDR + offset);
+    }
+
+    /// Runs the code with both interpreters and checks they leave memory the same, the memory
+    /// is left as the compiled cheat wrote it.
+    void RunBoth(const std::vector<std::string>& code, u32 pad_state) {
+        std::vector<CheatLine> lines;
+        for (const std::string& line : code) {
+            lines.emplace_back(line);
+        }
+        const std::vector<u8> initial = data;
+        ExecuteLineByLine(lines, memory, pad_state);
+        const std::vector<u8> expected = data;
+
+        data = initial;
+        const GatewayCheat cheat{"test", lines, ""};
+        cheat.Execute(
+            memory, [pad_state] { return pad_state; }, [](VAddr, std::size_t) {});
+        REQUIRE(data == expected);
+    }
+
+private:
+    Memory::MemorySystem memory;
+    std::unique_ptr<Memory::PageTable> page_table;
+    std::vector<u8> data;
+};
+
+TEST_CASE("GatewayCheat nested conditionals", "[core][cheats]") {
+    // if word[0] == 1 { if word[4] != 0 { [0x10] = ... } [0x14] = ... } end, [0x18] = ...
+    const std::vector<std::string> code{
+        "50100000 00000001", "60100004 00000000", "00100010 11111111", "D0000000 00000000",
+        "00100014 22222222", "D2000000 00000000", "00100018 33333333",
+    };
+    CheatMemory memory;
+    for (const u32 outer : {0u, 1u}) {
+        for (const u32 inner : {0u, 1u}) {
+            memory.Clear();
+            memory.Set32(0, outer);
+            memory.Set32(4, inner);
+            memory.RunBoth(code, 0);
+            CHECK(memory.Get32(0x10) == (outer && inner ? 0x11111111 : 0));
+            CHECK(memory.Get32(0x14) == (outer ? 0x22222222 : 0));
+            CHECK(memory.Get32(0x18) == 0x33333333);
+        }
+    }
+
+    // D2 closes every open block, even the ones a failed condition is skipping
+    const std::vector<std::string> full_terminator{
+        "50100000 00000001", "50100004 00000001", "00100010 11111111",
+        "D2000000 00000000", "00100014 22222222",
+    };
+    for (const u32 outer : {0u, 1u}) {
+        memory.Clear();
+        memory.Set32(0, outer);
+        memory.RunBoth(full_terminator, 0);
+        CHECK(memory.Get32(0x14) == 0x22222222);
+    }
+}
+
+TEST_CASE("GatewayCheat failed conditional skips patch data", "[core][cheats]") {
+    // the data lines of the patch read as a conditional and a terminator, they must not open
+    // or close a block when the patch is skipped
+    const std::vector<std::string> code{
+        "50100000 00000001", "E0100020 0000000E", "30100000 40100000", "D0000000 D2000000",
+        "D0000000 00000000", "00100030 12345678",
+    };
+    CheatMemory memory;
+    for (const u32 condition : {0u, 1u}) {
+        memory.Clear();
+        memory.Set32(0, condition);
+        memory.RunBoth(code, 0);
+        CHECK(memory.Get32(0x20) == (condition ? 0x30100000 : 0));
+        CHECK(memory.Get32(0x30) == 0x12345678);
+    }
+}
+
+TEST_CASE("GatewayCheat loop", "[core][cheats]") {
+    // writes reg, reg + 1, ... to consecutive words while the loop runs
+    const std::vector<std::string> code{
+        "D3000000 00100000", "D5000000 00000007", "C0000000 00000004", "D6000000 00000040",
+        "D4000000 00000001", "D1000000 00000000", "D2000000 00000000", "00100080 AAAAAAAA",
+    };
+    CheatMemory memory;
+    memory.RunBoth(code, 0);
+    CHECK(memory.Get32(0x40) == 7);
+    CHECK(memory.Get32(0x44) == 8);
+    CHECK(memory.Get32(0x80) == 0xAAAAAAAA);
+}
+
+TEST_CASE("GatewayCheat joker", "[core][cheats]") {
+    const std::vector<std::string> code{
+        "DD000000 00000003", "00100050 AAAAAAAA", "D0000000 00000000",
+        "DD000000 00000001", "00100054 BBBBBBBB", "D2000000 00000000",
+    };
+    CheatMemory memory;
+    for (const u32 pad_state : {0u, 1u, 2u, 3u}) {
+        memory.Clear();
+        memory.RunBoth(code, pad_state);
+        CHECK(memory.Get32(0x50) == (pad_state == 3 ? 0xAAAAAAAA : 0));
+        CHECK(memory.Get32(0x54) == (pad_state & 1 ? 0xBBBBBBBB : 0));
+    }
+}
+
+} // namespace Cheats